@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.core.RepositoryContext;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+
+/**
+ * A repository that keeps its content and search indexes in memory, based
+ * on the <code>InMemBundlePersistenceManager</code> and the
+ * <code>RAMDirectoryManager</code>. Only the workspace configurations are
+ * written to a temporary home directory, which is removed on
+ * {@link #shutdown()}.
+ */
+public class InMemoryRepository {
+
+    private static final String CONFIG = "repository.xml";
+
+    private final File home;
+
+    private final RepositoryContext context;
+
+    public InMemoryRepository() throws IOException, RepositoryException {
+        home = File.createTempFile("jackrabbit-benchmarks", "");
+        if (!home.delete() || !home.mkdir()) {
+            throw new IOException("Unable to create repository home " + home);
+        }
+        InputStream config = InMemoryRepository.class.getResourceAsStream(CONFIG);
+        try {
+            context = RepositoryContext.create(
+                    RepositoryConfig.create(config, home.getPath()));
+        } finally {
+            config.close();
+        }
+    }
+
+    public RepositoryContext getContext() {
+        return context;
+    }
+
+    public RepositoryImpl getRepository() {
+        return context.getRepository();
+    }
+
+    /**
+     * @return a new session of the administrator on the default workspace.
+     * @throws RepositoryException if the login fails.
+     */
+    public Session loginAdministrator() throws RepositoryException {
+        return login("admin", "admin");
+    }
+
+    public Session login(String userId, String password)
+            throws RepositoryException {
+        return getRepository().login(
+                new SimpleCredentials(userId, password.toCharArray()));
+    }
+
+    /**
+     * Creates a tree of <code>nt:unstructured</code> nodes named
+     * <code>node0</code> to <code>node(width-1)</code> on each level below
+     * the given node. Does not save the session.
+     *
+     * @param parent the node to add the tree to.
+     * @param width the number of child nodes per node.
+     * @param depth the number of levels.
+     * @throws RepositoryException if the nodes cannot be added.
+     */
+    public static void createTree(Node parent, int width, int depth)
+            throws RepositoryException {
+        if (depth == 0) {
+            return;
+        }
+        for (int i = 0; i < width; i++) {
+            Node child = parent.addNode("node" + i, "nt:unstructured");
+            child.setProperty("title", "Node " + i + " on level " + depth);
+            child.setProperty("level", depth);
+            createTree(child, width, depth - 1);
+        }
+    }
+
+    public void shutdown() {
+        try {
+            getRepository().shutdown();
+        } finally {
+            FileUtils.deleteQuietly(home);
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Macro benchmarks of common JCR operations against an
+ * {@link InMemoryRepository}: reading nodes by path, traversing a subtree,
+ * adding and removing nodes and executing a query. Each thread uses its own
+ * session, all threads share the repository and its content. Run the
+ * {@link #main(String[])} method to measure all operations at 1 to 16
+ * threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    /**
+     * Number of child nodes per node of the content tree.
+     */
+    private static final int WIDTH = 10;
+
+    /**
+     * Number of levels of the content tree below <code>/bench</code>.
+     */
+    private static final int DEPTH = 3;
+
+    @State(Scope.Benchmark)
+    public static class RepositoryState {
+
+        InMemoryRepository repository;
+
+        @Setup
+        public void setUp() throws Exception {
+            repository = new InMemoryRepository();
+            Session session = repository.loginAdministrator();
+            try {
+                Node root = session.getRootNode();
+                InMemoryRepository.createTree(
+                        root.addNode("bench", "nt:unstructured"), WIDTH, DEPTH);
+                root.addNode("scratch", "nt:unstructured");
+                session.save();
+            } finally {
+                session.logout();
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            repository.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SessionState {
+
+        Session session;
+
+        Node scratch;
+
+        @Setup
+        public void setUp(RepositoryState state) throws RepositoryException {
+            session = state.repository.loginAdministrator();
+            scratch = session.getNode("/scratch").addNode(
+                    UUID.randomUUID().toString(), "nt:unstructured");
+            session.save();
+        }
+
+        @TearDown
+        public void tearDown() {
+            session.logout();
+        }
+    }
+
+    private static String randomPath(int depth) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder path = new StringBuilder("/bench");
+        for (int i = 0; i < depth; i++) {
+            path.append("/node").append(random.nextInt(WIDTH));
+        }
+        return path.toString();
+    }
+
+    @Benchmark
+    public String readNode(SessionState state) throws RepositoryException {
+        Node node = state.session.getNode(randomPath(DEPTH));
+        return node.getProperty("title").getString();
+    }
+
+    @Benchmark
+    public int traverse(SessionState state) throws RepositoryException {
+        return traverse(state.session.getNode(randomPath(1)));
+    }
+
+    private static int traverse(Node node) throws RepositoryException {
+        int count = 1;
+        NodeIterator iterator = node.getNodes();
+        while (iterator.hasNext()) {
+            count += traverse(iterator.nextNode());
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void addAndRemoveNode(SessionState state) throws RepositoryException {
+        Node node = state.scratch.addNode("node", "nt:unstructured");
+        node.setProperty("title", "scratch");
+        state.session.save();
+        node.remove();
+        state.session.save();
+    }
+
+    @Benchmark
+    public long query(SessionState state) throws RepositoryException {
+        QueryManager manager = state.session.getWorkspace().getQueryManager();
+        int i = ThreadLocalRandom.current().nextInt(WIDTH);
+        Query query = manager.createQuery(
+                "/jcr:root/bench/*/*[@title = 'Node " + i + " on level 2']",
+                Query.XPATH);
+        NodeIterator nodes = query.execute().getNodes();
+        long count = 0;
+        while (nodes.hasNext()) {
+            nodes.nextNode();
+            count++;
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 16; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(RepositoryBenchmark.class.getName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.benchmarks.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.benchmarks.InMemoryRepository;
+import org.apache.jackrabbit.core.HierarchyManager;
+import org.apache.jackrabbit.core.HierarchyManagerImpl;
+import org.apache.jackrabbit.core.NodeImpl;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.WorkspaceImpl;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.spi.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the resolution of node ids to paths by the
+ * <code>CachingHierarchyManager</code> of a session, compared to the
+ * uncached {@link HierarchyManagerImpl} on the shared item states, for the
+ * leaves of a tree with a depth of six levels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HierarchyManagerBenchmark {
+
+    private InMemoryRepository repository;
+
+    private SessionImpl session;
+
+    private HierarchyManager cached;
+
+    private HierarchyManager uncached;
+
+    private NodeId[] leaves;
+
+    @Setup
+    public void setUp() throws Exception {
+        repository = new InMemoryRepository();
+        session = (SessionImpl) repository.loginAdministrator();
+        Node root = session.getRootNode().addNode("bench", "nt:unstructured");
+        InMemoryRepository.createTree(root, 4, 5);
+        session.save();
+
+        List<NodeId> ids = new ArrayList<NodeId>();
+        collectLeaves(root, ids);
+        leaves = ids.toArray(new NodeId[ids.size()]);
+
+        cached = session.getHierarchyManager();
+        uncached = new HierarchyManagerImpl(
+                repository.getContext().getRootNodeId(),
+                ((WorkspaceImpl) session.getWorkspace()).getItemStateManager());
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.logout();
+        repository.shutdown();
+    }
+
+    private static void collectLeaves(Node node, List<NodeId> ids)
+            throws RepositoryException {
+        NodeIterator iterator = node.getNodes();
+        if (!iterator.hasNext()) {
+            ids.add(((NodeImpl) node).getNodeId());
+        }
+        while (iterator.hasNext()) {
+            collectLeaves(iterator.nextNode(), ids);
+        }
+    }
+
+    @Benchmark
+    public Path getPathCached() throws RepositoryException {
+        return cached.getPath(leaves[ThreadLocalRandom.current().nextInt(leaves.length)]);
+    }
+
+    @Benchmark
+    public Path getPathUncached() throws RepositoryException {
+        return uncached.getPath(leaves[ThreadLocalRandom.current().nextInt(leaves.length)]);
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.benchmarks.name;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.NamespaceException;
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.NameFactory;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.PathFactory;
+import org.apache.jackrabbit.spi.commons.conversion.DefaultNamePathResolver;
+import org.apache.jackrabbit.spi.commons.conversion.NamePathResolver;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.apache.jackrabbit.spi.commons.namespace.NamespaceMapping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the creation and parsing of names and paths through the
+ * {@link NameFactoryImpl} and {@link PathFactoryImpl}, the common path
+ * operations and the conversion of JCR paths with and without the caching
+ * resolver.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NamePathBenchmark {
+
+    private static final String URI = "http://jackrabbit.apache.org/benchmarks";
+
+    /**
+     * Number of distinct names used per path level.
+     */
+    private static final int NAMES = 100;
+
+    private static final int DEPTH = 8;
+
+    private final NameFactory nameFactory = NameFactoryImpl.getInstance();
+
+    private final PathFactory pathFactory = PathFactoryImpl.getInstance();
+
+    private String[] localNames;
+
+    private String[] nameStrings;
+
+    private Path[] paths;
+
+    private String[] pathStrings;
+
+    private String[] jcrPaths;
+
+    private NamePathResolver resolver;
+
+    private NamePathResolver cachingResolver;
+
+    @Setup
+    public void setUp() throws NamespaceException, RepositoryException {
+        localNames = new String[NAMES];
+        nameStrings = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            localNames[i] = "name" + i;
+            nameStrings[i] = nameFactory.create(URI, localNames[i]).toString();
+        }
+
+        NamespaceMapping mapping = new NamespaceMapping();
+        mapping.setMapping("", "");
+        mapping.setMapping("bm", URI);
+        resolver = new DefaultNamePathResolver(mapping);
+        cachingResolver = new DefaultNamePathResolver(mapping, true);
+
+        paths = new Path[NAMES];
+        pathStrings = new String[NAMES];
+        jcrPaths = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            Path path = pathFactory.getRootPath();
+            for (int level = 0; level < DEPTH; level++) {
+                String local = localNames[(i + level) % NAMES];
+                path = pathFactory.create(path, nameFactory.create(URI, local), true);
+            }
+            paths[i] = path;
+            pathStrings[i] = path.getString();
+            jcrPaths[i] = resolver.getJCRPath(path);
+        }
+    }
+
+    private static int next() {
+        return ThreadLocalRandom.current().nextInt(NAMES);
+    }
+
+    @Benchmark
+    public Name createName() {
+        return nameFactory.create(URI, localNames[next()]);
+    }
+
+    @Benchmark
+    public Name parseName() {
+        return nameFactory.create(nameStrings[next()]);
+    }
+
+    @Benchmark
+    public Path parsePath() {
+        return pathFactory.create(pathStrings[next()]);
+    }
+
+    @Benchmark
+    public Path createChildPath() throws RepositoryException {
+        int i = next();
+        return pathFactory.create(paths[i], nameFactory.create(URI, localNames[i]), true);
+    }
+
+    @Benchmark
+    public boolean isDescendantOf() throws RepositoryException {
+        Path path = paths[next()];
+        return path.isDescendantOf(path.getAncestor(DEPTH / 2));
+    }
+
+    @Benchmark
+    public Path resolveJcrPath() throws RepositoryException {
+        return resolver.getQPath(jcrPaths[next()]);
+    }
+
+    @Benchmark
+    public Path resolveJcrPathCached() throws RepositoryException {
+        return cachingResolver.getQPath(jcrPaths[next()]);
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.benchmarks.name;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.spi.NameFactory;
+import org.apache.jackrabbit.spi.Path;
+import org.apache.jackrabbit.spi.PathFactory;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
+import org.apache.jackrabbit.spi.commons.name.PathMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link PathMap} as used by the <code>CachingHierarchyManager</code>
+ * for a tree of the given width and a depth of four levels: exact lookups,
+ * lookups of the closest mapped ancestor and adding and removing a leaf.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathMapBenchmark {
+
+    private static final int DEPTH = 4;
+
+    private final NameFactory nameFactory = NameFactoryImpl.getInstance();
+
+    private final PathFactory pathFactory = PathFactoryImpl.getInstance();
+
+    @Param({"10", "20"})
+    public int width;
+
+    private PathMap<Object> map;
+
+    /**
+     * The paths of the leaves of the tree.
+     */
+    private Path[] leaves;
+
+    /**
+     * Unmapped paths one level below the leaves.
+     */
+    private Path[] unmapped;
+
+    @Setup
+    public void setUp() throws RepositoryException {
+        map = new PathMap<Object>();
+        List<Path> paths = new ArrayList<Path>();
+        paths.add(pathFactory.getRootPath());
+        for (int level = 0; level < DEPTH; level++) {
+            List<Path> children = new ArrayList<Path>(paths.size() * width);
+            for (Path parent : paths) {
+                for (int i = 0; i < width; i++) {
+                    Path path = pathFactory.create(
+                            parent, nameFactory.create("", "node" + i), true);
+                    map.put(path, path);
+                    children.add(path);
+                }
+            }
+            paths = children;
+        }
+        leaves = paths.toArray(new Path[paths.size()]);
+        unmapped = new Path[leaves.length];
+        for (int i = 0; i < leaves.length; i++) {
+            unmapped[i] = pathFactory.create(
+                    leaves[i], nameFactory.create("", "unmapped"), true);
+        }
+    }
+
+    @Benchmark
+    public PathMap.Element<Object> mapExact() {
+        return map.map(leaves[ThreadLocalRandom.current().nextInt(leaves.length)], true);
+    }
+
+    @Benchmark
+    public PathMap.Element<Object> mapAncestor() {
+        return map.map(unmapped[ThreadLocalRandom.current().nextInt(unmapped.length)], false);
+    }
+
+    @Benchmark
+    public void putAndRemove() {
+        Path path = unmapped[ThreadLocalRandom.current().nextInt(unmapped.length)];
+        map.put(path, path).remove();
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.benchmarks.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.PropertyType;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.id.PropertyId;
+import org.apache.jackrabbit.core.persistence.util.BundleBinding;
+import org.apache.jackrabbit.core.persistence.util.HashMapIndex;
+import org.apache.jackrabbit.core.persistence.util.NodePropBundle;
+import org.apache.jackrabbit.core.persistence.util.NodePropBundle.PropertyEntry;
+import org.apache.jackrabbit.core.value.InternalValue;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.NameFactory;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the serialization of node bundles through the
+ * <code>BundleReader</code> and <code>BundleWriter</code> used by all bundle
+ * persistence managers, for bundles with the given number of child nodes
+ * and properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BundleBindingBenchmark {
+
+    private static final NameFactory FACTORY = NameFactoryImpl.getInstance();
+
+    @Param({"10", "1000"})
+    public int children;
+
+    @Param({"10", "100"})
+    public int properties;
+
+    private BundleBinding binding;
+
+    private NodePropBundle bundle;
+
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        HashMapIndex index = new HashMapIndex();
+        binding = new BundleBinding(null, null, index, index, null);
+
+        NodeId id = NodeId.randomId();
+        bundle = new NodePropBundle(id);
+        bundle.setParentId(NodeId.randomId());
+        bundle.setNodeTypeName(NameConstants.NT_UNSTRUCTURED);
+        bundle.setMixinTypeNames(Collections.singleton(NameConstants.MIX_CREATED));
+        bundle.setSharedSet(Collections.<NodeId>emptySet());
+        for (int i = 0; i < children; i++) {
+            bundle.addChildNodeEntry(FACTORY.create("", "child" + i), NodeId.randomId());
+        }
+        Calendar date = Calendar.getInstance();
+        for (int i = 0; i < properties; i++) {
+            Name name = FACTORY.create("", "property" + i);
+            PropertyEntry property = new PropertyEntry(new PropertyId(id, name));
+            property.setMultiValued(false);
+            switch (i % 3) {
+                case 0:
+                    property.setType(PropertyType.STRING);
+                    property.setValues(new InternalValue[] {
+                            InternalValue.create("value of property " + i) });
+                    break;
+                case 1:
+                    property.setType(PropertyType.LONG);
+                    property.setValues(new InternalValue[] { InternalValue.create(i) });
+                    break;
+                default:
+                    property.setType(PropertyType.DATE);
+                    property.setValues(new InternalValue[] { InternalValue.create(date) });
+            }
+            bundle.addProperty(property);
+        }
+        serialized = write();
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                serialized != null ? serialized.length : 1024);
+        binding.writeBundle(out, bundle);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public NodePropBundle read() throws IOException {
+        return binding.readBundle(
+                new ByteArrayInputStream(serialized), bundle.getId());
+    }
+
+}
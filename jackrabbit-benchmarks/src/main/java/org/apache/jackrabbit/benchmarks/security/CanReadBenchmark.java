@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.benchmarks.security;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.Privilege;
+
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.benchmarks.InMemoryRepository;
+import org.apache.jackrabbit.commons.jackrabbit.authorization.AccessControlUtils;
+import org.apache.jackrabbit.core.NodeImpl;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.security.AccessManager;
+import org.apache.jackrabbit.spi.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the read permission evaluation of the ACL based
+ * <code>CompiledPermissionsImpl</code> through the {@link AccessManager} of a
+ * regular user. Read access to the tree is granted to everyone, denied to
+ * the user on one subtree and granted again further down, such that the
+ * entries of several nodes along the path have to be evaluated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CanReadBenchmark {
+
+    private static final String USER = "reader";
+
+    private InMemoryRepository repository;
+
+    private SessionImpl session;
+
+    private AccessManager accessManager;
+
+    private Path[] paths;
+
+    private NodeId[] ids;
+
+    @Setup
+    public void setUp() throws Exception {
+        repository = new InMemoryRepository();
+        Session admin = repository.loginAdministrator();
+        try {
+            Node root = admin.getRootNode().addNode("bench", "nt:unstructured");
+            InMemoryRepository.createTree(root, 4, 4);
+            Principal reader = ((JackrabbitSession) admin).getUserManager()
+                    .createUser(USER, USER).getPrincipal();
+            String[] read = new String[] { Privilege.JCR_READ };
+            AccessControlUtils.addAccessControlEntry(admin, "/bench",
+                    AccessControlUtils.getEveryonePrincipal(admin), read, true);
+            AccessControlUtils.addAccessControlEntry(admin, "/bench/node0",
+                    reader, read, false);
+            AccessControlUtils.addAccessControlEntry(admin, "/bench/node0/node1",
+                    reader, read, true);
+            admin.save();
+        } finally {
+            admin.logout();
+        }
+
+        session = (SessionImpl) repository.login(USER, USER);
+        accessManager = session.getAccessManager();
+
+        // collect the nodes as administrator, the reader cannot see all
+        admin = repository.loginAdministrator();
+        try {
+            List<Node> nodes = new ArrayList<Node>();
+            collect(admin.getNode("/bench"), nodes);
+            paths = new Path[nodes.size()];
+            ids = new NodeId[nodes.size()];
+            for (int i = 0; i < nodes.size(); i++) {
+                paths[i] = session.getQPath(nodes.get(i).getPath());
+                ids[i] = ((NodeImpl) nodes.get(i)).getNodeId();
+            }
+        } finally {
+            admin.logout();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.logout();
+        repository.shutdown();
+    }
+
+    private static void collect(Node node, List<Node> nodes)
+            throws RepositoryException {
+        nodes.add(node);
+        NodeIterator iterator = node.getNodes();
+        while (iterator.hasNext()) {
+            collect(iterator.nextNode(), nodes);
+        }
+    }
+
+    @Benchmark
+    public boolean canRead() throws RepositoryException {
+        int i = ThreadLocalRandom.current().nextInt(paths.length);
+        return accessManager.canRead(paths[i], ids[i]);
+    }
+
+}
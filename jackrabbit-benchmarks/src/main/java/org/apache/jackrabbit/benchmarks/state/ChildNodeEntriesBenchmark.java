@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.benchmarks.state;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.state.ChildNodeEntry;
+import org.apache.jackrabbit.core.state.ItemState;
+import org.apache.jackrabbit.core.state.NodeState;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.NameFactory;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the <code>ChildNodeEntries</code> of a node state with the given
+ * number of children through the public {@link NodeState} methods: lookups
+ * by name and by id, appending and removing the last entry, and adding an
+ * entry to a transient copy, which has to copy the shared entries first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChildNodeEntriesBenchmark {
+
+    private static final NameFactory FACTORY = NameFactoryImpl.getInstance();
+
+    @Param({"10", "1000", "100000"})
+    public int children;
+
+    private NodeState state;
+
+    private Name[] names;
+
+    private NodeId[] ids;
+
+    private Name extraName;
+
+    private NodeId extraId;
+
+    @Setup
+    public void setUp() {
+        state = new NodeState(NodeId.randomId(), NameConstants.NT_UNSTRUCTURED,
+                null, ItemState.STATUS_EXISTING, false);
+        names = new Name[children];
+        ids = new NodeId[children];
+        for (int i = 0; i < children; i++) {
+            names[i] = FACTORY.create("", "child" + i);
+            ids[i] = NodeId.randomId();
+            state.addChildNodeEntry(names[i], ids[i]);
+        }
+        extraName = FACTORY.create("", "extra");
+        extraId = NodeId.randomId();
+    }
+
+    @Benchmark
+    public ChildNodeEntry getByName() {
+        return state.getChildNodeEntry(
+                names[ThreadLocalRandom.current().nextInt(children)], 1);
+    }
+
+    @Benchmark
+    public ChildNodeEntry getById() {
+        return state.getChildNodeEntry(
+                ids[ThreadLocalRandom.current().nextInt(children)]);
+    }
+
+    @Benchmark
+    public boolean addAndRemove() {
+        state.addChildNodeEntry(extraName, extraId);
+        return state.removeChildNodeEntry(extraId);
+    }
+
+    @Benchmark
+    public ChildNodeEntry addToTransientCopy() {
+        NodeState copy = new NodeState(state, ItemState.STATUS_EXISTING, true);
+        return copy.addChildNodeEntry(extraName, extraId);
+    }
+
+}
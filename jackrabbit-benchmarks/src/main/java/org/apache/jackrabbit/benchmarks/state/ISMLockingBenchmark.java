@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.benchmarks.state;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.state.ChangeLog;
+import org.apache.jackrabbit.core.state.DefaultISMLocking;
+import org.apache.jackrabbit.core.state.FineGrainedISMLocking;
+import org.apache.jackrabbit.core.state.ISMLocking;
+import org.apache.jackrabbit.core.state.ItemState;
+import org.apache.jackrabbit.core.state.NodeState;
+import org.apache.jackrabbit.core.state.StripedISMLocking;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the throughput of the {@link ISMLocking} implementations for
+ * read-only and read-mostly access patterns. Run the {@link #main(String[])}
+ * method to measure all implementations at 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ISMLockingBenchmark {
+
+    /**
+     * Number of distinct item ids that readers and writers pick from.
+     */
+    private static final int ITEMS = 1024;
+
+    /**
+     * One in this many operations of the read-mostly benchmark is a write.
+     */
+    private static final int WRITE_RATIO = 100;
+
+    @Param({"default", "fineGrained", "striped"})
+    public String locking;
+
+    private ISMLocking ismLocking;
+
+    private NodeId[] ids;
+
+    private ChangeLog[] changes;
+
+    @Setup
+    public void setUp() {
+        if ("default".equals(locking)) {
+            ismLocking = new DefaultISMLocking();
+        } else if ("fineGrained".equals(locking)) {
+            ismLocking = new FineGrainedISMLocking();
+        } else if ("striped".equals(locking)) {
+            ismLocking = new StripedISMLocking();
+        } else {
+            throw new IllegalArgumentException("Unknown locking: " + locking);
+        }
+        ids = new NodeId[ITEMS];
+        changes = new ChangeLog[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            ids[i] = NodeId.randomId();
+            ChangeLog log = new ChangeLog();
+            log.modified(new NodeState(ids[i], NameConstants.NT_UNSTRUCTURED,
+                    null, ItemState.STATUS_EXISTING, false));
+            changes[i] = log;
+        }
+    }
+
+    @Benchmark
+    public void readOnly() throws InterruptedException {
+        int i = ThreadLocalRandom.current().nextInt(ITEMS);
+        ismLocking.acquireReadLock(ids[i]).release();
+    }
+
+    @Benchmark
+    public void readMostly() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(ITEMS);
+        if (random.nextInt(WRITE_RATIO) == 0) {
+            ismLocking.acquireWriteLock(changes[i]).release();
+        } else {
+            ismLocking.acquireReadLock(ids[i]).release();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(ISMLockingBenchmark.class.getName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.query.Query;
+
+import org.apache.jackrabbit.benchmarks.InMemoryRepository;
+import org.apache.jackrabbit.core.RepositoryContext;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.WorkspaceImpl;
+import org.apache.jackrabbit.core.query.PropertyTypeRegistry;
+import org.apache.jackrabbit.core.state.ItemStateManager;
+import org.apache.jackrabbit.spi.commons.query.DefaultQueryNodeFactory;
+import org.apache.jackrabbit.spi.commons.query.QueryParser;
+import org.apache.jackrabbit.spi.commons.query.QueryRootNode;
+import org.apache.lucene.analysis.Analyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the translation of parsed XPath statements into Lucene queries
+ * by the {@link LuceneQueryBuilder}, excluding the parsing and the execution
+ * of the query. This benchmark is located in the package of the query
+ * builder in order to create the namespace mappings and the per query cache
+ * the same way the {@link SearchIndex} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LuceneQueryBuilderBenchmark {
+
+    @Param({"path", "property", "contains", "ordered"})
+    public String statement;
+
+    private InMemoryRepository repository;
+
+    private SessionImpl session;
+
+    private QueryRootNode root;
+
+    private ItemStateManager itemStateManager;
+
+    private NamespaceMappings nsMappings;
+
+    private Analyzer analyzer;
+
+    private PropertyTypeRegistry propReg;
+
+    @Setup
+    public void setUp() throws Exception {
+        repository = new InMemoryRepository();
+        session = (SessionImpl) repository.loginAdministrator();
+        InMemoryRepository.createTree(
+                session.getRootNode().addNode("bench", "nt:unstructured"), 3, 3);
+        session.save();
+
+        RepositoryContext context = repository.getContext();
+        itemStateManager = ((WorkspaceImpl) session.getWorkspace()).getItemStateManager();
+        nsMappings = new NSRegistryBasedNamespaceMappings(context.getNamespaceRegistry());
+        analyzer = new JackrabbitAnalyzer();
+        propReg = new PropertyTypeRegistry(context.getNodeTypeRegistry());
+        root = QueryParser.parse(getStatement(), Query.XPATH, session,
+                new DefaultQueryNodeFactory(SearchIndex.VALID_SYSTEM_INDEX_NODE_TYPE_NAMES));
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.logout();
+        repository.shutdown();
+    }
+
+    private String getStatement() {
+        if ("path".equals(statement)) {
+            return "/jcr:root/bench/node0//element(*, nt:unstructured)";
+        } else if ("property".equals(statement)) {
+            return "//element(*, nt:unstructured)[@title = 'Node 1 on level 2' and @level > 1]";
+        } else if ("contains".equals(statement)) {
+            return "/jcr:root/bench//*[jcr:contains(., 'node level') or jcr:contains(@title, 'level 3')]";
+        } else if ("ordered".equals(statement)) {
+            return "/jcr:root/bench/*/*[@level >= 1 and fn:lower-case(@title) = 'node 0 on level 2']"
+                    + " order by @level descending, @title";
+        } else {
+            throw new IllegalArgumentException("Unknown statement: " + statement);
+        }
+    }
+
+    @Benchmark
+    public org.apache.lucene.search.Query createQuery() throws RepositoryException {
+        return LuceneQueryBuilder.createQuery(root, session, itemStateManager,
+                nsMappings, analyzer, propReg, null, IndexFormatVersion.V3,
+                new PerQueryCache());
+    }
+
+}
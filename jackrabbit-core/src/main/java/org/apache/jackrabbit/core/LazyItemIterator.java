@@ -55,6 +55,13 @@ public class LazyItemIterator implements NodeIterator, PropertyIterator {
     /** Logger instance for this class */
     private static Logger log = LoggerFactory.getLogger(LazyItemIterator.class);
 
+    /**
+     * Number of node states that are prefetched from the persistence layer
+     * in one batch, or zero to disable prefetching.
+     */
+    private static final int PREFETCH_SIZE = Integer.getInteger(
+            "org.apache.jackrabbit.lazyItemIteratorPrefetchSize", 100);
+
     /**
      * The session context used to access the repository.
      */
@@ -75,6 +82,9 @@ public class LazyItemIterator implements NodeIterator, PropertyIterator {
     /** prefetched item to be returned on <code>{@link #next()}</code> */
     private Item next;
 
+    /** position up to which the node states have been prefetched */
+    private int prefetchedUpTo;
+
     /**
      * Creates a new <code>LazyItemIterator</code> instance.
      *
@@ -114,6 +124,9 @@ public class LazyItemIterator implements NodeIterator, PropertyIterator {
         // reset
         next = null;
         while (next == null && pos < idList.size()) {
+            if (PREFETCH_SIZE > 0 && pos >= prefetchedUpTo) {
+                prefetchStates();
+            }
             ItemId id = idList.get(pos);
             try {
                 if (parentId != null) {
@@ -158,6 +171,26 @@ public class LazyItemIterator implements NodeIterator, PropertyIterator {
         }
     }
 
+    /**
+     * Prefetches the states of the next {@link #PREFETCH_SIZE} nodes in this
+     * iterator, so that the persistence manager can load them with a single
+     * round trip instead of one per item.
+     */
+    private void prefetchStates() {
+        int end = Math.min(pos + PREFETCH_SIZE, idList.size());
+        List<NodeId> ids = new ArrayList<NodeId>(end - pos);
+        for (int i = pos; i < end; i++) {
+            ItemId id = idList.get(i);
+            if (id.denotesNode()) {
+                ids.add((NodeId) id);
+            }
+        }
+        prefetchedUpTo = end;
+        if (ids.size() > 1) {
+            sessionContext.getWorkspace().getItemStateManager().prefetch(ids);
+        }
+    }
+
     //---------------------------------------------------------< NodeIterator >
     /**
      * {@inheritDoc}
@@ -98,6 +98,11 @@ public class NamespaceRegistryImpl implements
      */
     private NamespaceEventChannel eventChannel;
 
+    /**
+     * The number of times a namespace URI was mapped to a new prefix.
+     */
+    private volatile int remapCount;
+
     /**
      * Protected constructor: Constructs a new instance of this class.
      *
@@ -422,6 +427,7 @@ public class NamespaceRegistryImpl implements
             // remove old prefix mapping
             prefixToURI.remove(oldPrefix);
             uriToPrefix.remove(uri);
+            remapCount++;
         }
 
         // add new prefix mapping
@@ -493,6 +499,18 @@ public class NamespaceRegistryImpl implements
         return prefix;
     }
 
+    /**
+     * Returns the number of times a registered namespace URI was mapped to a
+     * new prefix since this registry was created. Caches of names that were
+     * resolved with the mappings of this registry can compare this number
+     * to detect that a prefix is no longer valid.
+     *
+     * @return the number of remapped namespaces
+     */
+    public int getRemapCount() {
+        return remapCount;
+    }
+
     //-----------------------------------------------< NamespaceEventListener >
 
     /**
@@ -514,6 +532,7 @@ public class NamespaceRegistryImpl implements
             // remove old prefix mapping
             prefixToURI.remove(oldPrefix);
             uriToPrefix.remove(uri);
+            remapCount++;
         }
 
         // add new prefix mapping
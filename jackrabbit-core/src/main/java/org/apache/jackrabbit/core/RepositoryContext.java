@@ -35,6 +35,7 @@ import org.apache.jackrabbit.core.security.JackrabbitSecurityManager;
 import org.apache.jackrabbit.core.security.authorization.PrivilegeRegistry;
 import org.apache.jackrabbit.core.state.ItemStateCacheFactory;
 import org.apache.jackrabbit.stats.RepositoryStatisticsImpl;
+import org.apache.jackrabbit.core.query.QueryTreeCache;
 import org.apache.jackrabbit.core.stats.StatManager;
 import org.apache.jackrabbit.core.version.InternalVersionManagerImpl;
 
@@ -125,6 +126,11 @@ public class RepositoryContext {
      */
     private StatManager statManager;
     
+    /**
+     * The repository wide cache of parsed query statements.
+     */
+    private QueryTreeCache queryTreeCache;
+
     /**
      *  flag to indicate if GC is running
      */
@@ -455,6 +461,26 @@ public class RepositoryContext {
         return statManager;
     }
 
+    /**
+     * Returns the cache of parsed query statements of this repository.
+     *
+     * @return query tree cache
+     */
+    public QueryTreeCache getQueryTreeCache() {
+        assert queryTreeCache != null;
+        return queryTreeCache;
+    }
+
+    /**
+     * Sets the cache of parsed query statements of this repository.
+     *
+     * @param queryTreeCache query tree cache
+     */
+    void setQueryTreeCache(QueryTreeCache queryTreeCache) {
+        assert queryTreeCache != null;
+        this.queryTreeCache = queryTreeCache;
+    }
+
     /**
      * 
      * @return gcRunning status
@@ -91,6 +91,7 @@ import org.apache.jackrabbit.core.persistence.IterablePersistenceManager;
 import org.apache.jackrabbit.core.persistence.PMContext;
 import org.apache.jackrabbit.core.persistence.PersistenceManager;
 import org.apache.jackrabbit.core.persistence.check.ConsistencyChecker;
+import org.apache.jackrabbit.core.query.QueryTreeCache;
 import org.apache.jackrabbit.core.retention.RetentionRegistry;
 import org.apache.jackrabbit.core.retention.RetentionRegistryImpl;
 import org.apache.jackrabbit.core.security.JackrabbitSecurityManager;
@@ -284,6 +285,10 @@ public class RepositoryImpl extends AbstractRepository
                 context.setDataStore(dataStore);
             }
 
+            context.setQueryTreeCache(new QueryTreeCache(
+                    context.getNamespaceRegistry(), dataStore,
+                    context.getStatManager().getQueryStat()));
+
             nodeIdFactory = new NodeIdFactory(repConfig.getHomeDir());
             nodeIdFactory.open();
             context.setNodeIdFactory(nodeIdFactory);
@@ -138,6 +138,22 @@ public class SessionImpl extends AbstractSession
     public static final String AUTO_FIX_CORRUPTIONS =
         "org.apache.jackrabbit.autoFixCorruptions";
 
+    /**
+     * Name of the session attribute that sets the number of nodes after
+     * which an import through {@link #getImportContentHandler(String, int)}
+     * or {@link #importXML(String, java.io.InputStream, int)} is saved. By
+     * default, the imported nodes are kept in the transient space until the
+     * session is saved.
+     * <p>
+     * A batched import is not atomic: if it fails, the batches that were
+     * already saved stay in the workspace and are not rolled back by
+     * <code>refresh(false)</code>.
+     *
+     * @see SessionImporter#setBatchSize(int)
+     */
+    public static final String IMPORT_BATCH_SIZE =
+        "org.apache.jackrabbit.importBatchSize";
+
     private static Logger log = LoggerFactory.getLogger(SessionImpl.class);
 
     /**
@@ -188,6 +204,11 @@ public class SessionImpl extends AbstractSession
      */
     protected NamePathResolver namePathResolver;
 
+    /**
+     * Whether a namespace prefix was remapped in this session
+     */
+    private volatile boolean namespacesRemapped;
+
     /**
      * The version manager for this session
      */
@@ -943,6 +964,15 @@ public class SessionImpl extends AbstractSession
         SessionImporter importer = new SessionImporter(
                 parent, this, uuidBehavior,
                 context.getWorkspace().getConfig().getImportConfig());
+        Object batchSize = getAttribute(IMPORT_BATCH_SIZE);
+        if (batchSize != null) {
+            try {
+                importer.setBatchSize(Integer.parseInt(batchSize.toString()));
+            } catch (NumberFormatException e) {
+                throw new RepositoryException(
+                        "Invalid " + IMPORT_BATCH_SIZE + ": " + batchSize, e);
+            }
+        }
         return new ImportHandler(importer, this);
     }
 
@@ -1067,6 +1097,18 @@ public class SessionImpl extends AbstractSession
         super.setNamespacePrefix(prefix, uri);
         // Clear name and path caches
         namePathResolver = new DefaultNamePathResolver(this, true);
+        namespacesRemapped = true;
+    }
+
+    /**
+     * Returns <code>true</code> if a namespace prefix was remapped in this
+     * session using {@link #setNamespacePrefix(String, String)}. Otherwise
+     * this session uses the namespace mappings of the namespace registry.
+     *
+     * @return whether a namespace prefix was remapped
+     */
+    public boolean isNamespaceRemapped() {
+        return namespacesRemapped;
     }
 
 
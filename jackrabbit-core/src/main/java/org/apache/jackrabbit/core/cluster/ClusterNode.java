@@ -16,16 +16,21 @@
  */
 package org.apache.jackrabbit.core.cluster;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jcr.RepositoryException;
 
 import org.apache.jackrabbit.core.cluster.WorkspaceRecord.CreateWorkspaceAction;
 import org.apache.jackrabbit.core.config.ClusterConfig;
+import org.apache.jackrabbit.core.id.ItemId;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.journal.AbstractJournal;
 import org.apache.jackrabbit.core.journal.InstanceRevision;
@@ -37,6 +42,7 @@ import org.apache.jackrabbit.core.journal.RecordProducer;
 import org.apache.jackrabbit.core.nodetype.InvalidNodeTypeDefException;
 import org.apache.jackrabbit.core.observation.EventState;
 import org.apache.jackrabbit.core.state.ChangeLog;
+import org.apache.jackrabbit.core.state.ItemState;
 import org.apache.jackrabbit.core.version.InternalVersionManagerImpl;
 import org.apache.jackrabbit.core.xml.ClonedInputSource;
 import org.apache.jackrabbit.spi.PrivilegeDefinition;
@@ -59,6 +65,35 @@ public class ClusterNode implements Runnable,
      */
     public static final String SYSTEM_PROPERTY_NODE_ID = "org.apache.jackrabbit.core.cluster.node_id";
 
+    /**
+     * System property specifying the number of records consumed within a
+     * single synchronization, after which successive updates are applied
+     * in batches.
+     */
+    public static final String SYSTEM_PROPERTY_CATCH_UP_THRESHOLD = "org.apache.jackrabbit.core.cluster.catch_up_threshold";
+
+    /**
+     * System property specifying the maximum number of update records
+     * applied as a single batch.
+     */
+    public static final String SYSTEM_PROPERTY_CATCH_UP_BATCH_SIZE = "org.apache.jackrabbit.core.cluster.catch_up_batch_size";
+
+    /**
+     * System property specifying whether a node synchronizes with the journal
+     * before locking it for an update.
+     */
+    public static final String SYSTEM_PROPERTY_SYNC_BEFORE_LOCK = "org.apache.jackrabbit.core.cluster.sync_before_lock";
+
+    /**
+     * Default catch up threshold.
+     */
+    private static final int DEFAULT_CATCH_UP_THRESHOLD = 100;
+
+    /**
+     * Default catch up batch size.
+     */
+    private static final int DEFAULT_CATCH_UP_BATCH_SIZE = 1000;
+
     /**
      * Producer identifier.
      */
@@ -203,6 +238,53 @@ public class ClusterNode implements Runnable,
      */
     private boolean disableAutoSync;
 
+    /**
+     * Number of records consumed in the current synchronization after which
+     * updates are batched.
+     */
+    private int catchUpThreshold =
+            Integer.getInteger(SYSTEM_PROPERTY_CATCH_UP_THRESHOLD, DEFAULT_CATCH_UP_THRESHOLD);
+
+    /**
+     * Maximum number of update records per batch.
+     */
+    private int catchUpBatchSize =
+            Integer.getInteger(SYSTEM_PROPERTY_CATCH_UP_BATCH_SIZE, DEFAULT_CATCH_UP_BATCH_SIZE);
+
+    /**
+     * Flag indicating whether to synchronize before locking the journal.
+     */
+    private boolean syncBeforeLock = Boolean.getBoolean(SYSTEM_PROPERTY_SYNC_BEFORE_LOCK);
+
+    /**
+     * Number of records consumed since the revision was last set. Only
+     * accessed while the journal is being synchronized.
+     */
+    private int consumedCount;
+
+    /**
+     * Revision of the last record consumed.
+     */
+    private long consumedRevision;
+
+    /**
+     * Revision of the last record that has been consumed and is no longer
+     * part of a pending batch.
+     */
+    private long appliedRevision;
+
+    /**
+     * Updates consumed but not yet applied, <code>null</code> if none.
+     */
+    private UpdateBatch pendingBatch;
+
+    /**
+     * Flag indicating that a batch could not be applied in the current
+     * synchronization, so the revision must not advance beyond
+     * {@link #appliedRevision}.
+     */
+    private boolean batchFailed;
+
     /**
      * Initialize this cluster node.
      *
@@ -260,6 +342,73 @@ public class ClusterNode implements Runnable,
         return stopDelay;
     }
     
+    /**
+     * Set the number of records that need to be consumed within a single
+     * synchronization before successive updates of the same workspace are
+     * applied in batches. Batching reduces the cost of catching up with a
+     * large number of records, e.g. after a restart.
+     *
+     * @param catchUpThreshold number of records
+     */
+    public void setCatchUpThreshold(int catchUpThreshold) {
+        this.catchUpThreshold = catchUpThreshold;
+    }
+
+    /**
+     * Return the catch up threshold.
+     *
+     * @return catch up threshold
+     * @see #setCatchUpThreshold(int)
+     */
+    public int getCatchUpThreshold() {
+        return catchUpThreshold;
+    }
+
+    /**
+     * Set the maximum number of update records that are applied as a single
+     * batch.
+     *
+     * @param catchUpBatchSize maximum number of records
+     */
+    public void setCatchUpBatchSize(int catchUpBatchSize) {
+        this.catchUpBatchSize = catchUpBatchSize;
+    }
+
+    /**
+     * Return the catch up batch size.
+     *
+     * @return catch up batch size
+     * @see #setCatchUpBatchSize(int)
+     */
+    public int getCatchUpBatchSize() {
+        return catchUpBatchSize;
+    }
+
+    /**
+     * Set whether this node synchronizes with the journal before locking it
+     * for a workspace update. The journal lock serializes the updates of all
+     * cluster nodes and is held while the records appended by other nodes are
+     * applied. Applying them beforehand leaves only the records appended in
+     * the meantime to be applied while the lock is held, at the expense of an
+     * additional journal query per update.
+     *
+     * @param syncBeforeLock <code>true</code> to synchronize before locking
+     */
+    public void setSyncBeforeLock(boolean syncBeforeLock) {
+        this.syncBeforeLock = syncBeforeLock;
+    }
+
+    /**
+     * Return a flag indicating whether this node synchronizes with the
+     * journal before locking it.
+     *
+     * @return <code>true</code> if this node synchronizes before locking
+     * @see #setSyncBeforeLock(boolean)
+     */
+    public boolean isSyncBeforeLock() {
+        return syncBeforeLock;
+    }
+
     /**
      * Disable periodic background synchronization. Used for testing purposes, only.
      */
@@ -347,6 +496,32 @@ public class ClusterNode implements Runnable,
 
     }
 
+    /**
+     * Synchronize contents from journal without locking it, unless another
+     * synchronization is in progress. In contrast to {@link #sync()} this
+     * method does not wait for the synchronization lock, since the current
+     * thread may already hold it, e.g. when an update is made by a listener
+     * that is invoked while synchronizing.
+     */
+    private void syncBeforeLock() {
+        try {
+            if (!syncLock.attempt(0)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+        try {
+            syncCount.incrementAndGet();
+            journal.sync(false);
+        } catch (JournalException e) {
+            // records are applied again after locking the journal
+            log.warn("Unable to synchronize before locking the journal: " + e.getMessage());
+        } finally {
+            syncLock.release();
+        }
+    }
+
     /**
      * Synchronize contents from journal.
      *
@@ -631,6 +806,9 @@ public class ClusterNode implements Runnable,
                 log.info("not started: update create ignored.");
                 return;
             }
+            if (syncBeforeLock) {
+                syncBeforeLock();
+            }
             try {
                 Record record = producer.append();
                 update.setAttribute(ATTRIBUTE_RECORD, record);
@@ -857,18 +1035,63 @@ public class ClusterNode implements Runnable,
     public void consume(Record record) {
         log.info("Processing revision: " + record.getRevision());
 
+        if (consumedCount > 0 && record.getRevision() <= consumedRevision) {
+            // the previous synchronization failed before its revision was
+            // set, so its records are delivered again
+            resetBatch();
+        }
+        consumedRevision = record.getRevision();
+        if (consumedCount++ == 0) {
+            appliedRevision = getRevision();
+        }
+        boolean succeeded = false;
         try {
-            deserializer.deserialize(record).process(this);
+            ClusterRecord clusterRecord = deserializer.deserialize(record);
+            if (consumedCount > catchUpThreshold
+                    && clusterRecord instanceof ChangeLogRecord) {
+                batch((ChangeLogRecord) clusterRecord);
+            } else {
+                // apply pending updates first in order to preserve ordering
+                applyBatch();
+                clusterRecord.process(this);
+            }
+            succeeded = true;
         } catch (JournalException e) {
             String msg = "Unable to read revision '" + record.getRevision() + "'.";
             log.error(msg, e);
+            succeeded = true;
+        } finally {
+            // a failed batch is still needed to set the revision
+            if (!succeeded && !batchFailed) {
+                resetBatch();
+            }
+        }
+        if (pendingBatch == null) {
+            appliedRevision = record.getRevision();
         }
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Applies pending updates before the revision is persisted. If a batch
+     * of updates could not be applied, the revision is set to the revision
+     * preceding the batch.
      */
     public void setRevision(long revision) {
+        try {
+            try {
+                applyBatch();
+            } catch (IllegalStateException e) {
+                log.error("Could not synchronize to revision: " + revision
+                        + " due illegal state of update listener.");
+            }
+            if (batchFailed) {
+                revision = appliedRevision;
+            }
+        } finally {
+            resetBatch();
+        }
         try {
             instanceRevision.set(revision);
         } catch (JournalException e) {
@@ -876,14 +1099,106 @@ public class ClusterNode implements Runnable,
         }
     }
 
+    /**
+     * Add an update record to the pending batch. The batch is applied
+     * beforehand if the record is targeted at a different listener or
+     * carries different user data.
+     *
+     * @param record update record
+     */
+    private void batch(ChangeLogRecord record) {
+        UpdateEventListener listener = getUpdateListener(record.getWorkspace());
+        if (listener == null) {
+            return;
+        }
+        if (pendingBatch != null && !pendingBatch.accepts(listener, record)) {
+            applyBatch();
+        }
+        if (pendingBatch == null) {
+            pendingBatch = new UpdateBatch(listener, record.getUserData());
+        }
+        auditUpdate(record);
+        pendingBatch.add(record);
+        if (pendingBatch.size() >= catchUpBatchSize) {
+            applyBatch();
+        }
+    }
+
+    /**
+     * Discard the batching state of the current synchronization. Records of
+     * a pending batch have not been applied, but since the revision is not
+     * set beyond them they are delivered again on the next synchronization.
+     */
+    private void resetBatch() {
+        if (pendingBatch != null) {
+            log.warn("Discarding {} update records that were not applied.",
+                    pendingBatch.size());
+        }
+        pendingBatch = null;
+        consumedCount = 0;
+        batchFailed = false;
+    }
+
+    /**
+     * Apply the pending batch of updates, if any.
+     *
+     * @throws IllegalStateException if the update listener is in an illegal
+     *                               state; the records of the batch are then
+     *                               redelivered on the next synchronization
+     */
+    private void applyBatch() {
+        UpdateBatch batch = pendingBatch;
+        if (batch == null) {
+            return;
+        }
+        pendingBatch = null;
+        log.debug("Applying {} update records up to revision {} in one batch.",
+                batch.size(), batch.getRevision());
+        try {
+            batch.apply();
+        } catch (RepositoryException e) {
+            String msg = "Unable to deliver update events: " + e.getMessage();
+            log.error(msg);
+            if (e.getCause() instanceof IllegalStateException) {
+                batchFailed = true;
+                throw (IllegalStateException) e.getCause();
+            }
+        }
+        appliedRevision = batch.getRevision();
+    }
+
     //--------------------------------------------------- ClusterRecordProcessor
 
     /**
      * {@inheritDoc}
      */
     public void process(ChangeLogRecord record) {
-        String workspace = record.getWorkspace();
+        UpdateEventListener listener = getUpdateListener(record.getWorkspace());
+        if (listener == null) {
+            return;
+        }
+        try {
+            auditUpdate(record);
 
+            listener.externalUpdate(record.getChanges(), record.getEvents(),
+                    record.getTimestamp(), record.getUserData());
+        } catch (RepositoryException e) {
+            String msg = "Unable to deliver update events: " + e.getMessage();
+            log.error(msg);
+            if (e.getCause() instanceof IllegalStateException) {
+                throw (IllegalStateException) e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Return the update listener for the given workspace or the versioning
+     * update listener if <code>workspace</code> is <code>null</code>.
+     *
+     * @param workspace workspace name, may be <code>null</code>
+     * @return update listener or <code>null</code> if not available
+     */
+    private UpdateEventListener getUpdateListener(String workspace) {
         UpdateEventListener listener = null;
         if (workspace != null) {
             listener = wspUpdateListeners.get(workspace);
@@ -899,7 +1214,6 @@ public class ClusterNode implements Runnable,
                 if (listener ==  null) {
                     String msg = "Update listener unavailable for workspace: " + workspace;
                     log.error(msg);
-                    return;
                 }
             }
         } else {
@@ -908,29 +1222,26 @@ public class ClusterNode implements Runnable,
             } else {
                 String msg = "Version update listener unavailable.";
                 log.error(msg);
-                return;
             }
         }
-        try {
-            List<EventState> eventStates = record.getEvents();
+        return listener;
+    }
 
-            String path = getFirstUserId(eventStates)
-                    + "@" + workspace
-                    + ":" + EventState.getCommonPath(eventStates, null);
+    /**
+     * Write an update record to the audit log.
+     *
+     * @param record update record
+     */
+    private void auditUpdate(ChangeLogRecord record) {
+        List<EventState> eventStates = record.getEvents();
 
-            updateCount.compareAndSet(Integer.MAX_VALUE, 0);
-           	auditLogger.info("[{}] {} {}", new Object[]{updateCount.incrementAndGet(), 
-                    record.getRevision(), path});
+        String path = getFirstUserId(eventStates)
+                + "@" + record.getWorkspace()
+                + ":" + EventState.getCommonPath(eventStates, null);
 
-            listener.externalUpdate(record.getChanges(), eventStates,
-                    record.getTimestamp(), record.getUserData());
-        } catch (RepositoryException e) {
-            String msg = "Unable to deliver update events: " + e.getMessage();
-            log.error(msg);
-            if (e.getCause() instanceof IllegalStateException) {
-                throw (IllegalStateException) e.getCause();
-            }
-        }
+        updateCount.compareAndSet(Integer.MAX_VALUE, 0);
+        auditLogger.info("[{}] {} {}", new Object[]{updateCount.incrementAndGet(),
+                record.getRevision(), path});
     }
 
     /**
@@ -1121,6 +1432,130 @@ public class ClusterNode implements Runnable,
         }
     }
 
+    /**
+     * Successive update records of the same workspace that are applied with a
+     * single call to {@link UpdateEventListener#externalUpdate}. Changes to the
+     * same item are coalesced, such that each item is refreshed at most once,
+     * and the events of all records are delivered as one event bundle, which
+     * in turn lets the search index process them in one update.
+     */
+    private static final class UpdateBatch {
+
+        /**
+         * Listener the updates are applied to.
+         */
+        private final UpdateEventListener listener;
+
+        /**
+         * User data shared by all records.
+         */
+        private final String userData;
+
+        /**
+         * Coalesced item states, keyed by item id.
+         */
+        private final Map<ItemId, ItemState> states = new LinkedHashMap<ItemId, ItemState>();
+
+        /**
+         * Ids of items that existed before their last change in this batch,
+         * i.e. that were modified, deleted or re-added.
+         */
+        private final Set<ItemId> existed = new HashSet<ItemId>();
+
+        /**
+         * Events of successive records with the same timestamp, in record
+         * order.
+         */
+        private final List<List<EventState>> events = new ArrayList<List<EventState>>();
+
+        /**
+         * Timestamps of the event lists.
+         */
+        private final List<Long> timestamps = new ArrayList<Long>();
+
+        /**
+         * Revision of the last record.
+         */
+        private long revision;
+
+        /**
+         * Number of records.
+         */
+        private int size;
+
+        UpdateBatch(UpdateEventListener listener, String userData) {
+            this.listener = listener;
+            this.userData = userData;
+        }
+
+        boolean accepts(UpdateEventListener listener, ChangeLogRecord record) {
+            return this.listener == listener && (userData == null
+                    ? record.getUserData() == null : userData.equals(record.getUserData()));
+        }
+
+        void add(ChangeLogRecord record) {
+            ChangeLog changes = record.getChanges();
+            for (ItemState state : changes.deletedStates()) {
+                put(state);
+            }
+            for (ItemState state : changes.modifiedStates()) {
+                put(state);
+            }
+            for (ItemState state : changes.addedStates()) {
+                put(state);
+            }
+            int last = timestamps.size() - 1;
+            if (last >= 0 && timestamps.get(last) == record.getTimestamp()) {
+                events.get(last).addAll(record.getEvents());
+            } else {
+                events.add(new ArrayList<EventState>(record.getEvents()));
+                timestamps.add(record.getTimestamp());
+            }
+            revision = record.getRevision();
+            size++;
+        }
+
+        private void put(ItemState state) {
+            ItemId id = state.getId();
+            if (states.containsKey(id) || state.getStatus() != ItemState.STATUS_EXISTING) {
+                existed.add(id);
+            }
+            states.put(id, state);
+        }
+
+        int size() {
+            return size;
+        }
+
+        long getRevision() {
+            return revision;
+        }
+
+        /**
+         * Apply the coalesced changes together with the events of the first
+         * records. The events of records with a different timestamp are
+         * delivered separately, so every event keeps the timestamp of its
+         * record.
+         */
+        void apply() throws RepositoryException {
+            ChangeLog changes = new ChangeLog();
+            for (ItemState state : states.values()) {
+                if (state.getStatus() == ItemState.STATUS_EXISTING_REMOVED) {
+                    changes.deleted(state);
+                } else if (existed.contains(state.getId())) {
+                    // modified or re-added: refresh cached state
+                    changes.modified(state);
+                } else {
+                    changes.added(state);
+                }
+            }
+            for (int i = 0; i < events.size(); i++) {
+                listener.externalUpdate(i == 0 ? changes : new ChangeLog(),
+                        events.get(i), timestamps.get(i), userData);
+            }
+        }
+    }
+
     private String getFirstUserId(List<EventState> eventStates) {
         if (eventStates == null || eventStates.isEmpty()) {
             return "";
@@ -18,10 +18,12 @@ package org.apache.jackrabbit.core.gc;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -47,12 +49,15 @@ import org.apache.jackrabbit.api.management.DataStoreGarbageCollector;
 import org.apache.jackrabbit.api.management.MarkEventListener;
 import org.apache.jackrabbit.core.RepositoryContext;
 import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.data.DataIdentifier;
 import org.apache.jackrabbit.core.data.DataStore;
+import org.apache.jackrabbit.core.data.FileDataStore;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.id.PropertyId;
 import org.apache.jackrabbit.core.observation.SynchronousEventListener;
 import org.apache.jackrabbit.core.persistence.IterablePersistenceManager;
 import org.apache.jackrabbit.core.persistence.PersistenceManager;
+import org.apache.jackrabbit.core.persistence.bundle.AbstractBundlePersistenceManager;
 import org.apache.jackrabbit.core.persistence.util.NodeInfo;
 import org.apache.jackrabbit.core.state.ItemStateException;
 import org.apache.jackrabbit.core.state.NoSuchItemStateException;
@@ -84,6 +89,20 @@ import org.slf4j.LoggerFactory;
  *     gc.close();
  * }
  * </pre>
+ * <p>
+ * If all persistence managers are bundle persistence managers, the
+ * persistence manager scan reads the bundles in batches of node ids, using
+ * {@link #getConcurrentThreadSize()} threads, and marks the referenced
+ * records without creating item states. If that scan fails, calling
+ * {@link #mark()} again continues where it stopped. The sweep of a
+ * {@link FileDataStore} can be run one directory at a time using
+ * {@link #sweep(int)}. The progress is published as a
+ * {@link GarbageCollectorStatusMBean}.
+ * <p>
+ * The progress is only kept by the collector that started the run, and only
+ * while the data store still updates the modified date of the records that
+ * are accessed. Binaries that are re-added to the repository after the scan
+ * was stopped would otherwise keep their old modified date and be deleted.
  */
 public class GarbageCollector implements DataStoreGarbageCollector {
     
@@ -108,6 +127,58 @@ public class GarbageCollector implements DataStoreGarbageCollector {
 
     }
 
+    /**
+     * Marks the data store records referenced by a batch of nodes of a
+     * bundle persistence manager.
+     */
+    private class ScanBundlesTask implements Callable<Void> {
+
+        private final AbstractBundlePersistenceManager pm;
+
+        private final List<NodeId> ids;
+
+        public ScanBundlesTask(AbstractBundlePersistenceManager pm, List<NodeId> ids) {
+            this.pm = pm;
+            this.ids = ids;
+        }
+
+        public Void call() throws Exception {
+            if (callback != null) {
+                for (int i = 0; i < ids.size(); i++) {
+                    callback.beforeScanning(null);
+                }
+            }
+            Set<DataIdentifier> identifiers = pm.getDataIdentifiers(ids);
+            for (DataIdentifier identifier : identifiers) {
+                // reading the record updates the last modified date
+                // while the scan is running
+                if (store.getRecordIfStored(identifier) == null) {
+                    LOG.debug("Data store record not found: " + identifier);
+                }
+            }
+            status.nodesScanned(ids.size());
+            status.recordsMarked(identifiers.size());
+            return null;
+        }
+
+    }
+
+    /**
+     * A batch of nodes that is being scanned.
+     */
+    private static class ScanBatch {
+
+        private final Future<Void> future;
+
+        private final NodeId lastId;
+
+        ScanBatch(Future<Void> future, NodeId lastId) {
+            this.future = future;
+            this.lastId = lastId;
+        }
+
+    }
+
     /** logger instance */
     static final Logger LOG = LoggerFactory.getLogger(GarbageCollector.class);
 
@@ -136,6 +207,12 @@ public class GarbageCollector implements DataStoreGarbageCollector {
 
     private long startScanTimestamp;
 
+    /**
+     * Whether the data store updates the modified date of the records that
+     * are accessed, so that the current run can be continued.
+     */
+    private boolean armed;
+
     private final ArrayList<Listener> listeners = new ArrayList<Listener>();
 
     private final IterablePersistenceManager[] pmList;
@@ -150,6 +227,33 @@ public class GarbageCollector implements DataStoreGarbageCollector {
 
     private volatile RepositoryException observationException;
 
+    private final GarbageCollectorStatus status = new GarbageCollectorStatus();
+
+    /**
+     * The index of the persistence manager that is being scanned.
+     */
+    private int scanIndex;
+
+    /**
+     * The first node id of the persistence manager that is being scanned.
+     */
+    private NodeId scanFirstId;
+
+    /**
+     * The last node id up to which all nodes of the persistence manager
+     * are scanned, or <code>null</code>.
+     */
+    private NodeId scanLastId;
+
+    private boolean marked;
+
+    /**
+     * The last directory that was swept, or <code>null</code>.
+     */
+    private String sweptDirectory;
+
+    private boolean sweepFinished;
+
     /**
      * Create a new garbage collector.
      * This method is usually not called by the application, it is called
@@ -204,6 +308,17 @@ public class GarbageCollector implements DataStoreGarbageCollector {
         this.testDelay = testDelay;
     }
 
+    /**
+     * Returns the progress of this collector. The status is registered in
+     * the platform MBean server from the start of the mark phase until the
+     * collector is closed.
+     *
+     * @return the status
+     */
+    public GarbageCollectorStatusMBean getStatus() {
+        return status;
+    }
+
     public void setMarkEventListener(MarkEventListener callback) {
         this.callback = callback;
     }
@@ -212,11 +327,10 @@ public class GarbageCollector implements DataStoreGarbageCollector {
         if (store == null) {
             throw new RepositoryException("No DataStore configured.");
         }
-        long now = System.currentTimeMillis();
-        if (startScanTimestamp == 0) {
-            startScanTimestamp = now;
-            store.updateModifiedDateOnAccess(startScanTimestamp);
+        if (!armed) {
+            startMark();
         }
+        status.register();
 
         if (pmList == null || !persistenceManagerScan) {
             for (SessionImpl s : sessionList) {
@@ -224,7 +338,9 @@ public class GarbageCollector implements DataStoreGarbageCollector {
             }
         } else {
             try {
-                if (!NODE_ID_SCAN) {
+                if (isBundleScan()) {
+                    scanBundlePersistenceManagers();
+                } else if (!NODE_ID_SCAN) {
                     scanPersistenceManagersByNodeInfos();
                 } else {
                     scanPersistenceManagersByNodeIds();
@@ -235,6 +351,23 @@ public class GarbageCollector implements DataStoreGarbageCollector {
         }
     }
 
+    /**
+     * Starts a new run with the current time as the scan timestamp. The
+     * progress of a previous run is dropped, as records that were accessed
+     * after that run was stopped may still have an older modified date.
+     */
+    private void startMark() {
+        scanIndex = 0;
+        scanFirstId = null;
+        scanLastId = null;
+        marked = false;
+        sweptDirectory = null;
+        sweepFinished = false;
+        startScanTimestamp = System.currentTimeMillis();
+        store.updateModifiedDateOnAccess(startScanTimestamp);
+        armed = true;
+    }
+
     private void scanNodes(SessionImpl session) throws RepositoryException {
 
         // add a listener to get 'moved' nodes
@@ -254,6 +387,101 @@ public class GarbageCollector implements DataStoreGarbageCollector {
         return persistenceManagerScan;
     }
 
+    private boolean isBundleScan() {
+        for (IterablePersistenceManager pm : pmList) {
+            if (!(pm instanceof AbstractBundlePersistenceManager)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scanBundlePersistenceManagers() throws RepositoryException, ItemStateException {
+        if (marked) {
+            // a finished scan is run again, a failed one is continued
+            scanIndex = 0;
+            scanFirstId = null;
+            scanLastId = null;
+            marked = false;
+        }
+        int threads = Math.max(1, getConcurrentThreadSize());
+        status.marking(threads, getProgress());
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            while (scanIndex < pmList.length) {
+                AbstractBundlePersistenceManager pm =
+                    (AbstractBundlePersistenceManager) pmList[scanIndex];
+                LinkedList<ScanBatch> batches = new LinkedList<ScanBatch>();
+                List<NodeId> ids = pm.getAllNodeIds(scanLastId, NODESATONCE);
+                while (!ids.isEmpty()) {
+                    if (scanFirstId == null) {
+                        scanFirstId = ids.get(0);
+                    }
+                    NodeId lastId = ids.get(ids.size() - 1);
+                    batches.add(new ScanBatch(executorService.submit(
+                            new ScanBundlesTask(pm, ids)), lastId));
+                    // the position only moves past batches that are done
+                    while (batches.size() > threads * 2
+                            || (!batches.isEmpty() && batches.getFirst().future.isDone())) {
+                        completed(batches.removeFirst());
+                    }
+                    ids = pm.getAllNodeIds(lastId, NODESATONCE);
+                }
+                while (!batches.isEmpty()) {
+                    completed(batches.removeFirst());
+                }
+                LOG.debug(pm.toString() + " (" + (scanIndex + 1) + "/" + pmList.length
+                        + "): analyzed " + status.getNodesScanned() + " nodes");
+                scanIndex++;
+                scanFirstId = null;
+                scanLastId = null;
+            }
+            marked = true;
+            status.marked();
+            LOG.info("Data store garbage collection mark phase done: " + status);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void completed(ScanBatch batch) throws RepositoryException {
+        try {
+            batch.future.get();
+        } catch (InterruptedException e) {
+            throw new RepositoryException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RepositoryException) {
+                throw (RepositoryException) cause;
+            }
+            throw new RepositoryException(cause);
+        }
+        scanLastId = batch.lastId;
+        status.progress(getProgress());
+    }
+
+    /**
+     * Estimates the fraction of the persistence manager scan that is done
+     * from the position of the last scanned node id, assuming that the
+     * node ids are randomly distributed. Depending on the storage model, a
+     * persistence manager returns the node ids in signed or unsigned order,
+     * which is told apart by the first node id.
+     */
+    private double getProgress() {
+        if (pmList == null || pmList.length == 0) {
+            return 1;
+        }
+        double done = scanIndex;
+        if (scanFirstId != null && scanLastId != null) {
+            long msb = scanLastId.getMostSignificantBits();
+            if (scanFirstId.getMostSignificantBits() < 0) {
+                msb ^= Long.MIN_VALUE;
+            }
+            done += (msb >>> 11) * 0x1.0p-53;
+        }
+        return Math.min(1, done / pmList.length);
+    }
+
     private void scanPersistenceManagersByNodeInfos() throws RepositoryException, ItemStateException {
         int pmCount = 0;
         for (IterablePersistenceManager pm : pmList) {
@@ -388,7 +616,8 @@ public class GarbageCollector implements DataStoreGarbageCollector {
     public void stopScan() throws RepositoryException {
          // reset updateModifiedDateOnAccess to OL
         store.updateModifiedDateOnAccess(0L);
-        
+        armed = false;
+
         if (listeners.size() > 0) {
             for (Listener listener : listeners) {
                 listener.stop();
@@ -400,11 +629,83 @@ public class GarbageCollector implements DataStoreGarbageCollector {
     }
 
     public int sweep() throws RepositoryException {
+        checkMarked();
+        stopScan();
+        status.sweeping();
+        int count = store.deleteAllOlderThan(startScanTimestamp);
+        status.recordsDeleted(count);
+        sweepFinished();
+        return count;
+    }
+
+    /**
+     * Deletes the unused records of at most the given number of top level
+     * directories of a {@link FileDataStore}, continuing after the last
+     * directory swept by this collector. The data store keeps updating the
+     * modified date of the accessed records until the sweep is finished, so
+     * {@link #stopScan()} must not be called in between. Other data stores
+     * are swept at once.
+     *
+     * @param maxDirectories the maximum number of directories to sweep
+     * @return the number of deleted records
+     * @throws RepositoryException if the mark phase is not done, or the scan
+     *         was stopped
+     * @see #isSweepFinished()
+     */
+    public int sweep(int maxDirectories) throws RepositoryException {
+        if (!(store instanceof FileDataStore)) {
+            return sweep();
+        }
+        checkMarked();
+        if (!armed) {
+            throw new RepositoryException(
+                    "the scan was stopped, the mark phase must be run again");
+        }
+        checkObservationException();
+        status.sweeping();
+        FileDataStore fileStore = (FileDataStore) store;
+        int count = 0;
+        boolean remaining = false;
+        for (String directory : fileStore.getDirectoryNames()) {
+            if (sweptDirectory != null && directory.compareTo(sweptDirectory) <= 0) {
+                continue;
+            }
+            if (maxDirectories-- <= 0) {
+                remaining = true;
+                break;
+            }
+            int deleted = fileStore.deleteAllOlderThan(startScanTimestamp, directory);
+            status.recordsDeleted(deleted);
+            count += deleted;
+            sweptDirectory = directory;
+        }
+        if (!remaining) {
+            stopScan();
+            sweepFinished();
+        }
+        return count;
+    }
+
+    /**
+     * @return whether the last call to one of the sweep methods deleted all
+     *         unused records
+     */
+    public boolean isSweepFinished() {
+        return sweepFinished;
+    }
+
+    private void checkMarked() throws RepositoryException {
         if (startScanTimestamp == 0) {
             throw new RepositoryException("scan must be called first");
         }
-        stopScan();
-        return store.deleteAllOlderThan(startScanTimestamp);
+        if (!marked && pmList != null && persistenceManagerScan && isBundleScan()) {
+            throw new RepositoryException("the mark phase is not done");
+        }
+    }
+
+    private void sweepFinished() {
+        sweepFinished = true;
+        status.finished();
     }
 
     /**
@@ -514,6 +815,7 @@ public class GarbageCollector implements DataStoreGarbageCollector {
             for (Session s : sessionList) {
                 s.logout();
             }
+            status.unregister();
         }
     }
 
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.gc;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the progress of a {@link GarbageCollector} and publishes it in the
+ * platform MBean server while the collector is open.
+ */
+public class GarbageCollectorStatus implements GarbageCollectorStatusMBean {
+
+    /**
+     * The logger instance for this class.
+     */
+    private static final Logger log = LoggerFactory.getLogger(GarbageCollectorStatus.class);
+
+    private final AtomicLong nodesScanned = new AtomicLong();
+
+    private final AtomicLong recordsMarked = new AtomicLong();
+
+    private final AtomicLong recordsDeleted = new AtomicLong();
+
+    private volatile String phase = "idle";
+
+    private volatile int threads = 1;
+
+    private volatile long start = 0;
+
+    private volatile long end = 0;
+
+    /**
+     * The progress when the collector started marking, larger than zero if
+     * the mark phase continues an earlier call of the same collector.
+     */
+    private volatile double startProgress = 0;
+
+    private volatile double progress = 0;
+
+    private ObjectName name;
+
+    //-------------------------------------------< GarbageCollectorStatusMBean >
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getNodesScanned() {
+        return nodesScanned.get();
+    }
+
+    public long getRecordsMarked() {
+        return recordsMarked.get();
+    }
+
+    public long getRecordsDeleted() {
+        return recordsDeleted.get();
+    }
+
+    public long getElapsedTime() {
+        if (start == 0) {
+            return 0;
+        }
+        long time = end;
+        if (time == 0) {
+            time = System.currentTimeMillis();
+        }
+        return time - start;
+    }
+
+    public double getThroughput() {
+        long time = getElapsedTime();
+        if (time == 0) {
+            return 0;
+        }
+        return getNodesScanned() * 1000.0 / time;
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+
+    public long getEstimatedTimeRemaining() {
+        double done = progress - startProgress;
+        if (end != 0 || progress >= 1) {
+            return 0;
+        } else if (done <= 0) {
+            return -1;
+        }
+        return Math.round(getElapsedTime() * (1 - progress) / done);
+    }
+
+    //-------------------------------------------------------------< internal >
+
+    void marking(int threads, double progress) {
+        this.threads = threads;
+        this.startProgress = progress;
+        this.progress = progress;
+        if (start == 0) {
+            start = System.currentTimeMillis();
+        }
+        end = 0;
+        phase = "marking";
+    }
+
+    void nodesScanned(int count) {
+        nodesScanned.addAndGet(count);
+    }
+
+    void recordsMarked(int count) {
+        recordsMarked.addAndGet(count);
+    }
+
+    void progress(double progress) {
+        this.progress = progress;
+    }
+
+    void marked() {
+        progress = 1;
+        end = System.currentTimeMillis();
+        phase = "marked";
+    }
+
+    void sweeping() {
+        phase = "sweeping";
+    }
+
+    void recordsDeleted(int count) {
+        recordsDeleted.addAndGet(count);
+    }
+
+    void finished() {
+        phase = "finished";
+    }
+
+    /**
+     * Registers this status with the platform MBean server. Failures are
+     * logged and otherwise ignored.
+     */
+    synchronized void register() {
+        if (name != null) {
+            return;
+        }
+        try {
+            ObjectName on = new ObjectName(
+                    "org.apache.jackrabbit:type=DataStoreGarbageCollector");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(on)) {
+                server.unregisterMBean(on);
+            }
+            server.registerMBean(this, on);
+            name = on;
+        } catch (JMException e) {
+            log.warn("Unable to register garbage collector status MBean", e);
+        }
+    }
+
+    /**
+     * Removes this status from the platform MBean server.
+     */
+    synchronized void unregister() {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                log.debug("Unable to unregister garbage collector status MBean", e);
+            }
+            name = null;
+        }
+    }
+
+    public String toString() {
+        return nodesScanned + " nodes scanned, " + recordsMarked
+                + " records marked, " + recordsDeleted + " deleted in "
+                + getElapsedTime() + "ms ("
+                + Math.round(getThroughput()) + " nodes/s)";
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.gc;
+
+/**
+ * Management interface exposing the progress of a data store garbage
+ * collection.
+ */
+public interface GarbageCollectorStatusMBean {
+
+    /**
+     * @return the current phase: <code>idle</code>, <code>marking</code>,
+     *         <code>marked</code>, <code>sweeping</code> or
+     *         <code>finished</code>.
+     */
+    String getPhase();
+
+    /**
+     * @return the number of threads that read the node bundles.
+     */
+    int getThreads();
+
+    /**
+     * @return the number of nodes scanned since the collector was created.
+     */
+    long getNodesScanned();
+
+    /**
+     * @return the number of data store records that were marked as in use.
+     */
+    long getRecordsMarked();
+
+    /**
+     * @return the number of data store records deleted by the sweep.
+     */
+    long getRecordsDeleted();
+
+    /**
+     * @return the time in milliseconds since the collector started marking.
+     */
+    long getElapsedTime();
+
+    /**
+     * @return the average number of nodes scanned per second.
+     */
+    double getThroughput();
+
+    /**
+     * @return the estimated fraction of the mark phase that is done, between
+     *         0 and 1, including the progress of earlier calls of the
+     *         same collector that the mark phase continues.
+     */
+    double getProgress();
+
+    /**
+     * @return the estimated time in milliseconds until the mark phase is
+     *         done, or -1 if unknown.
+     */
+    long getEstimatedTimeRemaining();
+
+}
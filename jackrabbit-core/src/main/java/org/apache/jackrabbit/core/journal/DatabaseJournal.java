@@ -68,6 +68,8 @@ import javax.sql.DataSource;
  * thread initiates its first run (default = <code>3</code> which means 3:00 at night)</li>
  * <li><code>schemaCheckEnabled</code>:  whether the schema check during initialization is enabled
  * (default = <code>true</code>)</li>
+ * <li><code>syncFetchSize</code>: the number of records fetched from the database at once
+ * while synchronizing (default = <code>1000</code>)</li>
  * </ul>
  * <p>
  * JNDI can be used to get the connection. In this case, use the javax.naming.InitialContext as the driver,
@@ -173,6 +175,11 @@ public class DatabaseJournal extends AbstractJournal implements DatabaseAware {
      */
     private boolean schemaCheckEnabled = true;
 
+    /**
+     * The number of records fetched at once when reading the journal, bean property.
+     */
+    private int syncFetchSize = 1000;
+
     /**
      * The instance that manages the local revision.
      */
@@ -415,8 +422,8 @@ public class DatabaseJournal extends AbstractJournal implements DatabaseAware {
      */
     public RecordIterator getRecords(long startRevision) throws JournalException {
         try {
-            return new DatabaseRecordIterator(conHelper.exec(selectRevisionsStmtSQL, new Object[]{new Long(
-                    startRevision)}, false, 0), getResolver(), getNamePathResolver());
+            return new DatabaseRecordIterator(selectRecords(startRevision),
+                    getResolver(), getNamePathResolver());
         } catch (SQLException e) {
             throw new JournalException("Unable to return record iterator.", e);
         }
@@ -427,13 +434,28 @@ public class DatabaseJournal extends AbstractJournal implements DatabaseAware {
      */
     public RecordIterator getRecords() throws JournalException {
         try {
-            return new DatabaseRecordIterator(conHelper.exec(selectRevisionsStmtSQL, new Object[]{new Long(
-                    Long.MIN_VALUE)}, false, 0), getResolver(), getNamePathResolver());
+            return new DatabaseRecordIterator(selectRecords(Long.MIN_VALUE),
+                    getResolver(), getNamePathResolver());
         } catch (SQLException e) {
             throw new JournalException("Unable to return record iterator.", e);
         }
     }
 
+    /**
+     * Select the records following the given revision. The result set fetches
+     * {@link #getSyncFetchSize()} rows at once, such that catching up with a
+     * large number of records neither needs a database round trip per record
+     * nor loads all records into memory.
+     *
+     * @param startRevision start point (exclusive)
+     * @return result set
+     * @throws SQLException if an error occurs
+     */
+    private ResultSet selectRecords(long startRevision) throws SQLException {
+        return conHelper.exec(selectRevisionsStmtSQL,
+                new Object[]{new Long(startRevision)}, false, 0, Math.max(syncFetchSize, 0));
+    }
+
     /**
      * Synchronize contents from journal. May be overridden by subclasses.
      * Do the initial sync in batchMode, since some databases (PSQL) when
@@ -745,6 +767,14 @@ public class DatabaseJournal extends AbstractJournal implements DatabaseAware {
         return dataSourceName;
     }
 
+    public int getSyncFetchSize() {
+        return syncFetchSize;
+    }
+
+    public void setSyncFetchSize(int syncFetchSize) {
+        this.syncFetchSize = syncFetchSize;
+    }
+
     public void setDataSourceName(String dataSourceName) {
         this.dataSourceName = dataSourceName;
     }
@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.lock;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.core.fs.FileSystem;
+import org.apache.jackrabbit.core.fs.FileSystemException;
+import org.apache.jackrabbit.core.fs.FileSystemResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the open-scoped locks of a workspace. The <code>locks</code> file
+ * contains a snapshot with one line per lock, consisting of the lock token
+ * and an optional timeout hint. Changes made after the snapshot was written
+ * are recorded as individual entries in the <code>locks.log</code> folder,
+ * such that adding or removing a lock writes a single small file instead of
+ * rewriting the complete snapshot. The entries are applied in order on top of
+ * the snapshot when the locks are loaded.
+ * <p>
+ * Once the number of entries exceeds both the number of locks and the
+ * threshold configured by the system property {@link #COMPACTION_THRESHOLD_KEY}
+ * (default {@link #DEFAULT_COMPACTION_THRESHOLD}), the owner is asked to
+ * write a new snapshot by means of {@link #save(Collection)}, which removes the
+ * entries. Replaying entries that are already contained in the snapshot
+ * (e.g. after a crash during compaction) yields the same set of locks.
+ */
+class LockLog {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(LockLog.class);
+
+    /**
+     * Name of the lock file
+     */
+    static final String LOCKS_FILE = "locks";
+
+    /**
+     * Name of the folder containing the log entries
+     */
+    static final String LOG_FOLDER = "locks.log";
+
+    static final String COMPACTION_THRESHOLD_KEY =
+            "org.apache.jackrabbit.core.lock.LockLog.compactionThreshold";
+
+    static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+    private static final char ADDED = '+';
+
+    private static final char REMOVED = '-';
+
+    private final FileSystem fs;
+
+    /**
+     * Locks file
+     */
+    private final FileSystemResource locksFile;
+
+    private final String logFolder;
+
+    private final int compactionThreshold;
+
+    /**
+     * Sequence number of the next log entry.
+     */
+    private long nextSequence;
+
+    /**
+     * Number of log entries written since the last snapshot.
+     */
+    private int entries;
+
+    /**
+     * Number of locks as of the last snapshot plus the logged changes.
+     */
+    private int lockCount;
+
+    LockLog(FileSystem fs) {
+        this(fs, Integer.getInteger(COMPACTION_THRESHOLD_KEY, DEFAULT_COMPACTION_THRESHOLD));
+    }
+
+    LockLog(FileSystem fs, int compactionThreshold) {
+        this.fs = fs;
+        this.locksFile = new FileSystemResource(fs, FileSystem.SEPARATOR + LOCKS_FILE);
+        this.logFolder = FileSystem.SEPARATOR + LOG_FOLDER;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * @return the path of the locks file, used for log messages.
+     */
+    String getPath() {
+        return locksFile.getPath();
+    }
+
+    /**
+     * Reads the snapshot and applies the log entries.
+     *
+     * @return the lines describing the current locks, i.e. the lock token
+     * optionally followed by a comma and the timeout hint.
+     * @throws FileSystemException if an I/O error occurs
+     */
+    synchronized List<String> load() throws FileSystemException {
+        Map<String, String> locks = new LinkedHashMap<String, String>();
+        if (locksFile.exists()) {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(
+                        new InputStreamReader(locksFile.getInputStream()));
+                while (true) {
+                    String s = reader.readLine();
+                    if (s == null || s.equals("")) {
+                        break;
+                    }
+                    locks.put(getToken(s), s);
+                }
+            } catch (IOException e) {
+                throw new FileSystemException("error while reading locks file", e);
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+        }
+
+        entries = 0;
+        nextSequence = 0;
+        for (long sequence : listEntries()) {
+            String entry = readEntry(sequence);
+            if (entry.length() > 1 && entry.charAt(0) == ADDED) {
+                String line = entry.substring(1);
+                locks.put(getToken(line), line);
+            } else if (entry.length() > 1 && entry.charAt(0) == REMOVED) {
+                locks.remove(entry.substring(1));
+            } else {
+                // incomplete entry, e.g. written during a crash
+                log.debug("Ignoring incomplete lock log entry {}", sequence);
+            }
+            entries++;
+            nextSequence = sequence + 1;
+        }
+        lockCount = locks.size();
+        return new ArrayList<String>(locks.values());
+    }
+
+    /**
+     * Records that the given open-scoped lock was added.
+     *
+     * @param info lock info
+     * @return <code>true</code> if a new snapshot should be written.
+     */
+    synchronized boolean added(LockInfo info) {
+        lockCount++;
+        return append(ADDED + toLine(info));
+    }
+
+    /**
+     * Records that the given open-scoped lock was removed.
+     *
+     * @param info lock info
+     * @return <code>true</code> if a new snapshot should be written.
+     */
+    synchronized boolean removed(LockInfo info) {
+        lockCount = Math.max(0, lockCount - 1);
+        return append(REMOVED + info.getLockToken());
+    }
+
+    /**
+     * Writes a snapshot containing the given locks and removes the log
+     * entries included in it.
+     *
+     * @param infos the open-scoped locks
+     */
+    synchronized void save(Collection<LockInfo> infos) {
+        BufferedWriter writer = null;
+        try {
+            writer = new BufferedWriter(
+                    new OutputStreamWriter(locksFile.getOutputStream()));
+            for (LockInfo info : infos) {
+                writer.write(toLine(info));
+                writer.newLine();
+            }
+            writer.close();
+            writer = null;
+
+            lockCount = infos.size();
+            for (long sequence : listEntries()) {
+                if (sequence < nextSequence) {
+                    fs.deleteFile(getEntryPath(sequence));
+                }
+            }
+            entries = 0;
+        } catch (FileSystemException fse) {
+            log.warn("I/O error while saving locks to '"
+                    + locksFile.getPath() + "': " + fse.getMessage());
+            log.debug("Root cause: ", fse);
+        } catch (IOException ioe) {
+            log.warn("I/O error while saving locks to '"
+                    + locksFile.getPath() + "': " + ioe.getMessage());
+            log.debug("Root cause: ", ioe);
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
+
+    /**
+     * @return the number of log entries written since the last snapshot.
+     */
+    synchronized int getEntryCount() {
+        return entries;
+    }
+
+    //------------------------------------------------------------< private >---
+
+    private boolean append(String entry) {
+        long sequence = nextSequence++;
+        FileSystemResource resource = new FileSystemResource(fs, getEntryPath(sequence));
+        BufferedWriter writer = null;
+        try {
+            if (entries == 0) {
+                resource.makeParentDirs();
+            }
+            writer = new BufferedWriter(
+                    new OutputStreamWriter(resource.getOutputStream()));
+            writer.write(entry);
+            writer.newLine();
+            writer.close();
+            writer = null;
+            entries++;
+        } catch (FileSystemException fse) {
+            log.warn("I/O error while logging lock change to '"
+                    + resource.getPath() + "': " + fse.getMessage());
+            log.debug("Root cause: ", fse);
+            // make sure the change gets persisted with the next snapshot
+            return true;
+        } catch (IOException ioe) {
+            log.warn("I/O error while logging lock change to '"
+                    + resource.getPath() + "': " + ioe.getMessage());
+            log.debug("Root cause: ", ioe);
+            return true;
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+        return entries > Math.max(compactionThreshold, lockCount);
+    }
+
+    private String readEntry(long sequence) throws FileSystemException {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(
+                    new InputStreamReader(fs.getInputStream(getEntryPath(sequence))));
+            String s = reader.readLine();
+            return (s == null) ? "" : s;
+        } catch (IOException e) {
+            throw new FileSystemException("error while reading lock log entry", e);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * @return the sequence numbers of the existing log entries in ascending
+     * order.
+     */
+    private long[] listEntries() throws FileSystemException {
+        if (!fs.exists(logFolder)) {
+            return new long[0];
+        }
+        String[] names = fs.listFiles(logFolder);
+        long[] sequences = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            try {
+                sequences[count] = Long.parseLong(name);
+                count++;
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring unexpected file {} in lock log", name);
+            }
+        }
+        sequences = Arrays.copyOf(sequences, count);
+        Arrays.sort(sequences);
+        return sequences;
+    }
+
+    private String getEntryPath(long sequence) {
+        return logFolder + FileSystem.SEPARATOR + String.format("%020d", sequence);
+    }
+
+    private static String getToken(String line) {
+        int pos = line.indexOf(',');
+        return (pos < 0) ? line : line.substring(0, pos);
+    }
+
+    private static String toLine(LockInfo info) {
+        String line = info.getLockToken();
+        // Store the timeout hint, if one is specified
+        if (info.getTimeoutHint() != Long.MAX_VALUE) {
+            line += "," + info.getTimeoutHint();
+        }
+        return line;
+    }
+}
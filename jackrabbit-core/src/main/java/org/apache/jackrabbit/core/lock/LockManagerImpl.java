@@ -16,11 +16,6 @@
  */
 package org.apache.jackrabbit.core.lock;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.ScheduledExecutorService;
@@ -38,7 +33,6 @@ import javax.jcr.observation.Event;
 import javax.jcr.observation.EventIterator;
 
 import org.apache.commons.collections.map.LinkedMap;
-import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.core.NodeImpl;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.SessionListener;
@@ -48,7 +42,6 @@ import org.apache.jackrabbit.core.cluster.LockEventChannel;
 import org.apache.jackrabbit.core.cluster.LockEventListener;
 import org.apache.jackrabbit.core.fs.FileSystem;
 import org.apache.jackrabbit.core.fs.FileSystemException;
-import org.apache.jackrabbit.core.fs.FileSystemResource;
 import org.apache.jackrabbit.core.id.ItemId;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.id.PropertyId;
@@ -78,11 +71,6 @@ public class LockManagerImpl
      */
     private static final Logger log = LoggerFactory.getLogger(LockManagerImpl.class);
 
-    /**
-     * Name of the lock file
-     */
-    private static final String LOCKS_FILE = "locks";
-
     /**
      * Path map containing all locks at the leaves.
      */
@@ -109,9 +97,9 @@ public class LockManagerImpl
     private final SessionImpl sysSession;
 
     /**
-     * Locks file
+     * Persistent log of the open-scoped locks
      */
-    private final FileSystemResource locksFile;
+    private final LockLog lockLog;
 
     /**
      * Flag indicating whether automatic saving is disabled.
@@ -136,19 +124,17 @@ public class LockManagerImpl
             ScheduledExecutorService executor) throws RepositoryException {
 
         this.sysSession = session;
-        this.locksFile = new FileSystemResource(fs, FileSystem.SEPARATOR + LOCKS_FILE);
+        this.lockLog = new LockLog(fs);
 
         session.getWorkspace().getObservationManager().
                 addEventListener(this, Event.NODE_ADDED | Event.NODE_REMOVED,
                         "/", true, null, null, true);
 
         try {
-            if (locksFile.exists()) {
-                load();
-            }
+            load();
         } catch (FileSystemException e) {
             throw new RepositoryException("I/O error while reading locks from '"
-                    + locksFile.getPath() + "'", e);
+                    + lockLog.getPath() + "'", e);
         }
 
         timeoutHandler = executor.scheduleWithFixedDelay(
@@ -201,25 +187,11 @@ public class LockManagerImpl
     }
 
     /**
-     * Read locks from locks file and populate path map
+     * Read locks from locks file and log and populate path map
      */
     private void load() throws FileSystemException {
-        BufferedReader reader = null;
-
-        try {
-            reader = new BufferedReader(
-                    new InputStreamReader(locksFile.getInputStream()));
-            while (true) {
-                String s = reader.readLine();
-                if (s == null || s.equals("")) {
-                    break;
-                }
-                reapplyLock(s);
-            }
-        } catch (IOException e) {
-            throw new FileSystemException("error while reading locks file", e);
-        } finally {
-            IOUtils.closeQuietly(reader);
+        for (String s : lockLog.load()) {
+            reapplyLock(s);
         }
     }
 
@@ -282,33 +254,24 @@ public class LockManagerImpl
             }
         }, false);
 
+        lockLog.save(list);
+    }
 
-        BufferedWriter writer = null;
-
-        try {
-            writer = new BufferedWriter(
-                    new OutputStreamWriter(locksFile.getOutputStream()));
-            for (LockInfo info : list) {
-                writer.write(info.getLockToken());
-
-                // Store the timeout hint, if one is specified
-                if (info.getTimeoutHint() != Long.MAX_VALUE) {
-                    writer.write(',');
-                    writer.write(Long.toString(info.getTimeoutHint()));
-                }
-
-                writer.newLine();
-            }
-        } catch (FileSystemException fse) {
-            log.warn("I/O error while saving locks to '"
-                    + locksFile.getPath() + "': " + fse.getMessage());
-            log.debug("Root cause: ", fse);
-        } catch (IOException ioe) {
-            log.warn("I/O error while saving locks to '"
-                    + locksFile.getPath() + "': " + ioe.getMessage());
-            log.debug("Root cause: ", ioe);
-        } finally {
-            IOUtils.closeQuietly(writer);
+    /**
+     * Record the addition or removal of a single open-scoped lock. Falls
+     * back to writing all locks if the log is due for compaction.
+     *
+     * @param info lock info
+     * @param added <code>true</code> if the lock was added,
+     *              <code>false</code> if it was removed
+     */
+    private void logLock(LockInfo info, boolean added) {
+        if (savingDisabled) {
+            return;
+        }
+        boolean compact = added ? lockLog.added(info) : lockLog.removed(info);
+        if (compact) {
+            save();
         }
     }
 
@@ -380,7 +343,7 @@ public class LockManagerImpl
             lockMap.put(path, info);
 
             if (!info.isSessionScoped()) {
-                save();
+                logLock(info, true);
                 successful = true;
             }
             return info;
@@ -431,7 +394,7 @@ public class LockManagerImpl
             info.setLive(false);
 
             if (!info.isSessionScoped()) {
-                save();
+                logLock(info, false);
                 successful = true;
             }
             return true;
@@ -1356,7 +1319,7 @@ public class LockManagerImpl
             info.setLive(true);
             lockMap.put(path, info);
 
-            save();
+            logLock(info, true);
         } finally {
             release();
         }
@@ -1381,7 +1344,7 @@ public class LockManagerImpl
             element.set(null);
             info.setLive(false);
 
-            save();
+            logLock(info, false);
 
         } finally {
             release();
@@ -132,6 +132,14 @@ class EventConsumer {
         return listener;
     }
 
+    /**
+     * Returns the <code>EventFilter</code> of this <code>EventConsumer</code>.
+     * @return the <code>EventFilter</code> of this <code>EventConsumer</code>.
+     */
+    EventFilter getEventFilter() {
+        return filter;
+    }
+
     /**
      * Checks for what {@link EventState}s this <code>EventConsumer</code> has
      * enough access rights to see the event.
@@ -156,7 +164,7 @@ class EventConsumer {
                 ItemId targetId = state.getTargetId();
                 boolean granted = false;
                 try {
-                    granted = canRead(state);
+                    granted = filter.blocks(state) || canRead(state);
                 } catch (RepositoryException e) {
                     log.warn("Unable to check access rights for item: " + targetId);
                 }
@@ -194,7 +202,7 @@ class EventConsumer {
                 // check read permission
                 boolean granted = false;
                 try {
-                    granted = canRead(evState);
+                    granted = filter.blocks(evState) || canRead(evState);
                 } catch (RepositoryException e) {
                     log.warn("Unable to check access rights for item: " + targetId);
                 }
@@ -231,7 +239,8 @@ class EventConsumer {
                     || state.getType() == Event.PROPERTY_ADDED
                     || state.getType() == Event.PROPERTY_CHANGED) {
                 ItemId targetId = state.getTargetId();
-                if (!canRead(state)) {
+                // events blocked by the filter are not delivered anyway
+                if (!filter.blocks(state) && !canRead(state)) {
                     denied.add(targetId);
                 }
             }
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.observation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+
+import org.apache.jackrabbit.spi.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Indexes event consumers by the paths and event types of their filters, so
+ * that the consumers that may accept an event are found without running
+ * every filter. The index only rules out consumers whose filter blocks all
+ * events of a collection; the remaining checks (node types, identifiers,
+ * local and external events) are left to the {@link EventFilter}.
+ */
+class EventConsumerIndex {
+
+    /**
+     * Logger instance for this class
+     */
+    private static final Logger log = LoggerFactory.getLogger(EventConsumerIndex.class);
+
+    /**
+     * All consumers of this index.
+     */
+    private final Set<EventConsumer> consumers;
+
+    /**
+     * Consumers by the paths they are registered at, regardless of whether
+     * they are deep.
+     */
+    private final Map<Path, List<EventConsumer>> byPath =
+        new HashMap<Path, List<EventConsumer>>();
+
+    /**
+     * Consumers by the paths they are registered at, if they also accept
+     * events below these paths.
+     */
+    private final Map<Path, List<EventConsumer>> deepByPath =
+        new HashMap<Path, List<EventConsumer>>();
+
+    /**
+     * Creates an index of the given consumers.
+     *
+     * @param consumers the consumers to index.
+     */
+    EventConsumerIndex(Set<EventConsumer> consumers) {
+        this.consumers = consumers;
+        for (EventConsumer consumer : consumers) {
+            EventFilter filter = consumer.getEventFilter();
+            for (Path path : filter.getPaths()) {
+                add(byPath, path, consumer);
+                if (filter.isDeep()) {
+                    add(deepByPath, path, consumer);
+                }
+            }
+        }
+    }
+
+    private static void add(Map<Path, List<EventConsumer>> map,
+                            Path path, EventConsumer consumer) {
+        List<EventConsumer> list = map.get(path);
+        if (list == null) {
+            list = new ArrayList<EventConsumer>(1);
+            map.put(path, list);
+        }
+        list.add(consumer);
+    }
+
+    /**
+     * Returns the consumers that may accept at least one of the events.
+     * The filters of all other consumers block every event.
+     *
+     * @param events the events.
+     * @return the consumers that may accept an event.
+     */
+    Set<EventConsumer> getConsumers(EventStateCollection events) {
+        if (consumers.isEmpty()) {
+            return consumers;
+        }
+        Set<EventConsumer> result = new HashSet<EventConsumer>();
+        // event types already looked up per parent path
+        Map<Path, Integer> seen = new HashMap<Path, Integer>();
+        for (Iterator<EventState> it = events.iterator(); it.hasNext();) {
+            EventState state = it.next();
+            int type = state.getType();
+            Path path = state.getParentPath();
+            if (type == Event.PERSIST || path == null) {
+                addMatching(consumers, type, result);
+            } else {
+                Integer types = seen.get(path);
+                if (types != null && (types & type) != 0) {
+                    continue;
+                }
+                seen.put(path, types == null ? type : types | type);
+                addMatching(byPath.get(path), type, result);
+                try {
+                    for (int i = 1; i <= path.getAncestorCount(); i++) {
+                        addMatching(deepByPath.get(path.getAncestor(i)), type, result);
+                    }
+                } catch (RepositoryException e) {
+                    log.debug("Unable to look up consumers for " + path, e);
+                    addMatching(consumers, type, result);
+                }
+            }
+            if (result.size() == consumers.size()) {
+                return consumers;
+            }
+        }
+        return result;
+    }
+
+    private static void addMatching(Collection<EventConsumer> candidates,
+                                    int type,
+                                    Set<EventConsumer> result) {
+        if (candidates != null) {
+            for (EventConsumer consumer : candidates) {
+                if ((consumer.getEventFilter().getEventTypes() & type) != 0) {
+                    result.add(consumer);
+                }
+            }
+        }
+    }
+}
@@ -131,6 +131,27 @@ public class EventFilter {
         this.nodeTypes = nodeTypes;
     }
 
+    /**
+     * @return the event types allowed by this filter.
+     */
+    long getEventTypes() {
+        return eventTypes;
+    }
+
+    /**
+     * @return the paths of the items allowed by this filter.
+     */
+    List<Path> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return whether this filter also allows items below the paths.
+     */
+    boolean isDeep() {
+        return isDeep;
+    }
+
     /**
      * Returns <code>true</code> if this <code>EventFilter</code> does not allow
      * the specified <code>EventState</code>; <code>false</code> otherwise.
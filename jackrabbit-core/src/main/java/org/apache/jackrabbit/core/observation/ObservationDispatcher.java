@@ -23,10 +23,14 @@ import org.apache.jackrabbit.core.state.ChangeLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -47,15 +51,26 @@ public final class ObservationDispatcher extends EventDispatcher
     private static final DispatchAction DISPOSE_MARKER = new DispatchAction(null, null);
 
     /**
-     * The maximum number of queued asynchronous events. To avoid of of memory
-     * problems, the default value is 200'000. To change the default, set the
-     * system property jackrabbit.maxQueuedEvents to the required value. If more
-     * events are in the queue, the current thread waits, unless the current thread is
+     * The maximum number of asynchronous events that are queued or still being
+     * delivered. To avoid of of memory problems, the default value is 200'000.
+     * To change the default, set the system property jackrabbit.maxQueuedEvents
+     * to the required value. If more events are in the queue, the current
+     * thread waits, unless the current thread is
      * the observation dispatcher itself (in which case only a warning is logged
      * - usually observation listeners shouldn't cause new events).
      */
     private static final int MAX_QUEUED_EVENTS = Integer.parseInt(System.getProperty("jackrabbit.maxQueuedEvents", "200000"));
 
+    /**
+     * The number of threads that deliver asynchronous events to the
+     * listeners. With the default value of one, all listeners are notified
+     * by the notification thread. With more threads, each listener is
+     * always notified by the same thread, so the events are still delivered
+     * to a listener in order. To change the default, set the system property
+     * jackrabbit.observationThreads to the required value.
+     */
+    private static final int DELIVERY_THREADS = Integer.getInteger("jackrabbit.observationThreads", 1);
+
     /**
      * Currently active <code>EventConsumer</code>s for notification.
      */
@@ -76,6 +91,16 @@ public final class ObservationDispatcher extends EventDispatcher
      */
     private Set<EventConsumer> synchronousReadOnlyConsumers;
 
+    /**
+     * Index of the asynchronous <code>EventConsumer</code>s.
+     */
+    private EventConsumerIndex asynchronousIndex;
+
+    /**
+     * Index of the synchronous <code>EventConsumer</code>s.
+     */
+    private EventConsumerIndex synchronousIndex;
+
     /**
      * synchronization monitor for listener changes
      */
@@ -87,6 +112,10 @@ public final class ObservationDispatcher extends EventDispatcher
     private Buffer eventQueue
             = BufferUtils.blockingBuffer(new UnboundedFifoBuffer());
 
+    /**
+     * The number of events that are queued or still being delivered to the
+     * asynchronous listeners.
+     */
     private AtomicInteger eventQueueSize = new AtomicInteger();
 
     /**
@@ -94,6 +123,18 @@ public final class ObservationDispatcher extends EventDispatcher
      */
     private Thread notificationThread;
 
+    /**
+     * Single threaded executors that deliver the events to the listeners,
+     * or <code>null</code> if the notification thread delivers them.
+     */
+    private ExecutorService[] deliveryExecutors;
+
+    /**
+     * The threads of the delivery executors.
+     */
+    private final Set<Thread> deliveryThreads =
+        Collections.synchronizedSet(new HashSet<Thread>());
+
     private long lastError;
 
     /**
@@ -101,6 +142,21 @@ public final class ObservationDispatcher extends EventDispatcher
      * and starts the notification thread daemon.
      */
     public ObservationDispatcher() {
+        if (DELIVERY_THREADS > 1) {
+            deliveryExecutors = new ExecutorService[DELIVERY_THREADS];
+            for (int i = 0; i < DELIVERY_THREADS; i++) {
+                final String name = "ObservationManager-" + i;
+                deliveryExecutors[i] = Executors.newSingleThreadExecutor(
+                        new ThreadFactory() {
+                            public Thread newThread(Runnable r) {
+                                Thread thread = new Thread(r, name);
+                                thread.setDaemon(true);
+                                deliveryThreads.add(thread);
+                                return thread;
+                            }
+                        });
+            }
+        }
         notificationThread = new Thread(this, "ObservationManager");
         notificationThread.setDaemon(true);
         notificationThread.start();
@@ -115,6 +171,14 @@ public final class ObservationDispatcher extends EventDispatcher
         eventQueue.add(DISPOSE_MARKER);
         try {
             notificationThread.join();
+            if (deliveryExecutors != null) {
+                for (ExecutorService executor : deliveryExecutors) {
+                    executor.shutdown();
+                }
+                for (ExecutorService executor : deliveryExecutors) {
+                    executor.awaitTermination(1, TimeUnit.MINUTES);
+                }
+            }
         } catch (InterruptedException e) {
             // FIXME log exception ?
         }
@@ -144,6 +208,42 @@ public final class ObservationDispatcher extends EventDispatcher
         }
     }
 
+    /**
+     * Returns the asynchronous <code>EventConsumer</code>s that may accept
+     * at least one of the given events.
+     *
+     * @param events the events.
+     * @return <code>Set</code> of <code>EventConsumer</code>s.
+     */
+    private Set<EventConsumer> getAsynchronousConsumers(EventStateCollection events) {
+        EventConsumerIndex index;
+        synchronized (consumerChange) {
+            if (asynchronousIndex == null) {
+                asynchronousIndex = new EventConsumerIndex(getAsynchronousConsumers());
+            }
+            index = asynchronousIndex;
+        }
+        return index.getConsumers(events);
+    }
+
+    /**
+     * Returns the synchronous <code>EventConsumer</code>s that may accept
+     * at least one of the given events.
+     *
+     * @param events the events.
+     * @return <code>Set</code> of <code>EventConsumer</code>s.
+     */
+    private Set<EventConsumer> getSynchronousConsumers(EventStateCollection events) {
+        EventConsumerIndex index;
+        synchronized (consumerChange) {
+            if (synchronousIndex == null) {
+                synchronousIndex = new EventConsumerIndex(getSynchronousConsumers());
+            }
+            index = synchronousIndex;
+        }
+        return index.getConsumers(events);
+    }
+
     /**
      * Implements the run method of the background notification
      * thread.
@@ -152,25 +252,85 @@ public final class ObservationDispatcher extends EventDispatcher
         DispatchAction action;
         while ((action = (DispatchAction) eventQueue.remove()) != DISPOSE_MARKER) {
 
-            eventQueueSize.getAndAdd(-action.getEventStates().size());
             log.debug("got EventStateCollection");
             log.debug("event delivery to " + action.getEventConsumers().size() + " consumers started...");
-            for (Iterator<EventConsumer> it = action.getEventConsumers().iterator(); it.hasNext();) {
-                EventConsumer c = it.next();
-                try {
-                    c.consumeEvents(action.getEventStates());
-                } catch (Throwable t) {
-                    log.warn("EventConsumer " +
-                            c.getEventListener().getClass().getName() +
-                            " threw exception", t);
-                    // move on to the next consumer
+            EventStateCollection events = action.getEventStates();
+            Collection<EventConsumer> consumers = action.getEventConsumers();
+            if (deliveryExecutors != null && !consumers.isEmpty()) {
+                // the events are only removed from the queue size once
+                // all delivery threads are done with them
+                AtomicInteger pending = new AtomicInteger(consumers.size());
+                for (EventConsumer c : consumers) {
+                    // the same consumer always goes to the same executor
+                    int i = (c.hashCode() & Integer.MAX_VALUE) % deliveryExecutors.length;
+                    deliveryExecutors[i].execute(new Delivery(c, events, pending));
+                }
+            } else {
+                for (EventConsumer c : consumers) {
+                    consumeEvents(c, events);
                 }
+                eventQueueSize.addAndGet(-events.size());
             }
             log.debug("event delivery finished.");
 
         }
     }
 
+    /**
+     * Delivers the events to a consumer and logs exceptions.
+     */
+    private static void consumeEvents(EventConsumer c, EventStateCollection events) {
+        try {
+            c.consumeEvents(events);
+        } catch (Throwable t) {
+            log.warn("EventConsumer " +
+                    c.getEventListener().getClass().getName() +
+                    " threw exception", t);
+            // move on to the next consumer
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the current thread delivers asynchronous
+     * events.
+     */
+    private boolean isNotificationThread() {
+        Thread current = Thread.currentThread();
+        return current == notificationThread || deliveryThreads.contains(current);
+    }
+
+    /**
+     * Delivers the events to a consumer on a delivery thread.
+     */
+    private class Delivery implements Runnable {
+
+        private final EventConsumer consumer;
+
+        private final EventStateCollection events;
+
+        /**
+         * Number of deliveries of the events that are not done yet.
+         */
+        private final AtomicInteger pending;
+
+        Delivery(EventConsumer consumer, EventStateCollection events,
+                 AtomicInteger pending) {
+            this.consumer = consumer;
+            this.events = events;
+            this.pending = pending;
+        }
+
+        public void run() {
+            try {
+                consumeEvents(consumer, events);
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    eventQueueSize.addAndGet(-events.size());
+                }
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -179,8 +339,8 @@ public final class ObservationDispatcher extends EventDispatcher
      */
     void prepareEvents(EventStateCollection events) {
         Set<EventConsumer> consumers = new HashSet<EventConsumer>();
-        consumers.addAll(getSynchronousConsumers());
-        consumers.addAll(getAsynchronousConsumers());
+        consumers.addAll(getSynchronousConsumers(events));
+        consumers.addAll(getAsynchronousConsumers(events));
         for (EventConsumer c : consumers) {
             c.prepareEvents(events);
         }
@@ -191,8 +351,8 @@ public final class ObservationDispatcher extends EventDispatcher
      */
     void prepareDeleted(EventStateCollection events, ChangeLog changes) {
         Set<EventConsumer> consumers = new HashSet<EventConsumer>();
-        consumers.addAll(getSynchronousConsumers());
-        consumers.addAll(getAsynchronousConsumers());
+        consumers.addAll(getSynchronousConsumers(events));
+        consumers.addAll(getAsynchronousConsumers(events));
         for (EventConsumer c : consumers) {
             c.prepareDeleted(events, changes.deletedStates());
         }
@@ -207,7 +367,7 @@ public final class ObservationDispatcher extends EventDispatcher
     void dispatchEvents(EventStateCollection events) {
         // JCR-3426: log warning when changes are done
         // with the notification thread
-        if (Thread.currentThread() == notificationThread) {
+        if (isNotificationThread()) {
             log.warn("Save call with event notification thread detected. This " +
                     "may lead to a growing event queue. Enable debug log to " +
                     "see the stack trace with the class calling save().");
@@ -216,7 +376,7 @@ public final class ObservationDispatcher extends EventDispatcher
             }
         }
         // notify synchronous listeners
-        Set<EventConsumer> synchronous = getSynchronousConsumers();
+        Set<EventConsumer> synchronous = getSynchronousConsumers(events);
         if (log.isDebugEnabled()) {
             log.debug("notifying " + synchronous.size() + " synchronous listeners.");
         }
@@ -228,7 +388,7 @@ public final class ObservationDispatcher extends EventDispatcher
                 // move on to next consumer
             }
         }
-        eventQueue.add(new DispatchAction(events, getAsynchronousConsumers()));
+        eventQueue.add(new DispatchAction(events, getAsynchronousConsumers(events)));
         eventQueueSize.addAndGet(events.size());
     }
 
@@ -252,7 +412,7 @@ public final class ObservationDispatcher extends EventDispatcher
                 log.warn("More than " + MAX_QUEUED_EVENTS + " events in the queue", new Exception("Stack Trace"));
                 lastError = now;
             }
-            if (Thread.currentThread() == notificationThread) {
+            if (isNotificationThread()) {
                 if (logWarning) {
                     log.warn("Recursive notification?");
                 }
@@ -282,6 +442,7 @@ public final class ObservationDispatcher extends EventDispatcher
                 synchronousConsumers.add(consumer);
                 // reset read only consumer set
                 synchronousReadOnlyConsumers = null;
+                synchronousIndex = null;
             } else {
                 // remove existing if any
                 activeConsumers.remove(consumer);
@@ -289,6 +450,7 @@ public final class ObservationDispatcher extends EventDispatcher
                 activeConsumers.add(consumer);
                 // reset read only consumer set
                 readOnlyConsumers = null;
+                asynchronousIndex = null;
             }
         }
     }
@@ -303,10 +465,12 @@ public final class ObservationDispatcher extends EventDispatcher
                 synchronousConsumers.remove(consumer);
                 // reset read only listener set
                 synchronousReadOnlyConsumers = null;
+                synchronousIndex = null;
             } else {
                 activeConsumers.remove(consumer);
                 // reset read only listener set
                 readOnlyConsumers = null;
+                asynchronousIndex = null;
             }
         }
     }
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.persistence;
+
+import java.util.Collection;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.state.ItemStateException;
+
+/**
+ * Optional interface for persistence managers that are able to load a set
+ * of node states in a single round trip to the underlying storage. The shared
+ * item state manager uses it to warm the persistence manager caches before
+ * a sequence of individual {@link PersistenceManager#load(NodeId)} calls,
+ * for example when iterating over the child nodes of a node.
+ */
+public interface PrefetchingPersistenceManager {
+
+    /**
+     * Loads the given node states into the cache of this persistence
+     * manager. Identifiers that are already cached or that do not denote
+     * an existing node are silently ignored.
+     *
+     * @param ids identifiers of the nodes to prefetch
+     * @throws ItemStateException if the states can not be loaded
+     */
+    void prefetch(Collection<NodeId> ids) throws ItemStateException;
+
+}
@@ -20,8 +20,14 @@ import static org.apache.jackrabbit.spi.commons.name.NameConstants.JCR_MIXINTYPE
 import static org.apache.jackrabbit.spi.commons.name.NameConstants.JCR_PRIMARYTYPE;
 import static org.apache.jackrabbit.spi.commons.name.NameConstants.JCR_UUID;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -30,11 +36,13 @@ import java.util.concurrent.atomic.AtomicLong;
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.api.stats.RepositoryStatistics;
 import org.apache.jackrabbit.core.cache.Cache;
 import org.apache.jackrabbit.core.cache.CacheAccessListener;
 import org.apache.jackrabbit.core.cache.ConcurrentCache;
 import org.apache.jackrabbit.core.cluster.UpdateEventChannel;
+import org.apache.jackrabbit.core.data.DataIdentifier;
 import org.apache.jackrabbit.core.fs.FileSystem;
 import org.apache.jackrabbit.core.fs.FileSystemResource;
 import org.apache.jackrabbit.core.id.ItemId;
@@ -44,14 +52,17 @@ import org.apache.jackrabbit.core.persistence.CachingPersistenceManager;
 import org.apache.jackrabbit.core.persistence.IterablePersistenceManager;
 import org.apache.jackrabbit.core.persistence.PMContext;
 import org.apache.jackrabbit.core.persistence.PersistenceManager;
+import org.apache.jackrabbit.core.persistence.PrefetchingPersistenceManager;
 import org.apache.jackrabbit.core.persistence.check.ConsistencyCheckListener;
 import org.apache.jackrabbit.core.persistence.check.ConsistencyChecker;
 import org.apache.jackrabbit.core.persistence.check.ConsistencyReport;
 import org.apache.jackrabbit.core.persistence.util.BLOBStore;
+import org.apache.jackrabbit.core.persistence.util.BundleBinding;
 import org.apache.jackrabbit.core.persistence.util.FileBasedIndex;
 import org.apache.jackrabbit.core.persistence.util.NodeInfo;
 import org.apache.jackrabbit.core.persistence.util.NodePropBundle;
 import org.apache.jackrabbit.core.persistence.util.NodePropBundle.PropertyEntry;
+import org.apache.jackrabbit.core.persistence.util.OffHeapBundleCache;
 import org.apache.jackrabbit.core.state.ChangeLog;
 import org.apache.jackrabbit.core.state.ItemState;
 import org.apache.jackrabbit.core.state.ItemStateException;
@@ -89,13 +100,22 @@ import org.slf4j.LoggerFactory;
  * because a lot of {@link #exists(NodeId)} calls are issued that would result
  * in a useless persistence lookup if the desired bundle does not exist.
  * <p>
+ * Optionally, bundles are additionally kept in serialized form in an
+ * {@link OffHeapBundleCache} outside of the Java heap, which serves misses
+ * of the bundle cache before the bundles are loaded from the underlying
+ * system. It is enabled by setting the off-heap bundle cache size, and is only
+ * supported by persistence managers that provide a
+ * {@link #getBundleBinding() bundle binding}.
+ * <p>
  * Configuration:<br>
  * <ul>
  * <li>&lt;param name="{@link #setBundleCacheSize(String) bundleCacheSize}" value="8"/&gt;
+ * <li>&lt;param name="{@link #setOffHeapBundleCacheSize(String) offHeapBundleCacheSize}" value="0"/&gt;
  * </ul>
  */
 public abstract class AbstractBundlePersistenceManager implements
-    PersistenceManager, CachingPersistenceManager, IterablePersistenceManager, CacheAccessListener, ConsistencyChecker {
+    PersistenceManager, CachingPersistenceManager, PrefetchingPersistenceManager,
+    IterablePersistenceManager, CacheAccessListener, ConsistencyChecker {
 
     /** the audit logger */
     private static Logger auditLogger = LoggerFactory.getLogger("org.apache.jackrabbit.core.audit");
@@ -115,6 +135,18 @@ public abstract class AbstractBundlePersistenceManager implements
     /** the name of the namespace-index resource */
     protected static final String RES_NS_INDEX = "/namespaces.properties";
 
+    /** Name of the counter of bundles found in the off-heap cache */
+    public static final String OFF_HEAP_CACHE_HIT_COUNTER =
+        "BUNDLE_OFF_HEAP_CACHE_HIT_COUNTER";
+
+    /** Name of the counter of bundles not found in the off-heap cache */
+    public static final String OFF_HEAP_CACHE_MISS_COUNTER =
+        "BUNDLE_OFF_HEAP_CACHE_MISS_COUNTER";
+
+    /** Name of the counter of the memory allocated by the off-heap cache */
+    public static final String OFF_HEAP_CACHE_SIZE_COUNTER =
+        "BUNDLE_OFF_HEAP_CACHE_SIZE_COUNTER";
+
     /** Sentinel instance used to mark a non-existent bundle in the cache */
     private static final NodePropBundle MISSING =
         new NodePropBundle(NodeId.randomId());
@@ -136,6 +168,9 @@ public abstract class AbstractBundlePersistenceManager implements
     /** the cache of loaded bundles */
     private ConcurrentCache<NodeId, NodePropBundle> bundles;
 
+    /** the off-heap cache of serialized bundles, or <code>null</code> */
+    private OffHeapBundleCache offHeapBundles;
+
     /** The default minimum stats logging interval (in ms). */
     private static final int DEFAULT_LOG_STATS_INTERVAL = 60 * 1000;
 
@@ -154,6 +189,9 @@ public abstract class AbstractBundlePersistenceManager implements
     /** default size of the bundle cache */
     private long bundleCacheSize = 8 * 1024 * 1024;
 
+    /** size of the off-heap bundle cache, disabled by default */
+    private long offHeapBundleCacheSize = 0;
+
     /** Counter of read operations. */
     private AtomicLong readCounter;
 
@@ -175,6 +213,15 @@ public abstract class AbstractBundlePersistenceManager implements
     /** Counter of bundle cache size. */
     private AtomicLong cacheSizeCounter;
 
+    /** Counter of bundles found in the off-heap cache. */
+    private AtomicLong offHeapHitCounter;
+
+    /** Counter of bundles not found in the off-heap cache. */
+    private AtomicLong offHeapMissCounter;
+
+    /** Counter of the memory allocated by the off-heap cache. */
+    private AtomicLong offHeapSizeCounter;
+
     /** The update event channel to use by the consistency checker when fixing inconsistencies */
     private UpdateEventChannel eventChannel;
 
@@ -196,6 +243,24 @@ public abstract class AbstractBundlePersistenceManager implements
         this.bundleCacheSize = Long.parseLong(bundleCacheSize) * 1024 * 1024;
     }
 
+    /**
+     * Returns the size of the off-heap bundle cache in megabytes.
+     * @return the size of the off-heap bundle cache in megabytes.
+     */
+    public String getOffHeapBundleCacheSize() {
+        return String.valueOf(offHeapBundleCacheSize / (1024 * 1024));
+    }
+
+    /**
+     * Sets the size of the off-heap bundle cache in megabytes. The default
+     * is 0, which disables the off-heap cache.
+     *
+     * @param offHeapBundleCacheSize the off-heap bundle cache size in megabytes.
+     */
+    public void setOffHeapBundleCacheSize(String offHeapBundleCacheSize) {
+        this.offHeapBundleCacheSize = Long.parseLong(offHeapBundleCacheSize) * 1024 * 1024;
+    }
+
     /**
      * Creates the folder path for the given node id that is suitable for
      * storing states in a filesystem.
@@ -351,14 +416,14 @@ public abstract class AbstractBundlePersistenceManager implements
      */
     public synchronized void onExternalUpdate(ChangeLog changes) {
         for (ItemState state : changes.modifiedStates()) {
-            bundles.remove(getBundleId(state));
+            removeFromCaches(getBundleId(state));
         }
         for (ItemState state : changes.deletedStates()) {
-            bundles.remove(getBundleId(state));
+            removeFromCaches(getBundleId(state));
         }
         for (ItemState state : changes.addedStates()) {
             // There may have been a cache miss entry
-            bundles.remove(getBundleId(state));
+            removeFromCaches(getBundleId(state));
         }
     }
 
@@ -370,6 +435,47 @@ public abstract class AbstractBundlePersistenceManager implements
         }
     }
 
+    //---------------------------------------< PrefetchingPersistenceManager >--
+
+    /**
+     * {@inheritDoc}
+     *
+     * Loads all bundles that are not yet cached with a single call to
+     * {@link #loadBundles(Collection)} and puts them into the bundle cache.
+     * Bundles that do not exist are cached as missing. This method is
+     * synchronized so that it can not put stale bundles into the cache while
+     * a change log is being stored.
+     */
+    public synchronized void prefetch(Collection<NodeId> ids)
+            throws ItemStateException {
+        List<NodeId> missing = new ArrayList<NodeId>(ids.size());
+        for (NodeId id : ids) {
+            if (!bundles.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        long time = System.nanoTime();
+        Map<NodeId, NodePropBundle> loaded = loadBundles(missing);
+        time = System.nanoTime() - time;
+        cacheMissDuration.addAndGet(time);
+        log.debug("Prefetched {} bundles in {}ms", loaded.size(), time / 1000000);
+        cacheMissCounter.addAndGet(missing.size());
+
+        for (NodeId id : missing) {
+            NodePropBundle bundle = loaded.get(id);
+            if (bundle != null) {
+                bundle.markOld();
+                bundles.put(id, bundle, bundle.getSize());
+            } else {
+                bundles.put(id, MISSING, MISSING_SIZE_ESTIMATE);
+            }
+        }
+    }
+
     //------------------------------------------< IterablePersistenceManager >--
 
     @Override
@@ -382,6 +488,35 @@ public abstract class AbstractBundlePersistenceManager implements
         return infos;
     }
 
+    /**
+     * Returns the identifiers of the data store records referenced by the
+     * binary properties of the given nodes. The bundles are read from the
+     * underlying system using {@link #loadBundles(Collection)}, without
+     * passing through the bundle cache and without creating item states.
+     * Nodes that do not exist (any more) are ignored.
+     *
+     * @param ids the node ids
+     * @return the data identifiers
+     * @throws ItemStateException if an error while loading occurs.
+     */
+    public Set<DataIdentifier> getDataIdentifiers(Collection<NodeId> ids)
+            throws ItemStateException {
+        Set<DataIdentifier> identifiers = new HashSet<DataIdentifier>();
+        for (NodePropBundle bundle : loadBundles(ids).values()) {
+            for (PropertyEntry entry : bundle.getPropertyEntries()) {
+                if (entry.getType() == PropertyType.BINARY) {
+                    for (InternalValue value : entry.getValues()) {
+                        DataIdentifier identifier = value.getDataIdentifier();
+                        if (identifier != null) {
+                            identifiers.add(identifier);
+                        }
+                    }
+                }
+            }
+        }
+        return identifiers;
+    }
+
     //----------------------------------------------------------------< spi >---
 
     /**
@@ -395,6 +530,30 @@ public abstract class AbstractBundlePersistenceManager implements
     protected abstract NodePropBundle loadBundle(NodeId id)
             throws ItemStateException;
 
+    /**
+     * Loads a number of bundles from the underlying system. The default
+     * implementation simply calls {@link #loadBundle(NodeId)} for each of
+     * the given identifiers. Subclasses that can fetch several bundles in
+     * a single round trip should override this method.
+     *
+     * @param ids the node ids of the bundles
+     * @return the loaded bundles, keyed by node id. Bundles that do not
+     *         exist are not contained in the returned map.
+     * @throws ItemStateException if an error while loading occurs.
+     */
+    protected Map<NodeId, NodePropBundle> loadBundles(Collection<NodeId> ids)
+            throws ItemStateException {
+        Map<NodeId, NodePropBundle> result =
+            new HashMap<NodeId, NodePropBundle>(ids.size());
+        for (NodeId id : ids) {
+            NodePropBundle bundle = loadBundle(id);
+            if (bundle != null) {
+                result.put(id, bundle);
+            }
+        }
+        return result;
+    }
+
     /**
      * Stores a bundle to the underlying system.
      *
@@ -414,6 +573,18 @@ public abstract class AbstractBundlePersistenceManager implements
     protected abstract void destroyBundle(NodePropBundle bundle)
             throws ItemStateException;
 
+    /**
+     * Called when all bundles and node references of a change log have been
+     * passed to {@link #storeBundle(NodePropBundle)},
+     * {@link #destroyBundle(NodePropBundle)}, {@link #store(NodeReferences)}
+     * and {@link #destroy(NodeReferences)}. Implementations that defer these
+     * writes must complete them here. The default implementation does nothing.
+     *
+     * @throws ItemStateException if an error while storing occurs.
+     */
+    protected void storeCompleted() throws ItemStateException {
+    }
+
     /**
      * Deletes the node references from the underlying system.
      *
@@ -439,6 +610,44 @@ public abstract class AbstractBundlePersistenceManager implements
      */
     protected abstract BLOBStore getBlobStore();
 
+    /**
+     * Returns the binding used by this persistence manager to serialize
+     * bundles, which is used for the off-heap bundle cache. The default
+     * implementation returns <code>null</code>, in which case the off-heap
+     * cache is not supported.
+     *
+     * @return the bundle binding, or <code>null</code>
+     */
+    protected BundleBinding getBundleBinding() {
+        return null;
+    }
+
+    /**
+     * Parses a bundle that was read from the underlying system with the
+     * {@link #getBundleBinding() bundle binding}. Subclasses should use this
+     * method in {@link #loadBundle(NodeId)} and
+     * {@link #loadBundles(Collection)}, so that the serialized bundle is put
+     * into the off-heap bundle cache as is, if that cache is enabled.
+     *
+     * @param id the node id of the bundle
+     * @param in the serialized bundle
+     * @return the parsed bundle
+     * @throws IOException if the bundle can not be read or parsed
+     */
+    protected NodePropBundle readBundle(NodeId id, InputStream in)
+            throws IOException {
+        BundleBinding binding = getBundleBinding();
+        OffHeapBundleCache offHeap = offHeapBundles;
+        if (offHeap == null) {
+            return binding.readBundle(in, id);
+        }
+        byte[] data = IOUtils.toByteArray(in);
+        NodePropBundle bundle =
+            binding.readBundle(new ByteArrayInputStream(data), id);
+        offHeap.put(id, data);
+        return bundle;
+    }
+
     //-------------------------------------------------< PersistenceManager >---
 
     /**
@@ -469,6 +678,31 @@ public abstract class AbstractBundlePersistenceManager implements
                 RepositoryStatistics.Type.BUNDLE_CACHE_MISS_COUNTER);
         cacheMissDuration = stats.getCounter(
                 RepositoryStatistics.Type.BUNDLE_CACHE_MISS_DURATION);
+        offHeapHitCounter = stats.getCounter(
+                OFF_HEAP_CACHE_HIT_COUNTER, true);
+        offHeapMissCounter = stats.getCounter(
+                OFF_HEAP_CACHE_MISS_COUNTER, true);
+        offHeapSizeCounter = stats.getCounter(
+                OFF_HEAP_CACHE_SIZE_COUNTER, false);
+    }
+
+    /**
+     * Creates the off-heap bundle cache if it is configured. Subclasses must
+     * call this method once the binding returned by
+     * {@link #getBundleBinding()} has been initialized.
+     */
+    protected void initOffHeapBundleCache() {
+        if (offHeapBundleCacheSize <= 0) {
+            return;
+        }
+        BundleBinding binding = getBundleBinding();
+        if (binding == null) {
+            log.warn("{} does not support the off-heap bundle cache",
+                    getClass().getName());
+            return;
+        }
+        offHeapBundles = new OffHeapBundleCache(binding, offHeapBundleCacheSize);
+        log.info("Using an off-heap bundle cache of {}MB", getOffHeapBundleCacheSize());
     }
 
     /**
@@ -479,6 +713,10 @@ public abstract class AbstractBundlePersistenceManager implements
     public void close() throws Exception {
         // clear caches
         bundles.clear();
+        if (offHeapBundles != null) {
+            offHeapBundles.dispose();
+            offHeapSizeCounter.set(0);
+        }
     }
 
     /**
@@ -595,6 +833,9 @@ public abstract class AbstractBundlePersistenceManager implements
         } finally {
             if (!success) {
                 bundles.clear();
+                if (offHeapBundles != null) {
+                    offHeapBundles.clear();
+                }
             }
         }
     }
@@ -725,6 +966,7 @@ public abstract class AbstractBundlePersistenceManager implements
                 destroy(refs);
             }
         }
+        storeCompleted();
     }
 
     /**
@@ -762,6 +1004,17 @@ public abstract class AbstractBundlePersistenceManager implements
      */
     private NodePropBundle getBundleCacheMiss(NodeId id)
             throws ItemStateException {
+        if (offHeapBundles != null) {
+            NodePropBundle bundle = offHeapBundles.get(id);
+            if (bundle != null) {
+                offHeapHitCounter.incrementAndGet();
+                bundle.markOld();
+                bundles.put(id, bundle, bundle.getSize());
+                return bundle;
+            }
+            offHeapMissCounter.incrementAndGet();
+        }
+
         long time = System.nanoTime();
         NodePropBundle bundle = loadBundle(id);
         time = System.nanoTime() - time;
@@ -788,6 +1041,9 @@ public abstract class AbstractBundlePersistenceManager implements
         destroyBundle(bundle);
         bundle.removeAllProperties(getBlobStore());
         bundles.put(bundle.getId(), MISSING, MISSING_SIZE_ESTIMATE);
+        if (offHeapBundles != null) {
+            offHeapBundles.remove(bundle.getId());
+        }
     }
 
     /**
@@ -815,6 +1071,10 @@ public abstract class AbstractBundlePersistenceManager implements
         if (bundles.containsKey(bundle.getId())) {
             bundles.put(bundle.getId(), bundle, bundle.getSize());
         }
+        // same for the off-heap cache, which must not keep the old version
+        if (offHeapBundles != null && offHeapBundles.containsKey(bundle.getId())) {
+            offHeapBundles.put(bundle);
+        }
     }
 
     /**
@@ -858,13 +1118,24 @@ public abstract class AbstractBundlePersistenceManager implements
      * @param id the id of the bundle.
      */
     protected void evictBundle(NodeId id) {
+        removeFromCaches(id);
+    }
+
+    private void removeFromCaches(NodeId id) {
         bundles.remove(id);
+        if (offHeapBundles != null) {
+            offHeapBundles.remove(id);
+        }
     }
 
     public void cacheAccessed(long accessCount) {
         logCacheStats();
         cacheAccessCounter.addAndGet(accessCount);
         cacheSizeCounter.set(bundles.getMemoryUsed());
+        OffHeapBundleCache offHeap = offHeapBundles;
+        if (offHeap != null) {
+            offHeapSizeCounter.set(offHeap.getMemoryUsed());
+        }
     }
 
     private void logCacheStats() {
@@ -874,6 +1145,10 @@ public abstract class AbstractBundlePersistenceManager implements
                 return;
             }
             log.info(bundles.getCacheInfoAsString());
+            OffHeapBundleCache offHeap = offHeapBundles;
+            if (offHeap != null) {
+                log.info(offHeap.getCacheInfoAsString());
+            }
             nextLogStats = now + minLogStatsInterval;
         }
     }
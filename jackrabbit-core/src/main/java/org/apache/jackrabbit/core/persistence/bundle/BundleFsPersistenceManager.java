@@ -196,6 +196,7 @@ public class BundleFsPersistenceManager extends AbstractBundlePersistenceManager
         // load namespaces
         binding = new BundleBinding(errorHandling, blobStore, getNsIndex(), getNameIndex(), context.getDataStore());
         binding.setMinBlobSize(minBlobSize);
+        initOffHeapBundleCache();
 
         initialized = true;
     }
@@ -208,6 +209,14 @@ public class BundleFsPersistenceManager extends AbstractBundlePersistenceManager
         return blobStore;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected BundleBinding getBundleBinding() {
+        return binding;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -239,7 +248,7 @@ public class BundleFsPersistenceManager extends AbstractBundlePersistenceManager
             }
             InputStream in = itemFs.getInputStream(path);
             try {
-                return binding.readBundle(in, id);
+                return readBundle(id, in);
             } finally {
                 IOUtils.closeQuietly(in);
             }
@@ -402,6 +402,7 @@ public class InMemBundlePersistenceManager extends AbstractBundlePersistenceMana
         // load namespaces
         binding = new BundleBinding(errorHandling, blobStore, getNsIndex(), getNameIndex(), context.getDataStore());
         binding.setMinBlobSize(minBlobSize);
+        initOffHeapBundleCache();
 
         if (persistent) {
             // deserialize contents of the stores
@@ -519,7 +520,7 @@ public class InMemBundlePersistenceManager extends AbstractBundlePersistenceMana
             return null;
         }
         try {
-            return binding.readBundle(new ByteArrayInputStream(bundleStore.get(id)), id);
+            return readBundle(id, new ByteArrayInputStream(bundleStore.get(id)));
         } catch (Exception e) {
             String msg = "failed to read bundle: " + id + ": " + e;
             log.error(msg);
@@ -559,6 +560,14 @@ public class InMemBundlePersistenceManager extends AbstractBundlePersistenceMana
         return blobStore;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected BundleBinding getBundleBinding() {
+        return binding;
+    }
+
     /**
      * Helper interface for closeable stores
      */
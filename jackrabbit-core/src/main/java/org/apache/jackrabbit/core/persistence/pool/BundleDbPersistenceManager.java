@@ -26,6 +26,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -69,6 +71,7 @@ import org.slf4j.LoggerFactory;
  * Configuration:<br>
  * <ul>
  * <li>&lt;param name="{@link #setBundleCacheSize(String) bundleCacheSize}" value="8"/&gt;
+ * <li>&lt;param name="{@link #setOffHeapBundleCacheSize(String) offHeapBundleCacheSize}" value="0"/&gt;
  * <li>&lt;param name="{@link #setConsistencyCheck(String) consistencyCheck}" value="false"/&gt;
  * <li>&lt;param name="{@link #setConsistencyFix(String) consistencyFix}" value="false"/&gt;
  * <li>&lt;param name="{@link #setMinBlobSize(String) minBlobSize}" value="4096"/&gt;
@@ -81,6 +84,7 @@ import org.slf4j.LoggerFactory;
  * <li>&lt;param name="{@link #setErrorHandling(String) errorHandling}" value=""/&gt;
  * <li>&lt;param name="{@link #setBlockOnConnectionLoss(String) blockOnConnectionLoss}" value="false"/&gt;
  * <li>&lt;param name="{@link #setSchemaCheckEnabled(boolean) schemaCheckEnabled}" value="true"/&gt;
+ * <li>&lt;param name="{@link #setBundleBatchSize(String) bundleBatchSize}" value="100"/&gt;
  * </ul>
  */
 public class BundleDbPersistenceManager
@@ -128,6 +132,9 @@ public class BundleDbPersistenceManager
     /** flag indicating if the consistency check should attempt to fix issues */
     protected boolean consistencyFix;
 
+    /** default maximum number of bundles that are read with a single select */
+    protected static final int DEFAULT_BUNDLE_BATCH_SIZE = 100;
+
     /** initial size of buffer used to serialize objects */
     protected static final int INITIAL_BUFFER_SIZE = 1024;
 
@@ -185,6 +192,20 @@ public class BundleDbPersistenceManager
      */
     private boolean schemaCheckEnabled = true;
 
+    /**
+     * The maximum number of bundles that are read with a single select
+     * statement by {@link #loadBundles(Collection)}.
+     */
+    private int bundleBatchSize = DEFAULT_BUNDLE_BATCH_SIZE;
+
+    /**
+     * The updates of the change log that is being stored, by their SQL
+     * statement, or <code>null</code> if the updates are executed right away.
+     * The updates are executed as JDBC batches when the change log is
+     * complete.
+     */
+    private Map<String, List<Object[]>> pendingUpdates;
+
     /**
      * The repositories {@link ConnectionFactory}.
      */
@@ -465,6 +486,26 @@ public class BundleDbPersistenceManager
         schemaCheckEnabled = enabled;
     }
 
+    /**
+     * Returns the maximum number of bundles that are read with a single
+     * select statement.
+     * @return the bundle batch size.
+     */
+    public String getBundleBatchSize() {
+        return String.valueOf(bundleBatchSize);
+    }
+
+    /**
+     * Sets the maximum number of bundles that are read with a single select
+     * statement when several bundles are prefetched. A value of 1 disables
+     * batched reads. The default is 100.
+     *
+     * @param bundleBatchSize the bundle batch size.
+     */
+    public void setBundleBatchSize(String bundleBatchSize) {
+        this.bundleBatchSize = Math.max(1, Integer.parseInt(bundleBatchSize));
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -479,7 +520,12 @@ public class BundleDbPersistenceManager
         while (!sleepInterrupted && (blockOnConnectionLoss || failures <= 1)) {
             try {
                 conHelper.startBatch();
-                super.store(changeLog);
+                pendingUpdates = new LinkedHashMap<String, List<Object[]>>();
+                try {
+                    super.store(changeLog);
+                } finally {
+                    pendingUpdates = null;
+                }
                 conHelper.endBatch(true);
                 return;
             } catch (SQLException e) {
@@ -516,6 +562,52 @@ public class BundleDbPersistenceManager
         throw lastException;
     }
 
+    /**
+     * Executes the given update as part of the JDBC batch of its statement
+     * if a change log is being stored, otherwise right away.
+     */
+    private void update(String sql, Object[] params) throws SQLException {
+        if (pendingUpdates != null) {
+            List<Object[]> batch = pendingUpdates.get(sql);
+            if (batch == null) {
+                batch = new ArrayList<Object[]>();
+                pendingUpdates.put(sql, batch);
+            }
+            batch.add(params);
+        } else {
+            conHelper.update(sql, params);
+        }
+    }
+
+    /**
+     * Executes the updates of the change log as one JDBC batch per SQL
+     * statement, in the order in which the statements were first used.
+     */
+    @Override
+    protected void storeCompleted() throws ItemStateException {
+        if (pendingUpdates == null) {
+            return;
+        }
+        for (Map.Entry<String, List<Object[]>> entry : pendingUpdates.entrySet()) {
+            try {
+                conHelper.updateBatch(entry.getKey(), entry.getValue());
+            } catch (SQLException e) {
+                String msg;
+                if (isIntegrityConstraintViolation(e)) {
+                    // see storeBundle()
+                    msg = "FATAL error while writing " + entry.getValue().size()
+                            + " bundles or references";
+                } else {
+                    msg = "failed to write " + entry.getValue().size()
+                            + " bundles or references";
+                }
+                log.error(msg, e);
+                throw new ItemStateException(msg, e);
+            }
+        }
+        pendingUpdates.clear();
+    }
+
     private boolean isIntegrityConstraintViolation(Throwable t) {
         if (t instanceof SQLException) {
             String state = ((SQLException) t).getSQLState();
@@ -554,6 +646,7 @@ public class BundleDbPersistenceManager
         // load namespaces
         binding = new BundleBinding(errorHandling, blobStore, getNsIndex(), getNameIndex(), context.getDataStore());
         binding.setMinBlobSize(minBlobSize);
+        initOffHeapBundleCache();
 
         initialized = true;
 
@@ -612,6 +705,14 @@ public class BundleDbPersistenceManager
         return blobStore;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected BundleBinding getBundleBinding() {
+        return binding;
+    }
+
     /**
      * Creates a suitable blobstore
      * @return a blobstore
@@ -903,6 +1004,101 @@ public class BundleDbPersistenceManager
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Reads the bundles in chunks of at most {@link #getBundleBatchSize()}
+     * identifiers, each chunk with a single select statement.
+     */
+    @Override
+    protected Map<NodeId, NodePropBundle> loadBundles(Collection<NodeId> ids)
+            throws ItemStateException {
+        if (bundleBatchSize == 1 || ids.size() == 1) {
+            return super.loadBundles(ids);
+        }
+        Map<NodeId, NodePropBundle> result =
+            new HashMap<NodeId, NodePropBundle>(ids.size());
+        List<NodeId> chunk = new ArrayList<NodeId>(bundleBatchSize);
+        for (NodeId id : ids) {
+            chunk.add(id);
+            if (chunk.size() == bundleBatchSize) {
+                loadBundleChunk(chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            loadBundleChunk(chunk, result);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the bundles with the given identifiers using a single select
+     * statement and adds them to the given map.
+     *
+     * @param ids the node ids of the bundles
+     * @param result map to which the loaded bundles are added
+     * @throws ItemStateException if an error while loading occurs.
+     */
+    private void loadBundleChunk(List<NodeId> ids, Map<NodeId, NodePropBundle> result)
+            throws ItemStateException {
+        List<Object> params = new ArrayList<Object>();
+        for (NodeId id : ids) {
+            for (Object key : getKey(id)) {
+                params.add(key);
+            }
+        }
+        ResultSet rs = null;
+        try {
+            rs = conHelper.exec(buildBundleSelectBatchSQL(ids.size()), params.toArray(), false, 0);
+            while (rs.next()) {
+                NodeId current;
+                if (getStorageModel() == SM_BINARY_KEYS) {
+                    current = new NodeId(rs.getBytes(1));
+                } else {
+                    current = new NodeId(rs.getLong(1), rs.getLong(2));
+                }
+                result.put(current, readBundle(current, rs, getStorageModel() == SM_LONGLONG_KEYS ? 3 : 2));
+            }
+        } catch (SQLException e) {
+            String msg = "failed to read " + ids.size() + " bundles (stacktrace on DEBUG log level): " + e;
+            log.error(msg);
+            log.debug("failed to read bundles: " + ids, e);
+            throw new ItemStateException(msg, e);
+        } finally {
+            DbUtility.close(rs);
+        }
+    }
+
+    /**
+     * Creates the statement that selects the given number of bundles,
+     * selecting the node identifier columns followed by the bundle data.
+     *
+     * @param count number of bundles to select
+     * @return the select statement
+     */
+    protected String buildBundleSelectBatchSQL(int count) {
+        StringBuilder sql = new StringBuilder();
+        if (getStorageModel() == SM_BINARY_KEYS) {
+            sql.append("select NODE_ID, BUNDLE_DATA from ");
+            sql.append(schemaObjectPrefix).append("BUNDLE where NODE_ID in (");
+            for (int i = 0; i < count; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(")");
+        } else {
+            sql.append("select NODE_ID_HI, NODE_ID_LO, BUNDLE_DATA from ");
+            sql.append(schemaObjectPrefix).append("BUNDLE where ");
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    sql.append(" or ");
+                }
+                sql.append("(NODE_ID_HI = ? and NODE_ID_LO = ?)");
+            }
+        }
+        return sql.toString();
+    }
+
     /**
      * Reads and parses a bundle from the BLOB in the given column of the
      * current row of the given result set. This is a helper method to
@@ -924,7 +1120,7 @@ public class BundleDbPersistenceManager
                 in = rs.getBinaryStream(column);
             }
             try {
-                return binding.readBundle(in, id);
+                return readBundle(id, in);
             } finally {
                 in.close();
             }
@@ -947,7 +1143,7 @@ public class BundleDbPersistenceManager
 
             String sql = bundle.isNew() ? bundleInsertSQL : bundleUpdateSQL;
             Object[] params = createParams(bundle.getId(), out.toByteArray(), true);
-            conHelper.update(sql, params);
+            update(sql, params);
         } catch (Exception e) {
             String msg;
 
@@ -970,7 +1166,7 @@ public class BundleDbPersistenceManager
      */
     protected synchronized void destroyBundle(NodePropBundle bundle) throws ItemStateException {
         try {
-            conHelper.update(bundleDeleteSQL, getKey(bundle.getId()));
+            update(bundleDeleteSQL, getKey(bundle.getId()));
         } catch (Exception e) {
             if (e instanceof NoSuchItemStateException) {
                 throw (NoSuchItemStateException) e;
@@ -1041,7 +1237,7 @@ public class BundleDbPersistenceManager
             Serializer.serialize(refs, out);
 
             Object[] params = createParams(refs.getTargetId(), out.toByteArray(), true);
-            conHelper.exec(sql, params);
+            update(sql, params);
             
             // there's no need to close a ByteArrayOutputStream
             //out.close();
@@ -1061,7 +1257,7 @@ public class BundleDbPersistenceManager
         }
 
         try {
-            conHelper.exec(nodeReferenceDeleteSQL, getKey(refs.getTargetId()));
+            update(nodeReferenceDeleteSQL, getKey(refs.getTargetId()));
         } catch (Exception e) {
             if (e instanceof NoSuchItemStateException) {
                 throw (NoSuchItemStateException) e;
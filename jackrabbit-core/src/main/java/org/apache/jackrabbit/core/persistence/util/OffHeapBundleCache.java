@@ -0,0 +1,468 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.persistence.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of serialized bundles that is kept outside of the Java heap. The
+ * bundles are serialized with a {@link BundleBinding}, so the cached entries
+ * use the same format as the persistence manager, and are stored in direct
+ * byte buffers ("slabs") of a fixed size. The slabs are filled one after the
+ * other; once all slabs are allocated the oldest slab is reused and all
+ * entries stored in it are evicted. Replacing or removing an entry only
+ * updates the index, the space is reclaimed when the slab is reused.
+ * <p>
+ * The index is an open addressing hash table of primitive arrays that maps
+ * the two halves of a node id to the location of its entry, so the cache
+ * does not keep any objects per entry on the heap. Each entry in a slab is
+ * preceded by its length and node id, which is used to evict the entries of
+ * a slab when it is reused.
+ * <p>
+ * Since the cache is not located on the heap it may be much larger than the
+ * bundle cache without increasing garbage collection pauses. Note that the
+ * maximum direct memory of the JVM (<code>-XX:MaxDirectMemorySize</code>)
+ * must be large enough, and that the memory is released when the slabs are
+ * garbage collected after {@link #dispose()} was called.
+ * <p>
+ * Entries larger than a slab are not cached. This class is thread-safe.
+ */
+public class OffHeapBundleCache {
+
+    /**
+     * The default logger
+     */
+    private static Logger log = LoggerFactory.getLogger(OffHeapBundleCache.class);
+
+    /**
+     * The default size of a slab: 4MB
+     */
+    public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Each entry is preceded by its length and the two halves of its id.
+     */
+    private static final int HEADER_SIZE = 4 + 8 + 8;
+
+    /**
+     * The initial number of slots of the index.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Marks an empty slot of the index.
+     */
+    private static final long EMPTY = -1;
+
+    private final BundleBinding binding;
+
+    private final int slabSize;
+
+    /**
+     * The slabs, allocated on demand.
+     */
+    private final ByteBuffer[] slabs;
+
+    /**
+     * The end of the entries written to each slab, including entries that
+     * were replaced or removed since.
+     */
+    private final int[] slabEnds;
+
+    /**
+     * The most significant bits of the ids in the index.
+     */
+    private long[] msbs;
+
+    /**
+     * The least significant bits of the ids in the index.
+     */
+    private long[] lsbs;
+
+    /**
+     * The location of the current entry per index slot, i.e. the slab index
+     * in the upper and the offset within the slab in the lower 32 bits, or
+     * {@link #EMPTY} if the slot is not used.
+     */
+    private long[] locations;
+
+    /**
+     * The number of used slots of the index.
+     */
+    private int size;
+
+    /**
+     * The slab that is currently being filled, <code>-1</code> if no slab
+     * has been allocated yet.
+     */
+    private int current = -1;
+
+    /**
+     * The write position in the current slab.
+     */
+    private int position;
+
+    /**
+     * The total size of the serialized bundles currently cached.
+     */
+    private long entrySize;
+
+    /**
+     * Creates a cache with slabs of the default size.
+     *
+     * @param binding the binding used to serialize the bundles
+     * @param maxMemorySize the maximum amount of memory to allocate
+     */
+    public OffHeapBundleCache(BundleBinding binding, long maxMemorySize) {
+        this(binding, maxMemorySize, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * Creates a cache with at least two slabs of at most the given size.
+     *
+     * @param binding the binding used to serialize the bundles
+     * @param maxMemorySize the maximum amount of memory to allocate
+     * @param slabSize the size of a slab
+     */
+    public OffHeapBundleCache(
+            BundleBinding binding, long maxMemorySize, int slabSize) {
+        if (maxMemorySize < 2 * HEADER_SIZE) {
+            throw new IllegalArgumentException(
+                    "Off-heap cache size too small: " + maxMemorySize);
+        }
+        this.binding = binding;
+        this.slabSize = (int) Math.min(slabSize, maxMemorySize / 2);
+        int count = (int) Math.min(Integer.MAX_VALUE, maxMemorySize / this.slabSize);
+        this.slabs = new ByteBuffer[count];
+        this.slabEnds = new int[count];
+        initIndex(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the cached bundle with the given id.
+     *
+     * @param id the node id
+     * @return a new bundle instance, or <code>null</code> if the bundle is
+     *         not cached
+     */
+    public NodePropBundle get(NodeId id) {
+        byte[] data = read(id);
+        if (data == null) {
+            return null;
+        }
+        try {
+            return binding.readBundle(new ByteArrayInputStream(data), id);
+        } catch (IOException e) {
+            log.warn("Unable to read bundle " + id + " from off-heap cache", e);
+            remove(id);
+            return null;
+        }
+    }
+
+    /**
+     * Serializes the given bundle and stores it in this cache, replacing the
+     * previously cached version. The bundle must not contain values that
+     * still need to be written to the blob store, i.e. it must have been
+     * stored to the persistence manager. Bundles loaded from the persistence
+     * manager should be cached with {@link #put(NodeId, byte[])} instead,
+     * which avoids serializing them again.
+     *
+     * @param bundle the bundle
+     * @return <code>true</code> if the bundle was cached
+     */
+    public boolean put(NodePropBundle bundle) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                (int) Math.min(bundle.getSize(), slabSize));
+        try {
+            binding.writeBundle(out, bundle);
+        } catch (IOException e) {
+            log.warn("Unable to write bundle " + bundle.getId()
+                    + " to off-heap cache", e);
+            remove(bundle.getId());
+            return false;
+        }
+        return put(bundle.getId(), out.toByteArray());
+    }
+
+    /**
+     * Stores a bundle that is already serialized with the binding of this
+     * cache, replacing the previously cached version.
+     *
+     * @param id the node id
+     * @param data the serialized bundle
+     * @return <code>true</code> if the bundle was cached
+     */
+    public synchronized boolean put(NodeId id, byte[] data) {
+        int length = HEADER_SIZE + data.length;
+        if (length > slabSize) {
+            remove(id);
+            return false;
+        }
+        if (current < 0 || position + length > slabSize) {
+            nextSlab();
+        }
+        ByteBuffer buffer = slabs[current].duplicate();
+        buffer.position(position);
+        buffer.putInt(data.length);
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+        buffer.put(data);
+
+        long previous = putLocation(
+                id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                ((long) current << 32) | position);
+        if (previous != EMPTY) {
+            entrySize -= getLength(previous);
+        }
+        entrySize += data.length;
+        position += length;
+        slabEnds[current] = position;
+        return true;
+    }
+
+    public synchronized boolean containsKey(NodeId id) {
+        return getLocation(id.getMostSignificantBits(),
+                id.getLeastSignificantBits()) != EMPTY;
+    }
+
+    public synchronized void remove(NodeId id) {
+        long location = removeLocation(
+                id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (location != EMPTY) {
+            entrySize -= getLength(location);
+        }
+    }
+
+    /**
+     * Removes all entries. The allocated slabs are kept.
+     */
+    public synchronized void clear() {
+        initIndex(INITIAL_CAPACITY);
+        Arrays.fill(slabEnds, 0);
+        current = -1;
+        position = 0;
+        entrySize = 0;
+    }
+
+    /**
+     * Removes all entries and releases the slabs.
+     */
+    public synchronized void dispose() {
+        clear();
+        for (int i = 0; i < slabs.length; i++) {
+            slabs[i] = null;
+        }
+    }
+
+    /**
+     * @return the number of cached bundles
+     */
+    public synchronized int getElementCount() {
+        return size;
+    }
+
+    /**
+     * @return the amount of off-heap memory allocated by the slabs
+     */
+    public synchronized long getMemoryUsed() {
+        long used = 0;
+        for (ByteBuffer slab : slabs) {
+            if (slab != null) {
+                used += slabSize;
+            }
+        }
+        return used;
+    }
+
+    /**
+     * @return the total size of the serialized bundles currently cached
+     */
+    public synchronized long getEntrySize() {
+        return entrySize;
+    }
+
+    public long getMaxMemorySize() {
+        return (long) slabs.length * slabSize;
+    }
+
+    public synchronized String getCacheInfoAsString() {
+        return "OffHeapBundleCache[elements=" + size
+                + ", entrySize=" + entrySize
+                + ", memoryUsed=" + getMemoryUsed()
+                + ", maxMemorySize=" + getMaxMemorySize() + "]";
+    }
+
+    //------------------------------------------------------------< private >---
+
+    private synchronized byte[] read(NodeId id) {
+        long location = getLocation(
+                id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (location == EMPTY) {
+            return null;
+        }
+        ByteBuffer buffer = slabs[getSlab(location)].duplicate();
+        int offset = getOffset(location);
+        byte[] data = new byte[buffer.getInt(offset)];
+        buffer.position(offset + HEADER_SIZE);
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Moves on to the next slab, allocating it or evicting its entries.
+     */
+    private void nextSlab() {
+        current = (current + 1) % slabs.length;
+        position = 0;
+        ByteBuffer slab = slabs[current];
+        if (slab == null) {
+            slabs[current] = ByteBuffer.allocateDirect(slabSize);
+        } else {
+            int offset = 0;
+            while (offset < slabEnds[current]) {
+                int length = slab.getInt(offset);
+                long msb = slab.getLong(offset + 4);
+                long lsb = slab.getLong(offset + 12);
+                long location = ((long) current << 32) | offset;
+                // only evict the entry if it was not replaced since
+                if (getLocation(msb, lsb) == location) {
+                    removeLocation(msb, lsb);
+                    entrySize -= length;
+                }
+                offset += HEADER_SIZE + length;
+            }
+        }
+        slabEnds[current] = 0;
+    }
+
+    private int getLength(long location) {
+        return slabs[getSlab(location)].getInt(getOffset(location));
+    }
+
+    private static int getSlab(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int getOffset(long location) {
+        return (int) location;
+    }
+
+    //--------------------------------------------------------------< index >---
+
+    private void initIndex(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        locations = new long[capacity];
+        Arrays.fill(locations, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Returns the slot of the given id, or the empty slot where it would
+     * be added.
+     */
+    private int getSlot(long msb, long lsb) {
+        int mask = locations.length - 1;
+        long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (locations[slot] != EMPTY
+                && (msbs[slot] != msb || lsbs[slot] != lsb)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private long getLocation(long msb, long lsb) {
+        return locations[getSlot(msb, lsb)];
+    }
+
+    /**
+     * Sets the location of the given id.
+     *
+     * @return the previous location, or {@link #EMPTY}
+     */
+    private long putLocation(long msb, long lsb, long location) {
+        int slot = getSlot(msb, lsb);
+        long previous = locations[slot];
+        if (previous == EMPTY) {
+            if (4 * (size + 1) > 3 * locations.length) {
+                resizeIndex(2 * locations.length);
+                slot = getSlot(msb, lsb);
+            }
+            msbs[slot] = msb;
+            lsbs[slot] = lsb;
+            size++;
+        }
+        locations[slot] = location;
+        return previous;
+    }
+
+    /**
+     * Removes the given id, and moves the following entries of its probe
+     * sequence back so that no tombstones are needed.
+     *
+     * @return the removed location, or {@link #EMPTY}
+     */
+    private long removeLocation(long msb, long lsb) {
+        int slot = getSlot(msb, lsb);
+        long removed = locations[slot];
+        if (removed == EMPTY) {
+            return EMPTY;
+        }
+        int mask = locations.length - 1;
+        locations[slot] = EMPTY;
+        size--;
+        int next = (slot + 1) & mask;
+        while (locations[next] != EMPTY) {
+            long nextMsb = msbs[next];
+            long nextLsb = lsbs[next];
+            long location = locations[next];
+            locations[next] = EMPTY;
+            int target = getSlot(nextMsb, nextLsb);
+            msbs[target] = nextMsb;
+            lsbs[target] = nextLsb;
+            locations[target] = location;
+            next = (next + 1) & mask;
+        }
+        return removed;
+    }
+
+    private void resizeIndex(int capacity) {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        long[] oldLocations = locations;
+        initIndex(capacity);
+        for (int i = 0; i < oldLocations.length; i++) {
+            if (oldLocations[i] != EMPTY) {
+                int slot = getSlot(oldMsbs[i], oldLsbs[i]);
+                msbs[slot] = oldMsbs[i];
+                lsbs[slot] = oldLsbs[i];
+                locations[slot] = oldLocations[i];
+                size++;
+            }
+        }
+    }
+
+}
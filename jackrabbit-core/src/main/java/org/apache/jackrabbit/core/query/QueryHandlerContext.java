@@ -23,6 +23,7 @@ import org.apache.jackrabbit.core.HierarchyManager;
 import org.apache.jackrabbit.core.NamespaceRegistryImpl;
 import org.apache.jackrabbit.core.RepositoryContext;
 import org.apache.jackrabbit.core.cluster.ClusterNode;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.nodetype.NodeTypeRegistry;
 import org.apache.jackrabbit.core.persistence.PersistenceManager;
@@ -177,6 +178,14 @@ public class QueryHandlerContext {
         return repositoryContext.getNamespaceRegistry();
     }
 
+    /**
+     * Returns the configuration of this repository.
+     * @return the configuration of this repository.
+     */
+    public RepositoryConfig getRepositoryConfig() {
+        return repositoryContext.getRepositoryConfig();
+    }
+
     /**
      * Returns the parent query handler.
      * @return the parent query handler.
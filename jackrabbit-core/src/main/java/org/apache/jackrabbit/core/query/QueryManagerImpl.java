@@ -91,6 +91,13 @@ public class QueryManagerImpl implements QueryManager {
         return perform(new SessionOperation<Query>() {
             public Query perform(SessionContext context)
                     throws RepositoryException {
+                QueryObjectModelTree qomTree = context.getRepositoryContext()
+                        .getQueryTreeCache().getQueryObjectModelTree(
+                                context.getSessionImpl(), statement, language);
+                if (qomTree != null) {
+                    return searchMgr.createQueryObjectModel(
+                            sessionContext, qomTree, language, null);
+                }
                 QueryFactory qf = new QueryFactoryImpl(language);
                 return qf.createQuery(statement, language);
             }
@@ -0,0 +1,401 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+import javax.jcr.ValueFormatException;
+import javax.jcr.query.InvalidQueryException;
+import javax.jcr.query.qom.QueryObjectModel;
+
+import org.apache.jackrabbit.commons.query.QueryObjectModelBuilderRegistry;
+import org.apache.jackrabbit.core.NamespaceRegistryImpl;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.cache.ConcurrentCache;
+import org.apache.jackrabbit.core.data.DataStore;
+import org.apache.jackrabbit.core.value.ValueFactoryImpl;
+import org.apache.jackrabbit.spi.QValue;
+import org.apache.jackrabbit.spi.commons.conversion.DefaultNamePathResolver;
+import org.apache.jackrabbit.spi.commons.conversion.NamePathResolver;
+import org.apache.jackrabbit.spi.commons.namespace.RegistryNamespaceResolver;
+import org.apache.jackrabbit.spi.commons.query.QueryNodeFactory;
+import org.apache.jackrabbit.spi.commons.query.QueryParser;
+import org.apache.jackrabbit.spi.commons.query.QueryRootNode;
+import org.apache.jackrabbit.spi.commons.query.qom.QueryObjectModelFactoryImpl;
+import org.apache.jackrabbit.spi.commons.query.qom.QueryObjectModelTree;
+import org.apache.jackrabbit.spi.commons.value.QValueValue;
+import org.apache.jackrabbit.stats.QueryCacheStatCore;
+import org.apache.jackrabbit.stats.QueryStatCore;
+
+/**
+ * Repository wide cache of parsed query statements. The query trees are
+ * parsed with the namespace mappings of the namespace registry and are
+ * shared by all sessions that did not remap a namespace prefix. Sessions
+ * with remapped prefixes parse their statements on their own.
+ * <p>
+ * The cached trees are not modified when a query is executed. Bind
+ * variables are resolved by the query object that is created for each
+ * call to {@link javax.jcr.query.QueryManager#createQuery(String, String)},
+ * so a statement with bind variables is parsed once for all values. The
+ * literals of a cached query object model keep the {@link QValue} and
+ * create a new value on each access, as a value that returned a stream
+ * can not be shared.
+ */
+public class QueryTreeCache {
+
+    /**
+     * The maximum number of cached query trees
+     */
+    private static final int MAX_CACHE_SIZE =
+            Integer.getInteger("org.apache.jackrabbit.QueryTreeCache", 1000);
+
+    private final NamespaceRegistryImpl registry;
+
+    private final NamePathResolver resolver;
+
+    private final ValueFactory valueFactory;
+
+    private final QueryStatCore queryStat;
+
+    private final ConcurrentCache<Key, Object> cache;
+
+    /**
+     * The remap count of the namespace registry when the cached trees were
+     * parsed.
+     */
+    private volatile int remapCount;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param registry  the namespace registry.
+     * @param store     the data store, or <code>null</code>.
+     * @param queryStat records the cache hits and misses, if it is a
+     *                  {@link QueryCacheStatCore}.
+     */
+    public QueryTreeCache(NamespaceRegistryImpl registry, DataStore store,
+                          QueryStatCore queryStat) {
+        this.registry = registry;
+        this.resolver = new DefaultNamePathResolver(
+                new RegistryNamespaceResolver(registry), true);
+        this.valueFactory = new LiteralValueFactory(
+                new ValueFactoryImpl(resolver, store), resolver);
+        this.queryStat = queryStat;
+        this.cache = new ConcurrentCache<Key, Object>("QueryTreeCache", 16);
+        this.cache.setMaxMemorySize(MAX_CACHE_SIZE);
+        this.remapCount = registry.getRemapCount();
+    }
+
+    /**
+     * Returns the query tree of an XPath or SQL statement.
+     *
+     * @param session   the session that creates the query.
+     * @param statement the query statement.
+     * @param language  the language of the statement.
+     * @param factory   the factory of the query nodes.
+     * @return the query tree, which must not be modified.
+     * @throws InvalidQueryException if the statement is invalid.
+     */
+    public QueryRootNode getQueryRootNode(SessionImpl session,
+                                          String statement,
+                                          String language,
+                                          QueryNodeFactory factory)
+            throws InvalidQueryException {
+        if (session.isNamespaceRemapped()) {
+            return QueryParser.parse(statement, language, session, factory);
+        }
+        Key key = new Key(language, statement, factory);
+        QueryRootNode root = (QueryRootNode) get(key);
+        if (root == null) {
+            root = QueryParser.parse(statement, language, resolver, factory);
+            cache.put(key, root, 1);
+        }
+        return root;
+    }
+
+    /**
+     * Returns the query object model tree of a statement in a language that
+     * is parsed into a query object model, like JCR-SQL2.
+     *
+     * @param session   the session that creates the query.
+     * @param statement the query statement.
+     * @param language  the language of the statement.
+     * @return the query object model tree, or <code>null</code> if the
+     *         statement must be parsed by the session, because the session
+     *         remapped a namespace prefix or the language is not parsed into
+     *         a query object model.
+     * @throws RepositoryException if the statement is invalid.
+     */
+    public QueryObjectModelTree getQueryObjectModelTree(SessionImpl session,
+                                                        String statement,
+                                                        String language)
+            throws RepositoryException {
+        if (session.isNamespaceRemapped() || !Arrays.asList(
+                QueryObjectModelBuilderRegistry.getSupportedLanguages()).contains(language)) {
+            return null;
+        }
+        Key key = new Key(language, statement, null);
+        QueryObjectModelTree tree = (QueryObjectModelTree) get(key);
+        if (tree == null) {
+            TreeFactory qf = new TreeFactory(resolver);
+            QueryObjectModelBuilderRegistry.getQueryObjectModelBuilder(
+                    language).createQueryObjectModel(statement, qf, valueFactory);
+            tree = qf.tree;
+            cache.put(key, tree, 1);
+        }
+        return tree;
+    }
+
+    /**
+     * Removes all query trees from this cache.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the cached tree of the given key, and logs the lookup to the
+     * query statistics. The statistics drop the lookups while they are
+     * disabled, which is the default, so the hit and miss counts and the
+     * hit rate of the cache are only collected after the query statistics
+     * are enabled, for example through {@code QueryStatManagerMBean.enable()}.
+     *
+     * @param key the key of the statement.
+     * @return the cached tree, or <code>null</code>.
+     */
+    private Object get(Key key) {
+        int count = registry.getRemapCount();
+        if (count != remapCount) {
+            // prefixes in the cached statements may no longer be valid
+            cache.clear();
+            remapCount = count;
+        }
+        Object tree = cache.get(key);
+        if (queryStat instanceof QueryCacheStatCore) {
+            ((QueryCacheStatCore) queryStat).logQueryCacheAccess(tree != null);
+        }
+        return tree;
+    }
+
+    /**
+     * A query object model factory that keeps the tree of the query object
+     * model instead of creating an executable query.
+     */
+    private static class TreeFactory extends QueryObjectModelFactoryImpl {
+
+        private QueryObjectModelTree tree;
+
+        TreeFactory(NamePathResolver resolver) {
+            super(resolver);
+        }
+
+        @Override
+        protected QueryObjectModel createQuery(QueryObjectModelTree qomTree) {
+            this.tree = qomTree;
+            return null;
+        }
+    }
+
+    /**
+     * A value factory that creates the literals of cached query object
+     * models.
+     */
+    private static class LiteralValueFactory implements ValueFactory {
+
+        private final ValueFactory factory;
+
+        private final NamePathResolver resolver;
+
+        LiteralValueFactory(ValueFactory factory, NamePathResolver resolver) {
+            this.factory = factory;
+            this.resolver = resolver;
+        }
+
+        private Value literal(Value value) {
+            if (value instanceof QValueValue) {
+                return new LiteralValue(((QValueValue) value).getQValue(), resolver);
+            }
+            return value;
+        }
+
+        public Value createValue(String value) {
+            return literal(factory.createValue(value));
+        }
+
+        public Value createValue(String value, int type)
+                throws ValueFormatException {
+            return literal(factory.createValue(value, type));
+        }
+
+        public Value createValue(long value) {
+            return literal(factory.createValue(value));
+        }
+
+        public Value createValue(double value) {
+            return literal(factory.createValue(value));
+        }
+
+        public Value createValue(BigDecimal value) {
+            return literal(factory.createValue(value));
+        }
+
+        public Value createValue(boolean value) {
+            return literal(factory.createValue(value));
+        }
+
+        public Value createValue(Calendar value) {
+            return literal(factory.createValue(value));
+        }
+
+        public Value createValue(InputStream value) {
+            return literal(factory.createValue(value));
+        }
+
+        public Value createValue(Binary value) {
+            return literal(factory.createValue(value));
+        }
+
+        public Value createValue(Node value) throws RepositoryException {
+            return literal(factory.createValue(value));
+        }
+
+        public Value createValue(Node value, boolean weak)
+                throws RepositoryException {
+            return literal(factory.createValue(value, weak));
+        }
+
+        public Binary createBinary(InputStream stream)
+                throws RepositoryException {
+            return factory.createBinary(stream);
+        }
+    }
+
+    /**
+     * A literal value that can be shared by concurrent queries. Each access
+     * is done on a new {@link QValueValue}, so a stream that was returned
+     * does not change the state of the literal.
+     */
+    private static final class LiteralValue implements Value {
+
+        private final QValue qvalue;
+
+        private final NamePathResolver resolver;
+
+        LiteralValue(QValue qvalue, NamePathResolver resolver) {
+            this.qvalue = qvalue;
+            this.resolver = resolver;
+        }
+
+        private Value value() {
+            return new QValueValue(qvalue, resolver);
+        }
+
+        public String getString() throws RepositoryException {
+            return value().getString();
+        }
+
+        @SuppressWarnings("deprecation")
+        public InputStream getStream() throws RepositoryException {
+            return value().getStream();
+        }
+
+        public Binary getBinary() throws RepositoryException {
+            return value().getBinary();
+        }
+
+        public long getLong() throws RepositoryException {
+            return value().getLong();
+        }
+
+        public double getDouble() throws RepositoryException {
+            return value().getDouble();
+        }
+
+        public BigDecimal getDecimal() throws RepositoryException {
+            return value().getDecimal();
+        }
+
+        public Calendar getDate() throws RepositoryException {
+            return value().getDate();
+        }
+
+        public boolean getBoolean() throws RepositoryException {
+            return value().getBoolean();
+        }
+
+        public int getType() {
+            return qvalue.getType();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (obj instanceof LiteralValue) {
+                return qvalue.equals(((LiteralValue) obj).qvalue);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return qvalue.hashCode();
+        }
+    }
+
+    private static final class Key {
+
+        private final String language;
+
+        private final String statement;
+
+        private final QueryNodeFactory factory;
+
+        Key(String language, String statement, QueryNodeFactory factory) {
+            this.language = language;
+            this.statement = statement;
+            this.factory = factory;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (obj instanceof Key) {
+                Key other = (Key) obj;
+                return language.equals(other.language)
+                        && statement.equals(other.statement)
+                        && factory == other.factory;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return language.hashCode() * 31 + statement.hashCode();
+        }
+    }
+
+}
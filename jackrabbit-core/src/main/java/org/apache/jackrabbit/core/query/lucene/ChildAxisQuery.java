@@ -221,7 +221,8 @@ class ChildAxisQuery extends Query implements JackrabbitQuery {
                         sub = new NameQuery(nameTest, version, nsMappings);
                     }
                     return new DescendantSelfAxisQuery(dsaq.getContextQuery(),
-                            sub, dsaq.getMinLevels() + 1).rewrite(reader);
+                            sub, dsaq.getMinLevels() + 1,
+                            dsaq.getIndexFormatVersion()).rewrite(reader);
                 }
             }
         }
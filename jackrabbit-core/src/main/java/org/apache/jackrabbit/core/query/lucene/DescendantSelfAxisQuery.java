@@ -16,11 +16,13 @@
  */
 package org.apache.jackrabbit.core.query.lucene;
 
+import org.apache.jackrabbit.core.RepositoryImpl;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.query.lucene.hits.AbstractHitCollector;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
@@ -54,6 +56,13 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
      */
     private static final Logger log = LoggerFactory.getLogger(DescendantSelfAxisQuery.class);
 
+    /**
+     * The maximum number of context hits for which the descendants are
+     * looked up with {@link FieldNames#ANCESTORS} terms. Larger contexts
+     * resolve the hierarchy of each candidate document.
+     */
+    private static final int ANCESTOR_TERMS_THRESHOLD = 1000;
+
     /**
      * The context query
      */
@@ -80,6 +89,11 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
      */
     private Scorer subScorer;
 
+    /**
+     * The index format version.
+     */
+    private final IndexFormatVersion version;
+
     /**
      * Creates a new <code>DescendantSelfAxisQuery</code> based on a
      * <code>context</code> and matches all descendants of the context nodes.
@@ -90,9 +104,11 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
      * @param includeSelf if <code>true</code> this query acts like a
      *                    descendant-or-self axis. If <code>false</code> this
      *                    query acts like a descendant axis.
+     * @param version     the index format version.
      */
-    public DescendantSelfAxisQuery(Query context, boolean includeSelf) {
-        this(context, new MatchAllDocsQuery(), includeSelf);
+    public DescendantSelfAxisQuery(Query context, boolean includeSelf,
+                                   IndexFormatVersion version) {
+        this(context, new MatchAllDocsQuery(), includeSelf, version);
     }
 
     /**
@@ -101,9 +117,11 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
      *
      * @param context the context for this query.
      * @param sub     the sub query.
+     * @param version the index format version.
      */
-    public DescendantSelfAxisQuery(Query context, Query sub) {
-        this(context, sub, true);
+    public DescendantSelfAxisQuery(Query context, Query sub,
+                                   IndexFormatVersion version) {
+        this(context, sub, true, version);
     }
 
     /**
@@ -115,9 +133,11 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
      * @param includeSelf if <code>true</code> this query acts like a
      *                    descendant-or-self axis. If <code>false</code> this query acts like
      *                    a descendant axis.
+     * @param version     the index format version.
      */
-    public DescendantSelfAxisQuery(Query context, Query sub, boolean includeSelf) {
-        this(context, sub, includeSelf ? 0 : 1);
+    public DescendantSelfAxisQuery(Query context, Query sub, boolean includeSelf,
+                                   IndexFormatVersion version) {
+        this(context, sub, includeSelf ? 0 : 1, version);
     }
 
     /**
@@ -128,11 +148,14 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
      * @param sub       the sub query.
      * @param minLevels the minimal levels required between context and sub
      *                  nodes for a sub node to match.
+     * @param version   the index format version.
      */
-    public DescendantSelfAxisQuery(Query context, Query sub, int minLevels) {
+    public DescendantSelfAxisQuery(Query context, Query sub, int minLevels,
+                                   IndexFormatVersion version) {
         this.contextQuery = context;
         this.subQuery = sub;
         this.minLevels = minLevels;
+        this.version = version;
     }
 
     /**
@@ -169,6 +192,13 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
         return minLevels;
     }
 
+    /**
+     * @return the index format version of this query.
+     */
+    IndexFormatVersion getIndexFormatVersion() {
+        return version;
+    }
+
     /**
      * Creates a <code>Weight</code> instance for this query.
      *
@@ -212,13 +242,14 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
             DescendantSelfAxisQuery dsaq = (DescendantSelfAxisQuery) contextQuery;
             if (dsaq.subQueryMatchesAll()) {
                 return new DescendantSelfAxisQuery(dsaq.getContextQuery(),
-                        sQuery, dsaq.getMinLevels() + getMinLevels()).rewrite(reader);
+                        sQuery, dsaq.getMinLevels() + getMinLevels(),
+                        version).rewrite(reader);
             }
         }
         if (cQuery == contextQuery && sQuery == subQuery) {
             return this;
         } else {
-            return new DescendantSelfAxisQuery(cQuery, sQuery, minLevels);
+            return new DescendantSelfAxisQuery(cQuery, sQuery, minLevels, version);
         }
     }
 
@@ -230,7 +261,10 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
     public QueryHits execute(final JackrabbitIndexSearcher searcher,
                              final SessionImpl session,
                              final Sort sort) throws IOException {
-        if (sort.getSort().length == 0 && subQueryMatchesAll()) {
+        // with indexed ancestors the descendants are looked up in the index
+        // instead of traversing the workspace
+        if (sort.getSort().length == 0 && subQueryMatchesAll()
+                && !version.isAtLeast(IndexFormatVersion.V4)) {
             // maps path String to ScoreNode
             Map<String, ScoreNode> startingPoints = new TreeMap<String, ScoreNode>();
             QueryHits result = searcher.evaluate(getContextQuery());
@@ -413,6 +447,11 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
      */
     private class DescendantSelfAxisScorer extends Scorer {
 
+        /**
+         * An <code>IndexReader</code> to access the index.
+         */
+        private final IndexReader reader;
+
         /**
          * The <code>HierarchyResolver</code> of the index.
          */
@@ -428,6 +467,13 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
          */
         private boolean contextHitsCalculated = false;
 
+        /**
+         * The descendants of the context hits, looked up with the
+         * {@link FieldNames#ANCESTORS} terms, or <code>null</code> if the
+         * hierarchy of each candidate document is resolved.
+         */
+        private BitSet descendants;
+
         /**
          * Remember document numbers of ancestors during validation
          */
@@ -459,6 +505,7 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
                                            IndexReader reader,
                                            HierarchyResolver hResolver) {
             super(similarity);
+            this.reader = reader;
             this.hResolver = hResolver;
             // todo reuse BitSets?
             this.contextHits = new BitSet(reader.maxDoc());
@@ -475,19 +522,11 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
                 currentDoc = NO_MORE_DOCS;
             } else {
                 if (subScorer != null) {
-                    currentDoc = subScorer.nextDoc();
+                    currentDoc = nextValid(subScorer.nextDoc());
                 } else {
                     currentDoc = NO_MORE_DOCS;
                 }
             }
-            while (currentDoc != NO_MORE_DOCS) {
-                if (isValid(currentDoc)) {
-                    return currentDoc;
-                }
-
-                // try next
-                currentDoc = subScorer.nextDoc();
-            }
             return currentDoc;
         }
 
@@ -522,10 +561,55 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
                 return NO_MORE_DOCS;
             } else {
                 collectContextHits();
-                return isValid(currentDoc) ? currentDoc : nextDoc();
+                currentDoc = nextValid(currentDoc);
+                return currentDoc;
             }
         }
 
+        /**
+         * Returns the first valid document of the sub scorer starting at
+         * <code>doc</code>, which is the current document of the sub scorer.
+         * If the descendants of the context hits are known, the sub scorer
+         * skips ahead to the next descendant.
+         *
+         * @param doc the current document of the sub scorer.
+         * @return the next valid document or <code>NO_MORE_DOCS</code>.
+         * @throws IOException if an error occurs while reading from the index.
+         */
+        private int nextValid(int doc) throws IOException {
+            while (doc != NO_MORE_DOCS) {
+                int candidate = nextCandidate(doc);
+                if (candidate != doc) {
+                    doc = subScorer.advance(candidate);
+                } else if (isValid(doc)) {
+                    return doc;
+                } else {
+                    // try next
+                    doc = subScorer.nextDoc();
+                }
+            }
+            return doc;
+        }
+
+        /**
+         * @param doc a document number.
+         * @return the first document number greater or equal to
+         *         <code>doc</code> that may be valid.
+         */
+        private int nextCandidate(int doc) {
+            if (descendants == null) {
+                return doc;
+            }
+            int next = descendants.nextSetBit(doc);
+            if (minLevels == 0) {
+                int self = contextHits.nextSetBit(doc);
+                if (self != -1 && (next == -1 || self < next)) {
+                    next = self;
+                }
+            }
+            return next == -1 ? NO_MORE_DOCS : next;
+        }
+
         private void collectContextHits() throws IOException {
             if (!contextHitsCalculated) {
                 long time = System.currentTimeMillis();
@@ -538,6 +622,11 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
                     }); // find all
                 }
                 contextHitsCalculated = true;
+                if (version.isAtLeast(IndexFormatVersion.V4)
+                        && contextHits.cardinality() <= ANCESTOR_TERMS_THRESHOLD
+                        && isOutsideSystemTree()) {
+                    descendants = collectDescendants();
+                }
                 time = System.currentTimeMillis() - time;
                 if (log.isDebugEnabled()) {
                     log.debug("Collected {} context hits in {} ms for {}",
@@ -550,6 +639,79 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
             }
         }
 
+        /**
+         * Returns <code>true</code> if none of the context hits is the root
+         * node or a node of the jcr:system tree. The descendants of these
+         * nodes may be in the index of the jcr:system tree, which does not
+         * have to index the ancestors of a node.
+         *
+         * @return whether the descendants of all context hits are in an index
+         *         with {@link FieldNames#ANCESTORS} terms.
+         * @throws IOException if an error occurs while reading from the index.
+         */
+        private boolean isOutsideSystemTree() throws IOException {
+            int systemDoc = -1;
+            TermDocs tDocs = reader.termDocs(TermFactory.createUUIDTerm(
+                    RepositoryImpl.SYSTEM_ROOT_NODE_ID.toString()));
+            try {
+                if (tDocs.next()) {
+                    systemDoc = tDocs.doc();
+                }
+            } finally {
+                tDocs.close();
+            }
+            // documents known to be below the root node but not below
+            // the jcr:system node
+            BitSet checked = new BitSet();
+            int[] parents = new int[0];
+            for (int i = contextHits.nextSetBit(0); i >= 0;
+                 i = contextHits.nextSetBit(i + 1)) {
+                int doc = i;
+                while (!checked.get(doc)) {
+                    if (doc == systemDoc) {
+                        return false;
+                    }
+                    parents = hResolver.getParents(doc, parents);
+                    if (parents.length == 0) {
+                        if (doc == i) {
+                            // the root node
+                            return false;
+                        }
+                        break;
+                    }
+                    checked.set(doc);
+                    doc = parents[0];
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Looks up the descendants of the context hits with the
+         * {@link FieldNames#ANCESTORS} terms.
+         *
+         * @return the document numbers of the descendants.
+         * @throws IOException if an error occurs while reading from the index.
+         */
+        private BitSet collectDescendants() throws IOException {
+            BitSet docs = new BitSet(reader.maxDoc());
+            TermDocs tDocs = reader.termDocs();
+            try {
+                for (int i = contextHits.nextSetBit(0); i >= 0;
+                     i = contextHits.nextSetBit(i + 1)) {
+                    String uuid = reader.document(
+                            i, FieldSelectors.UUID).get(FieldNames.UUID);
+                    tDocs.seek(new Term(FieldNames.ANCESTORS, uuid));
+                    while (tDocs.next()) {
+                        docs.set(tDocs.doc());
+                    }
+                }
+            } finally {
+                tDocs.close();
+            }
+            return docs;
+        }
+
         /**
          * Returns <code>true</code> if <code>doc</code> is a valid match from
          * the sub scorer against the context hits. The caller must ensure
@@ -565,6 +727,15 @@ class DescendantSelfAxisQuery extends Query implements JackrabbitQuery {
                 return true;
             }
 
+            // check indexed ancestors
+            if (descendants != null) {
+                if (!descendants.get(doc)) {
+                    return false;
+                } else if (minLevels <= 1) {
+                    return true;
+                }
+            }
+
             // check if doc is a descendant of one of the context nodes
             pDocs = hResolver.getParents(doc, pDocs);
 
@@ -32,6 +32,19 @@ abstract public class FieldComparatorBase extends FieldComparator {
      */
     private Comparable<?> bottom;
 
+    /**
+     * The value index that {@link #bottomOrd} was looked up in, or
+     * <code>null</code>.
+     */
+    private SharedFieldCache.ValueIndex bottomOrdIndex;
+
+    /**
+     * The position of the bottom value among the ordinals of
+     * {@link #bottomOrdIndex}, twice the ordinal if a document has the bottom
+     * value, or an odd number between the ordinals of the neighbor values.
+     */
+    private int bottomOrd;
+
     /**
      * Value for a document
      *
@@ -69,6 +82,37 @@ abstract public class FieldComparatorBase extends FieldComparator {
     @Override
     public void setBottom(int slot) {
         bottom = getValue(slot);
+        bottomOrdIndex = null;
+    }
+
+    /**
+     * Compares the bottom value with the value of a document in a value
+     * index. The values in columns of longs, doubles and ordinals are
+     * compared without creating a <code>Comparable</code> for the document.
+     *
+     * @param index the value index.
+     * @param doc   the document id within the value index.
+     * @return the same as {@link #compareBottom(int)}.
+     */
+    protected int compareBottom(SharedFieldCache.ValueIndex index, int doc) {
+        if (bottom == null || !index.hasValue(doc)) {
+            return compare(bottom, index.getValue(doc));
+        } else if (index.hasLongs() && bottom instanceof Long) {
+            long b = (Long) bottom;
+            long v = index.getLong(doc);
+            return b < v ? -1 : (b == v ? 0 : 1);
+        } else if (index.hasDoubles() && bottom instanceof Double) {
+            return Double.compare((Double) bottom, index.getDouble(doc));
+        } else if (index.hasOrdinals()) {
+            if (index != bottomOrdIndex) {
+                int ord = index.getOrdinal(bottom);
+                bottomOrd = ord >= 0 ? 2 * ord : -2 * (ord + 1) - 1;
+                bottomOrdIndex = index;
+            }
+            int v = 2 * index.getOrdinal(doc);
+            return bottomOrd < v ? -1 : (bottomOrd == v ? 0 : 1);
+        }
+        return compare(bottom, index.getValue(doc));
     }
 
     /**
@@ -35,6 +35,10 @@ import org.apache.lucene.util.ReaderUtil;
  * fields <code>PROPERTY_LENGTHS</code>, <code>LOCAL_NAME</code> and
  * <code>NAMESPACE_URI</code>. Furthermore a Payload is added to
  * <code>PROPERTIES</code> fields to indicate the property type.</li>
+ * <li><b>Version 4</b> adds an <code>ANCESTORS</code> field with the ids of
+ * all ancestors of a node. This speeds up descendant axis queries. The
+ * version is only used when {@link SearchIndex#setIndexAncestors(boolean)}
+ * is enabled.</li>
  * </ul>
  * Please note that existing indexes are not automatically upgraded to a newer
  * version! If you want to take advantage of a certain 'feature' in an index
@@ -57,6 +61,11 @@ public class IndexFormatVersion {
      */
     public static final IndexFormatVersion V3 = new IndexFormatVersion(3);
 
+    /**
+     * V4 is the index format with indexed ancestors.
+     */
+    public static final IndexFormatVersion V4 = new IndexFormatVersion(4);
+
     /**
      * The used version of the index format
      */
@@ -104,7 +113,9 @@ public class IndexFormatVersion {
      */
     public static IndexFormatVersion getVersion(IndexReader indexReader) {
         Collection<String> fields = ReaderUtil.getIndexedFields(indexReader);
-        if (fields.contains(FieldNames.LOCAL_NAME) || indexReader.numDocs() == 0) {
+        if (fields.contains(FieldNames.ANCESTORS)) {
+            return IndexFormatVersion.V4;
+        } else if (fields.contains(FieldNames.LOCAL_NAME) || indexReader.numDocs() == 0) {
             return IndexFormatVersion.V3;
         } else if (fields.contains(FieldNames.PROPERTIES_SET)) {
             return IndexFormatVersion.V2;
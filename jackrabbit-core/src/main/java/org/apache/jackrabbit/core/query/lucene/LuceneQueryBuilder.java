@@ -556,7 +556,7 @@ public class LuceneQueryBuilder implements QueryNodeVisitor {
 
         if (node.getIncludeDescendants()) {
             if (nameTest != null) {
-                andQuery.add(new DescendantSelfAxisQuery(context, nameTest, false), Occur.MUST);
+                andQuery.add(new DescendantSelfAxisQuery(context, nameTest, false, indexFormatVersion), Occur.MUST);
             } else {
                 // descendant-or-self with nametest=*
                 if (predicates.length > 0) {
@@ -567,7 +567,7 @@ public class LuceneQueryBuilder implements QueryNodeVisitor {
                     // otherwise the query for the predicate can be used itself
                     PathQueryNode pathNode = (PathQueryNode) node.getParent();
                     if (pathNode.getPathSteps()[0] != node) {
-                        Query subQuery = new DescendantSelfAxisQuery(context, andQuery, false);
+                        Query subQuery = new DescendantSelfAxisQuery(context, andQuery, false, indexFormatVersion);
                         andQuery = new BooleanQuery();
                         andQuery.add(subQuery, Occur.MUST);
                     }
@@ -577,10 +577,10 @@ public class LuceneQueryBuilder implements QueryNodeVisitor {
                     PathQueryNode pathNode = (PathQueryNode) node.getParent();
                     if (pathNode.getPathSteps()[0] != node) {
                         if (node.getIndex() == LocationStepQueryNode.NONE) {
-                            context = new DescendantSelfAxisQuery(context, false);
+                            context = new DescendantSelfAxisQuery(context, false, indexFormatVersion);
                             andQuery.add(context, Occur.MUST);
                         } else {
-                            context = new DescendantSelfAxisQuery(context, true);
+                            context = new DescendantSelfAxisQuery(context, true, indexFormatVersion);
                             andQuery.add(new ChildAxisQuery(sharedItemMgr,
                                     context, null, node.getIndex(),
                                     indexFormatVersion, nsMappings), Occur.MUST);
@@ -618,7 +618,7 @@ public class LuceneQueryBuilder implements QueryNodeVisitor {
 
             if (node.getIncludeDescendants()) {
                 Query refPropQuery = Util.createMatchAllQuery(refProperty, indexFormatVersion, cache);
-                context = new DescendantSelfAxisQuery(context, refPropQuery, false);
+                context = new DescendantSelfAxisQuery(context, refPropQuery, false, indexFormatVersion);
             }
 
             context = new DerefQuery(context, refProperty, node.getNameTest(),
@@ -96,8 +96,10 @@ import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.query.lucene.join.SelectorRow;
 import org.apache.jackrabbit.core.query.lucene.join.ValueComparator;
 import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.Path;
 import org.apache.jackrabbit.spi.commons.conversion.IllegalNameException;
 import org.apache.jackrabbit.spi.commons.conversion.NamePathResolver;
+import org.apache.jackrabbit.spi.commons.name.PathFactoryImpl;
 import org.apache.jackrabbit.spi.commons.query.qom.FullTextSearchImpl;
 import org.apache.jackrabbit.spi.commons.query.qom.PropertyExistenceImpl;
 import org.apache.lucene.index.IndexReader;
@@ -108,6 +110,7 @@ import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 
 /**
  * Factory that creates Lucene queries from QOM elements.
@@ -167,6 +170,23 @@ public class LuceneQueryFactory {
         this.primaryTypeField = nsMappings.translateName(JCR_PRIMARYTYPE);
     }
 
+    /**
+     * Creates a sort field that orders on the values of a property as they
+     * are cached from the index by the {@link SharedFieldCache}.
+     *
+     * @param property the property to order on.
+     * @param reverse  whether the order is descending.
+     * @return the sort field.
+     * @throws RepositoryException if the property name is invalid.
+     */
+    public SortField createSortField(PropertyValue property, boolean reverse)
+            throws RepositoryException {
+        Path path = PathFactoryImpl.getInstance().create(
+                session.getQName(property.getPropertyName()));
+        return new SortField(path.getString(),
+                index.getSortComparatorSource(), reverse);
+    }
+
     /**
      * @param columns
      * @param selector
@@ -404,7 +424,8 @@ public class LuceneQueryFactory {
         } else if (constraint instanceof DescendantNode) {
             final DescendantNode descendantNode = (DescendantNode) constraint;
             Query context = getNodeIdQuery(UUID, descendantNode.getAncestorPath());
-            query.mainQuery = new DescendantSelfAxisQuery(context, query.subQuery, false);
+            query.mainQuery = new DescendantSelfAxisQuery(context,
+                    query.subQuery, false, index.getIndexFormatVersion());
         } else {
             query.subQuery.add(create(constraint, selectorMap, searcher), MUST);
         }
@@ -36,6 +36,8 @@ import java.util.concurrent.TimeUnit;
 import javax.jcr.RepositoryException;
 
 import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.persistence.IterablePersistenceManager;
+import org.apache.jackrabbit.core.persistence.PersistenceManager;
 import org.apache.jackrabbit.core.query.lucene.directory.DirectoryManager;
 import org.apache.jackrabbit.core.state.ChildNodeEntry;
 import org.apache.jackrabbit.core.state.ItemStateException;
@@ -300,7 +302,7 @@ public class MultiIndex {
         // initialize hierarchy cache if requested.
         CachingMultiIndexReader reader = getIndexReader(handler.isInitializeHierarchyCache());
         try {
-            version = IndexFormatVersion.getVersion(reader);
+            version = getIndexFormatVersion(reader, handler.isIndexAncestors());
         } finally {
             reader.release();
         }
@@ -353,6 +355,28 @@ public class MultiIndex {
         }
     }
 
+    /**
+     * Returns the index format version of an existing index. An empty index
+     * uses {@link IndexFormatVersion#V4} if the ancestors of a node are
+     * indexed. An index that contains ancestors is used with
+     * {@link IndexFormatVersion#V3} if the ancestors are no longer indexed,
+     * because they are not updated anymore when a node is moved.
+     *
+     * @param reader         the reader of the index.
+     * @param indexAncestors whether the ancestors of a node are indexed.
+     * @return the index format version to use.
+     */
+    private static IndexFormatVersion getIndexFormatVersion(
+            IndexReader reader, boolean indexAncestors) {
+        IndexFormatVersion v = IndexFormatVersion.getVersion(reader);
+        if (indexAncestors && reader.numDocs() == 0) {
+            return IndexFormatVersion.V4;
+        } else if (!indexAncestors && v.isAtLeast(IndexFormatVersion.V4)) {
+            return IndexFormatVersion.V3;
+        }
+        return v;
+    }
+
     /**
      * @return the index format version for this multi index.
      */
@@ -382,8 +406,13 @@ public class MultiIndex {
                 long count = 0;
                 // traverse and index workspace
                 executeAndLog(new Start(Action.INTERNAL_TRANSACTION));
-                NodeState rootState = (NodeState) stateMgr.getItemState(rootId);
-                count = createIndex(rootState, rootPath, stateMgr, count);
+                IterablePersistenceManager pm = getParallelIndexingSource();
+                if (pm != null) {
+                    count = createParallelIndex(pm, stateMgr, rootId);
+                } else {
+                    NodeState rootState = (NodeState) stateMgr.getItemState(rootId);
+                    count = createIndex(rootState, rootPath, stateMgr, count);
+                }
                 checkIndexingQueue(true);
                 executeAndLog(new Commit(getTransactionId()));
                 log.debug("Created initial index for {} nodes", count);
@@ -1251,6 +1280,101 @@ public class MultiIndex {
         return count;
     }
 
+    /**
+     * Returns the persistence manager to read the node ids from when the
+     * initial index is created in parallel, or <code>null</code> if the
+     * workspace must be traversed. Parallel indexing requires more than one
+     * {@link SearchIndex#getReindexThreads() reindex thread} and an
+     * {@link IterablePersistenceManager}. It is not used for an index that
+     * includes the <code>jcr:system</code> tree, because that tree is not
+     * stored in the persistence manager of the workspace.
+     *
+     * @return the persistence manager or <code>null</code>.
+     */
+    private IterablePersistenceManager getParallelIndexingSource() {
+        if (handler.getReindexThreads() <= 1) {
+            return null;
+        }
+        PersistenceManager pm = handler.getContext().getPersistenceManager();
+        if (excludedIDs.isEmpty() || !(pm instanceof IterablePersistenceManager)) {
+            log.info("Parallel indexing not supported for this index, "
+                    + "traversing the workspace instead");
+            return null;
+        }
+        return (IterablePersistenceManager) pm;
+    }
+
+    /**
+     * Creates an index with the documents of all nodes read from the given
+     * persistence manager. The documents are created by a
+     * {@link ParallelIndexer} and written to one segment per thread. The
+     * segments are merged into a single index at the end.
+     *
+     * @param pm       the persistence manager to read the node ids from.
+     * @param stateMgr the shared item state manager.
+     * @param rootId   the id of the root node.
+     * @return the number of nodes indexed.
+     * @throws IOException         if an error occurs while writing to the
+     *                             index.
+     * @throws RepositoryException if the nodes cannot be read.
+     */
+    private long createParallelIndex(IterablePersistenceManager pm,
+                                     ItemStateManager stateMgr,
+                                     NodeId rootId)
+            throws IOException, RepositoryException {
+        int threads = handler.getReindexThreads();
+        ReindexStatus status = new ReindexStatus(
+                handler.getContext().getWorkspace(), threads);
+        status.register();
+        try {
+            // segments are logged, so that they are removed on recovery
+            // if the reindexing transaction is not committed
+            PersistentIndex[] segments = new PersistentIndex[threads];
+            String[] names = new String[threads];
+            for (int i = 0; i < threads; i++) {
+                CreateIndex create = new CreateIndex(getTransactionId(), null);
+                executeAndLog(create);
+                names[i] = create.getIndexName();
+                segments[i] = getOrCreateIndex(names[i]);
+            }
+            long count = new ParallelIndexer(this, pm, stateMgr, rootId,
+                    excludedIDs, handler.getReindexBatchSize(), status).run(segments);
+
+            status.merging();
+            log.info("Merging {} index segments", threads);
+            CreateIndex create = new CreateIndex(getTransactionId(), null);
+            executeAndLog(create);
+            PersistentIndex merged = getOrCreateIndex(create.getIndexName());
+            IndexReader[] readers = new IndexReader[threads];
+            try {
+                for (int i = 0; i < threads; i++) {
+                    readers[i] = segments[i].getReadOnlyIndexReader();
+                }
+                merged.addIndexes(readers);
+            } finally {
+                for (IndexReader reader : readers) {
+                    if (reader != null) {
+                        try {
+                            Util.closeOrRelease(reader);
+                        } catch (IOException e) {
+                            log.warn("Unable to close IndexReader: " + e);
+                        }
+                    }
+                }
+            }
+            merged.commit();
+            executeAndLog(new AddIndex(getTransactionId(), merged.getName()));
+            for (String name : names) {
+                executeAndLog(new DeleteIndex(getTransactionId(), name));
+            }
+            status.finished();
+            log.info("Created initial index: {}", status);
+            return count;
+        } finally {
+            status.unregister();
+        }
+    }
+
     /**
      * Attempts to delete all files that are older than
      *{@link SearchIndex#getMaxHistoryAge()}.
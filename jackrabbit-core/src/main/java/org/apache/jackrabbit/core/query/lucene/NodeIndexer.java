@@ -20,6 +20,9 @@ import java.math.BigDecimal;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Executor;
@@ -243,6 +246,10 @@ public class NodeIndexer {
                         Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS,
                         Field.TermVector.NO));
             }
+            // ancestors, as of version 4
+            if (indexFormatVersion.isAtLeast(IndexFormatVersion.V4)) {
+                addAncestors(doc);
+            }
         } catch (NoSuchItemStateException e) {
             throwRepositoryException(e);
         } catch (ItemStateException e) {
@@ -1006,6 +1013,41 @@ public class NodeIndexer {
         }
     }
 
+    /**
+     * Adds the ids of all ancestors of the node to the given <code>doc</code>.
+     * A shareable node has the ancestors of all its parents.
+     *
+     * @param doc the document.
+     * @throws ItemStateException if an ancestor cannot be read.
+     */
+    protected void addAncestors(Document doc) throws ItemStateException {
+        Set<NodeId> ancestors = new HashSet<NodeId>();
+        LinkedList<NodeState> pending = new LinkedList<NodeState>();
+        pending.add(node);
+        while (!pending.isEmpty()) {
+            NodeState state = pending.removeFirst();
+            Set<NodeId> parents = state.getSharedSet();
+            if (parents.isEmpty()) {
+                if (state.getParentId() == null) {
+                    continue;
+                }
+                parents = Collections.singleton(state.getParentId());
+            }
+            for (NodeId id : parents) {
+                if (ancestors.add(id)) {
+                    Field ancestor = new Field(FieldNames.ANCESTORS, false,
+                            id.toString(), Field.Store.NO,
+                            Field.Index.NOT_ANALYZED_NO_NORMS, Field.TermVector.NO);
+                    ancestor.setIndexOptions(FieldInfo.IndexOptions.DOCS_ONLY);
+                    doc.add(ancestor);
+                    if (stateProvider.hasItemState(id)) {
+                        pending.add((NodeState) stateProvider.getItemState(id));
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Adds a parent child relation to the given <code>doc</code>.
      *
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.collections.map.LRUMap;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.persistence.IterablePersistenceManager;
+import org.apache.jackrabbit.core.state.ItemStateException;
+import org.apache.jackrabbit.core.state.ItemStateManager;
+import org.apache.jackrabbit.core.state.NoSuchItemStateException;
+import org.apache.jackrabbit.core.state.NodeState;
+import org.apache.lucene.document.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the documents of an initial index on several threads. Instead of
+ * traversing the workspace, the node ids are read in batches from an
+ * {@link IterablePersistenceManager} and handed to a pool of workers. Each
+ * worker creates the documents of a batch and adds them to its own
+ * {@link PersistentIndex} segment, so the segments are written concurrently.
+ * <p>
+ * Nodes are only indexed if they are reachable from the root node without
+ * passing an excluded node, which is checked by following the parent ids.
+ * The results for the ancestors are cached.
+ */
+class ParallelIndexer {
+
+    /**
+     * The logger instance for this class.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ParallelIndexer.class);
+
+    /**
+     * Marks the end of the node ids for a worker.
+     */
+    private static final List<NodeId> END = new ArrayList<NodeId>(0);
+
+    /**
+     * Number of ancestors for which the result of {@link #isIndexed(NodeState)}
+     * is cached.
+     */
+    private static final int ANCESTOR_CACHE_SIZE = 100000;
+
+    /**
+     * Progress is logged whenever this number of nodes has been indexed.
+     */
+    private static final int LOG_INTERVAL = 10000;
+
+    private final MultiIndex index;
+
+    private final IterablePersistenceManager pm;
+
+    private final ItemStateManager stateMgr;
+
+    private final NodeId rootId;
+
+    private final Set<NodeId> excludedIDs;
+
+    private final int batchSize;
+
+    private final ReindexStatus status;
+
+    /**
+     * Maps ids of ancestors to whether they are indexed.
+     */
+    @SuppressWarnings("unchecked")
+    private final Map<NodeId, Boolean> ancestors =
+        Collections.synchronizedMap(new LRUMap(ANCESTOR_CACHE_SIZE));
+
+    /**
+     * Creates a new parallel indexer.
+     *
+     * @param index       the multi index that creates the documents.
+     * @param pm          the persistence manager to read the node ids from.
+     * @param stateMgr    the item state manager to read the nodes from.
+     * @param rootId      the id of the root node.
+     * @param excludedIDs ids of nodes that are neither indexed nor traversed.
+     * @param batchSize   the number of node ids read at once.
+     * @param status      receives the progress.
+     */
+    ParallelIndexer(MultiIndex index,
+                    IterablePersistenceManager pm,
+                    ItemStateManager stateMgr,
+                    NodeId rootId,
+                    Set<NodeId> excludedIDs,
+                    int batchSize,
+                    ReindexStatus status) {
+        this.index = index;
+        this.pm = pm;
+        this.stateMgr = stateMgr;
+        this.rootId = rootId;
+        this.excludedIDs = excludedIDs;
+        this.batchSize = batchSize;
+        this.status = status;
+    }
+
+    /**
+     * Indexes all nodes with one worker thread per segment. The segments are
+     * not committed when this method returns.
+     *
+     * @param segments the segments to write the documents to.
+     * @return the number of nodes indexed.
+     * @throws IOException         if an error occurs while writing to a
+     *                             segment.
+     * @throws RepositoryException if the nodes cannot be read.
+     */
+    long run(PersistentIndex[] segments)
+            throws IOException, RepositoryException {
+        BlockingQueue<List<NodeId>> queue =
+            new ArrayBlockingQueue<List<NodeId>>(2 * segments.length);
+        ExecutorService executor = Executors.newFixedThreadPool(segments.length);
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (PersistentIndex segment : segments) {
+                futures.add(executor.submit(new Worker(segment, queue)));
+            }
+            List<NodeId> ids = pm.getAllNodeIds(null, batchSize);
+            while (!ids.isEmpty()) {
+                status.nodesRead(ids.size());
+                enqueue(queue, ids, futures);
+                ids = pm.getAllNodeIds(ids.get(ids.size() - 1), batchSize);
+            }
+            for (int i = 0; i < segments.length; i++) {
+                enqueue(queue, END, futures);
+            }
+            long count = 0;
+            for (Future<Long> future : futures) {
+                count += future.get();
+            }
+            return count;
+        } catch (ItemStateException e) {
+            throw new RepositoryException("Unable to read node ids", e);
+        } catch (InterruptedException e) {
+            throw new RepositoryException("Interrupted while indexing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RepositoryException) {
+                throw (RepositoryException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new RepositoryException("Unable to index nodes", cause);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Puts a batch of node ids into the queue. While the queue is full the
+     * workers are checked for failures, so that reading stops if no worker
+     * is left to take the batches.
+     */
+    private static void enqueue(BlockingQueue<List<NodeId>> queue,
+                                List<NodeId> ids,
+                                List<Future<Long>> futures)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(ids, 1, TimeUnit.SECONDS)) {
+            for (Future<Long> future : futures) {
+                if (future.isDone()) {
+                    // throws the exception of a failed worker
+                    future.get();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given node is reachable from the root
+     * node without passing an excluded node.
+     *
+     * @param state the node state.
+     * @return whether the node must be indexed.
+     */
+    private boolean isIndexed(NodeState state) {
+        NodeId id = state.getNodeId();
+        if (id.equals(rootId)) {
+            return true;
+        }
+        if (excludedIDs.contains(id)) {
+            return false;
+        }
+        NodeId parentId = state.getParentId();
+        if (parentId == null) {
+            return false;
+        }
+        Boolean indexed = ancestors.get(parentId);
+        if (indexed == null) {
+            NodeState parent = getNodeState(parentId);
+            indexed = parent != null && isIndexed(parent);
+            ancestors.put(parentId, indexed);
+        }
+        return indexed;
+    }
+
+    /**
+     * Returns the node state with the given id, or <code>null</code> if
+     * the node does not exist (anymore) or cannot be read.
+     */
+    private NodeState getNodeState(NodeId id) {
+        try {
+            return (NodeState) stateMgr.getItemState(id);
+        } catch (NoSuchItemStateException e) {
+            // the node may have been removed in the meantime
+            log.debug("Node {} does not exist anymore", id);
+        } catch (ItemStateException e) {
+            // JCR-3268 log bundle corruption and continue
+            log.warn("Unable to read node " + id, e);
+        }
+        return null;
+    }
+
+    /**
+     * Creates the documents for the batches in the queue and adds them to a
+     * segment.
+     */
+    private class Worker implements Callable<Long> {
+
+        private final PersistentIndex segment;
+
+        private final BlockingQueue<List<NodeId>> queue;
+
+        Worker(PersistentIndex segment, BlockingQueue<List<NodeId>> queue) {
+            this.segment = segment;
+            this.queue = queue;
+        }
+
+        public Long call() throws IOException, InterruptedException {
+            long count = 0;
+            List<NodeId> ids;
+            while ((ids = queue.take()) != END) {
+                List<Document> docs = new ArrayList<Document>(ids.size());
+                for (NodeId id : ids) {
+                    NodeState state = getNodeState(id);
+                    if (state != null && isIndexed(state)) {
+                        try {
+                            docs.add(index.createDocument(state));
+                        } catch (RepositoryException e) {
+                            // node does not exist anymore
+                            log.debug(e.getMessage());
+                        }
+                    }
+                }
+                segment.addDocuments(docs.toArray(new Document[docs.size()]));
+                count += docs.size();
+                status.nodesSkipped(ids.size() - docs.size());
+                long total = status.nodesIndexed(docs.size());
+                if (total / LOG_INTERVAL != (total - docs.size()) / LOG_INTERVAL) {
+                    log.info("indexing... {}", status);
+                }
+            }
+            return count;
+        }
+    }
+
+}
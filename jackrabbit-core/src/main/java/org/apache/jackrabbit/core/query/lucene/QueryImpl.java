@@ -32,7 +32,6 @@ import org.apache.jackrabbit.spi.commons.query.LocationStepQueryNode;
 import org.apache.jackrabbit.spi.commons.query.NodeTypeQueryNode;
 import org.apache.jackrabbit.spi.commons.query.OrderQueryNode;
 import org.apache.jackrabbit.spi.commons.query.QueryNodeFactory;
-import org.apache.jackrabbit.spi.commons.query.QueryParser;
 import org.apache.jackrabbit.spi.commons.query.QueryRootNode;
 import org.apache.jackrabbit.spi.commons.query.qom.ColumnImpl;
 import org.apache.lucene.search.Query;
@@ -88,8 +87,9 @@ public class QueryImpl extends AbstractQueryImpl {
         super(sessionContext, index, propReg);
         // parse query according to language
         // build query tree using the passed factory
-        this.root = QueryParser.parse(
-                statement, language, sessionContext, factory);
+        this.root = sessionContext.getRepositoryContext().getQueryTreeCache()
+                .getQueryRootNode(sessionContext.getSessionImpl(),
+                        statement, language, factory);
     }
 
     /**
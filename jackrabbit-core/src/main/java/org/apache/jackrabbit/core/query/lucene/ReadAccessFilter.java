@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.security.authorization.AccessControlConstants;
+import org.apache.jackrabbit.core.state.ChildNodeEntry;
+import org.apache.jackrabbit.core.state.ItemStateException;
+import org.apache.jackrabbit.core.state.ItemStateManager;
+import org.apache.jackrabbit.core.state.NodeState;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides with the help of the index hierarchy whether a session is able to
+ * read the node of a document. Access control policies are found through the
+ * indexed primary type <code>rep:ACL</code>. The readability of a document is
+ * the readability of its nearest ancestor-or-self that holds a policy, which
+ * is checked once per holder with the access manager of the session.
+ * <p>
+ * A document is only rejected if this is certain. Documents are accepted if
+ * the nearest holder cannot be determined (shared nodes, nodes in the system
+ * tree, access control content) or if an access control entry on the way to
+ * the root carries restrictions, because the result then depends on the node
+ * itself. The access check on the query result remains the final decision.
+ * <p>
+ * Instances are bound to a single index reader and are not thread-safe.
+ */
+class ReadAccessFilter {
+
+    /**
+     * The logger instance for this class.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ReadAccessFilter.class);
+
+    /**
+     * Returned by {@link #getHolder(int)} if the node has no policy holder.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Returned by {@link #getHolder(int)} if the policy holder of the node
+     * cannot be determined.
+     */
+    private static final int UNKNOWN = -2;
+
+    /**
+     * Properties of an access control entry that do not restrict the entry
+     * to a subset of the nodes below the policy holder.
+     */
+    private static final Set<Name> ENTRY_PROPERTIES = new HashSet<Name>(Arrays.asList(
+            NameConstants.JCR_PRIMARYTYPE,
+            NameConstants.JCR_MIXINTYPES,
+            AccessControlConstants.P_PRINCIPAL_NAME,
+            AccessControlConstants.P_PRIVILEGES));
+
+    private final IndexReader reader;
+
+    private final HierarchyResolver resolver;
+
+    private final SessionImpl session;
+
+    private final ItemStateManager ism;
+
+    /**
+     * Maps the document numbers of policy holders to the document numbers
+     * of their policies.
+     */
+    private final Map<Integer, List<Integer>> holders =
+        new HashMap<Integer, List<Integer>>();
+
+    /**
+     * Document numbers of the policy nodes.
+     */
+    private final Set<Integer> policies = new HashSet<Integer>();
+
+    /**
+     * Document number of the system root node or <code>-1</code> if the
+     * reader does not contain the system tree.
+     */
+    private final int systemDoc;
+
+    /**
+     * Maps the document numbers of ancestors to the result of
+     * {@link #getHolder(int)}.
+     */
+    private final Map<Integer, Integer> ancestors = new HashMap<Integer, Integer>();
+
+    /**
+     * Maps the document numbers of policy holders to whether their policy
+     * or a policy further up contains restricted entries.
+     */
+    private final Map<Integer, Boolean> restricted = new HashMap<Integer, Boolean>();
+
+    /**
+     * Maps the document numbers of policy holders to whether the session
+     * is allowed to read them.
+     */
+    private final Map<Integer, Boolean> readable = new HashMap<Integer, Boolean>();
+
+    private int[] parents = new int[1];
+
+    /**
+     * Creates a new filter.
+     *
+     * @param reader     the index reader, which must also be a
+     *                   {@link HierarchyResolver}.
+     * @param session    the session that executes the query.
+     * @param ism        the item state manager to read the access control
+     *                   entries.
+     * @param policyType the term that matches the documents of the policy
+     *                   nodes.
+     * @throws IOException if an error occurs while reading from the index.
+     */
+    ReadAccessFilter(IndexReader reader,
+                     SessionImpl session,
+                     ItemStateManager ism,
+                     Term policyType) throws IOException {
+        this.reader = reader;
+        this.resolver = (HierarchyResolver) reader;
+        this.session = session;
+        this.ism = ism;
+        TermDocs tDocs = reader.termDocs(policyType);
+        try {
+            while (tDocs.next()) {
+                int policy = tDocs.doc();
+                policies.add(policy);
+                parents = resolver.getParents(policy, parents);
+                if (parents.length == 1) {
+                    List<Integer> docs = holders.get(parents[0]);
+                    if (docs == null) {
+                        docs = new ArrayList<Integer>(1);
+                        holders.put(parents[0], docs);
+                    }
+                    docs.add(policy);
+                }
+            }
+        } finally {
+            tDocs.close();
+        }
+        this.systemDoc = getDoc(RepositoryImpl.SYSTEM_ROOT_NODE_ID);
+    }
+
+    /**
+     * Returns <code>false</code> if the session is certainly not allowed to
+     * read the node of the given document.
+     *
+     * @param doc the document number.
+     * @return whether the node may be readable.
+     * @throws IOException if an error occurs while reading from the index.
+     */
+    boolean isAccessible(int doc) throws IOException {
+        int holder = getHolder(doc);
+        if (holder < 0 || isRestricted(holder)) {
+            return true;
+        }
+        Boolean canRead = readable.get(holder);
+        if (canRead == null) {
+            canRead = Boolean.TRUE;
+            NodeId id = getNodeId(holder);
+            if (id != null) {
+                try {
+                    canRead = session.getAccessManager().canRead(null, id);
+                } catch (RepositoryException e) {
+                    log.debug("Unable to check read access on " + id, e);
+                }
+            }
+            readable.put(holder, canRead);
+        }
+        return canRead;
+    }
+
+    /**
+     * Returns the document number of the nearest ancestor-or-self of
+     * <code>doc</code> that holds a policy.
+     *
+     * @param doc the document number.
+     * @return the document number of the policy holder, {@link #NONE} or
+     *         {@link #UNKNOWN}.
+     * @throws IOException if an error occurs while reading from the index.
+     */
+    private int getHolder(int doc) throws IOException {
+        List<Integer> path = new ArrayList<Integer>();
+        int holder;
+        int current = doc;
+        for (;;) {
+            if (policies.contains(current) || current == systemDoc) {
+                holder = UNKNOWN;
+                break;
+            }
+            if (holders.containsKey(current)) {
+                holder = current;
+                break;
+            }
+            if (current != doc) {
+                Integer known = ancestors.get(current);
+                if (known != null) {
+                    holder = known;
+                    break;
+                }
+                path.add(current);
+            }
+            parents = resolver.getParents(current, parents);
+            if (parents.length == 0) {
+                holder = NONE;
+                break;
+            } else if (parents.length > 1) {
+                // shareable node
+                holder = UNKNOWN;
+                break;
+            }
+            current = parents[0];
+        }
+        for (Integer ancestor : path) {
+            ancestors.put(ancestor, holder);
+        }
+        return holder;
+    }
+
+    /**
+     * Returns <code>true</code> if an entry of the policy of the given holder
+     * or of a holder further up carries restrictions, or if this cannot be
+     * determined.
+     *
+     * @param holder the document number of a policy holder.
+     * @return whether the readability of a node below the holder may differ
+     *         from the readability of the holder.
+     * @throws IOException if an error occurs while reading from the index.
+     */
+    private boolean isRestricted(int holder) throws IOException {
+        Boolean result = restricted.get(holder);
+        if (result == null) {
+            result = Boolean.FALSE;
+            for (int policy : holders.get(holder)) {
+                if (hasRestrictedEntries(policy)) {
+                    result = Boolean.TRUE;
+                    break;
+                }
+            }
+            if (!result) {
+                parents = resolver.getParents(holder, parents);
+                if (parents.length == 1) {
+                    int next = getHolder(parents[0]);
+                    result = next == UNKNOWN
+                            || (next != NONE && isRestricted(next));
+                } else if (parents.length > 1) {
+                    result = Boolean.TRUE;
+                }
+            }
+            restricted.put(holder, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if an entry of the given policy has other
+     * properties than the principal name and the privileges, or if the
+     * policy cannot be read.
+     */
+    private boolean hasRestrictedEntries(int policy) throws IOException {
+        NodeId id = getNodeId(policy);
+        if (id == null) {
+            return true;
+        }
+        try {
+            NodeState state = (NodeState) ism.getItemState(id);
+            for (ChildNodeEntry entry : state.getChildNodeEntries()) {
+                NodeState ace = (NodeState) ism.getItemState(entry.getId());
+                if (!ENTRY_PROPERTIES.containsAll(ace.getPropertyNames())
+                        || ace.hasChildNodeEntries()) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (ItemStateException e) {
+            log.debug("Unable to read policy " + id, e);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the node id of the given document or <code>null</code> if the
+     * document has been deleted.
+     */
+    private NodeId getNodeId(int doc) throws IOException {
+        if (reader.isDeleted(doc)) {
+            return null;
+        }
+        String uuid = reader.document(doc, FieldSelectors.UUID).get(FieldNames.UUID);
+        return uuid == null ? null : new NodeId(uuid);
+    }
+
+    /**
+     * Returns the document number of the given node or <code>-1</code> if
+     * the node is not in the index.
+     */
+    private int getDoc(NodeId id) throws IOException {
+        TermDocs tDocs = reader.termDocs(TermFactory.createUUIDTerm(id.toString()));
+        try {
+            return tDocs.next() ? tDocs.doc() : -1;
+        } finally {
+            tDocs.close();
+        }
+    }
+}
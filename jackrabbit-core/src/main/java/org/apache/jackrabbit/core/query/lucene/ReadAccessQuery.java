@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.state.ItemStateManager;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Searcher;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.Weight;
+
+/**
+ * Wraps a query and removes the documents of nodes the session is not able
+ * to read while the wrapped query is scored. This avoids loading and checking
+ * nodes of the result that are never returned. See {@link ReadAccessFilter}
+ * for the documents that are removed.
+ */
+@SuppressWarnings("serial")
+class ReadAccessQuery extends Query implements JackrabbitQuery {
+
+    /**
+     * The wrapped query.
+     */
+    private final Query query;
+
+    /**
+     * The session that executes the query.
+     */
+    private final SessionImpl session;
+
+    /**
+     * The item state manager to read the access control entries.
+     */
+    private final ItemStateManager ism;
+
+    /**
+     * Matches the documents of the policy nodes.
+     */
+    private final Term policyType;
+
+    /**
+     * Creates a new <code>ReadAccessQuery</code>.
+     *
+     * @param query      the query to filter.
+     * @param session    the session that executes the query.
+     * @param ism        the item state manager of the workspace.
+     * @param policyType the term that matches the documents of the policy
+     *                   nodes.
+     */
+    ReadAccessQuery(Query query,
+                    SessionImpl session,
+                    ItemStateManager ism,
+                    Term policyType) {
+        this.query = query;
+        this.session = session;
+        this.ism = ism;
+        this.policyType = policyType;
+    }
+
+    /**
+     * Filters the hits of the wrapped query if it is a
+     * {@link JackrabbitQuery} that executes itself, otherwise returns
+     * <code>null</code>.
+     */
+    public QueryHits execute(JackrabbitIndexSearcher searcher,
+                             SessionImpl session,
+                             Sort sort) throws IOException {
+        if (!(query instanceof JackrabbitQuery)) {
+            return null;
+        }
+        QueryHits hits = ((JackrabbitQuery) query).execute(searcher, session, sort);
+        IndexReader reader = searcher.getIndexReader();
+        if (hits == null || !(reader instanceof HierarchyResolver)) {
+            return hits;
+        }
+        return new ReadAccessQueryHits(hits, reader,
+                new ReadAccessFilter(reader, session, ism, policyType));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Weight createWeight(Searcher searcher) throws IOException {
+        return new ReadAccessWeight(query.createWeight(searcher));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Query rewrite(IndexReader reader) throws IOException {
+        Query rewritten = query.rewrite(reader);
+        if (rewritten == query) {
+            return this;
+        } else {
+            return new ReadAccessQuery(rewritten, session, ism, policyType);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void extractTerms(Set<Term> terms) {
+        query.extractTerms(terms);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString(String field) {
+        return "ReadAccessQuery(" + query.toString(field) + ")";
+    }
+
+    /**
+     * Delegates to the weight of the wrapped query and filters its scorer.
+     */
+    private class ReadAccessWeight extends Weight {
+
+        private final Weight weight;
+
+        ReadAccessWeight(Weight weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public Query getQuery() {
+            return ReadAccessQuery.this;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public float getValue() {
+            return weight.getValue();
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public float sumOfSquaredWeights() throws IOException {
+            return weight.sumOfSquaredWeights();
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public void normalize(float norm) {
+            weight.normalize(norm);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public Scorer scorer(IndexReader reader, boolean scoreDocsInOrder,
+                boolean topScorer) throws IOException {
+            Scorer scorer = weight.scorer(reader, scoreDocsInOrder, false);
+            if (scorer == null || !(reader instanceof HierarchyResolver)) {
+                return scorer;
+            }
+            return new ReadAccessScorer(this, scorer,
+                    new ReadAccessFilter(reader, session, ism, policyType));
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public Explanation explain(IndexReader reader, int doc) throws IOException {
+            return weight.explain(reader, doc);
+        }
+    }
+
+    /**
+     * Skips the documents of the wrapped scorer that are not accessible.
+     */
+    private static class ReadAccessScorer extends Scorer {
+
+        private final Scorer scorer;
+
+        private final ReadAccessFilter filter;
+
+        ReadAccessScorer(Weight weight, Scorer scorer, ReadAccessFilter filter) {
+            super(weight);
+            this.scorer = scorer;
+            this.filter = filter;
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return skipInaccessible(scorer.nextDoc());
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            return skipInaccessible(scorer.advance(target));
+        }
+
+        @Override
+        public int docID() {
+            return scorer.docID();
+        }
+
+        @Override
+        public float score() throws IOException {
+            return scorer.score();
+        }
+
+        private int skipInaccessible(int doc) throws IOException {
+            while (doc != NO_MORE_DOCS && !filter.isAccessible(doc)) {
+                doc = scorer.nextDoc();
+            }
+            return doc;
+        }
+    }
+
+    /**
+     * Skips the hits of the wrapped query that are not accessible.
+     */
+    private static class ReadAccessQueryHits extends AbstractQueryHits {
+
+        private final QueryHits hits;
+
+        private final IndexReader reader;
+
+        private final ReadAccessFilter filter;
+
+        ReadAccessQueryHits(QueryHits hits,
+                            IndexReader reader,
+                            ReadAccessFilter filter) {
+            this.hits = hits;
+            this.reader = reader;
+            this.filter = filter;
+        }
+
+        public ScoreNode nextScoreNode() throws IOException {
+            ScoreNode sn;
+            do {
+                sn = hits.nextScoreNode();
+            } while (sn != null && !filter.isAccessible(sn.getDoc(reader)));
+            return sn;
+        }
+
+        @Override
+        public void close() throws IOException {
+            hits.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the progress of a {@link ParallelIndexer} and publishes it in the
+ * platform MBean server while the index is created.
+ */
+public class ReindexStatus implements ReindexStatusMBean {
+
+    /**
+     * The logger instance for this class.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ReindexStatus.class);
+
+    private final String workspace;
+
+    private final int threads;
+
+    private final long start = System.currentTimeMillis();
+
+    private final AtomicLong nodesRead = new AtomicLong();
+
+    private final AtomicLong nodesIndexed = new AtomicLong();
+
+    private final AtomicLong nodesSkipped = new AtomicLong();
+
+    private volatile String phase = "indexing";
+
+    private volatile long end = 0;
+
+    private ObjectName name;
+
+    ReindexStatus(String workspace, int threads) {
+        this.workspace = workspace;
+        this.threads = threads;
+    }
+
+    //---------------------------------------------------< ReindexStatusMBean >
+
+    public String getWorkspace() {
+        return workspace;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public long getNodesRead() {
+        return nodesRead.get();
+    }
+
+    public long getNodesIndexed() {
+        return nodesIndexed.get();
+    }
+
+    public long getNodesSkipped() {
+        return nodesSkipped.get();
+    }
+
+    public long getElapsedTime() {
+        long time = end;
+        if (time == 0) {
+            time = System.currentTimeMillis();
+        }
+        return time - start;
+    }
+
+    public double getThroughput() {
+        long time = getElapsedTime();
+        if (time == 0) {
+            return 0;
+        }
+        return getNodesIndexed() * 1000.0 / time;
+    }
+
+    //-------------------------------------------------------------< internal >
+
+    void nodesRead(int count) {
+        nodesRead.addAndGet(count);
+    }
+
+    /**
+     * @param count the number of nodes indexed.
+     * @return the total number of nodes indexed so far.
+     */
+    long nodesIndexed(int count) {
+        return nodesIndexed.addAndGet(count);
+    }
+
+    void nodesSkipped(int count) {
+        nodesSkipped.addAndGet(count);
+    }
+
+    void merging() {
+        phase = "merging";
+    }
+
+    void finished() {
+        end = System.currentTimeMillis();
+        phase = "finished";
+    }
+
+    /**
+     * Registers this status with the platform MBean server. Failures are
+     * logged and otherwise ignored.
+     */
+    void register() {
+        try {
+            ObjectName on = new ObjectName(
+                    "org.apache.jackrabbit:type=Reindex,workspace="
+                    + ObjectName.quote(String.valueOf(workspace)));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(on)) {
+                server.unregisterMBean(on);
+            }
+            server.registerMBean(this, on);
+            name = on;
+        } catch (JMException e) {
+            log.warn("Unable to register reindex status MBean", e);
+        }
+    }
+
+    /**
+     * Removes this status from the platform MBean server.
+     */
+    void unregister() {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                log.debug("Unable to unregister reindex status MBean", e);
+            }
+            name = null;
+        }
+    }
+
+    public String toString() {
+        return nodesIndexed + " nodes indexed, " + nodesSkipped
+                + " skipped in " + getElapsedTime() + "ms ("
+                + Math.round(getThroughput()) + " nodes/s)";
+    }
+
+}
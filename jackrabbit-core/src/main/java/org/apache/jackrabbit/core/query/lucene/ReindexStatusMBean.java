@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+/**
+ * Management interface exposing the progress of a parallel creation of the
+ * initial search index of a workspace.
+ */
+public interface ReindexStatusMBean {
+
+    /**
+     * @return the name of the workspace that is indexed.
+     */
+    String getWorkspace();
+
+    /**
+     * @return the number of threads that create documents.
+     */
+    int getThreads();
+
+    /**
+     * @return the current phase: <code>indexing</code>, <code>merging</code>
+     *         or <code>finished</code>.
+     */
+    String getPhase();
+
+    /**
+     * @return the number of node ids read from the persistence manager.
+     */
+    long getNodesRead();
+
+    /**
+     * @return the number of nodes added to the index.
+     */
+    long getNodesIndexed();
+
+    /**
+     * @return the number of nodes that were read but not indexed, because
+     *         they are excluded, not reachable from the root node or could
+     *         not be loaded.
+     */
+    long getNodesSkipped();
+
+    /**
+     * @return the time in milliseconds since the index creation started.
+     */
+    long getElapsedTime();
+
+    /**
+     * @return the average number of nodes indexed per second.
+     */
+    double getThroughput();
+
+}
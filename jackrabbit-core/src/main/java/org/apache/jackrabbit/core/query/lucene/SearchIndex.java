@@ -29,6 +29,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,6 +53,11 @@ import org.apache.jackrabbit.core.cluster.NamespaceRecord;
 import org.apache.jackrabbit.core.cluster.NodeTypeRecord;
 import org.apache.jackrabbit.core.cluster.PrivilegeRecord;
 import org.apache.jackrabbit.core.cluster.WorkspaceRecord;
+import org.apache.jackrabbit.core.config.BeanConfig;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.apache.jackrabbit.core.config.SecurityManagerConfig;
+import org.apache.jackrabbit.core.config.WorkspaceConfig;
+import org.apache.jackrabbit.core.config.WorkspaceSecurityConfig;
 import org.apache.jackrabbit.core.fs.FileSystem;
 import org.apache.jackrabbit.core.fs.FileSystemException;
 import org.apache.jackrabbit.core.fs.FileSystemResource;
@@ -68,6 +74,8 @@ import org.apache.jackrabbit.core.query.QueryHandlerContext;
 import org.apache.jackrabbit.core.query.lucene.directory.DirectoryManager;
 import org.apache.jackrabbit.core.query.lucene.directory.FSDirectoryManager;
 import org.apache.jackrabbit.core.query.lucene.hits.AbstractHitCollector;
+import org.apache.jackrabbit.core.security.authorization.acl.ACLProvider;
+import org.apache.jackrabbit.core.security.user.UserAccessControlProvider;
 import org.apache.jackrabbit.core.session.SessionContext;
 import org.apache.jackrabbit.core.state.ItemState;
 import org.apache.jackrabbit.core.state.ItemStateException;
@@ -514,6 +522,31 @@ public class SearchIndex extends AbstractQueryHandler {
      */
     private RedoLogFactory redoLogFactory;
 
+    /**
+     * Number of threads used to create the initial index. The default value
+     * of one traverses the workspace on a single thread.
+     */
+    private int reindexThreads = 1;
+
+    /**
+     * Number of node ids read at once when the initial index is created
+     * with more than one thread, and number of nodes below a moved node that
+     * are re-indexed at once.
+     */
+    private int reindexBatchSize = 1000;
+
+    /**
+     * Indicates whether documents of nodes the session is not able to read
+     * are removed while the query is evaluated on the index.
+     */
+    private boolean enableAccessFilter = false;
+
+    /**
+     * Indicates whether the ids of all ancestors of a node are indexed. See
+     * {@link IndexFormatVersion#V4}.
+     */
+    private boolean indexAncestors = false;
+
     /**
      * Indicates if this <code>SearchIndex</code> is closed and cannot be used
      * anymore.
@@ -532,6 +565,9 @@ public class SearchIndex extends AbstractQueryHandler {
         if (path == null) {
             throw new IOException("SearchIndex requires 'path' parameter in configuration!");
         }
+        if (enableAccessFilter && context.getWorkspace() != null) {
+            checkAccessFilterSupported(context);
+        }
 
         Set<NodeId> excludedIDs = new HashSet<NodeId>();
         if (context.getExcludedNodeId() != null) {
@@ -665,12 +701,16 @@ public class SearchIndex extends AbstractQueryHandler {
         }
         
         Collection<Document> addCollection = new ArrayList<Document>();
+        Map<NodeId, NodeState> reindexed = new HashMap<NodeId, NodeState>();
         while (add.hasNext()) {
             NodeState state = add.next();
             if (state != null) {
                 NodeId id = state.getNodeId();
                 addedIds.add(id);
                 retrieveAggregateRoot(state, aggregateRoots);
+                if (removedIds.contains(id)) {
+                    reindexed.put(id, state);
+                }
 
                 try {
                     addCollection.add(createDocument(
@@ -685,8 +725,18 @@ public class SearchIndex extends AbstractQueryHandler {
         time = System.currentTimeMillis() - time;
         log.debug("created the removeCollection {} and addCollection {} in {}ms", new Object[] {removeCollection.size(), addCollection.size(), time});
 
+        // the ancestors of nodes below a moved node must be read before
+        // the moved node is removed from the index
+        Set<NodeId> movedDescendants = new LinkedHashSet<NodeId>();
+        retrieveMovedDescendants(reindexed, movedDescendants);
+
         index.update(removeCollection, addCollection);
 
+        // update the ancestors of nodes below moved nodes
+        movedDescendants.removeAll(addedIds);
+        movedDescendants.removeAll(removedIds);
+        updateMovedDescendants(movedDescendants);
+
         // remove any aggregateRoot nodes that are new
         // and therefore already up-to-date
         aggregateRoots.keySet().removeAll(addedIds);
@@ -875,6 +925,9 @@ public class SearchIndex extends AbstractQueryHandler {
         JackrabbitIndexSearcher searcher = new JackrabbitIndexSearcher(
                 session, reader, getContext().getItemStateManager());
         searcher.setSimilarity(getSimilarity());
+        if (enableAccessFilter && !session.isSystem()) {
+            query = createReadAccessQuery(session, query);
+        }
         return new FilterMultiColumnQueryHits(
                 searcher.execute(query, sort, resultFetchHint,
                         QueryImpl.DEFAULT_SELECTOR_NAME)) {
@@ -888,6 +941,81 @@ public class SearchIndex extends AbstractQueryHandler {
         };
     }
 
+    /**
+     * Wraps the query into a {@link ReadAccessQuery}, which removes the
+     * documents of nodes that the session is not able to read.
+     *
+     * @param session the session that executes the query.
+     * @param query   the lucene query.
+     * @return the wrapped query or <code>query</code> if the session has
+     *         pending changes or the name of the access control list node
+     *         type cannot be translated.
+     */
+    protected Query createReadAccessQuery(SessionImpl session, Query query) {
+        try {
+            if (session.hasPendingChanges()) {
+                // the filter resolves policy holders through the persisted
+                // hierarchy, while the access manager of the session sees
+                // its transient hierarchy
+                return query;
+            }
+            NamespaceMappings nsMappings = getNamespaceMappings();
+            Term policyType = new Term(FieldNames.PROPERTIES,
+                    FieldNames.createNamedValue(
+                            nsMappings.translateName(NameConstants.JCR_PRIMARYTYPE),
+                            nsMappings.translateName(NameConstants.REP_ACL)));
+            return new ReadAccessQuery(query, session,
+                    getContext().getItemStateManager(), policyType);
+        } catch (RepositoryException e) {
+            log.warn("Unable to create access filter, query is not filtered", e);
+            return query;
+        }
+    }
+
+    /**
+     * Checks that the workspace of this search index uses the
+     * {@link ACLProvider}, which is the only access control provider whose
+     * policies are understood by the {@link ReadAccessFilter}. Other
+     * providers, e.g. the <code>CombinedProvider</code> or the
+     * {@link UserAccessControlProvider}, apply entries to nodes by path and
+     * the filter would remove nodes that are readable.
+     *
+     * @param context the context of this search index.
+     * @throws IOException if the workspace uses another access control
+     *                     provider.
+     */
+    private void checkAccessFilterSupported(QueryHandlerContext context)
+            throws IOException {
+        RepositoryConfig config = context.getRepositoryConfig();
+        String workspace = context.getWorkspace();
+        String provider = null;
+        SecurityManagerConfig smc =
+            config.getSecurityConfig().getSecurityManagerConfig();
+        if (smc != null) {
+            WorkspaceConfig wspConfig = config.getWorkspaceConfig(workspace);
+            WorkspaceSecurityConfig wspSecurity =
+                wspConfig == null ? null : wspConfig.getSecurityConfig();
+            BeanConfig providerConfig = wspSecurity == null
+                ? null : wspSecurity.getAccessControlProviderConfig();
+            if (providerConfig != null) {
+                provider = providerConfig.getClassName();
+            } else if (workspace.equals(smc.getWorkspaceName())
+                    && !workspace.equals(config.getDefaultWorkspaceName())) {
+                // same default as AccessControlProviderFactoryImpl
+                provider = UserAccessControlProvider.class.getName();
+            } else {
+                provider = ACLProvider.class.getName();
+            }
+        }
+        if (!ACLProvider.class.getName().equals(provider)) {
+            throw new IOException("The access filter of the search index of"
+                    + " workspace '" + workspace + "' requires the "
+                    + ACLProvider.class.getName() + ", but the workspace uses "
+                    + (provider == null ? "no access control provider" : provider)
+                    + ". Disable the enableAccessFilter parameter.");
+        }
+    }
+
     /**
      * Executes the query on the search index.
      *
@@ -1105,7 +1233,10 @@ public class SearchIndex extends AbstractQueryHandler {
 
     /**
      * Returns the index format version that this search index is able to
-     * support when a query is executed on this index.
+     * support when a query is executed on this index. A workspace index with
+     * {@link IndexFormatVersion#V4} keeps that version when the index of the
+     * jcr:system tree uses {@link IndexFormatVersion#V3}, because the
+     * ancestors are not looked up for nodes of the jcr:system tree.
      *
      * @return the index format version for this search index.
      */
@@ -1113,11 +1244,14 @@ public class SearchIndex extends AbstractQueryHandler {
         if (indexFormatVersion == null) {
             if (getContext().getParentHandler() instanceof SearchIndex) {
                 SearchIndex parent = (SearchIndex) getContext().getParentHandler();
-                if (parent.getIndexFormatVersion().getVersion()
-                        < index.getIndexFormatVersion().getVersion()) {
-                    indexFormatVersion = parent.getIndexFormatVersion();
+                IndexFormatVersion version = index.getIndexFormatVersion();
+                IndexFormatVersion parentVersion = parent.getIndexFormatVersion();
+                if (parentVersion.getVersion() < version.getVersion()
+                        && !(version.isAtLeast(IndexFormatVersion.V4)
+                                && parentVersion.isAtLeast(IndexFormatVersion.V3))) {
+                    indexFormatVersion = parentVersion;
                 } else {
-                    indexFormatVersion = index.getIndexFormatVersion();
+                    indexFormatVersion = version;
                 }
             } else {
                 indexFormatVersion = index.getIndexFormatVersion();
@@ -1792,6 +1926,123 @@ public class SearchIndex extends AbstractQueryHandler {
         log.debug("Retrieved {} aggregate roots in {} ms.", found, time);
     }
 
+    /**
+     * Retrieves the ids of the descendants of the re-indexed nodes that were
+     * moved to another parent and adds them to <code>descendants</code>. The
+     * ancestors indexed with these descendants are no longer valid. This
+     * method does nothing unless the index uses {@link IndexFormatVersion#V4}.
+     *
+     * @param reindexed   the re-indexed nodes.
+     * @param descendants the ids of the descendants of moved nodes are
+     *                    collected in this set.
+     */
+    protected void retrieveMovedDescendants(
+            Map<NodeId, NodeState> reindexed, Set<NodeId> descendants) {
+        if (reindexed.isEmpty()
+                || !index.getIndexFormatVersion().isAtLeast(IndexFormatVersion.V4)) {
+            return;
+        }
+        long time = System.currentTimeMillis();
+        try {
+            CachingMultiIndexReader reader = index.getIndexReader();
+            try {
+                TermDocs tDocs = reader.termDocs();
+                try {
+                    for (NodeState state : reindexed.values()) {
+                        if (!isMoved(reader, tDocs, state)) {
+                            continue;
+                        }
+                        tDocs.seek(new Term(FieldNames.ANCESTORS,
+                                state.getNodeId().toString()));
+                        while (tDocs.next()) {
+                            Document doc = reader.document(
+                                    tDocs.doc(), FieldSelectors.UUID);
+                            descendants.add(new NodeId(doc.get(FieldNames.UUID)));
+                        }
+                    }
+                } finally {
+                    tDocs.close();
+                }
+            } finally {
+                reader.release();
+            }
+        } catch (Exception e) {
+            log.warn("Exception while retrieving descendants of moved nodes", e);
+        }
+        time = System.currentTimeMillis() - time;
+        log.debug("Retrieved {} descendants of moved nodes in {} ms.",
+                descendants.size(), time);
+    }
+
+    /**
+     * Re-indexes the descendants of moved nodes in batches of
+     * {@link #getReindexBatchSize()} nodes, so that only the node states and
+     * documents of one batch are kept in memory.
+     *
+     * @param ids the ids of the descendants of moved nodes.
+     * @throws IOException if an error occurs while updating the index.
+     */
+    private void updateMovedDescendants(Collection<NodeId> ids)
+            throws IOException {
+        ItemStateManager ism = getContext().getItemStateManager();
+        Iterator<NodeId> it = ids.iterator();
+        while (it.hasNext()) {
+            List<NodeId> batch = new ArrayList<NodeId>();
+            Collection<Document> modified = new ArrayList<Document>();
+            while (it.hasNext() && batch.size() < reindexBatchSize) {
+                NodeId id = it.next();
+                batch.add(id);
+                try {
+                    modified.add(createDocument(
+                            (NodeState) ism.getItemState(id),
+                            getNamespaceMappings(),
+                            index.getIndexFormatVersion()));
+                } catch (NoSuchItemStateException e) {
+                    // removed in the meantime
+                } catch (ItemStateException e) {
+                    log.warn("Exception while retrieving node: " + id, e);
+                } catch (RepositoryException e) {
+                    log.warn("Exception while creating document for node: "
+                            + id, e);
+                }
+            }
+            index.update(batch, modified);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the parents of the given node differ from
+     * the parents of the node in the index.
+     */
+    private static boolean isMoved(IndexReader reader, TermDocs tDocs,
+                                   NodeState state) throws IOException {
+        Set<String> parents = new HashSet<String>();
+        if (state.getSharedSet().isEmpty()) {
+            if (state.getParentId() != null) {
+                parents.add(state.getParentId().toString());
+            }
+        } else {
+            for (NodeId id : state.getSharedSet()) {
+                parents.add(id.toString());
+            }
+        }
+        tDocs.seek(TermFactory.createUUIDTerm(state.getNodeId().toString()));
+        while (tDocs.next()) {
+            Document doc = reader.document(
+                    tDocs.doc(), FieldSelectors.UUID_AND_PARENT);
+            Set<String> indexed = new HashSet<String>();
+            for (String parent : doc.getValues(FieldNames.PARENT)) {
+                if (parent.length() > 0) {
+                    indexed.add(parent);
+                }
+            }
+            if (!indexed.equals(parents)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     //----------------------------< internal >----------------------------------
 
     /**
@@ -2555,6 +2806,100 @@ public class SearchIndex extends AbstractQueryHandler {
         this.redoLogFactoryClass = className;
     }
 
+    /**
+     * @return the number of threads used to create the initial index.
+     */
+    public int getReindexThreads() {
+        return reindexThreads;
+    }
+
+    /**
+     * Sets the number of threads used to create the initial index. With more
+     * than one thread the node ids are read from the persistence manager in
+     * batches, the documents are created concurrently and written to one
+     * index segment per thread. The segments are merged when all nodes are
+     * indexed. This requires an
+     * {@link org.apache.jackrabbit.core.persistence.IterablePersistenceManager}
+     * and is not used for the index of the <code>jcr:system</code> tree.
+     *
+     * @param reindexThreads the number of threads.
+     */
+    public void setReindexThreads(int reindexThreads) {
+        this.reindexThreads = Math.max(1, reindexThreads);
+    }
+
+    /**
+     * @return the number of node ids read at once when the initial index is
+     *         created with more than one thread, or when the nodes below a
+     *         moved node are re-indexed.
+     */
+    public int getReindexBatchSize() {
+        return reindexBatchSize;
+    }
+
+    /**
+     * Sets the number of node ids read at once when the initial index is
+     * created with more than one thread, or when the nodes below a moved
+     * node are re-indexed.
+     *
+     * @param reindexBatchSize the number of node ids.
+     */
+    public void setReindexBatchSize(int reindexBatchSize) {
+        this.reindexBatchSize = Math.max(1, reindexBatchSize);
+    }
+
+    /**
+     * @return whether documents of nodes the session is not able to read are
+     *         removed while the query is evaluated on the index.
+     */
+    public boolean getEnableAccessFilter() {
+        return enableAccessFilter;
+    }
+
+    /**
+     * Enables the removal of documents of nodes that the session is not able
+     * to read while the query is evaluated on the index. The read access is
+     * checked once per node that holds a <code>rep:ACL</code> policy and the
+     * result applies to all nodes below it, unless an access control entry
+     * has restrictions. The filter requires the default resource based
+     * {@link ACLProvider}: the search index fails to initialize if the
+     * workspace uses another access control provider. This also applies to
+     * a separate security workspace that is created from a workspace
+     * template with the filter enabled. The filter only applies to XPath
+     * and SQL queries of sessions without pending changes. The access check
+     * on the query result is done in any case.
+     *
+     * @param enableAccessFilter whether to filter the documents.
+     */
+    public void setEnableAccessFilter(boolean enableAccessFilter) {
+        this.enableAccessFilter = enableAccessFilter;
+    }
+
+    /**
+     * @return whether the ids of all ancestors of a node are indexed.
+     */
+    public boolean isIndexAncestors() {
+        return indexAncestors;
+    }
+
+    /**
+     * Enables the {@link IndexFormatVersion#V4} index format, which indexes
+     * the ids of all ancestors of a node. Descendant axis queries then look
+     * up the descendants of the context nodes with a term query instead of
+     * resolving the parents of every candidate node. The format is only used
+     * when a new index is created, an existing index must be re-indexed to
+     * make use of it. Moving a node re-indexes all nodes below it. The
+     * parameter can be set for single workspaces. Descendant queries with
+     * the root node or a node of the jcr:system tree as context do not use
+     * the indexed ancestors, so the index of the jcr:system tree does not
+     * need this parameter.
+     *
+     * @param indexAncestors whether the ancestor ids are indexed.
+     */
+    public void setIndexAncestors(boolean indexAncestors) {
+        this.indexAncestors = indexAncestors;
+    }
+
     /**
      * In the case of an initial index build operation, this checks if there are
      * some new nodes pending in the journal and tries to preemptively delete
@@ -17,8 +17,12 @@
 package org.apache.jackrabbit.core.query.lucene;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 
@@ -35,6 +39,13 @@ import org.apache.lucene.index.TermPositions;
  * The lucene FieldCache class has some sort of support for custom comparators
  * but it only works on the basis of a field name. There is no further control
  * over the terms to iterate, that's why we use our own implementation.
+ * <p>
+ * Values of single-valued properties are kept in columns of primitives:
+ * <code>long</code> and <code>double</code> arrays for LONG, DATE and DOUBLE
+ * properties and <code>int</code> ordinals into the distinct values for all
+ * other types. Only properties with multiple values per document are kept
+ * as an array of <code>Comparable</code>s. The values are cached per index
+ * segment and are only read again for a segment that changed.
  */
 public class SharedFieldCache {
 
@@ -51,10 +62,39 @@ public class SharedFieldCache {
         private static final int SPARSE_FACTOR = 100;
 
         /**
-         * Values indexed by document id.
+         * Values indexed by document id, or <code>null</code> if the values
+         * are kept in a column of primitives.
          */
         private final Comparable<?>[] values;
 
+        /**
+         * LONG and DATE values indexed by document id.
+         */
+        private final long[] longs;
+
+        /**
+         * DOUBLE values indexed by document id.
+         */
+        private final double[] doubles;
+
+        /**
+         * The documents that have a value in {@link #longs} or
+         * {@link #doubles}.
+         */
+        private final BitSet set;
+
+        /**
+         * Ordinals into {@link #terms} indexed by document id, -1 if a
+         * document has no value. The ordinals are in the order of the values.
+         */
+        private final int[] ords;
+
+        /**
+         * The distinct values referenced by {@link #ords}, in ascending
+         * order.
+         */
+        private final Comparable<?>[] terms;
+
         /**
          * Values (Comparable) map indexed by document id.
          */
@@ -82,14 +122,221 @@ public class SharedFieldCache {
                 this.values = values;
                 this.valuesMap = null;
             }
+            this.longs = null;
+            this.doubles = null;
+            this.set = null;
+            this.ords = null;
+            this.terms = null;
+        }
+
+        /**
+         * Creates a value index for single-valued properties.
+         *
+         * @param ords      ordinals into <code>terms</code> indexed by document
+         *                  id, -1 if a document has no value. The array is
+         *                  modified if the values are kept as ordinals.
+         * @param terms     the distinct values.
+         * @param setValues the number of documents with a value.
+         * @param type      the property type of all values, or
+         *                  {@link PropertyType#UNDEFINED} if the values have
+         *                  different or unknown types.
+         */
+        ValueIndex(int[] ords, Comparable<?>[] terms, int setValues, int type) {
+            long[] longs = null;
+            double[] doubles = null;
+            BitSet set = null;
+            if (setValues * SPARSE_FACTOR < ords.length) {
+                this.sparse = true;
+                if (setValues == 0) {
+                    this.valuesMap = null;
+                } else {
+                    this.valuesMap = new HashMap<Integer, Comparable<?>>(setValues);
+                    for (int i = 0; i < ords.length; i++) {
+                        if (ords[i] != -1) {
+                            valuesMap.put(i, terms[ords[i]]);
+                        }
+                    }
+                }
+                ords = null;
+                terms = null;
+            } else {
+                this.sparse = false;
+                this.valuesMap = null;
+                if (type == PropertyType.LONG || type == PropertyType.DATE) {
+                    longs = new long[ords.length];
+                    set = new BitSet(ords.length);
+                    for (int i = 0; i < ords.length; i++) {
+                        if (ords[i] != -1) {
+                            longs[i] = (Long) terms[ords[i]];
+                            set.set(i);
+                        }
+                    }
+                    ords = null;
+                    terms = null;
+                } else if (type == PropertyType.DOUBLE) {
+                    doubles = new double[ords.length];
+                    set = new BitSet(ords.length);
+                    for (int i = 0; i < ords.length; i++) {
+                        if (ords[i] != -1) {
+                            doubles[i] = (Double) terms[ords[i]];
+                            set.set(i);
+                        }
+                    }
+                    ords = null;
+                    terms = null;
+                } else {
+                    terms = sortOrdinals(ords, terms);
+                }
+            }
+            this.values = null;
+            this.longs = longs;
+            this.doubles = doubles;
+            this.set = set;
+            this.ords = ords;
+            this.terms = terms;
         }
 
         public Comparable<?> getValue(int i) {
             if (sparse) {
                 return valuesMap == null ? null : valuesMap.get(i);
-            } else {
+            } else if (values != null) {
                 return values[i];
+            } else if (ords != null) {
+                int ord = ords[i];
+                return ord == -1 ? null : terms[ord];
+            } else if (!set.get(i)) {
+                return null;
+            } else if (longs != null) {
+                return longs[i];
+            } else {
+                return doubles[i];
+            }
+        }
+
+        /**
+         * @param i a document id.
+         * @return whether the document has a value.
+         */
+        public boolean hasValue(int i) {
+            if (sparse) {
+                return valuesMap != null && valuesMap.containsKey(i);
+            } else if (values != null) {
+                return values[i] != null;
+            } else if (ords != null) {
+                return ords[i] != -1;
+            } else {
+                return set.get(i);
+            }
+        }
+
+        /**
+         * @return whether the LONG and DATE values are kept in a column of
+         *         longs, see {@link #getLong(int)}.
+         */
+        public boolean hasLongs() {
+            return longs != null;
+        }
+
+        /**
+         * @return whether the DOUBLE values are kept in a column of doubles,
+         *         see {@link #getDouble(int)}.
+         */
+        public boolean hasDoubles() {
+            return doubles != null;
+        }
+
+        /**
+         * @return whether the values are kept as ordinals, see
+         *         {@link #getOrdinal(int)}.
+         */
+        public boolean hasOrdinals() {
+            return ords != null;
+        }
+
+        /**
+         * @param i a document id with a value.
+         * @return the value of the document in the column of longs.
+         */
+        public long getLong(int i) {
+            return longs[i];
+        }
+
+        /**
+         * @param i a document id with a value.
+         * @return the value of the document in the column of doubles.
+         */
+        public double getDouble(int i) {
+            return doubles[i];
+        }
+
+        /**
+         * Returns the ordinal of the value of a document. Ordinals are in the
+         * order of the values they refer to.
+         *
+         * @param i a document id.
+         * @return the ordinal, or -1 if the document has no value.
+         */
+        public int getOrdinal(int i) {
+            return ords[i];
+        }
+
+        /**
+         * Looks up a value among the values that are kept as ordinals.
+         *
+         * @param value a value, not <code>null</code>.
+         * @return the ordinal of the value, or <code>(-(insertion point) - 1)</code>
+         *         if no document has this value, see
+         *         {@link Arrays#binarySearch(Object[], Object)}.
+         */
+        public int getOrdinal(Comparable<?> value) {
+            int lo = 0;
+            int hi = terms.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = Util.compare(terms[mid], value);
+                if (c < 0) {
+                    lo = mid + 1;
+                } else if (c > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
             }
+            return -(lo + 1);
+        }
+
+        /**
+         * Sorts the values and maps the ordinals to the sorted values.
+         *
+         * @param ords  the ordinals, which are updated.
+         * @param terms the values referenced by <code>ords</code>.
+         * @return the distinct values in ascending order.
+         */
+        private static Comparable<?>[] sortOrdinals(int[] ords, final Comparable<?>[] terms) {
+            Integer[] order = new Integer[terms.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer o1, Integer o2) {
+                    return Util.compare(terms[o1], terms[o2]);
+                }
+            });
+            int[] map = new int[terms.length];
+            List<Comparable<?>> sorted = new ArrayList<Comparable<?>>(terms.length);
+            for (Integer i : order) {
+                if (sorted.isEmpty()
+                        || Util.compare(sorted.get(sorted.size() - 1), terms[i]) != 0) {
+                    sorted.add(terms[i]);
+                }
+                map[i] = sorted.size() - 1;
+            }
+            for (int i = 0; i < ords.length; i++) {
+                if (ords[i] != -1) {
+                    ords[i] = map[ords[i]];
+                }
+            }
+            return sorted.toArray(new Comparable<?>[sorted.size()]);
         }
 
         private static Map<Integer, Comparable<?>> getValuesMap(Comparable<?>[] values, int setValues) {
@@ -207,8 +454,6 @@ public class SharedFieldCache {
      * Creates a <code>ValueIndex</code> for a <code>field</code> and a term
      * <code>prefix</code>. The term prefix acts as the property name for the
      * shared <code>field</code>.
-     * <p>
-     * This method is an adapted version of: <code>FieldCacheImpl.getStringIndex()</code>
      *
      * @param reader     the <code>IndexReader</code>.
      * @param field      name of the shared field.
@@ -227,90 +472,192 @@ public class SharedFieldCache {
         field = field.intern();
         ValueIndex ret = lookup(reader, field, prefix);
         if (ret == null) {
-            final int maxDocs = reader.maxDoc();
-            Comparable<?>[] retArray = new Comparable<?>[maxDocs];
-            Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
-            boolean usingSimpleComparable = true;
-            int setValues = 0;
-            if (maxDocs > 0) {
-                IndexFormatVersion version = IndexFormatVersion.getVersion(reader);
-                boolean hasPayloads = version.isAtLeast(IndexFormatVersion.V3);
-                TermDocs termDocs;
-                byte[] payload = null;
-                int type;
-                if (hasPayloads) {
-                    termDocs = reader.termPositions();
-                    payload = new byte[1];
-                } else {
-                    termDocs = reader.termDocs();
+            ret = createColumnIndex(reader, field, prefix);
+            if (ret == null) {
+                // multi-valued properties are compared as arrays
+                ret = createComparableIndex(reader, field, prefix);
+            }
+            store(reader, field, prefix, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Creates a <code>ValueIndex</code> that keeps the values in a column of
+     * primitives.
+     *
+     * @param reader the <code>IndexReader</code>.
+     * @param field  name of the shared field.
+     * @param prefix the property name, will be used as term prefix.
+     * @return the value index, or <code>null</code> if a document has more
+     *         than one value.
+     * @throws IOException if an error occurs while reading from the index.
+     */
+    private ValueIndex createColumnIndex(IndexReader reader, String field,
+            String prefix) throws IOException {
+        final int maxDocs = reader.maxDoc();
+        int[] ords = new int[maxDocs];
+        Arrays.fill(ords, -1);
+        List<Comparable<?>> terms = new ArrayList<Comparable<?>>();
+        int commonType = -1;
+        int setValues = 0;
+        if (maxDocs > 0) {
+            IndexFormatVersion version = IndexFormatVersion.getVersion(reader);
+            boolean hasPayloads = version.isAtLeast(IndexFormatVersion.V3);
+            TermDocs termDocs;
+            byte[] payload = null;
+            if (hasPayloads) {
+                termDocs = reader.termPositions();
+                payload = new byte[1];
+            } else {
+                termDocs = reader.termDocs();
+            }
+            TermEnum termEnum = reader.terms(new Term(field, prefix));
+            try {
+                if (termEnum.term() == null) {
+                    throw new RuntimeException("no terms in field " + field);
                 }
-                TermEnum termEnum = reader.terms(new Term(field, prefix));
-                try {
-                    if (termEnum.term() == null) {
-                        throw new RuntimeException("no terms in field " + field);
+                do {
+                    Term term = termEnum.term();
+                    if (term.field() != field || !term.text().startsWith(prefix)) {
+                        break;
                     }
-                    do {
-                        Term term = termEnum.term();
-                        if (term.field() != field || !term.text().startsWith(prefix)) {
-                            break;
+                    final String value = termValueAsString(term, prefix);
+                    int ord = -1;
+                    int ordType = PropertyType.UNDEFINED;
+                    termDocs.seek(term);
+                    while (termDocs.next()) {
+                        int type = PropertyType.UNDEFINED;
+                        if (hasPayloads) {
+                            TermPositions termPos = (TermPositions) termDocs;
+                            termPos.nextPosition();
+                            if (termPos.isPayloadAvailable()) {
+                                payload = termPos.getPayload(payload, 0);
+                                type = PropertyMetaData.fromByteArray(payload).getPropertyType();
+                            }
                         }
-                        final String value = termValueAsString(term, prefix);
-                        termDocs.seek(term);
-                        while (termDocs.next()) {
-                            int termPosition = 0;
-                            type = PropertyType.UNDEFINED;
-                            if (hasPayloads) {
-                                TermPositions termPos = (TermPositions) termDocs;
-                                termPosition = termPos.nextPosition();
-                                if (termPos.isPayloadAvailable()) {
-                                    payload = termPos.getPayload(payload, 0);
-                                    type = PropertyMetaData.fromByteArray(payload).getPropertyType();
-                                }
+                        int doc = termDocs.doc();
+                        if (ords[doc] != -1) {
+                            return null;
+                        }
+                        if (ord == -1 || type != ordType) {
+                            terms.add(getValue(value, type));
+                            ord = terms.size() - 1;
+                            ordType = type;
+                        }
+                        ords[doc] = ord;
+                        setValues++;
+                        if (commonType == -1) {
+                            commonType = type;
+                        } else if (commonType != type) {
+                            commonType = PropertyType.UNDEFINED;
+                        }
+                    }
+                } while (termEnum.next());
+            } finally {
+                termDocs.close();
+                termEnum.close();
+            }
+        }
+        return new ValueIndex(ords, terms.toArray(new Comparable<?>[terms.size()]),
+                setValues, commonType == -1 ? PropertyType.UNDEFINED : commonType);
+    }
+
+    /**
+     * Creates a <code>ValueIndex</code> that keeps the values in an array of
+     * <code>Comparable</code>s. Documents with multiple values have a
+     * {@link ComparableArray}.
+     * <p>
+     * This method is an adapted version of: <code>FieldCacheImpl.getStringIndex()</code>
+     *
+     * @param reader the <code>IndexReader</code>.
+     * @param field  name of the shared field.
+     * @param prefix the property name, will be used as term prefix.
+     * @return the value index.
+     * @throws IOException if an error occurs while reading from the index.
+     */
+    private ValueIndex createComparableIndex(IndexReader reader, String field,
+            String prefix) throws IOException {
+        final int maxDocs = reader.maxDoc();
+        Comparable<?>[] retArray = new Comparable<?>[maxDocs];
+        Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+        boolean usingSimpleComparable = true;
+        int setValues = 0;
+        if (maxDocs > 0) {
+            IndexFormatVersion version = IndexFormatVersion.getVersion(reader);
+            boolean hasPayloads = version.isAtLeast(IndexFormatVersion.V3);
+            TermDocs termDocs;
+            byte[] payload = null;
+            int type;
+            if (hasPayloads) {
+                termDocs = reader.termPositions();
+                payload = new byte[1];
+            } else {
+                termDocs = reader.termDocs();
+            }
+            TermEnum termEnum = reader.terms(new Term(field, prefix));
+            try {
+                if (termEnum.term() == null) {
+                    throw new RuntimeException("no terms in field " + field);
+                }
+                do {
+                    Term term = termEnum.term();
+                    if (term.field() != field || !term.text().startsWith(prefix)) {
+                        break;
+                    }
+                    final String value = termValueAsString(term, prefix);
+                    termDocs.seek(term);
+                    while (termDocs.next()) {
+                        int termPosition = 0;
+                        type = PropertyType.UNDEFINED;
+                        if (hasPayloads) {
+                            TermPositions termPos = (TermPositions) termDocs;
+                            termPosition = termPos.nextPosition();
+                            if (termPos.isPayloadAvailable()) {
+                                payload = termPos.getPayload(payload, 0);
+                                type = PropertyMetaData.fromByteArray(payload).getPropertyType();
                             }
-                            setValues++;
-                            Comparable<?> v = getValue(value, type);
-                            int doc = termDocs.doc();
-                            Comparable<?> ca = retArray[doc];
-                            if (ca == null) {
-                                if (usingSimpleComparable) {
-                                    // put simple value on the queue
-                                    positions.put(doc, termPosition);
-                                    retArray[doc] = v;
-                                } else {
-                                    retArray[doc] = new ComparableArray(v,
-                                            termPosition);
-                                }
+                        }
+                        setValues++;
+                        Comparable<?> v = getValue(value, type);
+                        int doc = termDocs.doc();
+                        Comparable<?> ca = retArray[doc];
+                        if (ca == null) {
+                            if (usingSimpleComparable) {
+                                // put simple value on the queue
+                                positions.put(doc, termPosition);
+                                retArray[doc] = v;
+                            } else {
+                                retArray[doc] = new ComparableArray(v,
+                                        termPosition);
+                            }
+                        } else {
+                            if (ca instanceof ComparableArray) {
+                                ((ComparableArray) ca).insert(v,
+                                        termPosition);
                             } else {
-                                if (ca instanceof ComparableArray) {
-                                    ((ComparableArray) ca).insert(v,
-                                            termPosition);
-                                } else {
-                                    // transform all of the existing values from
-                                    // Comparable to ComparableArray
-                                    for (int pos : positions.keySet()) {
-                                        retArray[pos] = new ComparableArray(
-                                                retArray[pos],
-                                                positions.get(pos));
-                                    }
-                                    positions = null;
-                                    usingSimpleComparable = false;
-                                    ComparableArray caNew = (ComparableArray) retArray[doc];
-                                    retArray[doc] = caNew.insert(v,
-                                            termPosition);
+                                // transform all of the existing values from
+                                // Comparable to ComparableArray
+                                for (int pos : positions.keySet()) {
+                                    retArray[pos] = new ComparableArray(
+                                            retArray[pos],
+                                            positions.get(pos));
                                 }
+                                positions = null;
+                                usingSimpleComparable = false;
+                                ComparableArray caNew = (ComparableArray) retArray[doc];
+                                retArray[doc] = caNew.insert(v,
+                                        termPosition);
                             }
                         }
-                    } while (termEnum.next());
-                } finally {
-                    termDocs.close();
-                    termEnum.close();
-                }
+                    }
+                } while (termEnum.next());
+            } finally {
+                termDocs.close();
+                termEnum.close();
             }
-            ValueIndex value = new ValueIndex(retArray, setValues);
-            store(reader, field, prefix, value);
-            return value;
         }
-        return ret;
+        return new ValueIndex(retArray, setValues);
     }
 
     /**
@@ -163,6 +163,12 @@ public class SharedFieldComparatorSource extends FieldComparatorSource {
             return indexes[idx].getValue(doc - starts[idx]);
         }
 
+        @Override
+        public int compareBottom(int doc) {
+            int idx = readerIndex(doc);
+            return compareBottom(indexes[idx], doc - starts[idx]);
+        }
+
     }
 
     /**
@@ -194,6 +194,35 @@ abstract class JoinMerger {
     public QueryResult merge(RowIterator leftRows, RowIterator rightRows,
             Set<Row> excludingOuterJoinRowsSet, Comparator<Row> rowComparator)
             throws RepositoryException {
+        if (JCR_JOIN_TYPE_INNER.equals(type) && isSmaller(leftRows, rightRows)) {
+            // build the hash table on the smaller left side and probe it
+            // with the right rows
+            Map<String, List<LeftEntry>> map = buildLeftRowValues(leftRows);
+            List<MergedRow> merged = new ArrayList<MergedRow>();
+            if (!map.isEmpty()) {
+                for (Row rightRow : new RowIterable(rightRows)) {
+                    for (String value : getRightValues(rightRow)) {
+                        List<LeftEntry> matchingEntries = map.get(value);
+                        if (matchingEntries != null) {
+                            for (LeftEntry entry : matchingEntries) {
+                                merged.add(new MergedRow(entry,
+                                        mergeRow(entry.row, rightRow)));
+                            }
+                        }
+                    }
+                }
+            }
+            // return the rows in the same left-major order as the merge
+            // that hashes the right rows. the sort is stable, so the right
+            // rows of an entry stay in their original order
+            Collections.sort(merged);
+            List<Row> rows = new ArrayList<Row>(merged.size());
+            for (MergedRow row : merged) {
+                rows.add(row.row);
+            }
+            return asQueryResult(new RowIteratorAdapter(rows));
+        }
+
         Map<String, List<Row>> map = buildRightRowValues(rightRows);
 
         if (JCR_JOIN_TYPE_INNER.equals(type) && !map.isEmpty()) {
@@ -228,6 +257,11 @@ abstract class JoinMerger {
                         Collections.emptySet()));
             }
 
+            RowPathSet excludingOuterJoinRows = null;
+            if (excludingOuterJoinRowsSet != null) {
+                excludingOuterJoinRows =
+                    new RowPathSet(excludingOuterJoinRowsSet, rowComparator);
+            }
             List<Row> rows = new ArrayList<Row>();
             for (Row leftRow : new RowIterable(leftRows)) {
                 Set<String> leftValues = getLeftValues(leftRow);
@@ -240,26 +274,9 @@ abstract class JoinMerger {
                         for (Row rightRow : matchingRows) {
                             // I have possible WHERE clauses on the join that I
                             // need to look at for each rightRow
-                            if (excludingOuterJoinRowsSet == null) {
+                            if (excludingOuterJoinRows == null
+                                    || excludingOuterJoinRows.contains(rightRow)) {
                                 rows.add(mergeRow(leftRow, rightRow));
-                            } else {
-                                boolean isIncluded = false;
-                                // apparently
-                                // 'excludingOuterJoinRowsSet.contains' fails to
-                                // match rows
-
-                                // TODO can 'rightRow.getNode()' break because
-                                // of joins that are bigger than 2 way?
-                                // how does this perform for 3 way joins ?
-                                for (Row r : excludingOuterJoinRowsSet) {
-                                    if(rowComparator.compare(rightRow, r) == 0){
-                                        isIncluded = true;
-                                        break;
-                                    }
-                                }
-                                if (isIncluded) {
-                                    rows.add(mergeRow(leftRow, rightRow));
-                                }
                             }
                         }
                     } else {
@@ -280,6 +297,35 @@ abstract class JoinMerger {
         return new SimpleQueryResult(columnNames, selectorNames, rowIterator);
     }
 
+    /**
+     * Returns <code>true</code> if the left rows are known to be fewer than
+     * the right rows.
+     */
+    private static boolean isSmaller(RowIterator leftRows, RowIterator rightRows) {
+        long left = leftRows.getSize();
+        long right = rightRows.getSize();
+        return left >= 0 && right >= 0 && left < right;
+    }
+
+    private Map<String, List<LeftEntry>> buildLeftRowValues(RowIterator leftRows)
+            throws RepositoryException {
+        Map<String, List<LeftEntry>> map = new HashMap<String, List<LeftEntry>>();
+        int index = 0;
+        for (Row row : new RowIterable(leftRows)) {
+            int valueIndex = 0;
+            for (String value : getLeftValues(row)) {
+                List<LeftEntry> entries = map.get(value);
+                if (entries == null) {
+                    entries = new ArrayList<LeftEntry>();
+                    map.put(value, entries);
+                }
+                entries.add(new LeftEntry(row, index, valueIndex++));
+            }
+            index++;
+        }
+        return map;
+    }
+
     private Map<String, List<Row>> buildRightRowValues(RowIterator rightRows)
             throws RepositoryException {
         Map<String, List<Row>> map = new HashMap<String, List<Row>>();
@@ -318,4 +364,50 @@ abstract class JoinMerger {
     public abstract List<Constraint> getRightJoinConstraints(Collection<Row> leftRows)
             throws RepositoryException;
 
+    /**
+     * A left row in the hash table of an inner join, with the position of
+     * the row among the left rows and of the join value among its values.
+     */
+    private static class LeftEntry {
+
+        private final Row row;
+
+        private final int index;
+
+        private final int valueIndex;
+
+        private LeftEntry(Row row, int index, int valueIndex) {
+            this.row = row;
+            this.index = index;
+            this.valueIndex = valueIndex;
+        }
+
+    }
+
+    /**
+     * A joined row, ordered by the position of its left entry.
+     */
+    private static class MergedRow implements Comparable<MergedRow> {
+
+        private final LeftEntry entry;
+
+        private final Row row;
+
+        private MergedRow(LeftEntry entry, Row row) {
+            this.entry = entry;
+            this.row = row;
+        }
+
+        public int compareTo(MergedRow other) {
+            if (entry.index != other.entry.index) {
+                return entry.index < other.entry.index ? -1 : 1;
+            }
+            if (entry.valueIndex != other.entry.valueIndex) {
+                return entry.valueIndex < other.entry.valueIndex ? -1 : 1;
+            }
+            return 0;
+        }
+
+    }
+
 }
@@ -518,8 +518,11 @@ public class QueryEngine {
                     .equals(o.getOrder());
             if (JcrConstants.JCR_SCORE.equals(p)) {
                 sortFields.add(new SortField(null, SortField.SCORE, !isAsc));
+            } else if (o.getOperand() instanceof PropertyValue) {
+                // use the property values cached from the index
+                sortFields.add(lqf.createSortField(
+                        (PropertyValue) o.getOperand(), !isAsc));
             } else {
-                // TODO use native sort if available
                 sortFields.add(new SortField(p, dofcs, !isAsc));
             }
         }
@@ -43,6 +43,14 @@ public class RowPathComparator implements Comparator<Row> {
         this(null);
     }
 
+    /**
+     * @return the selectors whose paths are compared, or <code>null</code>
+     *         if the paths of the rows are compared.
+     */
+    Collection<String> getSelectors() {
+        return selectors;
+    }
+
     /**
      * Compares two rows.
      */
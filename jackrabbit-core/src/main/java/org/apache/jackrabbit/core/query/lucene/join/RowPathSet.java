@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene.join;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.query.Row;
+
+/**
+ * A set of rows that finds the rows equal to a given row according to a
+ * {@link RowPathComparator} with a hash lookup of the selector paths.
+ * <p>
+ * The comparator treats a <code>null</code> path, as found in the rows of
+ * an outer join, as equal to any path. Rows with such paths are compared
+ * one by one, all others are found through their paths.
+ */
+class RowPathSet {
+
+    private final Collection<Row> rows;
+
+    private final Comparator<Row> comparator;
+
+    /**
+     * The selectors of the comparator or <code>null</code> if the rows are
+     * always compared one by one.
+     */
+    private final Collection<String> selectors;
+
+    /**
+     * The paths of the rows that have no <code>null</code> path.
+     */
+    private final Set<List<String>> paths = new HashSet<List<String>>();
+
+    /**
+     * The rows that have a <code>null</code> path.
+     */
+    private final List<Row> wildcards = new ArrayList<Row>();
+
+    /**
+     * Creates a new set.
+     *
+     * @param rows       the rows in the set.
+     * @param comparator decides whether two rows are equal.
+     */
+    RowPathSet(Collection<Row> rows, Comparator<Row> comparator) {
+        this.rows = rows;
+        this.comparator = comparator;
+        if (comparator instanceof RowPathComparator) {
+            this.selectors = ((RowPathComparator) comparator).getSelectors();
+        } else {
+            this.selectors = null;
+        }
+        if (selectors != null) {
+            for (Row row : rows) {
+                List<String> key = getPaths(row);
+                if (key != null) {
+                    paths.add(key);
+                } else {
+                    wildcards.add(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if this set contains a row that is equal to
+     * the given row according to the comparator.
+     *
+     * @param row a row.
+     * @return whether an equal row is in this set.
+     */
+    boolean contains(Row row) {
+        List<String> key = null;
+        if (selectors != null) {
+            key = getPaths(row);
+        }
+        if (key == null) {
+            return contains(rows, row);
+        }
+        return paths.contains(key) || contains(wildcards, row);
+    }
+
+    private boolean contains(Collection<Row> candidates, Row row) {
+        for (Row candidate : candidates) {
+            if (comparator.compare(row, candidate) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the paths of the row for the selectors, or <code>null</code>
+     * if one of them is <code>null</code>. A selector that does not exist
+     * in the row is represented by a <code>null</code> element.
+     */
+    private List<String> getPaths(Row row) {
+        List<String> key = new ArrayList<String>(selectors.size());
+        for (String selector : selectors) {
+            try {
+                String path = row.getPath(selector);
+                if (path == null) {
+                    return null;
+                }
+                key.add(path);
+            } catch (RepositoryException e) {
+                key.add(null);
+            }
+        }
+        return key;
+    }
+}
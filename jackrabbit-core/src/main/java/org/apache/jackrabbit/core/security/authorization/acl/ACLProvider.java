@@ -105,6 +105,12 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
      */
     private EntryCollector entryCollector;
 
+    /**
+     * Cache of READ evaluations shared by the compiled permissions of all
+     * sessions with the same set of principals.
+     */
+    private final ReadPermissionCache readPermissionCache = new ReadPermissionCache();
+
     /**
      * controls if unknown principals are allowed in ACLs
      */
@@ -132,12 +138,15 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
         }
 
         entryCollector = createEntryCollector(session);
+        entryCollector.addListener(readPermissionCache);
     }
 
     @Override
     public void close() {
         super.close();        
+        entryCollector.removeListener(readPermissionCache);
         entryCollector.close();
+        readPermissionCache.clear();
     }
 
     /**
@@ -251,7 +260,7 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
         } else if (isReadOnly(principals)) {
             return getReadOnlyPermissions();
         } else {
-            return new CompiledPermissionsImpl(principals, session, entryCollector, this, true);
+            return new CompiledPermissionsImpl(principals, session, entryCollector, this, readPermissionCache, true);
         }
     }
 
@@ -263,7 +272,7 @@ public class ACLProvider extends AbstractAccessControlProvider implements Access
         if (isAdminOrSystem(principals)) {
             return true;
         } else {
-            CompiledPermissions cp = new CompiledPermissionsImpl(principals, session, entryCollector, this, false);
+            CompiledPermissions cp = new CompiledPermissionsImpl(principals, session, entryCollector, this, readPermissionCache, false);
             try {
                 return cp.canRead(null, rootNodeId);
             } finally {
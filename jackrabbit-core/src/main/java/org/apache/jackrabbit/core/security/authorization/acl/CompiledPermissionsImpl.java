@@ -63,9 +63,11 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
     );
 
     private final List<String> principalNames;
+    private final Set<String> principalFingerprint;
     private final SessionImpl session;
     private final EntryCollector entryCollector;
     private final AccessControlUtils util;
+    private final ReadPermissionCache sharedCache;
 
     /*
      * Start with initial map size of 1024 and grow up to 5000 before
@@ -79,14 +81,23 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
     CompiledPermissionsImpl(Set<Principal> principals, SessionImpl session,
                             EntryCollector entryCollector, AccessControlUtils util,
                             boolean listenToEvents) throws RepositoryException {
+        this(principals, session, entryCollector, util, null, listenToEvents);
+    }
+
+    CompiledPermissionsImpl(Set<Principal> principals, SessionImpl session,
+                            EntryCollector entryCollector, AccessControlUtils util,
+                            ReadPermissionCache sharedCache,
+                            boolean listenToEvents) throws RepositoryException {
         this.session = session;
         this.entryCollector = entryCollector;
         this.util = util;
+        this.sharedCache = (sharedCache != null && sharedCache.isEnabled()) ? sharedCache : null;
 
         principalNames = new ArrayList<String>(principals.size());
         for (Principal princ : principals) {
             principalNames.add(princ.getName());
         }
+        principalFingerprint = ReadPermissionCache.fingerprint(principalNames);
 
         if (listenToEvents) {
             /*
@@ -249,6 +260,22 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
             if (readCache.containsKey(id)) {
                 canRead = readCache.get(id);
             } else {
+                // the evaluation resolves the item and its ac content
+                // through this session. only if the session has no pending
+                // changes does the result depend on the principals and the
+                // persisted content alone and can be shared with other
+                // sessions of the same principals.
+                boolean shared = sharedCache != null && !session.hasPendingChanges();
+                if (shared) {
+                    Boolean cached = sharedCache.get(principalFingerprint, id);
+                    if (cached != null) {
+                        canRead = cached;
+                        readCache.put(id, canRead);
+                        return canRead;
+                    }
+                }
+                long generation = shared ? sharedCache.getGeneration() : 0;
+
                 ItemManager itemMgr = session.getItemManager();
                 NodeId nodeId = (isExistingNode) ? (NodeId) id : ((PropertyId) id).getParentId();
                 NodeImpl node = (NodeImpl) itemMgr.getItem(nodeId);
@@ -281,6 +308,9 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
                     }
                 }
                 readCache.put(id, canRead);
+                if (shared) {
+                    sharedCache.put(principalFingerprint, id, canRead, generation);
+                }
             }
         }
         return canRead;
@@ -292,6 +322,11 @@ class CompiledPermissionsImpl extends AbstractCompiledPermissions implements Acc
      */
     public void acModified(AccessControlModifications modifications) {
         // ignore the details of the modifications and clear all caches.
+        // the shared cache is cleared first as listeners are notified in
+        // no particular order.
+        if (sharedCache != null) {
+            sharedCache.clear();
+        }
         clearCache();
     }
 }
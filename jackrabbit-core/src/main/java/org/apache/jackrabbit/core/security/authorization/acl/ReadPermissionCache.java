@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import org.apache.jackrabbit.core.cache.GrowingLRUMap;
+import org.apache.jackrabbit.core.id.ItemId;
+import org.apache.jackrabbit.core.security.authorization.AccessControlListener;
+import org.apache.jackrabbit.core.security.authorization.AccessControlModifications;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <code>ReadPermissionCache</code> is a repository-wide cache of READ
+ * evaluations shared by all <code>CompiledPermissionsImpl</code> instances
+ * created by the same {@link ACLProvider}. Entries are keyed by the set of
+ * principal names of the evaluating session and the id of the item, such that
+ * sessions with the same principals (e.g. anonymous or members of the same
+ * groups) do not need to evaluate the same item again. Only sessions
+ * without pending changes use the cache, as the evaluation of a session
+ * with transient modifications depends on its transient hierarchy.
+ * <p>
+ * The cache is registered as {@link AccessControlListener} with the entry
+ * collector and drops all entries upon any access control modification. A
+ * generation counter prevents results that were calculated before an
+ * invalidation from being added afterwards.
+ * <p>
+ * The maximum number of entries can be configured with the system property
+ * {@link #MAX_SIZE_KEY}; a value of <code>0</code> disables the cache.
+ */
+class ReadPermissionCache implements AccessControlListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadPermissionCache.class);
+
+    static final String MAX_SIZE_KEY = "org.apache.jackrabbit.core.security.authorization.acl.ReadPermissionCache.maxSize";
+
+    static final int DEFAULT_MAX_SIZE = 50000;
+
+    private final int maxSize;
+
+    private final Map<Key, Boolean> cache;
+
+    /**
+     * Incremented upon each invalidation; guarded by <code>cache</code>.
+     */
+    private long generation;
+
+    ReadPermissionCache() {
+        this(Integer.getInteger(MAX_SIZE_KEY, DEFAULT_MAX_SIZE));
+    }
+
+    @SuppressWarnings("unchecked")
+    ReadPermissionCache(int maxSize) {
+        this.maxSize = maxSize;
+        cache = new GrowingLRUMap(Math.max(16, Math.min(1024, maxSize)), maxSize);
+        log.debug("Shared read permission cache size = {}", maxSize);
+    }
+
+    /**
+     * Creates the fingerprint identifying the given set of principal names.
+     *
+     * @param principalNames The principal names of a session.
+     * @return An immutable representation of the principal names that is
+     * independent of iteration order.
+     */
+    static Set<String> fingerprint(Collection<String> principalNames) {
+        return Collections.unmodifiableSet(new TreeSet<String>(principalNames));
+    }
+
+    boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Returns the current generation, which must be passed to
+     * {@link #put(Set, ItemId, boolean, long)} when adding a result that was
+     * calculated after calling this method.
+     *
+     * @return the current generation.
+     */
+    long getGeneration() {
+        synchronized (cache) {
+            return generation;
+        }
+    }
+
+    /**
+     * @param principals The principal fingerprint.
+     * @param id The id of the item.
+     * @return The cached READ evaluation or <code>null</code>.
+     */
+    Boolean get(Set<String> principals, ItemId id) {
+        if (!isEnabled()) {
+            return null;
+        }
+        synchronized (cache) {
+            return cache.get(new Key(principals, id));
+        }
+    }
+
+    /**
+     * Adds the given READ evaluation unless the cache has been invalidated
+     * since <code>generation</code> was obtained.
+     */
+    void put(Set<String> principals, ItemId id, boolean canRead, long generation) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (cache) {
+            if (this.generation == generation) {
+                cache.put(new Key(principals, id), canRead);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        synchronized (cache) {
+            generation++;
+            cache.clear();
+        }
+    }
+
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    //------------------------------------------< AccessControlListener >---
+    /**
+     * @see AccessControlListener#acModified(org.apache.jackrabbit.core.security.authorization.AccessControlModifications)
+     */
+    public void acModified(AccessControlModifications modifications) {
+        // any modification (including moves) may change the READ evaluation
+        // of an arbitrary number of items -> clear the complete cache.
+        clear();
+    }
+
+    //--------------------------------------------------------------------------
+    private static final class Key {
+
+        private final Set<String> principals;
+        private final ItemId id;
+        private final int hash;
+
+        private Key(Set<String> principals, ItemId id) {
+            this.principals = principals;
+            this.id = id;
+            this.hash = 31 * principals.hashCode() + id.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                return hash == other.hash && id.equals(other.id)
+                        && (principals == other.principals || principals.equals(other.principals));
+            }
+            return false;
+        }
+    }
+}
@@ -16,11 +16,10 @@
  */
 package org.apache.jackrabbit.core.state;
 
-import org.apache.commons.collections.map.LinkedMap;
 import org.apache.jackrabbit.core.id.NodeId;
-import org.apache.jackrabbit.core.util.EmptyLinkedMap;
 import org.apache.jackrabbit.spi.Name;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Collections;
@@ -31,24 +30,87 @@ import java.util.Map;
  * <code>ChildNodeEntries</code> represents an insertion-ordered
  * collection of <code>ChildNodeEntry</code>s that also maintains
  * the index values of same-name siblings on insertion and removal.
+ * <p>
+ * The names and identifiers of the entries are kept in arrays rather than
+ * in <code>ChildNodeEntry</code> instances, which are only created when
+ * the entries are read. Every entry has a sequence number that increases
+ * in the order of the entries. The entries are stored in chunks of at most
+ * {@link #CHUNK_SIZE} entries ordered by their sequence numbers. Once there
+ * are more than {@link #MAX_SCANNED_SIZE} entries, the sequence numbers
+ * are also indexed by identifier and by name in open addressing hash
+ * tables, which are split into segments.
+ * <p>
+ * A clone shares the chunks and index segments with the original. Only the
+ * chunk and the index segments that are modified are copied, so adding or
+ * removing an entry of a large shared collection does not copy all entries.
  */
 class ChildNodeEntries implements Cloneable {
 
     /**
-     * Insertion-ordered map of entries
-     * (key=NodeId, value=entry)
+     * The maximum number of entries per chunk.
      */
-    private LinkedMap entries;
+    private static final int CHUNK_SIZE = 256;
 
     /**
-     * Map used for lookup by name
-     * (key=name, value=either a single entry or a list of sns entries)
+     * The number of entries up to which the entries are not indexed, but
+     * scanned.
      */
-    private Map<Name, Object> nameMap;
+    private static final int MAX_SCANNED_SIZE = 16;
 
     /**
-     * Indicates whether the entries and nameMap are shared with another
-     * ChildNodeEntries instance.
+     * The average number of entries per index segment above which the
+     * number of segments is doubled.
+     */
+    private static final int SEGMENT_SIZE = 512;
+
+    private static final Chunk[] NO_CHUNKS = new Chunk[0];
+
+    /**
+     * The chunks of entries, ordered by sequence number. Only the first
+     * {@link #chunkCount} elements are used, none of them is empty.
+     */
+    private Chunk[] chunks;
+
+    private int chunkCount;
+
+    /**
+     * The number of entries.
+     */
+    private int size;
+
+    /**
+     * The sequence number of the last added entry.
+     */
+    private int lastSeq;
+
+    /**
+     * Index segments of the sequence numbers by identifier, or
+     * <code>null</code> if the entries are not indexed.
+     */
+    private SeqTable[] idIndex;
+
+    /**
+     * Index segments of the sequence number of the first entry by name,
+     * or <code>null</code> if the entries are not indexed.
+     */
+    private SeqTable[] nameIndex;
+
+    /**
+     * The sequence numbers of the entries by name, for names with more than
+     * one entry, or <code>null</code> if the entries are not indexed. The
+     * arrays are never modified, they are replaced.
+     */
+    private Map<Name, int[]> siblings;
+
+    /**
+     * The chunks and index segments owned by this instance may be modified
+     * in place, all others are copied before they are modified.
+     */
+    private Object owner;
+
+    /**
+     * Indicates whether the chunk and segment arrays and the siblings map
+     * are shared with another ChildNodeEntries instance.
      */
     private boolean shared;
 
@@ -57,85 +119,103 @@ class ChildNodeEntries implements Cloneable {
     }
 
     ChildNodeEntry get(NodeId id) {
-        return (ChildNodeEntry) entries.get(id);
+        int seq = findId(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (seq == 0) {
+            return null;
+        }
+        Chunk chunk = chunks[chunkOf(seq)];
+        int pos = chunk.position(seq);
+        Name name = chunk.names[pos];
+        return new ChildNodeEntry(name, id, indexOf(seq, name));
     }
 
-    @SuppressWarnings("unchecked")
     List<ChildNodeEntry> get(Name nodeName) {
-        Object obj = nameMap.get(nodeName);
-        if (obj == null) {
-            return Collections.emptyList();
+        if (idIndex != null) {
+            int[] seqs = siblings.get(nodeName);
+            if (seqs == null) {
+                int seq = findFirst(nodeName);
+                if (seq == 0) {
+                    return Collections.emptyList();
+                }
+                return Collections.singletonList(entry(seq, 1));
+            }
+            List<ChildNodeEntry> list = new ArrayList<ChildNodeEntry>(seqs.length);
+            for (int i = 0; i < seqs.length; i++) {
+                list.add(entry(seqs[i], i + 1));
+            }
+            return Collections.unmodifiableList(list);
         }
-        if (obj instanceof List<?>) {
-            // map entry is a list of siblings
-            return Collections.unmodifiableList((List<ChildNodeEntry>) obj);
-        } else {
-            // map entry is a single child node entry
-            return Collections.singletonList((ChildNodeEntry) obj);
+
+        List<ChildNodeEntry> list = Collections.emptyList();
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            for (int pos = 0; pos < chunk.size; pos++) {
+                if (nodeName.equals(chunk.names[pos])) {
+                    if (list.isEmpty()) {
+                        list = new ArrayList<ChildNodeEntry>();
+                    }
+                    list.add(chunk.entry(pos, list.size() + 1));
+                }
+            }
         }
+        return Collections.unmodifiableList(list);
     }
 
-    @SuppressWarnings("unchecked")
     ChildNodeEntry get(Name nodeName, int index) {
         if (index < 1) {
             throw new IllegalArgumentException("index is 1-based");
         }
-
-        Object obj = nameMap.get(nodeName);
-        if (obj == null) {
+        int seq = findSibling(nodeName, index);
+        if (seq == 0) {
             return null;
         }
-        if (obj instanceof List<?>) {
-            // map entry is a list of siblings
-            List<ChildNodeEntry> siblings = (List<ChildNodeEntry>) obj;
-            if (index <= siblings.size()) {
-                return siblings.get(index - 1);
-            }
-        } else {
-            // map entry is a single child node entry
-            if (index == 1) {
-                return (ChildNodeEntry) obj;
-            }
-        }
-        return null;
+        return entry(seq, index);
     }
 
-    @SuppressWarnings("unchecked")
     ChildNodeEntry add(Name nodeName, NodeId id) {
+        if (lastSeq == Integer.MAX_VALUE) {
+            // renumber the entries
+            List<ChildNodeEntry> list = list();
+            init();
+            addAll(list);
+        }
         ensureModifiable();
-        List<ChildNodeEntry> siblings = null;
-        int index = 0;
-        Object obj = nameMap.get(nodeName);
-        if (obj != null) {
-            if (obj instanceof List<?>) {
-                // map entry is a list of siblings
-                siblings = (List<ChildNodeEntry>) obj;
-                if (siblings.size() > 0) {
-                    // reuse immutable Name instance from 1st same name sibling
-                    // in order to help gc conserving memory
-                    nodeName = siblings.get(0).getName();
-                }
-            } else {
-                // map entry is a single child node entry,
-                // convert to siblings list
-                siblings = new ArrayList<ChildNodeEntry>();
-                siblings.add((ChildNodeEntry) obj);
-                nameMap.put(nodeName, siblings);
-            }
-            index = siblings.size();
+
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        if (findId(msb, lsb) != 0) {
+            remove(id);
         }
 
-        index++;
+        int first = findFirst(nodeName);
+        if (first != 0) {
+            // reuse immutable Name instance from 1st same name sibling
+            // in order to help gc conserving memory
+            Chunk chunk = chunks[chunkOf(first)];
+            nodeName = chunk.names[chunk.position(first)];
+        }
+
+        int seq = ++lastSeq;
+        if (chunkCount == 0 || chunks[chunkCount - 1].size == CHUNK_SIZE) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(4, chunkCount * 2));
+            }
+            chunks[chunkCount++] = new Chunk(owner);
+        }
+        writableChunk(chunkCount - 1).add(seq, nodeName, msb, lsb);
+        size++;
 
-        ChildNodeEntry entry = new ChildNodeEntry(nodeName, id, index);
-        if (siblings != null) {
-            siblings.add(entry);
+        if (idIndex == null) {
+            if (size > MAX_SCANNED_SIZE) {
+                buildIndex(1);
+            }
+        } else if (size > idIndex.length * SEGMENT_SIZE) {
+            buildIndex(idIndex.length * 2);
         } else {
-            nameMap.put(nodeName, entry);
+            indexEntry(seq, nodeName, msb, lsb);
         }
-        entries.put(id, entry);
 
-        return entry;
+        return new ChildNodeEntry(nodeName, id, indexOf(seq, nodeName));
     }
 
     void addAll(List<ChildNodeEntry> entriesList) {
@@ -146,65 +226,17 @@ class ChildNodeEntries implements Cloneable {
     }
 
     // The index may have changed because of changes by another session. Use remove(NodeId id)
-    // instead    
+    // instead
     @Deprecated
-    @SuppressWarnings("unchecked")
     public ChildNodeEntry remove(Name nodeName, int index) {
         if (index < 1) {
             throw new IllegalArgumentException("index is 1-based");
         }
-
-        ensureModifiable();
-        Object obj = nameMap.get(nodeName);
-        if (obj == null) {
+        int seq = findSibling(nodeName, index);
+        if (seq == 0) {
             return null;
         }
-
-        if (obj instanceof ChildNodeEntry) {
-            // map entry is a single child node entry
-            if (index != 1) {
-                return null;
-            }
-            ChildNodeEntry removedEntry = (ChildNodeEntry) obj;
-            nameMap.remove(nodeName);
-            entries.remove(removedEntry.getId());
-            return removedEntry;
-        }
-
-        // map entry is a list of siblings
-        List<ChildNodeEntry> siblings = (List<ChildNodeEntry>) obj;
-        if (index > siblings.size()) {
-            return null;
-        }
-
-        // remove from siblings list
-        ChildNodeEntry removedEntry = siblings.remove(index - 1);
-        // remove from ordered entries map
-        entries.remove(removedEntry.getId());
-
-        // update indices of subsequent same-name siblings
-        for (int i = index - 1; i < siblings.size(); i++) {
-            ChildNodeEntry oldEntry = siblings.get(i);
-            ChildNodeEntry newEntry = new ChildNodeEntry(nodeName, oldEntry.getId(), oldEntry.getIndex() - 1);
-            // overwrite old entry with updated entry in siblings list
-            siblings.set(i, newEntry);
-            // overwrite old entry with updated entry in ordered entries map
-            entries.put(newEntry.getId(), newEntry);
-        }
-
-        // clean up name lookup map if necessary
-        if (siblings.size() == 0) {
-            // no more entries with that name left:
-            // remove from name lookup map as well
-            nameMap.remove(nodeName);
-        } else if (siblings.size() == 1) {
-            // just one entry with that name left:
-            // discard siblings list and update name lookup map accordingly
-            nameMap.put(nodeName, siblings.get(0));
-        }
-
-        // we're done
-        return removedEntry;
+        return remove(seq, index);
     }
 
     /**
@@ -214,11 +246,12 @@ class ChildNodeEntries implements Cloneable {
      * @return the removed entry or <code>null</code> if there is no such entry.
      */
     ChildNodeEntry remove(NodeId id) {
-        ChildNodeEntry entry = (ChildNodeEntry) entries.get(id);
-        if (entry != null) {
-            return remove(entry.getName(), entry.getIndex());
+        int seq = findId(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (seq == 0) {
+            return null;
         }
-        return entry;
+        Chunk chunk = chunks[chunkOf(seq)];
+        return remove(seq, indexOf(seq, chunk.names[chunk.position(seq)]));
     }
 
     /**
@@ -252,7 +285,7 @@ class ChildNodeEntries implements Cloneable {
      *         <code>this</code> but not in <code>other</code>
      */
     List<ChildNodeEntry> removeAll(ChildNodeEntries other) {
-        if (entries.isEmpty()) {
+        if (size == 0) {
             return Collections.emptyList();
         }
         if (other.isEmpty()) {
@@ -260,15 +293,14 @@ class ChildNodeEntries implements Cloneable {
         }
 
         List<ChildNodeEntry> result = new ArrayList<ChildNodeEntry>();
-        for (Object e : entries.values()) {
-            ChildNodeEntry entry = (ChildNodeEntry) e;
-            ChildNodeEntry otherEntry = other.get(entry.getId());
-            if (entry == otherEntry) {
-                continue;
-            }
-            if (otherEntry == null
-                    || !entry.getName().equals(otherEntry.getName())) {
-                result.add(entry);
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            for (int pos = 0; pos < chunk.size; pos++) {
+                Name otherName = other.getName(chunk.msbs[pos], chunk.lsbs[pos]);
+                if (otherName == null || !chunk.names[pos].equals(otherName)) {
+                    result.add(chunk.entry(pos,
+                            indexOf(chunk.seqs[pos], chunk.names[pos])));
+                }
             }
         }
         return result;
@@ -288,20 +320,19 @@ class ChildNodeEntries implements Cloneable {
      *         <code>this</code> <i>and</i> in <code>other</code>
      */
     List<ChildNodeEntry> retainAll(ChildNodeEntries other) {
-        if (entries.isEmpty()
-                || other.isEmpty()) {
+        if (size == 0 || other.isEmpty()) {
             return Collections.emptyList();
         }
 
         List<ChildNodeEntry> result = new ArrayList<ChildNodeEntry>();
-        for (Object e : entries.values()) {
-            ChildNodeEntry entry = (ChildNodeEntry) e;
-            ChildNodeEntry otherEntry = other.get(entry.getId());
-            if (entry == otherEntry) {
-                result.add(entry);
-            } else if (otherEntry != null
-                    && entry.getName().equals(otherEntry.getName())) {
-                result.add(entry);
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            for (int pos = 0; pos < chunk.size; pos++) {
+                Name otherName = other.getName(chunk.msbs[pos], chunk.lsbs[pos]);
+                if (otherName != null && chunk.names[pos].equals(otherName)) {
+                    result.add(chunk.entry(pos,
+                            indexOf(chunk.seqs[pos], chunk.names[pos])));
+                }
             }
         }
         return result;
@@ -310,33 +341,57 @@ class ChildNodeEntries implements Cloneable {
     //-----------------------------------------------< unmodifiable List view >
 
     public boolean isEmpty() {
-        return entries.isEmpty();
+        return size == 0;
     }
 
-    @SuppressWarnings("unchecked")
     public List<ChildNodeEntry> list() {
-        return new ArrayList<ChildNodeEntry>(entries.values());
+        List<ChildNodeEntry> list = new ArrayList<ChildNodeEntry>(size);
+        // counts of the same-name siblings seen so far
+        Map<Name, int[]> counts = null;
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            for (int pos = 0; pos < chunk.size; pos++) {
+                Name name = chunk.names[pos];
+                int index = 1;
+                if (idIndex == null || siblings.containsKey(name)) {
+                    if (counts == null) {
+                        counts = new HashMap<Name, int[]>();
+                    }
+                    int[] count = counts.get(name);
+                    if (count == null) {
+                        counts.put(name, new int[] {1});
+                    } else {
+                        index = ++count[0];
+                    }
+                }
+                list.add(chunk.entry(pos, index));
+            }
+        }
+        return list;
     }
 
     public List<ChildNodeEntry> getRenamedEntries(ChildNodeEntries that) {
         List<ChildNodeEntry> renamed = Collections.emptyList();
-        for (Object e : entries.values()) {
-            ChildNodeEntry entry = (ChildNodeEntry) e;
-            ChildNodeEntry other = that.get(entry.getId());
-            if (other != null && !entry.getName().equals(other.getName())) {
-                // child node entry with same id but different name exists in
-                // overlaid and this state => renamed entry detected
-                if (renamed.isEmpty()) {
-                    renamed = new ArrayList<ChildNodeEntry>();
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            for (int pos = 0; pos < chunk.size; pos++) {
+                Name other = that.getName(chunk.msbs[pos], chunk.lsbs[pos]);
+                if (other != null && !chunk.names[pos].equals(other)) {
+                    // child node entry with same id but different name exists in
+                    // overlaid and this state => renamed entry detected
+                    if (renamed.isEmpty()) {
+                        renamed = new ArrayList<ChildNodeEntry>();
+                    }
+                    renamed.add(chunk.entry(pos,
+                            indexOf(chunk.seqs[pos], chunk.names[pos])));
                 }
-                renamed.add(entry);
             }
         }
         return renamed;
     }
 
     public int size() {
-        return entries.size();
+        return size;
     }
 
     //-------------------------------------------< java.lang.Object overrides >
@@ -346,9 +401,28 @@ class ChildNodeEntries implements Cloneable {
         }
         if (obj instanceof ChildNodeEntries) {
             ChildNodeEntries other = (ChildNodeEntries) obj;
-            return (nameMap.equals(other.nameMap)
-                    && entries.equals(other.entries)
-                    && shared == other.shared);
+            if (size != other.size) {
+                return false;
+            }
+            // compare the names and identifiers in order
+            int j = 0;
+            int otherPos = 0;
+            for (int i = 0; i < chunkCount; i++) {
+                Chunk chunk = chunks[i];
+                for (int pos = 0; pos < chunk.size; pos++) {
+                    Chunk otherChunk = other.chunks[j];
+                    if (chunk.msbs[pos] != otherChunk.msbs[otherPos]
+                            || chunk.lsbs[pos] != otherChunk.lsbs[otherPos]
+                            || !chunk.names[pos].equals(otherChunk.names[otherPos])) {
+                        return false;
+                    }
+                    if (++otherPos == otherChunk.size) {
+                        j++;
+                        otherPos = 0;
+                    }
+                }
+            }
+            return true;
         }
         return false;
     }
@@ -375,7 +449,10 @@ class ChildNodeEntries implements Cloneable {
     protected Object clone() {
         try {
             ChildNodeEntries clone = (ChildNodeEntries) super.clone();
-            if (nameMap != Collections.EMPTY_MAP) {
+            if (chunkCount > 0) {
+                // neither instance may modify the shared chunks and segments
+                owner = new Object();
+                clone.owner = new Object();
                 clone.shared = true;
                 shared = true;
             }
@@ -389,35 +466,461 @@ class ChildNodeEntries implements Cloneable {
     //-------------------------------------------------------------< internal >
 
     /**
-     * Initializes the name and entries map with unmodifiable empty instances.
+     * Initializes this instance without entries.
      */
     private void init() {
-        nameMap = Collections.emptyMap();
-        entries = EmptyLinkedMap.INSTANCE;
+        chunks = NO_CHUNKS;
+        chunkCount = 0;
+        size = 0;
+        lastSeq = 0;
+        idIndex = null;
+        nameIndex = null;
+        siblings = null;
+        owner = new Object();
         shared = false;
     }
 
     /**
-     * Ensures that the {@link #nameMap} and {@link #entries} map are
-     * modifiable.
+     * Ensures that the chunk and segment arrays and the siblings map are
+     * modifiable. The chunks and segments themselves are copied when they
+     * are modified.
      */
-    @SuppressWarnings("unchecked")
     private void ensureModifiable() {
-        if (nameMap == Collections.EMPTY_MAP) {
-            nameMap = new HashMap<Name, Object>();
-            entries = new LinkedMap();
-        } else if (shared) {
-            entries = (LinkedMap) entries.clone();
-            nameMap = new HashMap<Name, Object>(nameMap);
-            for (Map.Entry<Name, Object> entry : nameMap.entrySet()) {
-                Object value = entry.getValue();
-                if (value instanceof List<?>) {
-                    entry.setValue(new ArrayList<ChildNodeEntry>(
-                            (List<ChildNodeEntry>) value));
-                }
+        if (shared) {
+            chunks = Arrays.copyOf(chunks, Math.max(chunks.length, 4));
+            if (idIndex != null) {
+                idIndex = idIndex.clone();
+                nameIndex = nameIndex.clone();
+                siblings = new HashMap<Name, int[]>(siblings);
             }
             shared = false;
         }
     }
 
+    private Chunk writableChunk(int i) {
+        Chunk chunk = chunks[i];
+        if (chunk.owner != owner) {
+            chunk = new Chunk(owner, chunk);
+            chunks[i] = chunk;
+        }
+        return chunk;
+    }
+
+    private SeqTable writableSegment(SeqTable[] index, int i) {
+        SeqTable table = index[i];
+        if (table.owner != owner) {
+            table = new SeqTable(owner, table);
+            index[i] = table;
+        }
+        return table;
+    }
+
+    /**
+     * Removes the entry with the given sequence number and same-name
+     * sibling index.
+     */
+    private ChildNodeEntry remove(int seq, int index) {
+        ensureModifiable();
+        int i = chunkOf(seq);
+        Chunk chunk = writableChunk(i);
+        int pos = chunk.position(seq);
+        Name name = chunk.names[pos];
+        long msb = chunk.msbs[pos];
+        long lsb = chunk.lsbs[pos];
+        if (idIndex != null) {
+            unindexEntry(seq, name, msb, lsb);
+        }
+        chunk.remove(pos);
+        if (chunk.size == 0) {
+            System.arraycopy(chunks, i + 1, chunks, i, chunkCount - i - 1);
+            chunks[--chunkCount] = null;
+        }
+        if (--size == 0) {
+            init();
+        }
+        return new ChildNodeEntry(name, new NodeId(msb, lsb), index);
+    }
+
+    /**
+     * Returns the index of the chunk that contains the entry with the given
+     * sequence number.
+     */
+    private int chunkOf(int seq) {
+        int low = 0;
+        int high = chunkCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (chunks[mid].seqs[0] <= seq) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private ChildNodeEntry entry(int seq, int index) {
+        Chunk chunk = chunks[chunkOf(seq)];
+        return chunk.entry(chunk.position(seq), index);
+    }
+
+    /**
+     * Returns the same-name sibling index of the entry with the given
+     * sequence number and name.
+     */
+    private int indexOf(int seq, Name name) {
+        if (idIndex != null) {
+            int[] seqs = siblings.get(name);
+            return seqs == null ? 1 : Arrays.binarySearch(seqs, seq) + 1;
+        }
+        int index = 1;
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            for (int pos = 0; pos < chunk.size && chunk.seqs[pos] < seq; pos++) {
+                if (name.equals(chunk.names[pos])) {
+                    index++;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the name of the entry with the given identifier, or
+     * <code>null</code> if there is no such entry.
+     */
+    private Name getName(long msb, long lsb) {
+        int seq = findId(msb, lsb);
+        if (seq == 0) {
+            return null;
+        }
+        Chunk chunk = chunks[chunkOf(seq)];
+        return chunk.names[chunk.position(seq)];
+    }
+
+    /**
+     * Returns the sequence number of the entry with the given identifier,
+     * or zero if there is no such entry.
+     */
+    private int findId(long msb, long lsb) {
+        if (idIndex == null) {
+            for (int i = 0; i < chunkCount; i++) {
+                Chunk chunk = chunks[i];
+                for (int pos = 0; pos < chunk.size; pos++) {
+                    if (chunk.msbs[pos] == msb && chunk.lsbs[pos] == lsb) {
+                        return chunk.seqs[pos];
+                    }
+                }
+            }
+            return 0;
+        }
+        int hash = hash(msb, lsb);
+        SeqTable table = idIndex[segment(idIndex, hash)];
+        int mask = table.seqs.length - 1;
+        for (int slot = hash & mask; table.seqs[slot] != 0; slot = (slot + 1) & mask) {
+            if (table.hashes[slot] == hash) {
+                Chunk chunk = chunks[chunkOf(table.seqs[slot])];
+                int pos = chunk.position(table.seqs[slot]);
+                if (chunk.msbs[pos] == msb && chunk.lsbs[pos] == lsb) {
+                    return table.seqs[slot];
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the sequence number of the first entry with the given name,
+     * or zero if there is no such entry.
+     */
+    private int findFirst(Name name) {
+        if (nameIndex == null) {
+            return findSibling(name, 1);
+        }
+        int hash = hash(name);
+        SeqTable table = nameIndex[segment(nameIndex, hash)];
+        int mask = table.seqs.length - 1;
+        for (int slot = hash & mask; table.seqs[slot] != 0; slot = (slot + 1) & mask) {
+            if (table.hashes[slot] == hash) {
+                Chunk chunk = chunks[chunkOf(table.seqs[slot])];
+                if (name.equals(chunk.names[chunk.position(table.seqs[slot])])) {
+                    return table.seqs[slot];
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the sequence number of the entry with the given name and
+     * same-name sibling index, or zero if there is no such entry.
+     */
+    private int findSibling(Name name, int index) {
+        if (idIndex != null) {
+            int[] seqs = siblings.get(name);
+            if (seqs == null) {
+                return index == 1 ? findFirst(name) : 0;
+            }
+            return index <= seqs.length ? seqs[index - 1] : 0;
+        }
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            for (int pos = 0; pos < chunk.size; pos++) {
+                if (name.equals(chunk.names[pos]) && --index == 0) {
+                    return chunk.seqs[pos];
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Builds the index with the given number of segments.
+     */
+    private void buildIndex(int segments) {
+        idIndex = new SeqTable[segments];
+        nameIndex = new SeqTable[segments];
+        for (int i = 0; i < segments; i++) {
+            idIndex[i] = new SeqTable(owner);
+            nameIndex[i] = new SeqTable(owner);
+        }
+        siblings = new HashMap<Name, int[]>();
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            for (int pos = 0; pos < chunk.size; pos++) {
+                indexEntry(chunk.seqs[pos], chunk.names[pos],
+                        chunk.msbs[pos], chunk.lsbs[pos]);
+            }
+        }
+    }
+
+    /**
+     * Adds the entry to the index. The entry must be the last entry.
+     */
+    private void indexEntry(int seq, Name name, long msb, long lsb) {
+        int hash = hash(msb, lsb);
+        writableSegment(idIndex, segment(idIndex, hash)).put(hash, seq);
+
+        int first = findFirst(name);
+        if (first == 0) {
+            hash = hash(name);
+            writableSegment(nameIndex, segment(nameIndex, hash)).put(hash, seq);
+        } else {
+            int[] seqs = siblings.get(name);
+            if (seqs == null) {
+                seqs = new int[] {first};
+            }
+            seqs = Arrays.copyOf(seqs, seqs.length + 1);
+            seqs[seqs.length - 1] = seq;
+            siblings.put(name, seqs);
+        }
+    }
+
+    /**
+     * Removes the entry from the index.
+     */
+    private void unindexEntry(int seq, Name name, long msb, long lsb) {
+        int hash = hash(msb, lsb);
+        writableSegment(idIndex, segment(idIndex, hash)).remove(hash, seq);
+
+        hash = hash(name);
+        int[] seqs = siblings.get(name);
+        if (seqs == null) {
+            writableSegment(nameIndex, segment(nameIndex, hash)).remove(hash, seq);
+        } else {
+            int i = Arrays.binarySearch(seqs, seq);
+            int[] remaining = new int[seqs.length - 1];
+            System.arraycopy(seqs, 0, remaining, 0, i);
+            System.arraycopy(seqs, i + 1, remaining, i, remaining.length - i);
+            if (i == 0) {
+                // the name index refers to the first sibling
+                SeqTable table = writableSegment(nameIndex, segment(nameIndex, hash));
+                table.remove(hash, seq);
+                table.put(hash, remaining[0]);
+            }
+            if (remaining.length == 1) {
+                siblings.remove(name);
+            } else {
+                siblings.put(name, remaining);
+            }
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        return spread((int) ((msb >>> 32) ^ msb ^ (lsb >>> 32) ^ lsb));
+    }
+
+    private static int hash(Name name) {
+        return spread(name.hashCode());
+    }
+
+    /**
+     * Spreads the bits of a hash code, so that both the high bits used to
+     * select a segment and the low bits used to select a slot vary.
+     */
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int segment(SeqTable[] index, int hash) {
+        // the number of segments is a power of two
+        return index.length == 1
+                ? 0 : hash >>> Integer.numberOfLeadingZeros(index.length - 1);
+    }
+
+    //--------------------------------------------------------< inner classes >
+
+    /**
+     * A chunk of consecutive entries.
+     */
+    private static final class Chunk {
+
+        private final Object owner;
+
+        private int size;
+
+        private int[] seqs;
+
+        private Name[] names;
+
+        private long[] msbs;
+
+        private long[] lsbs;
+
+        Chunk(Object owner) {
+            this.owner = owner;
+            seqs = new int[4];
+            names = new Name[4];
+            msbs = new long[4];
+            lsbs = new long[4];
+        }
+
+        Chunk(Object owner, Chunk chunk) {
+            this.owner = owner;
+            size = chunk.size;
+            seqs = chunk.seqs.clone();
+            names = chunk.names.clone();
+            msbs = chunk.msbs.clone();
+            lsbs = chunk.lsbs.clone();
+        }
+
+        int position(int seq) {
+            return Arrays.binarySearch(seqs, 0, size, seq);
+        }
+
+        ChildNodeEntry entry(int pos, int index) {
+            return new ChildNodeEntry(names[pos], new NodeId(msbs[pos], lsbs[pos]), index);
+        }
+
+        void add(int seq, Name name, long msb, long lsb) {
+            if (size == seqs.length) {
+                int capacity = Math.min(size * 2, CHUNK_SIZE);
+                seqs = Arrays.copyOf(seqs, capacity);
+                names = Arrays.copyOf(names, capacity);
+                msbs = Arrays.copyOf(msbs, capacity);
+                lsbs = Arrays.copyOf(lsbs, capacity);
+            }
+            seqs[size] = seq;
+            names[size] = name;
+            msbs[size] = msb;
+            lsbs[size] = lsb;
+            size++;
+        }
+
+        void remove(int pos) {
+            int moved = size - pos - 1;
+            System.arraycopy(seqs, pos + 1, seqs, pos, moved);
+            System.arraycopy(names, pos + 1, names, pos, moved);
+            System.arraycopy(msbs, pos + 1, msbs, pos, moved);
+            System.arraycopy(lsbs, pos + 1, lsbs, pos, moved);
+            names[--size] = null;
+        }
+    }
+
+    /**
+     * An open addressing hash table segment of sequence numbers, with linear
+     * probing. The keys are compared by looking up the entries of the
+     * sequence numbers. Zero marks an empty slot.
+     */
+    private static final class SeqTable {
+
+        private final Object owner;
+
+        private int size;
+
+        private int[] hashes;
+
+        private int[] seqs;
+
+        SeqTable(Object owner) {
+            this.owner = owner;
+            hashes = new int[32];
+            seqs = new int[32];
+        }
+
+        SeqTable(Object owner, SeqTable table) {
+            this.owner = owner;
+            size = table.size;
+            hashes = table.hashes.clone();
+            seqs = table.seqs.clone();
+        }
+
+        void put(int hash, int seq) {
+            if ((size + 1) * 2 > seqs.length) {
+                int[] oldHashes = hashes;
+                int[] oldSeqs = seqs;
+                hashes = new int[oldSeqs.length * 2];
+                seqs = new int[oldSeqs.length * 2];
+                for (int i = 0; i < oldSeqs.length; i++) {
+                    if (oldSeqs[i] != 0) {
+                        insert(oldHashes[i], oldSeqs[i]);
+                    }
+                }
+            }
+            insert(hash, seq);
+            size++;
+        }
+
+        private void insert(int hash, int seq) {
+            int mask = seqs.length - 1;
+            int slot = hash & mask;
+            while (seqs[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            seqs[slot] = seq;
+        }
+
+        void remove(int hash, int seq) {
+            int mask = seqs.length - 1;
+            int slot = hash & mask;
+            while (seqs[slot] != seq) {
+                if (seqs[slot] == 0) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // move the following entries of the probe sequence backwards
+            int next = (slot + 1) & mask;
+            while (seqs[next] != 0) {
+                int home = hashes[next] & mask;
+                if ((next > slot && (home <= slot || home > next))
+                        || (next < slot && home <= slot && home > next)) {
+                    hashes[slot] = hashes[next];
+                    seqs[slot] = seqs[next];
+                    slot = next;
+                }
+                next = (next + 1) & mask;
+            }
+            hashes[slot] = 0;
+            seqs[slot] = 0;
+            size--;
+        }
+    }
+
 }
@@ -16,6 +16,10 @@
  */
 package org.apache.jackrabbit.core.state;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import javax.jcr.InvalidItemStateException;
 import javax.jcr.ReferentialIntegrityException;
 import javax.jcr.RepositoryException;
@@ -205,6 +209,26 @@ public class LocalItemStateManager
         return sharedStateMgr.hasItemState(id);
     }
 
+    /**
+     * Prefetches the given node states from the shared item state manager.
+     * Node states that are already present in the local cache or in the
+     * current change log are skipped.
+     *
+     * @param ids identifiers of the nodes that are about to be read
+     * @see SharedItemStateManager#prefetch(Collection)
+     */
+    public void prefetch(Collection<NodeId> ids) {
+        List<NodeId> missing = new ArrayList<NodeId>(ids.size());
+        for (NodeId id : ids) {
+            if (!changeLog.has(id) && !cache.isCached(id)) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            sharedStateMgr.prefetch(missing);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -16,6 +16,8 @@
  */
 package org.apache.jackrabbit.core.state;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -42,6 +44,7 @@ import org.apache.jackrabbit.core.observation.EventStateCollection;
 import org.apache.jackrabbit.core.observation.EventStateCollectionFactory;
 import org.apache.jackrabbit.core.persistence.CachingPersistenceManager;
 import org.apache.jackrabbit.core.persistence.PersistenceManager;
+import org.apache.jackrabbit.core.persistence.PrefetchingPersistenceManager;
 import org.apache.jackrabbit.core.value.InternalValue;
 import org.apache.jackrabbit.core.virtual.VirtualItemStateProvider;
 import org.apache.jackrabbit.spi.Name;
@@ -459,6 +462,54 @@ public class SharedItemStateManager
     }
 
     //-------------------------------------------------< misc. public methods >
+
+    /**
+     * Warms the persistence manager cache with the given node states, so
+     * that subsequent {@link #getItemState(ItemId)} calls for them do not
+     * need to go to the underlying storage one at a time. Nodes that are
+     * already cached by this item state manager or that are provided by a
+     * virtual item state provider are skipped. This method does nothing if
+     * the persistence manager does not support prefetching.
+     *
+     * @param ids identifiers of the nodes that are about to be read
+     */
+    public void prefetch(Collection<NodeId> ids) {
+        if (!(persistMgr instanceof PrefetchingPersistenceManager)) {
+            return;
+        }
+        List<NodeId> missing = new ArrayList<NodeId>(ids.size());
+        for (NodeId id : ids) {
+            if (!cache.isCached(id) && !hasVirtualItemState(id)) {
+                missing.add(id);
+            }
+        }
+        if (missing.size() > 1) {
+            try {
+                ((PrefetchingPersistenceManager) persistMgr).prefetch(missing);
+            } catch (ItemStateException e) {
+                // not fatal, the states will be loaded individually
+                log.warn("Unable to prefetch " + missing.size()
+                        + " node states: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checks whether the given item is provided by one of the virtual
+     * item state providers.
+     *
+     * @param id item id
+     * @return <code>true</code> if the item is virtual
+     */
+    private boolean hasVirtualItemState(ItemId id) {
+        for (VirtualItemStateProvider virtualProvider : virtualProviders) {
+            if (virtualProvider.hasItemState(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Disposes this <code>SharedItemStateManager</code> and frees resources.
      */
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.state;
+
+import static org.apache.jackrabbit.data.core.TransactionContext.getCurrentThreadId;
+import static org.apache.jackrabbit.data.core.TransactionContext.isSameThreadId;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.jackrabbit.core.id.ItemId;
+
+/**
+ * Item state locking strategy with the same semantics as
+ * {@link DefaultISMLocking}, that is a single coarse-grained read-write lock
+ * over the entire workspace with optional writer preference, but without a
+ * shared monitor on the read path.
+ * <p>
+ * Readers are counted in a number of padded, striped counters. As long as no
+ * writer is active or waiting, acquiring and releasing a read lock only
+ * updates the counter of the stripe selected by the current thread and reads
+ * a volatile flag, so concurrent readers on different cores do not contend.
+ * Writers, downgraded write locks and readers that have to wait for a writer
+ * fall back to a monitor based slow path that mirrors the behaviour of
+ * {@link DefaultISMLocking}.
+ */
+public class StripedISMLocking implements ISMLocking {
+
+    /**
+     * Number of array slots between two stripes. Keeps the counters of
+     * different stripes on different cache lines.
+     */
+    private static final int PADDING = 16;
+
+    /**
+     * The maximum number of reader stripes.
+     */
+    private static final int MAX_STRIPES = 64;
+
+    /**
+     * Bit mask that maps a thread id to a stripe.
+     */
+    private final int mask;
+
+    /**
+     * The reader counters, one every {@link #PADDING} slots.
+     */
+    private final AtomicLongArray readers;
+
+    /**
+     * The read lock instances, one per stripe.
+     */
+    private final ReadLock[] readLocks;
+
+    /**
+     * The write lock instance used by writers to release or downgrade the
+     * acquired lock.
+     */
+    private final WriteLock writeLock = new WriteLock() {
+        public void release() {
+            releaseWriteLock(-1);
+        }
+        public ReadLock downgrade() {
+            int stripe = currentStripe();
+            releaseWriteLock(stripe);
+            return readLocks[stripe];
+        }
+    };
+
+    /**
+     * Flag that is set whenever a writer is active or waiting, or while a
+     * downgraded write lock is held. While set, readers must go through the
+     * synchronized slow path. Only modified while holding the monitor of
+     * this instance.
+     */
+    private volatile boolean exclusive = false;
+
+    /**
+     * Flag for determining whether this locking strategy should give
+     * preference to writers or not.
+     *
+     * @see DefaultISMLocking#setWriterPreference(boolean)
+     */
+    private boolean writerPreference = true;
+
+    /**
+     * Number of writer threads waiting.
+     */
+    private int writersWaiting = 0;
+
+    /**
+     * The thread identifier of the current writer, or <code>null</code> if
+     * no write is in progress.
+     *
+     * @see DefaultISMLocking
+     */
+    private Object writerId = null;
+
+    /**
+     * Number of acquired write locks.
+     */
+    private int writerCount = 0;
+
+    /**
+     * Creates a new locking strategy with a number of reader stripes that
+     * depends on the number of available processors.
+     */
+    public StripedISMLocking() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Creates a new locking strategy with at least the given number of
+     * reader stripes. The number is rounded up to the next power of two.
+     *
+     * @param stripes the minimum number of reader stripes
+     */
+    public StripedISMLocking(int stripes) {
+        int n = 1;
+        while (n < stripes && n < MAX_STRIPES) {
+            n <<= 1;
+        }
+        mask = n - 1;
+        readers = new AtomicLongArray(n * PADDING);
+        readLocks = new ReadLock[n];
+        for (int i = 0; i < n; i++) {
+            final int stripe = i;
+            readLocks[i] = new ReadLock() {
+                public void release() {
+                    releaseReadLock(stripe);
+                }
+            };
+        }
+    }
+
+    /**
+     * Returns the writer preference status of this locking strategy.
+     *
+     * @return writer preference
+     */
+    public boolean isWriterPreference() {
+        return writerPreference;
+    }
+
+    /**
+     * Sets the writer preference status of this locking strategy.
+     *
+     * @param preference writer preference
+     */
+    public synchronized void setWriterPreference(boolean preference) {
+        this.writerPreference = preference;
+    }
+
+    /**
+     * Increments the reader count of the current stripe and returns the
+     * acquired read lock if there is no writer. Otherwise waits on the
+     * slow path until there are no more writers or the current writer
+     * shares the thread id with this reader.
+     */
+    public ReadLock acquireReadLock(ItemId id) throws InterruptedException {
+        int stripe = currentStripe();
+        readers.incrementAndGet(stripe * PADDING);
+        if (!exclusive) {
+            return readLocks[stripe];
+        }
+        // back out and take the slow path
+        releaseReadLock(stripe);
+        return acquireReadLockSlow(stripe);
+    }
+
+    /**
+     * Increments the writer count, sets the writer identifier and returns
+     * the acquired write lock once there are no other active readers or
+     * writers or the current writer shares the thread id with this writer.
+     */
+    public synchronized WriteLock acquireWriteLock(ChangeLog changeLog)
+            throws InterruptedException {
+        Object currentId = getCurrentThreadId();
+
+        writersWaiting++;
+        exclusive = true;
+        boolean acquired = false;
+        try {
+            while (writerId != null
+                    ? !isSameThreadId(writerId, currentId) : getReaderCount() > 0) {
+                wait();
+            }
+            acquired = true;
+        } finally {
+            writersWaiting--;
+            if (!acquired) {
+                updateExclusive();
+                notifyAll();
+            }
+        }
+
+        if (writerCount++ == 0) {
+            writerId = currentId;
+        }
+        return writeLock;
+    }
+
+    //-------------------------------------------------------------< internal >
+
+    /**
+     * Waits until there are no more writers or the current writer shares the
+     * thread id with this reader and increments the reader count of the
+     * given stripe.
+     *
+     * @param stripe the stripe of the current thread
+     * @return the read lock of the given stripe
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private synchronized ReadLock acquireReadLockSlow(int stripe)
+            throws InterruptedException {
+        Object currentId = getCurrentThreadId();
+        while (writerId != null
+                ? (writerCount > 0 && !isSameThreadId(writerId, currentId))
+                : (writerPreference && writersWaiting > 0)) {
+            wait();
+        }
+
+        readers.incrementAndGet(stripe * PADDING);
+        return readLocks[stripe];
+    }
+
+    /**
+     * Decrements the reader count of the given stripe. If a writer is active
+     * or waiting, clears the writer identifier once the lock is available
+     * and notifies all pending threads.
+     *
+     * @param stripe the stripe of the released read lock
+     */
+    private void releaseReadLock(int stripe) {
+        readers.decrementAndGet(stripe * PADDING);
+        if (exclusive) {
+            synchronized (this) {
+                if (writerCount == 0 && getReaderCount() == 0) {
+                    writerId = null;
+                    updateExclusive();
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Decrements the writer count (and possibly clears the writer identifier)
+     * and notifies all pending threads if the lock is now available. If the
+     * given stripe is not negative, then the reader count of that stripe is
+     * incremented before notifying any pending threads.
+     *
+     * @param stripe stripe of the downgraded read lock, or -1
+     */
+    private synchronized void releaseWriteLock(int stripe) {
+        writerCount--;
+        if (stripe >= 0) {
+            readers.incrementAndGet(stripe * PADDING);
+        }
+        if (writerCount == 0) {
+            if (getReaderCount() == 0) {
+                writerId = null;
+            }
+            updateExclusive();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Recalculates the {@link #exclusive} flag. Must be called while
+     * holding the monitor of this instance.
+     */
+    private void updateExclusive() {
+        exclusive = writersWaiting > 0 || writerCount > 0 || writerId != null;
+    }
+
+    /**
+     * @return the total number of acquired read locks.
+     */
+    private long getReaderCount() {
+        long count = 0;
+        for (int i = 0; i <= mask; i++) {
+            count += readers.get(i * PADDING);
+        }
+        return count;
+    }
+
+    /**
+     * @return the reader stripe of the current thread.
+     */
+    private int currentStripe() {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) & mask;
+    }
+
+}
@@ -71,6 +71,30 @@ public class SessionImporter implements Importer {
      */
     private ProtectedNodeImporter pnImporter = null;
 
+    /**
+     * Number of imported nodes after which the import is saved, or zero if
+     * the imported nodes are left in the transient space of the session.
+     */
+    private int batchSize = 0;
+
+    /**
+     * Number of nodes imported since the last save.
+     */
+    private int pendingNodes = 0;
+
+    /**
+     * Flag indicating that a batch could not be saved, after which the rest
+     * of the import is left in the transient space.
+     */
+    private boolean batchFailed = false;
+
+    /**
+     * Reference properties that are set at the end of a batched import,
+     * because their target nodes may be imported in a later batch.
+     */
+    private final List<DeferredReference> deferredReferences =
+        new ArrayList<DeferredReference>();
+
     /**
      * Creates a new <code>SessionImporter</code> instance.
      *
@@ -123,6 +147,27 @@ public class SessionImporter implements Importer {
         }
     }
 
+    /**
+     * Saves the import every <code>batchSize</code> nodes, so that the
+     * transient space of the session does not hold the whole imported tree.
+     * The session must not have other pending changes when the import starts.
+     * The nodes imported after the last batch and the reference properties
+     * are left in the transient space and need to be saved by the caller as
+     * usual. If saving a batch fails with a constraint violation, no further
+     * batches are saved and the rest of the import is left in the transient
+     * space as well. Other failures are thrown.
+     * <p>
+     * A batched import is not atomic: the batches that have been saved stay
+     * in the workspace if the import fails later, and are not rolled back
+     * by <code>refresh(false)</code>.
+     *
+     * @param batchSize number of nodes per save, or zero to leave all
+     *                  imported nodes in the transient space (the default).
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     /**
      * make sure the editing session is allowed create nodes with a
      * specified node type (and ev. mixins),<br>
@@ -165,9 +210,12 @@ public class SessionImporter implements Importer {
         // convert serialized values to Value objects
         Value[] va = pInfo.getValues(pInfo.getTargetType(def), session);
 
+        setProperty(node, pInfo.getName(), pInfo.getType(), va, def);
+    }
+
+    private void setProperty(NodeImpl node, Name name, int type, Value[] va,
+                             QPropertyDefinition def) throws RepositoryException {
         // multi- or single-valued property?
-        Name name = pInfo.getName();
-        int type = pInfo.getType();
         if (va.length == 1 && !def.isMultiple()) {
             Exception e = null;
             try {
@@ -284,7 +332,10 @@ public class SessionImporter implements Importer {
      * {@inheritDoc}
      */
     public void start() throws RepositoryException {
-        // nop
+        if (batchSize > 0 && session.hasPendingChanges()) {
+            throw new RepositoryException(
+                    "A batched import requires a session without pending changes");
+        }
     }
 
     /**
@@ -444,6 +495,12 @@ public class SessionImporter implements Importer {
                          try next pp-importer */
 
                 }
+            } else if (batchSize > 0 && !def.isMandatory()
+                    && pi.getTargetType(def) == PropertyType.REFERENCE) {
+                // the target may not be saved yet, set the reference at the end
+                deferredReferences.add(new DeferredReference(
+                        node.getNodeId(), pi.getName(), def,
+                        pi.getValues(PropertyType.REFERENCE, session)));
             } else {
                 // regular property -> create the property
                 createProperty(node, pi, def);
@@ -451,6 +508,7 @@ public class SessionImporter implements Importer {
         }
 
         parents.push(node);
+        pendingNodes++;
     }
 
 
@@ -471,12 +529,45 @@ public class SessionImporter implements Importer {
                 pnImporter = null;
             }
         }
+        if (batchSize > 0 && !batchFailed && pendingNodes >= batchSize
+                && pnImporter == null) {
+            saveBatch();
+        }
+    }
+
+    /**
+     * Saves the nodes imported since the last batch. The subtrees of the
+     * ancestors of the current node are not complete yet, so the save fails
+     * with a constraint violation if one of them misses a mandatory item
+     * that is imported later. The import then continues without batches
+     * instead of repeating a save that fails again, and is saved by the
+     * caller. Any other failure is thrown.
+     *
+     * @throws RepositoryException if the batch can not be saved for another
+     *                             reason than a constraint violation
+     */
+    private void saveBatch() throws RepositoryException {
+        pendingNodes = 0;
+        try {
+            session.save();
+        } catch (ConstraintViolationException e) {
+            batchFailed = true;
+            log.warn("Unable to save import batch, leaving the rest of the"
+                    + " import in the transient space: " + e.getMessage());
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void end() throws RepositoryException {
+        // set the reference properties of a batched import
+        for (DeferredReference ref : deferredReferences) {
+            setProperty(session.getNodeById(ref.nodeId), ref.name,
+                    PropertyType.REFERENCE, ref.values, ref.def);
+        }
+        deferredReferences.clear();
+
         /**
          * adjust references that refer to uuid's which have been mapped to
          * newly generated uuid's on import
@@ -529,4 +620,28 @@ public class SessionImporter implements Importer {
         }
         refTracker.clear();
     }
+
+    //--------------------------------------------------------< inner classes >
+    /**
+     * A reference property of a batched import that is set at the end of
+     * the import.
+     */
+    private static final class DeferredReference {
+
+        private final NodeId nodeId;
+
+        private final Name name;
+
+        private final QPropertyDefinition def;
+
+        private final Value[] values;
+
+        private DeferredReference(NodeId nodeId, Name name,
+                                  QPropertyDefinition def, Value[] values) {
+            this.nodeId = nodeId;
+            this.name = name;
+            this.def = def;
+            this.values = values;
+        }
+    }
 }
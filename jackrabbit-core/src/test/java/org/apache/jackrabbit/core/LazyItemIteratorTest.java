@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Session;
+import javax.jcr.version.Version;
+import javax.jcr.version.VersionHistory;
+import javax.jcr.version.VersionIterator;
+import javax.jcr.version.VersionManager;
+
+import org.apache.jackrabbit.test.AbstractJCRTest;
+
+/**
+ * <code>LazyItemIteratorTest</code> checks that the child nodes returned by
+ * a {@link LazyItemIterator} are correct when their states are prefetched
+ * in batches, also for nodes provided by the version storage.
+ */
+public class LazyItemIteratorTest extends AbstractJCRTest {
+
+    private static final int CHILD_COUNT = 250;
+
+    public void testChildNodes() throws Exception {
+        List<String> identifiers = new ArrayList<String>();
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            Node child = testRootNode.addNode("child" + i);
+            child.setProperty(propertyName1, i);
+            identifiers.add(child.getIdentifier());
+        }
+        superuser.save();
+
+        Session session = getHelper().getSuperuserSession();
+        try {
+            NodeIterator it = session.getNode(testRoot).getNodes();
+            int i = 0;
+            while (it.hasNext()) {
+                Node child = it.nextNode();
+                assertEquals("child" + i, child.getName());
+                assertEquals(identifiers.get(i), child.getIdentifier());
+                assertEquals(i, child.getProperty(propertyName1).getLong());
+                i++;
+            }
+            assertEquals(CHILD_COUNT, i);
+        } finally {
+            session.logout();
+        }
+    }
+
+    public void testVersionStorage() throws Exception {
+        Node node = testRootNode.addNode(nodeName1);
+        node.addMixin(mixVersionable);
+        superuser.save();
+        VersionManager manager = superuser.getWorkspace().getVersionManager();
+        List<String> identifiers = new ArrayList<String>();
+        identifiers.add(manager.getVersionHistory(node.getPath())
+                .getRootVersion().getIdentifier());
+        for (int i = 0; i < 3; i++) {
+            identifiers.add(manager.checkpoint(node.getPath()).getIdentifier());
+        }
+
+        Session session = getHelper().getSuperuserSession();
+        try {
+            VersionHistory history = session.getWorkspace()
+                    .getVersionManager().getVersionHistory(node.getPath());
+            List<String> children = new ArrayList<String>();
+            NodeIterator it = history.getNodes();
+            while (it.hasNext()) {
+                Node child = it.nextNode();
+                assertEquals(child.getPath(),
+                        session.getNodeByIdentifier(child.getIdentifier()).getPath());
+                children.add(child.getIdentifier());
+            }
+            assertTrue(children.containsAll(identifiers));
+
+            VersionIterator versions = history.getAllVersions();
+            int count = 0;
+            while (versions.hasNext()) {
+                Version version = versions.nextVersion();
+                assertEquals(identifiers.get(count), version.getIdentifier());
+                count++;
+            }
+            assertEquals(identifiers.size(), count);
+        } finally {
+            session.logout();
+        }
+    }
+
+}
@@ -47,6 +47,7 @@ public class TestAll extends TestCase {
         suite.addTestSuite(SessionGarbageCollectedTest.class);
         suite.addTestSuite(ReferencesTest.class);
         suite.addTestSuite(ReplaceTest.class);
+        suite.addTestSuite(LazyItemIteratorTest.class);
 
         // test related to NodeStateMerger
         suite.addTestSuite(ConcurrentImportTest.class);
@@ -18,6 +18,7 @@ package org.apache.jackrabbit.core.cluster;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import javax.jcr.RepositoryException;
 
@@ -28,11 +29,16 @@ import org.apache.jackrabbit.core.cluster.SimpleEventListener.PrivilegeEvent;
 import org.apache.jackrabbit.core.cluster.SimpleEventListener.UnlockEvent;
 import org.apache.jackrabbit.core.cluster.SimpleEventListener.UpdateEvent;
 import org.apache.jackrabbit.core.config.ClusterConfig;
+import org.apache.jackrabbit.core.id.ItemId;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.journal.Journal;
+import org.apache.jackrabbit.core.journal.JournalException;
 import org.apache.jackrabbit.core.journal.JournalFactory;
 import org.apache.jackrabbit.core.journal.MemoryJournal;
 import org.apache.jackrabbit.core.journal.MemoryJournal.MemoryRecord;
+import org.apache.jackrabbit.core.observation.EventState;
+import org.apache.jackrabbit.core.state.ChangeLog;
+import org.apache.jackrabbit.core.state.ItemState;
 import org.apache.jackrabbit.spi.Name;
 import org.apache.jackrabbit.spi.PrivilegeDefinition;
 import org.apache.jackrabbit.spi.QNodeTypeDefinition;
@@ -145,6 +151,170 @@ public class ClusterRecordTest extends JUnitTest {
         assertEquals(listener.getClusterEvents().get(0), update);
     }
 
+    /**
+     * Test consuming successive updates as one batch once the catch up
+     * threshold has been exceeded. Other records end the batch, events
+     * keep the timestamp of their record.
+     * @throws Exception
+     */
+    public void testBatchedUpdateOperations() throws Exception {
+        UpdateEvent update1 = factory.createUpdateOperation();
+        UpdateEvent update2 = withTimestamp(factory.createUpdateOperation(), update1.getTimestamp());
+        UpdateEvent update3 = withTimestamp(factory.createUpdateOperation(), update1.getTimestamp() + 1);
+        UpdateEvent update4 = factory.createUpdateOperation();
+        LockEvent event = new LockEvent(NodeId.randomId(), true, "admin");
+
+        UpdateEventChannel channel = master.createUpdateChannel(DEFAULT_WORKSPACE);
+        commit(channel, update1);
+        commit(channel, update2);
+        commit(channel, update3);
+        master.createLockChannel(DEFAULT_WORKSPACE).create(event.getNodeId(),
+                event.isDeep(), event.getUserId()).ended(true);
+        commit(channel, update4);
+
+        SimpleEventListener listener = new SimpleEventListener();
+        slave.createUpdateChannel(DEFAULT_WORKSPACE).setListener(listener);
+        slave.createLockChannel(DEFAULT_WORKSPACE).setListener(listener);
+        slave.setCatchUpThreshold(0);
+        slave.sync();
+
+        assertEquals(4, listener.getClusterEvents().size());
+
+        UpdateEvent batch = (UpdateEvent) listener.getClusterEvents().get(0);
+        List<EventState> events = new ArrayList<EventState>();
+        events.addAll(update1.getEvents());
+        events.addAll(update2.getEvents());
+        assertEquals(events, batch.getEvents());
+        assertEquals(update1.getTimestamp(), batch.getTimestamp());
+        for (UpdateEvent update : new UpdateEvent[]{update1, update2, update3}) {
+            for (ItemState state : update.getChanges().addedStates()) {
+                assertTrue(batch.getChanges().has(state.getId()));
+            }
+            for (ItemState state : update.getChanges().deletedStates()) {
+                assertTrue(contains(batch.getChanges().deletedStates(), state.getId()));
+            }
+        }
+
+        UpdateEvent events3 = (UpdateEvent) listener.getClusterEvents().get(1);
+        assertEquals(update3.getEvents(), events3.getEvents());
+        assertEquals(update3.getTimestamp(), events3.getTimestamp());
+        assertFalse(events3.getChanges().addedStates().iterator().hasNext());
+        assertFalse(events3.getChanges().deletedStates().iterator().hasNext());
+
+        assertEquals(event, listener.getClusterEvents().get(2));
+        assertEquals(update4, listener.getClusterEvents().get(3));
+        assertEquals(5, slave.getRevision());
+    }
+
+    /**
+     * Test that changes to the same item within one batch are coalesced.
+     * @throws Exception
+     */
+    public void testBatchedUpdatesCoalesced() throws Exception {
+        UpdateEventChannel channel = master.createUpdateChannel(DEFAULT_WORKSPACE);
+
+        UpdateEvent update1 = factory.createUpdateOperation();
+        commit(channel, update1);
+
+        ItemState added = update1.getChanges().addedStates().iterator().next();
+        ChangeLog changes = new ChangeLog();
+        changes.deleted(added);
+        UpdateEvent update2 = new UpdateEvent(changes, new ArrayList<EventState>(),
+                System.currentTimeMillis(), update1.getUserData());
+        commit(channel, update2);
+
+        SimpleEventListener listener = new SimpleEventListener();
+        slave.createUpdateChannel(DEFAULT_WORKSPACE).setListener(listener);
+        slave.setCatchUpThreshold(0);
+        slave.sync();
+
+        assertEquals(1, listener.getClusterEvents().size());
+        ChangeLog batch = ((UpdateEvent) listener.getClusterEvents().get(0)).getChanges();
+        assertTrue(contains(batch.deletedStates(), added.getId()));
+        assertFalse(batch.has(added.getId()));
+    }
+
+    /**
+     * Test that updates of other nodes are applied when synchronizing
+     * before locking the journal.
+     * @throws Exception
+     */
+    public void testSyncBeforeLock() throws Exception {
+        SimpleEventListener listener = new SimpleEventListener();
+        slave.createUpdateChannel(DEFAULT_WORKSPACE).setListener(listener);
+        slave.setSyncBeforeLock(true);
+        slave.disableAutoSync();
+        slave.start();
+
+        UpdateEvent update1 = factory.createUpdateOperation();
+        commit(master.createUpdateChannel(DEFAULT_WORKSPACE), update1);
+
+        UpdateEvent update2 = factory.createUpdateOperation();
+        commit(slave.createUpdateChannel(DEFAULT_WORKSPACE), update2);
+
+        assertEquals(1, listener.getClusterEvents().size());
+        assertEquals(update1, listener.getClusterEvents().get(0));
+        assertEquals(2, slave.getRevision());
+
+        SimpleEventListener masterListener = new SimpleEventListener();
+        master.createUpdateChannel(DEFAULT_WORKSPACE).setListener(masterListener);
+        master.sync();
+
+        assertEquals(1, masterListener.getClusterEvents().size());
+        assertEquals(update2, masterListener.getClusterEvents().get(0));
+    }
+
+    /**
+     * Test that synchronizing before locking the journal applies the
+     * updates of other nodes before the journal lock is taken, so that they
+     * no longer extend the time the lock is held.
+     * @throws Exception
+     */
+    public void testSyncBeforeLockAppliesUpdatesUnlocked() throws Exception {
+        assertTrue(getUpdatesAppliedWhileLocked(false) > 0);
+        assertEquals(0, getUpdatesAppliedWhileLocked(true));
+    }
+
+    /**
+     * Commits updates on the master, then an update on a new cluster node,
+     * and returns the number of master updates that the new node applied
+     * while it held the journal lock.
+     */
+    private int getUpdatesAppliedWhileLocked(boolean syncBeforeLock)
+            throws Exception {
+        final LockTrackingJournal journal = new LockTrackingJournal();
+        ClusterNode node = createClusterNode(
+                "node" + syncBeforeLock, records, journal);
+        final int[] locked = new int[1];
+        node.createUpdateChannel(DEFAULT_WORKSPACE).setListener(
+                new SimpleEventListener() {
+                    @Override
+                    public void externalUpdate(ChangeLog changes, List events,
+                            long timestamp, String userData)
+                            throws RepositoryException {
+                        if (journal.locked) {
+                            locked[0]++;
+                        }
+                        super.externalUpdate(changes, events, timestamp, userData);
+                    }
+                });
+        node.setSyncBeforeLock(syncBeforeLock);
+        node.disableAutoSync();
+        node.start();
+        try {
+            UpdateEventChannel channel = master.createUpdateChannel(DEFAULT_WORKSPACE);
+            for (int i = 0; i < 3; i++) {
+                commit(channel, factory.createUpdateOperation());
+            }
+            commit(node.createUpdateChannel(DEFAULT_WORKSPACE),
+                    factory.createUpdateOperation());
+            assertEquals(master.getRevision() + 1, node.getRevision());
+        } finally {
+            node.stop();
+        }
+        return locked[0];
+    }
+
     /**
      * Test producing and consuming a lock operation.
      * @throws Exception
@@ -299,6 +469,56 @@ public class ClusterRecordTest extends JUnitTest {
         assertEquals(listener.getClusterEvents().get(0), event);
     }
 
+    /**
+     * Return a flag indicating whether the given states contain an item id.
+     */
+    private static boolean contains(Iterable<ItemState> states, ItemId id) {
+        for (ItemState state : states) {
+            if (state.getId().equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Commit an update through the given channel.
+     */
+    private static void commit(UpdateEventChannel channel, UpdateEvent update)
+            throws ClusterException {
+        channel.updateCreated(update);
+        channel.updatePrepared(update);
+        channel.updateCommitted(update, null);
+    }
+
+    /**
+     * Return a copy of an update with another timestamp.
+     */
+    private static UpdateEvent withTimestamp(UpdateEvent update, long timestamp) {
+        return new UpdateEvent(update.getChanges(), update.getEvents(),
+                timestamp, update.getUserData());
+    }
+
+    /**
+     * Memory journal that tracks whether it is locked.
+     */
+    private static class LockTrackingJournal extends MemoryJournal {
+
+        private volatile boolean locked;
+
+        @Override
+        protected void doLock() throws JournalException {
+            super.doLock();
+            locked = true;
+        }
+
+        @Override
+        protected void doUnlock(boolean successful) {
+            locked = false;
+            super.doUnlock(successful);
+        }
+    }
+
     /**
      * Create a cluster node, with a memory journal referencing a list of records.
      *
@@ -307,7 +527,19 @@ public class ClusterRecordTest extends JUnitTest {
      */
     private ClusterNode createClusterNode(
             String id, ArrayList<MemoryRecord> records) throws Exception {
-        final MemoryJournal journal = new MemoryJournal();
+        return createClusterNode(id, records, new MemoryJournal());
+    }
+
+    /**
+     * Create a cluster node, with a memory journal referencing a list of records.
+     *
+     * @param id cluster node id
+     * @param records memory journal's list of records
+     * @param journal memory journal of the cluster node
+     */
+    private ClusterNode createClusterNode(String id,
+            ArrayList<MemoryRecord> records, final MemoryJournal journal)
+            throws Exception {
         JournalFactory jf = new JournalFactory() {
             public Journal getJournal(NamespaceResolver resolver)
                     throws RepositoryException {
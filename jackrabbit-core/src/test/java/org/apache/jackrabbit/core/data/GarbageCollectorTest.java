@@ -219,6 +219,79 @@ public class GarbageCollectorTest extends AbstractJCRTest implements ScanEventLi
         }
     }
 
+    public void testResumeAfterFailure() throws Exception {
+        Node root = testRootNode;
+        Session session = root.getSession();
+
+        Node n = root.addNode("nodeWithBlob");
+        ValueFactory vf = session.getValueFactory();
+        n.setProperty("test", vf.createBinary(new RandomInputStream(30, 1000)));
+        Node temp = root.addNode("nodeWithTemporaryBlob");
+        temp.setProperty("test", vf.createBinary(new RandomInputStream(31, 1000)));
+        temp.setProperty("test2", vf.createBinary(new RandomInputStream(32, 1000)));
+        session.save();
+        temp.remove();
+        session.save();
+
+        GarbageCollector gc = ((SessionImpl) session).createDataStoreGarbageCollector();
+        if (gc.getDataStore() instanceof FileDataStore) {
+            // make sure the file is old (access time resolution is 2 seconds)
+            Thread.sleep(2000);
+        }
+        gc.setConcurrentThreadSize(2);
+        gc.setMarkEventListener(new MarkEventListener() {
+            public void beforeScanning(Node n) throws RepositoryException {
+                throw new RepositoryException("Injected failure");
+            }
+        });
+        try {
+            gc.mark();
+            fail("The mark phase must fail");
+        } catch (RepositoryException expected) {
+        }
+        try {
+            gc.sweep();
+            fail("The sweep must not run after a failed mark phase");
+        } catch (RepositoryException expected) {
+        }
+
+        // the same collector continues where it stopped
+        gc.setMarkEventListener(null);
+        gc.mark();
+        assertTrue(gc.getStatus().getNodesScanned() > 0);
+        assertEquals(1.0, gc.getStatus().getProgress());
+        gc.close();
+
+        // re-reference a binary while no collector is running,
+        // its modified date is not updated
+        Node readded = root.addNode("nodeWithReaddedBlob");
+        readded.setProperty("test", vf.createBinary(new RandomInputStream(31, 1000)));
+        session.save();
+
+        // a new collector scans again
+        gc = ((SessionImpl) session).createDataStoreGarbageCollector();
+        gc.mark();
+        assertTrue(gc.getStatus().getNodesScanned() > 0);
+        gc.getDataStore().clearInUse();
+        int deleted = 0;
+        while (!gc.isSweepFinished()) {
+            deleted += gc.sweep(1);
+        }
+        assertTrue(deleted > 0);
+        gc.close();
+
+        InputStream in = n.getProperty("test").getBinary().getStream();
+        verifyInputStream(in, new RandomInputStream(30, 1000));
+        in.close();
+        in = readded.getProperty("test").getBinary().getStream();
+        verifyInputStream(in, new RandomInputStream(31, 1000));
+        in.close();
+
+        n.remove();
+        readded.remove();
+        session.save();
+    }
+
     private void runGC(Session session, boolean all) throws Exception {
         GarbageCollector gc = ((SessionImpl)session).createDataStoreGarbageCollector();
         gc.setMarkEventListener(this);
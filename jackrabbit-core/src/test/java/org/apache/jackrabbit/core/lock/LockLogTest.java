@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.lock;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.core.fs.FileSystem;
+import org.apache.jackrabbit.core.fs.mem.MemoryFileSystem;
+import org.apache.jackrabbit.core.id.NodeId;
+
+/**
+ * <code>LockLogTest</code> checks that open-scoped locks persisted through
+ * the {@link LockLog} are recovered from the snapshot and the log entries.
+ */
+public class LockLogTest extends TestCase {
+
+    private MemoryFileSystem fs;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        fs = new MemoryFileSystem();
+        fs.init();
+    }
+
+    public void testEmpty() throws Exception {
+        LockLog log = new LockLog(fs);
+        assertTrue(log.load().isEmpty());
+    }
+
+    public void testReadsExistingLocksFile() throws Exception {
+        LockInfo a = new TestLockInfo(Long.MAX_VALUE);
+        LockInfo b = new TestLockInfo(300);
+        new LockLog(fs).save(Arrays.asList(a, b));
+
+        List<String> lines = new LockLog(fs).load();
+        assertEquals(Arrays.asList(a.getLockToken(), b.getLockToken() + ",300"), lines);
+    }
+
+    public void testAddAndRemoveAreLogged() throws Exception {
+        LockInfo a = new TestLockInfo(Long.MAX_VALUE);
+        LockInfo b = new TestLockInfo(60);
+        LockInfo c = new TestLockInfo(Long.MAX_VALUE);
+
+        LockLog log = new LockLog(fs);
+        log.load();
+        log.save(Collections.singletonList(a));
+        assertFalse(log.added(b));
+        assertFalse(log.added(c));
+        assertFalse(log.removed(a));
+        assertEquals(3, log.getEntryCount());
+        // the snapshot is not rewritten
+        assertEquals(a.getLockToken(), readLocksFile().trim());
+
+        LockLog recovered = new LockLog(fs);
+        assertEquals(Arrays.asList(b.getLockToken() + ",60", c.getLockToken()), recovered.load());
+        assertEquals(3, recovered.getEntryCount());
+
+        // subsequent entries continue the sequence
+        assertFalse(recovered.removed(b));
+        assertEquals(Collections.singletonList(c.getLockToken()), new LockLog(fs).load());
+    }
+
+    public void testSaveRemovesEntries() throws Exception {
+        LockInfo a = new TestLockInfo(Long.MAX_VALUE);
+        LockInfo b = new TestLockInfo(Long.MAX_VALUE);
+
+        LockLog log = new LockLog(fs);
+        log.load();
+        log.added(a);
+        log.added(b);
+        log.save(Arrays.asList(a, b));
+        assertEquals(0, log.getEntryCount());
+        assertEquals(0, fs.listFiles(FileSystem.SEPARATOR + LockLog.LOG_FOLDER).length);
+
+        assertEquals(Arrays.asList(a.getLockToken(), b.getLockToken()), new LockLog(fs).load());
+    }
+
+    public void testReplayAfterSnapshotIsIdempotent() throws Exception {
+        LockInfo a = new TestLockInfo(Long.MAX_VALUE);
+        LockInfo b = new TestLockInfo(Long.MAX_VALUE);
+
+        LockLog log = new LockLog(fs);
+        log.load();
+        log.added(a);
+        log.added(b);
+        log.removed(a);
+
+        // simulate a crash after writing the snapshot but before the
+        // entries were removed
+        OutputStream out = fs.getOutputStream(FileSystem.SEPARATOR + LockLog.LOCKS_FILE);
+        out.write((b.getLockToken() + "\n").getBytes("UTF-8"));
+        out.close();
+        assertEquals(3, fs.listFiles(FileSystem.SEPARATOR + LockLog.LOG_FOLDER).length);
+
+        assertEquals(Collections.singletonList(b.getLockToken()), new LockLog(fs).load());
+    }
+
+    public void testCompactionRequested() throws Exception {
+        LockLog log = new LockLog(fs, 2);
+        log.load();
+        LockInfo a = new TestLockInfo(Long.MAX_VALUE);
+        assertFalse(log.added(a));
+        assertFalse(log.removed(a));
+        assertTrue(log.added(a));
+
+        log.save(Collections.singletonList(a));
+        assertFalse(log.removed(a));
+    }
+
+    private String readLocksFile() throws Exception {
+        InputStream in = fs.getInputStream(FileSystem.SEPARATOR + LockLog.LOCKS_FILE);
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class TestLockInfo extends LockInfo {
+
+        TestLockInfo(long timeoutHint) {
+            super(NodeId.randomId(), false, false, "owner", timeoutHint);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.observation;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+
+import org.apache.jackrabbit.test.api.observation.AbstractObservationTest;
+import org.apache.jackrabbit.test.api.observation.EventResult;
+
+/**
+ * Tests that events are delivered to the listeners registered at the paths
+ * of the events when many listeners are registered at different paths.
+ */
+public class PathFilterTest extends AbstractObservationTest {
+
+    private static final int LISTENERS = 20;
+
+    public void testManyListeners() throws RepositoryException {
+        Node[] nodes = new Node[LISTENERS];
+        for (int i = 0; i < LISTENERS; i++) {
+            nodes[i] = testRootNode.addNode(nodeName1 + i, testNodeType);
+        }
+        testRootNode.getSession().save();
+
+        EventResult[] shallow = new EventResult[LISTENERS];
+        EventResult[] deep = new EventResult[LISTENERS];
+        try {
+            for (int i = 0; i < LISTENERS; i++) {
+                shallow[i] = new EventResult(log);
+                obsMgr.addEventListener(shallow[i], Event.NODE_ADDED,
+                        nodes[i].getPath(), false, null, null, false);
+                deep[i] = new EventResult(log);
+                obsMgr.addEventListener(deep[i], Event.NODE_ADDED,
+                        nodes[i].getPath(), true, null, null, false);
+            }
+
+            // one child of the third node and one grandchild of the fifth
+            nodes[3].addNode(nodeName2, testNodeType);
+            nodes[5].addNode(nodeName2, testNodeType).addNode(nodeName3, testNodeType);
+            testRootNode.getSession().save();
+
+            assertEquals(1, shallow[3].getEvents(DEFAULT_WAIT_TIMEOUT).length);
+            assertEquals(1, deep[3].getEvents(DEFAULT_WAIT_TIMEOUT).length);
+            assertEquals(1, shallow[5].getEvents(DEFAULT_WAIT_TIMEOUT).length);
+            assertEquals(2, deep[5].getEvents(DEFAULT_WAIT_TIMEOUT).length);
+            // all listeners are notified of a save at once
+            for (int i = 0; i < LISTENERS; i++) {
+                if (i != 3 && i != 5) {
+                    assertNull("shallow listener " + i, shallow[i].getEventIterator(0));
+                    assertNull("deep listener " + i, deep[i].getEventIterator(0));
+                }
+            }
+        } finally {
+            for (int i = 0; i < LISTENERS; i++) {
+                if (shallow[i] != null) {
+                    obsMgr.removeEventListener(shallow[i]);
+                }
+                if (deep[i] != null) {
+                    obsMgr.removeEventListener(deep[i]);
+                }
+            }
+        }
+    }
+
+    public void testEventTypes() throws RepositoryException {
+        Node node = testRootNode.addNode(nodeName1, testNodeType);
+        testRootNode.getSession().save();
+
+        EventResult added = new EventResult(log);
+        EventResult changed = new EventResult(log);
+        obsMgr.addEventListener(added, Event.NODE_ADDED,
+                node.getPath(), true, null, null, false);
+        obsMgr.addEventListener(changed, Event.PROPERTY_ADDED,
+                node.getPath(), true, null, null, false);
+        try {
+            node.addNode(nodeName2, testNodeType);
+            testRootNode.getSession().save();
+
+            assertEquals(1, added.getEvents(DEFAULT_WAIT_TIMEOUT).length);
+            Event[] events = changed.getEvents(DEFAULT_WAIT_TIMEOUT);
+            for (Event event : events) {
+                assertEquals(Event.PROPERTY_ADDED, event.getType());
+            }
+        } finally {
+            obsMgr.removeEventListener(added);
+            obsMgr.removeEventListener(changed);
+        }
+    }
+}
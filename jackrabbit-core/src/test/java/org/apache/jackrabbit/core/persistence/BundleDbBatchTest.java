@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.persistence;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.jcr.PropertyType;
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.core.NamespaceRegistryImpl;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.fs.mem.MemoryFileSystem;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.id.PropertyId;
+import org.apache.jackrabbit.core.persistence.pool.BundleDbPersistenceManager;
+import org.apache.jackrabbit.core.state.ChangeLog;
+import org.apache.jackrabbit.core.state.ItemState;
+import org.apache.jackrabbit.core.state.ItemStateException;
+import org.apache.jackrabbit.core.state.NodeReferences;
+import org.apache.jackrabbit.core.state.NodeState;
+import org.apache.jackrabbit.core.state.PropertyState;
+import org.apache.jackrabbit.core.util.db.ConnectionFactory;
+import org.apache.jackrabbit.core.util.db.ConnectionHelper;
+import org.apache.jackrabbit.core.util.db.DbUtility;
+import org.apache.jackrabbit.core.util.db.Oracle10R1ConnectionHelper;
+import org.apache.jackrabbit.core.value.InternalValue;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.apache.jackrabbit.stats.RepositoryStatisticsImpl;
+
+/**
+ * Tests that the bundle database persistence manager writes a change log
+ * with JDBC batches as a whole or not at all, using an embedded Derby
+ * database.
+ */
+public class BundleDbBatchTest extends TestCase {
+
+    private static final String DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
+
+    private static final NodeId PARENT_ID = NodeId.randomId();
+
+    private static final NodeId CHILD_ID = NodeId.randomId();
+
+    private static final Name TEST =
+        NameFactoryImpl.getInstance().create("", "test");
+
+    private static final PropertyId PROPERTY_ID = new PropertyId(PARENT_ID, TEST);
+
+    private File directory;
+
+    private File database;
+
+    private ConnectionFactory connectionFactory;
+
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("jackrabbit-persistence-", "-test");
+        directory.delete();
+        directory.mkdirs();
+
+        database = File.createTempFile("jackrabbit-persistence-", "-derby");
+        database.delete();
+
+        connectionFactory = new ConnectionFactory();
+    }
+
+    protected void tearDown() throws Exception {
+        connectionFactory.close();
+        FileUtils.deleteQuietly(database);
+        FileUtils.deleteQuietly(directory);
+    }
+
+    /**
+     * A failure in the middle of the last batch rolls back the batches of
+     * the change log that were already executed, and the updates of the
+     * failed change log are not executed with the next one.
+     */
+    public void testFailedBatch() throws Exception {
+        FailingPersistenceManager manager = new FailingPersistenceManager();
+        manager.setDriver(DRIVER);
+        manager.setUrl(getUrl());
+        manager.setConnectionFactory(connectionFactory);
+        manager.init(new PMContext(
+                directory,
+                new MemoryFileSystem(),
+                RepositoryImpl.ROOT_NODE_ID,
+                new NamespaceRegistryImpl(new MemoryFileSystem()),
+                null,
+                null,
+                new RepositoryStatisticsImpl()));
+        try {
+            NodeState parent = new NodeState(
+                    PARENT_ID, TEST, RepositoryImpl.ROOT_NODE_ID,
+                    ItemState.STATUS_NEW, true);
+            parent.addPropertyName(NameConstants.JCR_PRIMARYTYPE);
+            ChangeLog create = new ChangeLog();
+            create.added(parent);
+            manager.store(create);
+
+            // update the parent bundle, insert the child bundle and insert
+            // the references to both nodes. the node references are written
+            // after the bundles, so the second node references entry is the
+            // last of the four updates of the change log
+            parent.setStatus(ItemState.STATUS_EXISTING);
+            parent.addChildNodeEntry(TEST, CHILD_ID);
+            parent.addPropertyName(TEST);
+
+            NodeState child = new NodeState(
+                    CHILD_ID, TEST, PARENT_ID, ItemState.STATUS_NEW, true);
+            child.addPropertyName(NameConstants.JCR_PRIMARYTYPE);
+
+            PropertyState property =
+                new PropertyState(PROPERTY_ID, ItemState.STATUS_NEW, true);
+            property.setType(PropertyType.REFERENCE);
+            property.setMultiValued(true);
+            property.setValues(new InternalValue[] {
+                    InternalValue.create(PARENT_ID),
+                    InternalValue.create(CHILD_ID) });
+
+            NodeReferences parentRefs = new NodeReferences(PARENT_ID);
+            parentRefs.addReference(PROPERTY_ID);
+            NodeReferences childRefs = new NodeReferences(CHILD_ID);
+            childRefs.addReference(PROPERTY_ID);
+
+            ChangeLog update = new ChangeLog();
+            update.modified(parent);
+            update.added(child);
+            update.added(property);
+            update.modified(parentRefs);
+            update.modified(childRefs);
+
+            FailingConnectionHelper helper = manager.helper;
+            helper.failAt = 4;
+            try {
+                manager.store(update);
+                fail("Change log with a failing batch must not be stored");
+            } catch (ItemStateException expected) {
+            }
+            // the persistence manager tries the change log twice
+            assertEquals(2, helper.failures);
+
+            // nothing of the change log was persisted
+            assertTrue(manager.load(PARENT_ID).getChildNodeEntries().isEmpty());
+            assertFalse(manager.exists(CHILD_ID));
+            assertFalse(manager.exists(PROPERTY_ID));
+            assertFalse(manager.existsReferencesTo(PARENT_ID));
+            assertFalse(manager.existsReferencesTo(CHILD_ID));
+
+            // the next change log only runs its own update
+            helper.failAt = 0;
+            NodeId otherId = NodeId.randomId();
+            NodeState other = new NodeState(
+                    otherId, TEST, RepositoryImpl.ROOT_NODE_ID,
+                    ItemState.STATUS_NEW, true);
+            other.addPropertyName(NameConstants.JCR_PRIMARYTYPE);
+            ChangeLog next = new ChangeLog();
+            next.added(other);
+            int batched = helper.batched;
+            manager.store(next);
+            assertEquals(batched + 1, helper.batched);
+
+            assertTrue(manager.exists(otherId));
+            assertFalse(manager.exists(CHILD_ID));
+            assertFalse(manager.existsReferencesTo(PARENT_ID));
+            assertFalse(manager.existsReferencesTo(CHILD_ID));
+        } finally {
+            manager.close();
+        }
+    }
+
+    /**
+     * The Oracle 10.1 connection helper executes each statement of a batch
+     * right away, so that the temporary blobs can be freed.
+     */
+    public void testOracle10R1UpdateBatch() throws Exception {
+        DataSource dataSource =
+            connectionFactory.getDataSource(DRIVER, getUrl(), null, null);
+        ConnectionHelper helper = new Oracle10R1ConnectionHelper(dataSource, false);
+        helper.exec("create table BATCH_TEST (ID int)");
+
+        List<Object[]> params = Arrays.asList(
+                new Object[] { 1 }, new Object[] { 2 }, new Object[] { 3 });
+        int[] counts = helper.updateBatch("insert into BATCH_TEST values (?)", params);
+        // nothing was left for the JDBC batch
+        assertEquals(0, counts.length);
+        assertEquals(3, count(helper));
+
+        // the default helper uses a JDBC batch
+        ConnectionHelper batchHelper = new ConnectionHelper(dataSource, false);
+        counts = batchHelper.updateBatch("insert into BATCH_TEST values (?)", params);
+        assertEquals(3, counts.length);
+        assertEquals(6, count(helper));
+    }
+
+    private String getUrl() {
+        return "jdbc:derby:" + database.getPath() + ";create=true";
+    }
+
+    private static int count(ConnectionHelper helper) throws SQLException {
+        ResultSet rs = helper.query("select count(*) from BATCH_TEST");
+        try {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        } finally {
+            DbUtility.close(rs);
+        }
+    }
+
+    /**
+     * A bundle persistence manager on the embedded Derby database that
+     * uses a {@link FailingConnectionHelper}.
+     */
+    private static class FailingPersistenceManager
+            extends BundleDbPersistenceManager {
+
+        private FailingConnectionHelper helper;
+
+        private FailingPersistenceManager() {
+            setDatabaseType("derby");
+            setSchemaObjectPrefix("");
+        }
+
+        @Override
+        protected ConnectionHelper createConnectionHelper(DataSource dataSrc) {
+            helper = new FailingConnectionHelper(dataSrc);
+            return helper;
+        }
+
+        @Override
+        public int getStorageModel() {
+            return SM_LONGLONG_KEYS;
+        }
+
+    }
+
+    /**
+     * Fails to add every {@link #failAt}th set of parameters to the batch of
+     * a statement, counted from the time {@link #failAt} is set.
+     */
+    private static class FailingConnectionHelper extends ConnectionHelper {
+
+        private int failAt;
+
+        private int calls;
+
+        private int failures;
+
+        private int batched;
+
+        private FailingConnectionHelper(DataSource dataSrc) {
+            super(dataSrc, false);
+        }
+
+        @Override
+        protected void addBatch(PreparedStatement stmt, Object[] params)
+                throws SQLException {
+            if (failAt > 0 && ++calls % failAt == 0) {
+                failures++;
+                throw new SQLException("Injected failure");
+            }
+            super.addBatch(stmt, params);
+            batched++;
+        }
+
+    }
+
+}
@@ -83,6 +83,14 @@ public class PersistenceManagerTest extends TestCase {
         assertPersistenceManager(new InMemBundlePersistenceManager());
     }
 
+    public void testInMemBundlePersistenceManagerWithOffHeapCache()
+            throws Exception {
+        InMemBundlePersistenceManager manager =
+            new InMemBundlePersistenceManager();
+        manager.setOffHeapBundleCacheSize("1");
+        assertPersistenceManager(manager);
+    }
+
     public void testXMLPersistenceManager() throws Exception {
         assertPersistenceManager(new XMLPersistenceManager());
     }
@@ -225,6 +233,19 @@ public class PersistenceManagerTest extends TestCase {
         assertTrue(manager.exists(PROPERTY_ID));
         assertTrue(manager.existsReferencesTo(CHILD_ID));
 
+        if (manager instanceof PrefetchingPersistenceManager) {
+            NodeId missing = NodeId.randomId();
+            ((PrefetchingPersistenceManager) manager).prefetch(
+                    Arrays.asList(NODE_ID, CHILD_ID, missing));
+            assertFalse(manager.exists(missing));
+            try {
+                manager.load(missing);
+                fail("Prefetched missing node must not be found");
+            } catch (NoSuchItemStateException e) {
+                // expected
+            }
+        }
+
         assertEquals(node, manager.load(NODE_ID));
         assertEquals(child, manager.load(CHILD_ID));
         assertEquals(property, manager.load(PROPERTY_ID));
@@ -34,6 +34,7 @@ public class TestAll extends TestCase {
 
         suite.addTestSuite(PersistenceManagerTest.class);
         suite.addTestSuite(AutoFixCorruptNode.class);
+        suite.addTestSuite(BundleDbBatchTest.class);
 
         return suite;
     }
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.persistence.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+
+import javax.jcr.PropertyType;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.id.PropertyId;
+import org.apache.jackrabbit.core.persistence.util.NodePropBundle.PropertyEntry;
+import org.apache.jackrabbit.core.value.InternalValue;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.commons.name.NameConstants;
+
+import junit.framework.TestCase;
+
+public class OffHeapBundleCacheTest extends TestCase {
+
+    private BundleBinding binding;
+
+    protected void setUp() throws Exception {
+        HashMapIndex index = new HashMapIndex();
+        binding = new BundleBinding(null, null, index, index, null);
+    }
+
+    private NodePropBundle createBundle(NodeId id, String title) {
+        NodePropBundle bundle = new NodePropBundle(id);
+        bundle.setParentId(new NodeId(1, 2));
+        bundle.setNodeTypeName(NameConstants.NT_UNSTRUCTURED);
+        bundle.setMixinTypeNames(Collections.<Name>emptySet());
+        bundle.setSharedSet(Collections.<NodeId>emptySet());
+        PropertyEntry property = new PropertyEntry(
+                new PropertyId(id, NameConstants.JCR_TITLE));
+        property.setType(PropertyType.STRING);
+        property.setMultiValued(false);
+        property.setValues(new InternalValue[] { InternalValue.create(title) });
+        bundle.addProperty(property);
+        return bundle;
+    }
+
+    private static String getTitle(NodePropBundle bundle) {
+        PropertyEntry property = bundle.getPropertyEntry(NameConstants.JCR_TITLE);
+        return property.getValues()[0].toString();
+    }
+
+    public void testPutAndGet() throws Exception {
+        OffHeapBundleCache cache = new OffHeapBundleCache(binding, 1024 * 1024);
+        NodeId id = NodeId.randomId();
+        assertNull(cache.get(id));
+
+        NodePropBundle bundle = createBundle(id, "first");
+        assertTrue(cache.put(bundle));
+        assertTrue(cache.containsKey(id));
+        assertEquals(1, cache.getElementCount());
+
+        NodePropBundle cached = cache.get(id);
+        assertNotSame(bundle, cached);
+        assertEquals(bundle, cached);
+        assertEquals("first", getTitle(cached));
+
+        assertTrue(cache.put(createBundle(id, "second")));
+        assertEquals(1, cache.getElementCount());
+        assertEquals("second", getTitle(cache.get(id)));
+
+        cache.remove(id);
+        assertFalse(cache.containsKey(id));
+        assertNull(cache.get(id));
+        assertEquals(0, cache.getEntrySize());
+    }
+
+    public void testPutSerialized() throws Exception {
+        OffHeapBundleCache cache = new OffHeapBundleCache(binding, 1024 * 1024);
+        NodeId id = NodeId.randomId();
+        NodePropBundle bundle = createBundle(id, "serialized");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        binding.writeBundle(out, bundle);
+
+        assertTrue(cache.put(id, out.toByteArray()));
+        assertEquals(out.size(), cache.getEntrySize());
+        assertEquals(bundle, cache.get(id));
+    }
+
+    public void testManyEntries() throws Exception {
+        OffHeapBundleCache cache = new OffHeapBundleCache(binding, 16 * 1024 * 1024);
+        NodeId[] ids = new NodeId[10000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = new NodeId(i % 7, i);
+            assertTrue(cache.put(createBundle(ids[i], "node " + i)));
+        }
+        assertEquals(ids.length, cache.getElementCount());
+
+        // remove every other entry, the others must still be found
+        for (int i = 0; i < ids.length; i += 2) {
+            cache.remove(ids[i]);
+        }
+        assertEquals(ids.length / 2, cache.getElementCount());
+        for (int i = 0; i < ids.length; i++) {
+            if (i % 2 == 0) {
+                assertNull(cache.get(ids[i]));
+            } else {
+                assertEquals("node " + i, getTitle(cache.get(ids[i])));
+            }
+        }
+    }
+
+    public void testEviction() throws Exception {
+        OffHeapBundleCache cache = new OffHeapBundleCache(binding, 4096, 1024);
+        assertEquals(4096, cache.getMaxMemorySize());
+
+        NodeId[] ids = new NodeId[100];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = NodeId.randomId();
+            assertTrue(cache.put(createBundle(ids[i], "node " + i)));
+        }
+        assertTrue(cache.getElementCount() < ids.length);
+        assertTrue(cache.getEntrySize() <= cache.getMaxMemorySize());
+        assertEquals(cache.getMaxMemorySize(), cache.getMemoryUsed());
+
+        // the oldest entries were evicted, the latest ones are still cached
+        assertFalse(cache.containsKey(ids[0]));
+        for (int i = ids.length - 5; i < ids.length; i++) {
+            assertEquals("node " + i, getTitle(cache.get(ids[i])));
+        }
+    }
+
+    public void testEntryLargerThanSlab() throws Exception {
+        OffHeapBundleCache cache = new OffHeapBundleCache(binding, 256, 128);
+        NodeId id = NodeId.randomId();
+        assertTrue(cache.put(createBundle(id, "small")));
+
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            title.append('x');
+        }
+        assertFalse(cache.put(createBundle(id, title.toString())));
+        assertFalse(cache.containsKey(id));
+    }
+
+    public void testClear() throws Exception {
+        OffHeapBundleCache cache = new OffHeapBundleCache(binding, 1024 * 1024);
+        for (int i = 0; i < 10; i++) {
+            cache.put(createBundle(NodeId.randomId(), "node " + i));
+        }
+        assertEquals(10, cache.getElementCount());
+        cache.clear();
+        assertEquals(0, cache.getElementCount());
+        assertEquals(0, cache.getEntrySize());
+
+        NodeId id = NodeId.randomId();
+        assertTrue(cache.put(createBundle(id, "after clear")));
+        assertEquals("after clear", getTitle(cache.get(id)));
+
+        cache.dispose();
+        assertEquals(0, cache.getMemoryUsed());
+        assertNull(cache.get(id));
+    }
+
+}
@@ -16,11 +16,17 @@
  */
 package org.apache.jackrabbit.core.query;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.jcr.Node;
 import javax.jcr.PropertyType;
 import javax.jcr.nodetype.NodeType;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
+import javax.jcr.query.Row;
+
+import org.apache.jackrabbit.commons.JcrUtils;
 
 /**
  * Test case for JOIN queries with JCR_SQL2
@@ -97,6 +103,75 @@ public class JoinTest extends AbstractQueryTest {
         checkResult(qm.createQuery(join, Query.JCR_SQL2).execute(), 3);
     }
 
+    /**
+     * The left side has fewer rows than the right side, so the rows are
+     * merged through a hash table of the left rows.
+     */
+    public void testJoinWithSmallerLeftSide() throws Exception {
+        Node target = node.addNode("target", "nt:unstructured");
+        target.addMixin(NodeType.MIX_REFERENCEABLE);
+        target.setProperty("type", "target");
+        for (int i = 0; i < 5; i++) {
+            node.addNode("source" + i, "nt:unstructured").setProperty(
+                    "targetref", target.getIdentifier(), PropertyType.REFERENCE);
+        }
+        testRootNode.getSession().save();
+
+        String join = "SELECT a.*, b.*"
+                + " FROM [nt:unstructured] AS a"
+                + " INNER JOIN [nt:unstructured] AS b ON a.[jcr:uuid] = b.targetref"
+                + " WHERE a.type = 'target'";
+        QueryResult result = qm.createQuery(join, Query.JCR_SQL2).execute();
+        for (Row row : JcrUtils.getRows(result)) {
+            assertEquals(target.getPath(), row.getPath("a"));
+        }
+        checkResult(qm.createQuery(join, Query.JCR_SQL2).execute(), 5);
+    }
+
+    /**
+     * Rows merged through a hash table of the left rows are returned in the
+     * order of the left rows, like rows merged through a hash table of the
+     * right rows.
+     */
+    public void testJoinWithSmallerLeftSideKeepsLeftOrder() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Node target = node.addNode("target" + i, "nt:unstructured");
+            target.addMixin(NodeType.MIX_REFERENCEABLE);
+            target.setProperty("type", "target");
+            for (int j = 0; j < 3; j++) {
+                node.addNode("source" + i + j, "nt:unstructured").setProperty(
+                        "targetref", target.getIdentifier(), PropertyType.REFERENCE);
+            }
+        }
+        testRootNode.getSession().save();
+
+        List<String> expected = new ArrayList<String>();
+        String left = "SELECT a.* FROM [nt:unstructured] AS a"
+                + " WHERE a.type = 'target'";
+        for (Row row : JcrUtils.getRows(
+                qm.createQuery(left, Query.JCR_SQL2).execute())) {
+            expected.add(row.getPath("a"));
+        }
+        assertEquals(3, expected.size());
+
+        String join = "SELECT a.*, b.*"
+                + " FROM [nt:unstructured] AS a"
+                + " INNER JOIN [nt:unstructured] AS b ON a.[jcr:uuid] = b.targetref"
+                + " WHERE a.type = 'target'";
+        List<String> actual = new ArrayList<String>();
+        int count = 0;
+        for (Row row : JcrUtils.getRows(
+                qm.createQuery(join, Query.JCR_SQL2).execute())) {
+            String path = row.getPath("a");
+            if (actual.isEmpty() || !path.equals(actual.get(actual.size() - 1))) {
+                actual.add(path);
+            }
+            count++;
+        }
+        assertEquals(9, count);
+        assertEquals(expected, actual);
+    }
+
     /**
      * Test case for <a
      * href="https://issues.apache.org/jira/browse/JCR-2852">JCR-2852</a>
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query;
+
+import java.io.InputStream;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+import javax.jcr.query.InvalidQueryException;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.qom.And;
+import javax.jcr.query.qom.Comparison;
+import javax.jcr.query.qom.Literal;
+import javax.jcr.query.qom.QueryObjectModel;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.jackrabbit.core.JackrabbitRepositoryStub;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.stats.QueryCacheStatCore;
+import org.apache.jackrabbit.stats.jmx.QueryCacheStatManagerMBean;
+import org.apache.jackrabbit.stats.jmx.QueryStatManager;
+
+/**
+ * Tests that parsed queries are shared through the {@link QueryTreeCache}.
+ */
+public class QueryTreeCacheTest extends AbstractQueryTest {
+
+    private QueryCacheStatCore queryStat;
+
+    private boolean enabled;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        queryStat = (QueryCacheStatCore) JackrabbitRepositoryStub
+                .getRepositoryContext(superuser.getRepository())
+                .getStatManager().getQueryStat();
+        enabled = queryStat.isEnabled();
+        queryStat.setEnabled(true);
+    }
+
+    protected void tearDown() throws Exception {
+        queryStat.setEnabled(enabled);
+        queryStat = null;
+        super.tearDown();
+    }
+
+    public void testBindVariables() throws Exception {
+        Node n1 = testRootNode.addNode(nodeName1);
+        n1.setProperty(propertyName1, "a");
+        Node n2 = testRootNode.addNode(nodeName2);
+        n2.setProperty(propertyName1, "b");
+        superuser.save();
+
+        String sql = "SELECT * FROM [nt:base] WHERE ISCHILDNODE(["
+                + testRoot + "]) AND [" + propertyName1 + "] = $v";
+        Query q = qm.createQuery(sql, Query.JCR_SQL2);
+        long hits = queryStat.getQueryCacheHitCount();
+        q.bindValue("v", vf.createValue("a"));
+        checkResult(q.execute(), new Node[] {n1});
+
+        q = qm.createQuery(sql, Query.JCR_SQL2);
+        assertEquals(hits + 1, queryStat.getQueryCacheHitCount());
+        q.bindValue("v", vf.createValue("b"));
+        checkResult(q.execute(), new Node[] {n2});
+    }
+
+    public void testLiteral() throws Exception {
+        Node n1 = testRootNode.addNode(nodeName1);
+        n1.setProperty(propertyName1, "a");
+        superuser.save();
+
+        String sql = "SELECT * FROM [nt:base] WHERE ["
+                + propertyName1 + "] = 'a' AND ISCHILDNODE([" + testRoot + "])";
+        Query q = qm.createQuery(sql, Query.JCR_SQL2);
+        // reading the stream of the literal must not affect other queries
+        And and = (And) ((QueryObjectModel) q).getConstraint();
+        Literal literal = (Literal) ((Comparison) and.getConstraint1()).getOperand2();
+        InputStream in = literal.getLiteralValue().getStream();
+        in.close();
+        checkResult(q.execute(), new Node[] {n1});
+
+        long hits = queryStat.getQueryCacheHitCount();
+        q = qm.createQuery(sql, Query.JCR_SQL2);
+        assertEquals(hits + 1, queryStat.getQueryCacheHitCount());
+        checkResult(q.execute(), new Node[] {n1});
+    }
+
+    public void testXPath() throws Exception {
+        Node n1 = testRootNode.addNode(nodeName1);
+        superuser.save();
+
+        String xpath = testPath + "/element(" + nodeName1 + ")";
+        executeXPathQuery(xpath, new Node[] {n1});
+        long hits = queryStat.getQueryCacheHitCount();
+        executeXPathQuery(xpath, new Node[] {n1});
+        assertEquals(hits + 1, queryStat.getQueryCacheHitCount());
+    }
+
+    public void testStatManager() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        ObjectName name = new ObjectName("org.apache.jackrabbit:type=QueryStat");
+        server.registerMBean(new StandardMBean(
+                new QueryStatManager(queryStat), QueryCacheStatManagerMBean.class),
+                name);
+
+        String xpath = testPath + "/element(" + nodeName1 + ")";
+        executeXPathQuery(xpath, new Node[0]);
+        long hits = (Long) server.getAttribute(name, "QueryCacheHitCount");
+        long misses = (Long) server.getAttribute(name, "QueryCacheMissCount");
+        executeXPathQuery(xpath, new Node[0]);
+        assertEquals(hits + 1, server.getAttribute(name, "QueryCacheHitCount"));
+        assertEquals(misses, server.getAttribute(name, "QueryCacheMissCount"));
+        assertTrue((Double) server.getAttribute(name, "QueryCacheHitRate") > 0);
+
+        // the lookups are not counted while the statistics are disabled
+        server.invoke(name, "disable", null, null);
+        executeXPathQuery(xpath, new Node[0]);
+        assertEquals(hits + 1, server.getAttribute(name, "QueryCacheHitCount"));
+        server.invoke(name, "enable", null, null);
+
+        MBeanServerFactory.releaseMBeanServer(server);
+    }
+
+    public void testRemappedNamespace() throws Exception {
+        Node n1 = testRootNode.addNode(nodeName1, "nt:unstructured");
+        superuser.save();
+
+        String sql = "SELECT * FROM [nt:unstructured] WHERE ISCHILDNODE(["
+                + testRoot + "])";
+        checkResult(qm.createQuery(sql, Query.JCR_SQL2).execute(), new Node[] {n1});
+
+        Session session = getHelper().getSuperuserSession();
+        try {
+            session.setNamespacePrefix("mynt", Name.NS_NT_URI);
+            QueryManager manager = session.getWorkspace().getQueryManager();
+            try {
+                manager.createQuery(sql, Query.JCR_SQL2);
+                fail("nt prefix must not be known in remapped session");
+            } catch (InvalidQueryException e) {
+                // expected
+            }
+            String remapped = "SELECT * FROM [mynt:unstructured] WHERE ISCHILDNODE(["
+                    + testRoot + "])";
+            assertEquals(1, manager.createQuery(remapped, Query.JCR_SQL2)
+                    .execute().getNodes().getSize());
+        } finally {
+            session.logout();
+        }
+    }
+}
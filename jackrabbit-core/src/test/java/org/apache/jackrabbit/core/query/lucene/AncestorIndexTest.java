@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import javax.jcr.Node;
+import javax.jcr.version.Version;
+
+import org.apache.jackrabbit.core.query.AbstractIndexingTest;
+
+/**
+ * <code>AncestorIndexTest</code> checks descendant axis queries on an index
+ * with {@link IndexFormatVersion#V4}. Only the workspace index of the test
+ * workspace indexes the ancestors, the index of the jcr:system tree does
+ * not.
+ */
+public class AncestorIndexTest extends AbstractIndexingTest {
+
+    private static final String WORKSPACE_NAME = "ancestor-index-test";
+
+    private Node a;
+
+    private Node b;
+
+    private Node c;
+
+    private Node d;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        a = testRootNode.addNode("a");
+        b = a.addNode("b");
+        c = b.addNode("c");
+        d = c.addNode("d");
+        session.save();
+    }
+
+    protected void tearDown() throws Exception {
+        a = null;
+        b = null;
+        c = null;
+        d = null;
+        super.tearDown();
+    }
+
+    protected String getWorkspaceName() {
+        return WORKSPACE_NAME;
+    }
+
+    public void testIndexFormatVersion() {
+        assertEquals(IndexFormatVersion.V4.getVersion(),
+                getSearchIndex().getIndexFormatVersion().getVersion());
+    }
+
+    public void testDescendants() throws Exception {
+        executeXPathQuery(testPath + "/a//*", new Node[]{b, c, d});
+        executeXPathQuery(testPath + "/a//c", new Node[]{c});
+        executeXPathQuery(testPath + "/a//*/d", new Node[]{d});
+        executeXPathQuery(testPath + "/a//*/*/d", new Node[]{d});
+        executeXPathQuery(testPath + "/a/b//*/b", new Node[]{});
+    }
+
+    public void testDescendantOrSelf() throws Exception {
+        executeSQLQuery("SELECT * FROM nt:base WHERE jcr:path LIKE '"
+                + a.getPath() + "/%'", new Node[]{b, c, d});
+        executeSQL2Query("SELECT * FROM [nt:base] WHERE ISDESCENDANTNODE(["
+                + b.getPath() + "])", new Node[]{c, d});
+    }
+
+    public void testMove() throws Exception {
+        Node x = testRootNode.addNode("x");
+        session.save();
+        session.move(b.getPath(), x.getPath() + "/b");
+        session.save();
+
+        executeXPathQuery(testPath + "/a//*", new Node[]{});
+        executeXPathQuery(testPath + "/x//*", new Node[]{b, c, d});
+        executeXPathQuery(testPath + "/x//d", new Node[]{d});
+    }
+
+    public void testSystemTree() throws Exception {
+        d.addMixin(mixVersionable);
+        session.save();
+        Version v = session.getWorkspace().getVersionManager().checkin(d.getPath());
+
+        String test = "[@jcr:uuid = '" + v.getIdentifier() + "']";
+        executeXPathQuery("/jcr:root/jcr:system//element(*, nt:version)" + test,
+                new Node[]{v});
+        executeXPathQuery("//element(*, nt:version)" + test, new Node[]{v});
+    }
+
+    public void testRename() throws Exception {
+        session.move(b.getPath(), a.getPath() + "/renamed");
+        session.save();
+
+        executeXPathQuery(testPath + "/a//*", new Node[]{b, c, d});
+        executeXPathQuery(testPath + "/a/renamed//d", new Node[]{d});
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+
+/**
+ * Tests the creation of the initial index with several threads.
+ */
+public class ParallelReindexTest extends TestCase {
+
+    private static final int WIDTH = 10;
+
+    private final File dir = new File("target", getClass().getSimpleName());
+
+    private RepositoryImpl repo;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        FileUtils.deleteDirectory(dir);
+        FileUtils.copyInputStreamToFile(
+                getClass().getResourceAsStream("repository-parallel-reindex.xml"),
+                new File(dir, "repository.xml"));
+    }
+
+    protected void tearDown() throws Exception {
+        if (repo != null) {
+            repo.shutdown();
+        }
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    public void testReindex() throws Exception {
+        repo = RepositoryImpl.create(RepositoryConfig.create(dir));
+        Session session = login();
+        try {
+            Node test = session.getRootNode().addNode("test", "nt:unstructured");
+            for (int i = 0; i < WIDTH; i++) {
+                Node child = test.addNode("node" + i, "nt:unstructured");
+                child.setProperty("title", "node " + i);
+                for (int j = 0; j < WIDTH; j++) {
+                    child.addNode("node" + j, "nt:unstructured").setProperty(
+                            "title", "node " + i + "/" + j);
+                }
+            }
+            session.save();
+        } finally {
+            session.logout();
+        }
+        repo.shutdown();
+
+        // remove the workspace index, it is created again on startup
+        FileUtils.deleteDirectory(new File(dir, "workspaces/default/index"));
+        repo = RepositoryImpl.create(RepositoryConfig.create(dir));
+
+        session = login();
+        try {
+            assertEquals(WIDTH + WIDTH * WIDTH,
+                    count(session, "/jcr:root/test//*[@title]"));
+            assertEquals(1, count(session, "/jcr:root/test/*[@title = 'node 5']"));
+            assertEquals(1, count(session, "/jcr:root/test//*[@title = 'node 3/7']"));
+            assertEquals(1, count(session, "//element(test, nt:unstructured)"));
+        } finally {
+            session.logout();
+        }
+
+        // the status is only published while the index is created
+        assertTrue(ManagementFactory.getPlatformMBeanServer().queryNames(
+                new ObjectName("org.apache.jackrabbit:type=Reindex,*"), null).isEmpty());
+    }
+
+    private Session login() throws Exception {
+        return repo.login(new SimpleCredentials("admin", "admin".toCharArray()));
+    }
+
+    private static long count(Session session, String statement)
+            throws Exception {
+        QueryManager qm = session.getWorkspace().getQueryManager();
+        NodeIterator nodes = qm.createQuery(statement, Query.XPATH).execute().getNodes();
+        long count = 0;
+        while (nodes.hasNext()) {
+            nodes.nextNode();
+            count++;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.jcr.GuestCredentials;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.Value;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.commons.jackrabbit.authorization.AccessControlUtils;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.apache.jackrabbit.core.security.principal.EveryonePrincipal;
+import org.apache.jackrabbit.value.StringValue;
+
+/**
+ * Tests queries of a workspace with the access filter enabled.
+ */
+public class ReadAccessQueryTest extends TestCase {
+
+    private static final int WIDTH = 5;
+
+    private final File dir = new File("target", getClass().getSimpleName());
+
+    private RepositoryImpl repo;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        FileUtils.deleteDirectory(dir);
+        FileUtils.copyInputStreamToFile(
+                getClass().getResourceAsStream("repository-access-filter.xml"),
+                new File(dir, "repository.xml"));
+        repo = RepositoryImpl.create(RepositoryConfig.create(dir));
+
+        Session session = repo.login(
+                new SimpleCredentials("admin", "admin".toCharArray()));
+        try {
+            Node test = session.getRootNode().addNode("test", "nt:unstructured");
+            for (String name : new String[] { "visible", "hidden", "glob" }) {
+                Node parent = test.addNode(name, "nt:unstructured");
+                for (int i = 0; i < WIDTH; i++) {
+                    parent.addNode("a" + i, "nt:unstructured").setProperty("title", "a");
+                    parent.addNode("b" + i, "nt:unstructured").setProperty("title", "b");
+                }
+            }
+            session.save();
+
+            AccessControlUtils.deny(test.getNode("hidden"),
+                    EveryonePrincipal.NAME, Privilege.JCR_READ);
+
+            // only the b children of glob are denied
+            AccessControlManager acMgr = session.getAccessControlManager();
+            String path = test.getNode("glob").getPath();
+            JackrabbitAccessControlList acl =
+                AccessControlUtils.getAccessControlList(acMgr, path);
+            acl.addEntry(EveryonePrincipal.getInstance(),
+                    AccessControlUtils.privilegesFromNames(acMgr, Privilege.JCR_READ),
+                    false, Collections.<String, Value>singletonMap(
+                            "rep:glob", new StringValue("/b*")));
+            acMgr.setPolicy(path, acl);
+            session.save();
+        } finally {
+            session.logout();
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        if (repo != null) {
+            repo.shutdown();
+        }
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    public void testDescendants() throws Exception {
+        Session session = repo.login(new GuestCredentials());
+        try {
+            Set<String> paths = execute(session, "/jcr:root/test//*[@title]");
+            assertEquals(3 * WIDTH, paths.size());
+            for (int i = 0; i < WIDTH; i++) {
+                assertTrue(paths.contains("/test/visible/a" + i));
+                assertTrue(paths.contains("/test/visible/b" + i));
+                assertTrue(paths.contains("/test/glob/a" + i));
+            }
+        } finally {
+            session.logout();
+        }
+    }
+
+    public void testOrderBy() throws Exception {
+        Session session = repo.login(new GuestCredentials());
+        try {
+            assertEquals(2 * WIDTH, execute(session,
+                    "/jcr:root/test//*[@title = 'a'] order by @jcr:score").size());
+            assertEquals(WIDTH, execute(session,
+                    "/jcr:root/test//*[@title = 'b'] order by @title").size());
+        } finally {
+            session.logout();
+        }
+    }
+
+    public void testChildren() throws Exception {
+        Session session = repo.login(new GuestCredentials());
+        try {
+            assertEquals(0, execute(session, "/jcr:root/test/hidden/*").size());
+            assertEquals(WIDTH, execute(session, "/jcr:root/test/glob/*").size());
+            assertEquals(2 * WIDTH, execute(session, "/jcr:root/test/visible/*").size());
+        } finally {
+            session.logout();
+        }
+    }
+
+    public void testAdmin() throws Exception {
+        Session session = repo.login(
+                new SimpleCredentials("admin", "admin".toCharArray()));
+        try {
+            assertEquals(6 * WIDTH,
+                    execute(session, "/jcr:root/test//*[@title]").size());
+        } finally {
+            session.logout();
+        }
+    }
+
+    private static Set<String> execute(Session session, String statement)
+            throws Exception {
+        QueryManager qm = session.getWorkspace().getQueryManager();
+        NodeIterator nodes = qm.createQuery(statement, Query.XPATH).execute().getNodes();
+        Set<String> paths = new HashSet<String>();
+        while (nodes.hasNext()) {
+            paths.add(nodes.nextNode().getPath());
+        }
+        return paths;
+    }
+
+}
@@ -52,7 +52,11 @@ public class TestAll extends TestCase {
         suite.addTestSuite(TextExtractionQueryTest.class);
         suite.addTestSuite(ArrayHitsTest.class);
         suite.addTestSuite(IndexFormatVersionTest.class);
+        suite.addTestSuite(AncestorIndexTest.class);
+        suite.addTestSuite(ValueIndexTest.class);
         suite.addTestSuite(SynonymProviderTest.class);
+        suite.addTestSuite(ParallelReindexTest.class);
+        suite.addTestSuite(ReadAccessQueryTest.class);
 
         return suite;
     }
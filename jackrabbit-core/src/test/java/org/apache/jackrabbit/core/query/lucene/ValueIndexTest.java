@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.query.lucene;
+
+import java.util.Arrays;
+
+import javax.jcr.PropertyType;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.core.query.lucene.SharedFieldCache.ValueIndex;
+import org.apache.lucene.index.IndexReader;
+
+/**
+ * <code>ValueIndexTest</code> checks the columns of a {@link ValueIndex}.
+ */
+public class ValueIndexTest extends TestCase {
+
+    public void testLongs() {
+        ValueIndex index = new ValueIndex(new int[] {1, -1, 0},
+                new Comparable<?>[] {3L, 7L}, 2, PropertyType.DATE);
+        assertFalse(index.sparse);
+        assertEquals(7L, index.getValue(0));
+        assertNull(index.getValue(1));
+        assertEquals(3L, index.getValue(2));
+    }
+
+    public void testDoubles() {
+        ValueIndex index = new ValueIndex(new int[] {-1, 0},
+                new Comparable<?>[] {1.5d}, 1, PropertyType.DOUBLE);
+        assertNull(index.getValue(0));
+        assertEquals(1.5d, index.getValue(1));
+    }
+
+    public void testOrdinals() {
+        ValueIndex index = new ValueIndex(new int[] {1, 1, -1, 0},
+                new Comparable<?>[] {"a", "b"}, 3, PropertyType.STRING);
+        assertEquals("b", index.getValue(0));
+        assertEquals("b", index.getValue(1));
+        assertNull(index.getValue(2));
+        assertEquals("a", index.getValue(3));
+    }
+
+    public void testOrdinalOrder() {
+        ValueIndex index = new ValueIndex(new int[] {0, 1, 2, -1},
+                new Comparable<?>[] {"c", "a", "b"}, 3, PropertyType.STRING);
+        assertTrue(index.hasOrdinals());
+        assertEquals(2, index.getOrdinal(0));
+        assertEquals(0, index.getOrdinal(1));
+        assertEquals(1, index.getOrdinal(2));
+        assertEquals(-1, index.getOrdinal(3));
+        assertEquals("c", index.getValue(0));
+        assertEquals(1, index.getOrdinal("b"));
+        assertEquals(-3, index.getOrdinal("bb"));
+    }
+
+    public void testCompareBottom() {
+        ValueIndex longs = new ValueIndex(new int[] {0, 1, -1},
+                new Comparable<?>[] {3L, 7L}, 2, PropertyType.LONG);
+        ValueIndex strings = new ValueIndex(new int[] {0, 1, -1},
+                new Comparable<?>[] {"b", "d"}, 2, PropertyType.STRING);
+        TestComparator c = new TestComparator();
+        c.setValue(0, 3L);
+        c.setBottom(0);
+        assertEquals(0, c.compareBottom(longs, 0));
+        assertEquals(-1, c.compareBottom(longs, 1));
+        assertEquals(1, c.compareBottom(longs, 2));
+        c.setValue(0, "c");
+        c.setBottom(0);
+        assertEquals(1, c.compareBottom(strings, 0));
+        assertEquals(-1, c.compareBottom(strings, 1));
+        assertEquals(1, c.compareBottom(strings, 2));
+        c.setValue(0, "d");
+        c.setBottom(0);
+        assertEquals(0, c.compareBottom(strings, 1));
+    }
+
+    public void testMixedTypes() {
+        ValueIndex index = new ValueIndex(new int[] {0, 1},
+                new Comparable<?>[] {1L, "1"}, 2, PropertyType.UNDEFINED);
+        assertEquals(1L, index.getValue(0));
+        assertEquals("1", index.getValue(1));
+    }
+
+    public void testSparse() {
+        int[] ords = new int[1000];
+        Arrays.fill(ords, -1);
+        ords[500] = 0;
+        ValueIndex index = new ValueIndex(ords,
+                new Comparable<?>[] {5L}, 1, PropertyType.LONG);
+        assertTrue(index.sparse);
+        assertEquals(5L, index.getValue(500));
+        assertNull(index.getValue(499));
+    }
+
+    private static class TestComparator extends FieldComparatorBase {
+
+        private final Comparable<?>[] values = new Comparable<?>[1];
+
+        @Override
+        protected Comparable<?> sortValue(int doc) {
+            return null;
+        }
+
+        @Override
+        protected Comparable<?> getValue(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        protected void setValue(int slot, Comparable<?> value) {
+            values[slot] = value;
+        }
+
+        @Override
+        public void setNextReader(IndexReader reader, int docBase) {
+        }
+    }
+}
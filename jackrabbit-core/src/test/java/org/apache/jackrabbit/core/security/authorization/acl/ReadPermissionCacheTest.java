@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.security.authorization.AccessControlModifications;
+
+/**
+ * <code>ReadPermissionCacheTest</code>...
+ */
+public class ReadPermissionCacheTest extends TestCase {
+
+    private final NodeId id = NodeId.randomId();
+
+    public void testFingerprintIgnoresOrder() {
+        Set<String> a = ReadPermissionCache.fingerprint(Arrays.asList("everyone", "anonymous"));
+        Set<String> b = ReadPermissionCache.fingerprint(Arrays.asList("anonymous", "everyone"));
+
+        ReadPermissionCache cache = new ReadPermissionCache(10);
+        cache.put(a, id, true, cache.getGeneration());
+        assertEquals(Boolean.TRUE, cache.get(b, id));
+        assertNull(cache.get(ReadPermissionCache.fingerprint(Collections.singleton("everyone")), id));
+    }
+
+    public void testAcModifiedClearsCache() {
+        Set<String> principals = ReadPermissionCache.fingerprint(Collections.singleton("everyone"));
+        ReadPermissionCache cache = new ReadPermissionCache(10);
+        cache.put(principals, id, false, cache.getGeneration());
+        assertEquals(Boolean.FALSE, cache.get(principals, id));
+
+        cache.acModified(new AccessControlModifications<NodeId>(
+                Collections.<NodeId, Integer>emptyMap()));
+        assertNull(cache.get(principals, id));
+        assertEquals(0, cache.size());
+    }
+
+    public void testStaleResultIsIgnored() {
+        Set<String> principals = ReadPermissionCache.fingerprint(Collections.singleton("everyone"));
+        ReadPermissionCache cache = new ReadPermissionCache(10);
+
+        long generation = cache.getGeneration();
+        cache.clear();
+        cache.put(principals, id, true, generation);
+        assertNull(cache.get(principals, id));
+    }
+
+    public void testMaxSize() {
+        Set<String> principals = ReadPermissionCache.fingerprint(Collections.singleton("everyone"));
+        ReadPermissionCache cache = new ReadPermissionCache(10);
+        for (int i = 0; i < 20; i++) {
+            cache.put(principals, NodeId.randomId(), true, cache.getGeneration());
+        }
+        assertEquals(10, cache.size());
+    }
+
+    public void testDisabled() {
+        Set<String> principals = ReadPermissionCache.fingerprint(Collections.singleton("everyone"));
+        ReadPermissionCache cache = new ReadPermissionCache(0);
+        assertFalse(cache.isEnabled());
+        cache.put(principals, id, true, cache.getGeneration());
+        assertNull(cache.get(principals, id));
+    }
+}
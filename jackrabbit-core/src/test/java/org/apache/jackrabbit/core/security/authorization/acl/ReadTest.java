@@ -475,6 +475,39 @@ public class ReadTest extends AbstractEvaluationTest {
         }
     }
 
+    /**
+     * READ evaluations of a session with a pending move must not be shared
+     * with other sessions of the same principals.
+     */
+    public void testTransientMoveIsNotShared() throws Exception {
+        Node grandchild = superuser.getNode(childNPath).addNode(nodeName3, testNodeType);
+        String ccPath = grandchild.getPath();
+        Node target = testRootNode.addNode(nodeName4, testNodeType);
+        String targetPath = target.getPath();
+        superuser.save();
+
+        // allow modifications below the test root and deny READ on the
+        // descendants of the move target
+        givePrivileges(testRoot, privilegesFromName(Privilege.JCR_ALL), getRestrictions(superuser, testRoot));
+        Map<String, Value> restrictions = new HashMap<String, Value>(getRestrictions(superuser, targetPath));
+        restrictions.put(AccessControlConstants.P_GLOB.toString(), vf.createValue("/*"));
+        withdrawPrivileges(targetPath, privilegesFromName(Privilege.JCR_READ), restrictions);
+
+        Session testSession = getTestSession();
+        String movedPath = targetPath + "/" + nodeName2;
+        testSession.move(childNPath, movedPath);
+        assertFalse(testSession.nodeExists(movedPath));
+        assertFalse(testSession.nodeExists(movedPath + "/" + nodeName3));
+
+        Session other = getHelper().getRepository().login(creds);
+        try {
+            assertTrue(other.nodeExists(childNPath));
+            assertTrue(other.nodeExists(ccPath));
+        } finally {
+            other.logout();
+        }
+    }
+
     private static boolean canGetNode(Session session, String nodePath) throws RepositoryException {
         try {
             session.getNode(nodePath);
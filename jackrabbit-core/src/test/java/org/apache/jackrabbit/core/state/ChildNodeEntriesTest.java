@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.state;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.NameFactory;
+import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+
+/**
+ * <code>ChildNodeEntriesTest</code> checks {@link ChildNodeEntries} against
+ * a plain list of entries.
+ */
+public class ChildNodeEntriesTest extends TestCase {
+
+    private static final NameFactory FACTORY = NameFactoryImpl.getInstance();
+
+    public void testSameNameSiblings() {
+        for (int size : new int[] {3, 100}) {
+            ChildNodeEntries entries = new ChildNodeEntries();
+            Name foo = FACTORY.create("", "foo");
+            List<NodeId> ids = new ArrayList<NodeId>();
+            for (int i = 0; i < size; i++) {
+                NodeId id = NodeId.randomId();
+                ids.add(id);
+                assertEquals(i + 1, entries.add(foo, id).getIndex());
+            }
+            entries.add(FACTORY.create("", "bar"), NodeId.randomId());
+
+            assertEquals(size, entries.get(foo).size());
+            assertEquals(2, entries.get(ids.get(1)).getIndex());
+            assertEquals(ids.get(1), entries.get(foo, 2).getId());
+
+            // removing the first sibling shifts the indexes of the others
+            entries.remove(ids.get(0));
+            assertEquals(1, entries.get(ids.get(1)).getIndex());
+            assertEquals(ids.get(2), entries.get(foo, 2).getId());
+            assertNull(entries.get(foo, size));
+            assertEquals(size, entries.size());
+        }
+    }
+
+    public void testClone() {
+        ChildNodeEntries entries = new ChildNodeEntries();
+        for (int i = 0; i < 1000; i++) {
+            entries.add(FACTORY.create("", "n" + i), NodeId.randomId());
+        }
+        List<ChildNodeEntry> before = entries.list();
+
+        ChildNodeEntries clone = (ChildNodeEntries) entries.clone();
+        assertEquals(entries, clone);
+        clone.remove(before.get(500));
+        clone.add(FACTORY.create("", "added"), NodeId.randomId());
+
+        assertEquals(before, entries.list());
+        assertEquals(1000, clone.size());
+        assertNull(clone.get(before.get(500).getId()));
+        assertEquals(1, clone.removeAll(entries).size());
+        assertEquals(1, entries.removeAll(clone).size());
+        assertEquals(999, entries.retainAll(clone).size());
+    }
+
+    /**
+     * Applies random changes to entries and their clones and compares them
+     * with lists of entries.
+     */
+    public void testRandom() {
+        Random random = new Random(42);
+        Name[] names = new Name[50];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = FACTORY.create("", "n" + i);
+        }
+
+        ChildNodeEntries entries = new ChildNodeEntries();
+        List<ChildNodeEntry> expected = new ArrayList<ChildNodeEntry>();
+        ChildNodeEntries clone = null;
+        List<ChildNodeEntry> cloneExpected = null;
+
+        for (int i = 0; i < 20000; i++) {
+            int op = random.nextInt(10);
+            if (op < 6 || expected.isEmpty()) {
+                Name name = names[random.nextInt(names.length)];
+                NodeId id = NodeId.randomId();
+                expected.add(new ChildNodeEntry(name, id, 1));
+                entries.add(name, id);
+            } else if (op < 9) {
+                ChildNodeEntry entry =
+                    expected.remove(random.nextInt(expected.size()));
+                assertNotNull(entries.remove(entry.getId()));
+            } else {
+                clone = (ChildNodeEntries) entries.clone();
+                cloneExpected = new ArrayList<ChildNodeEntry>(expected);
+            }
+            if (i % 2000 == 0) {
+                assertEntries(expected, entries);
+                if (clone != null) {
+                    assertEntries(cloneExpected, clone);
+                }
+            }
+        }
+        assertEntries(expected, entries);
+
+        entries.removeAll();
+        assertTrue(entries.isEmpty());
+        assertEquals(0, entries.list().size());
+    }
+
+    private static void assertEntries(List<ChildNodeEntry> expected,
+                                      ChildNodeEntries entries) {
+        List<ChildNodeEntry> list = entries.list();
+        assertEquals(expected.size(), entries.size());
+        assertEquals(expected.size(), list.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ChildNodeEntry entry = list.get(i);
+            assertEquals(expected.get(i).getId(), entry.getId());
+            assertEquals(expected.get(i).getName(), entry.getName());
+            assertEquals(entry, entries.get(entry.getId()));
+            assertEquals(entry, entries.get(entry.getName(), entry.getIndex()));
+            assertEquals(entry, entries.get(entry.getName()).get(entry.getIndex() - 1));
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.state;
+
+/**
+ * <code>StripedISMLockingTest</code> executes the test cases implemented in
+ * {@link AbstractISMLockingTest}.
+ */
+public class StripedISMLockingTest extends AbstractISMLockingTest {
+
+    public ISMLocking createISMLocking() {
+        return new StripedISMLocking();
+    }
+
+    /**
+     * Checks that a reader of another thread can acquire the lock while a
+     * downgraded write lock is held and another writer is waiting.
+     *
+     * @throws InterruptedException on interruption; this will err the test
+     */
+    public void testReadWhileDowngradedWithWaitingWriter()
+            throws InterruptedException {
+        ISMLocking.ReadLock downgraded =
+            locking.acquireWriteLock(logs.get(0)).downgrade();
+        Thread writer = startWriterThread(locking, logs.get(1));
+        Thread.sleep(100);
+        assertTrue(writer.isAlive());
+        verifyNotBlocked(startReaderThread(locking, state.getId()));
+        downgraded.release();
+        verifyNotBlocked(writer);
+    }
+}
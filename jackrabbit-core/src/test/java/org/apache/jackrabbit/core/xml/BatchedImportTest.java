@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+
+import javax.jcr.ImportUUIDBehavior;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.commons.cnd.CndImporter;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.test.AbstractJCRTest;
+
+/**
+ * Tests imports that are saved in batches.
+ */
+public class BatchedImportTest extends AbstractJCRTest {
+
+    private static final int NODES = 50;
+
+    private static final String TARGET_ID = "7e2b8d4c-1f3a-4c5e-9b6d-0a1b2c3d4e5f";
+
+    private Session session;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        SimpleCredentials credentials =
+            (SimpleCredentials) getHelper().getSuperuserCredentials();
+        SimpleCredentials batched = new SimpleCredentials(
+                credentials.getUserID(), credentials.getPassword());
+        batched.setAttribute(SessionImpl.IMPORT_BATCH_SIZE, "10");
+        session = getHelper().getRepository().login(batched, workspaceName);
+    }
+
+    protected void tearDown() throws Exception {
+        if (session != null) {
+            session.logout();
+            session = null;
+        }
+        super.tearDown();
+    }
+
+    public void testBatchedImport() throws Exception {
+        session.importXML(testRoot, new ByteArrayInputStream(createXml().getBytes("UTF-8")),
+                ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW);
+
+        // the first batches are already saved
+        superuser.refresh(false);
+        assertTrue(superuser.nodeExists(testRoot + "/import/node0"));
+        assertTrue(session.hasPendingChanges());
+
+        session.save();
+        superuser.refresh(false);
+        Node root = superuser.getNode(testRoot + "/import");
+        for (int i = 0; i < NODES; i++) {
+            assertTrue(root.hasNode("node" + i + "/child"));
+        }
+        Node target = root.getNode("node" + (NODES - 1));
+        assertEquals(target, root.getProperty("node0/ref").getNode());
+    }
+
+    public void testFailedBatch() throws Exception {
+        // the first batch misses the mandatory child node, which is
+        // imported later
+        CndImporter.registerNodeTypes(new StringReader(
+                "[BatchedImportTest] > nt:unstructured\n"
+                + " + last (nt:unstructured) = nt:unstructured mandatory"), superuser);
+        StringBuilder xml = new StringBuilder();
+        xml.append("<sv:node xmlns:sv=\"http://www.jcp.org/jcr/sv/1.0\" sv:name=\"import\">");
+        appendType(xml, "BatchedImportTest");
+        for (int i = 0; i < NODES; i++) {
+            xml.append("<sv:node sv:name=\"").append(i == 15 ? "last" : "node" + i).append("\">");
+            appendType(xml, "nt:unstructured");
+            xml.append("</sv:node>");
+        }
+        xml.append("</sv:node>");
+
+        session.importXML(testRoot, new ByteArrayInputStream(xml.toString().getBytes("UTF-8")),
+                ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW);
+
+        // no later batch is saved once a batch failed
+        superuser.refresh(false);
+        assertFalse(superuser.nodeExists(testRoot + "/import"));
+        assertTrue(session.hasPendingChanges());
+
+        session.save();
+        superuser.refresh(false);
+        assertTrue(superuser.nodeExists(testRoot + "/import/last"));
+        assertTrue(superuser.nodeExists(testRoot + "/import/node" + (NODES - 1)));
+    }
+
+    public void testNotAtomic() throws Exception {
+        // a node with the uuid of the last imported node already exists
+        StringBuilder xml = new StringBuilder();
+        xml.append("<sv:node xmlns:sv=\"http://www.jcp.org/jcr/sv/1.0\" sv:name=\"existing\">");
+        appendType(xml, "nt:unstructured");
+        xml.append("<sv:property sv:name=\"jcr:mixinTypes\" sv:type=\"Name\">");
+        xml.append("<sv:value>mix:referenceable</sv:value>");
+        xml.append("</sv:property>");
+        xml.append("<sv:property sv:name=\"jcr:uuid\" sv:type=\"String\">");
+        xml.append("<sv:value>").append(TARGET_ID).append("</sv:value>");
+        xml.append("</sv:property>");
+        xml.append("</sv:node>");
+        superuser.importXML(testRoot, new ByteArrayInputStream(xml.toString().getBytes("UTF-8")),
+                ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW);
+        superuser.save();
+
+        try {
+            session.importXML(testRoot, new ByteArrayInputStream(createXml().getBytes("UTF-8")),
+                    ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW);
+            fail("import of an existing uuid must fail");
+        } catch (RepositoryException e) {
+            // expected
+        }
+
+        // the batches saved before the failure are not rolled back
+        session.refresh(false);
+        assertFalse(session.hasPendingChanges());
+        superuser.refresh(false);
+        assertTrue(superuser.nodeExists(testRoot + "/import/node0"));
+        assertFalse(superuser.nodeExists(testRoot + "/import/node" + (NODES - 1)));
+    }
+
+    public void testPendingChanges() throws Exception {
+        session.getNode(testRoot).addNode(nodeName1, testNodeType);
+        try {
+            session.importXML(testRoot, new ByteArrayInputStream(createXml().getBytes("UTF-8")),
+                    ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW);
+            fail("batched import with pending changes must fail");
+        } catch (RepositoryException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Returns a system view document with the given number of nodes, each
+     * with a child node. The first node references the last one.
+     */
+    private static String createXml() {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<sv:node xmlns:sv=\"http://www.jcp.org/jcr/sv/1.0\" sv:name=\"import\">");
+        appendType(xml, "nt:unstructured");
+        for (int i = 0; i < NODES; i++) {
+            xml.append("<sv:node sv:name=\"node").append(i).append("\">");
+            appendType(xml, "nt:unstructured");
+            if (i == 0) {
+                xml.append("<sv:property sv:name=\"ref\" sv:type=\"Reference\">");
+                xml.append("<sv:value>").append(TARGET_ID).append("</sv:value>");
+                xml.append("</sv:property>");
+            }
+            if (i == NODES - 1) {
+                xml.append("<sv:property sv:name=\"jcr:mixinTypes\" sv:type=\"Name\">");
+                xml.append("<sv:value>mix:referenceable</sv:value>");
+                xml.append("</sv:property>");
+                xml.append("<sv:property sv:name=\"jcr:uuid\" sv:type=\"String\">");
+                xml.append("<sv:value>").append(TARGET_ID).append("</sv:value>");
+                xml.append("</sv:property>");
+            }
+            xml.append("<sv:node sv:name=\"child\">");
+            appendType(xml, "nt:unstructured");
+            xml.append("</sv:node>");
+            xml.append("</sv:node>");
+        }
+        xml.append("</sv:node>");
+        return xml.toString();
+    }
+
+    private static void appendType(StringBuilder xml, String type) {
+        xml.append("<sv:property sv:name=\"jcr:primaryType\" sv:type=\"Name\">");
+        xml.append("<sv:value>").append(type).append("</sv:value>");
+        xml.append("</sv:property>");
+    }
+}
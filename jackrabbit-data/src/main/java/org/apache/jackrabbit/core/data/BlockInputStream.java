@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Stream of a record of {@link CachingDataStore} that is read from the
+ * {@link Backend} in blocks of {@link CachingDataStore#getBlockSize()} bytes.
+ * The block at the current position is read in the calling thread, and the
+ * following blocks are fetched in parallel by the download executor of the
+ * data store. Each block is kept in the {@link LocalCache}, so the stream
+ * returns the first bytes as soon as the first block is available, and
+ * {@link #skip(long)} moves to another block without reading the blocks in
+ * between.
+ */
+class BlockInputStream extends InputStream {
+
+    private final CachingDataStore store;
+
+    private final DataIdentifier identifier;
+
+    private final long length;
+
+    private final long blockSize;
+
+    private final int readAhead;
+
+    private final ExecutorService executor;
+
+    /**
+     * Blocks that are fetched ahead of the current position, by block index.
+     */
+    private final Map<Long, Fetch> pending = new TreeMap<Long, Fetch>();
+
+    private long position;
+
+    private long block = -1;
+
+    private InputStream in;
+
+    private boolean closed;
+
+    BlockInputStream(CachingDataStore store, DataIdentifier identifier,
+            long length, long blockSize, int readAhead,
+            ExecutorService executor) {
+        this.store = store;
+        this.identifier = identifier;
+        this.length = length;
+        this.blockSize = blockSize;
+        this.readAhead = readAhead;
+        this.executor = executor;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        } else if (len == 0) {
+            return 0;
+        } else if (position >= length) {
+            return -1;
+        }
+        InputStream current = getCurrent();
+        long remaining = (block + 1) * blockSize - position;
+        int n = current.read(b, off, (int) Math.min(len, remaining));
+        if (n < 0) {
+            throw new EOFException("Block " + block + " of [" + identifier
+                + "] ends at " + position + ", expected length " + length);
+        }
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        } else if (n <= 0) {
+            return 0;
+        }
+        long target = Math.min(length, position + n);
+        if (in != null && target / blockSize == block) {
+            IOUtils.skipFully(in, target - position);
+        } else {
+            // the block at the target position is opened by the next read
+            closeCurrent();
+        }
+        long skipped = target - position;
+        position = target;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in == null ? 0 : in.available();
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            closeCurrent();
+            for (Fetch fetch : pending.values()) {
+                fetch.drop();
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * Returns the stream of the block at the current position, positioned at
+     * the current position, and fetches the following blocks.
+     */
+    private InputStream getCurrent() throws IOException {
+        long index = position / blockSize;
+        if (in == null || index != block) {
+            closeCurrent();
+            in = open(index);
+            block = index;
+            IOUtils.skipFully(in, position - index * blockSize);
+            prefetch(index);
+        }
+        return in;
+    }
+
+    /**
+     * Opens the block with the given index. A block that is fetched in the
+     * background is used if it is already loading, otherwise the block is
+     * read in the calling thread.
+     */
+    private InputStream open(long index) throws IOException {
+        Fetch fetch = pending.remove(index);
+        if (fetch != null) {
+            InputStream fetched = fetch.take();
+            if (fetched != null) {
+                return fetched;
+            }
+        }
+        try {
+            return store.getBlock(identifier, index, blockSize);
+        } catch (DataStoreException e) {
+            throw new IOException("Could not read block " + index + " of ["
+                + identifier + "]", e);
+        }
+    }
+
+    /**
+     * Drops the fetches of blocks outside the read ahead window of the given
+     * block, and starts fetching the missing blocks of the window.
+     */
+    private void prefetch(long index) {
+        long last = Math.min(index + readAhead, (length - 1) / blockSize);
+        Iterator<Map.Entry<Long, Fetch>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Fetch> entry = it.next();
+            if (entry.getKey() < index || entry.getKey() > last) {
+                entry.getValue().drop();
+                it.remove();
+            }
+        }
+        for (long i = index + 1; i <= last; i++) {
+            if (!pending.containsKey(i)) {
+                Fetch fetch = new Fetch(i);
+                try {
+                    fetch.future = executor.submit(fetch);
+                    pending.put(i, fetch);
+                } catch (RejectedExecutionException e) {
+                    // data store is closing, the block is read on demand
+                    return;
+                }
+            }
+        }
+    }
+
+    private void closeCurrent() {
+        IOUtils.closeQuietly(in);
+        in = null;
+        block = -1;
+    }
+
+    /**
+     * Fetch of a block in the background. A fetch that is dropped before it
+     * starts is not run, and a fetch that is dropped while it runs closes
+     * the stream of the block when it completes, so that no stream is left
+     * open.
+     */
+    private class Fetch implements Callable<InputStream> {
+
+        private final long index;
+
+        private Future<InputStream> future;
+
+        private InputStream stream;
+
+        private boolean started;
+
+        private boolean dropped;
+
+        Fetch(long index) {
+            this.index = index;
+        }
+
+        @Override
+        public InputStream call() throws DataStoreException {
+            synchronized (this) {
+                if (dropped) {
+                    return null;
+                }
+                started = true;
+            }
+            InputStream fetched = store.getBlock(identifier, index, blockSize);
+            synchronized (this) {
+                if (dropped) {
+                    IOUtils.closeQuietly(fetched);
+                    return null;
+                }
+                stream = fetched;
+            }
+            return fetched;
+        }
+
+        /**
+         * Returns the stream of the block, waiting for the fetch if it is
+         * running, or <code>null</code> if the block should be read in the
+         * calling thread because the fetch did not start yet or failed.
+         */
+        InputStream take() throws IOException {
+            synchronized (this) {
+                if (!started) {
+                    dropped = true;
+                    future.cancel(false);
+                    return null;
+                }
+            }
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                drop();
+                throw new InterruptedIOException("Interrupted while reading block "
+                    + index + " of [" + identifier + "]");
+            } catch (ExecutionException e) {
+                // try once more in the calling thread
+                return null;
+            }
+            synchronized (this) {
+                InputStream fetched = stream;
+                stream = null;
+                dropped = true;
+                return fetched;
+            }
+        }
+
+        /**
+         * Drops the fetch, and closes the stream of the block if it is
+         * already fetched.
+         */
+        synchronized void drop() {
+            dropped = true;
+            future.cancel(false);
+            IOUtils.closeQuietly(stream);
+            stream = null;
+        }
+
+    }
+
+}
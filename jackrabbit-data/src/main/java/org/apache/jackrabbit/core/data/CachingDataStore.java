@@ -19,6 +19,7 @@ package org.apache.jackrabbit.core.data;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -49,6 +50,7 @@ import javax.jcr.RepositoryException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,6 +82,8 @@ import org.slf4j.LoggerFactory;
  *     &lt;param name="{@link #setTouchAsync(boolean) touchAsync}" value="false"/&gt;
  *     &lt;param name="{@link #setProactiveCaching(boolean) proactiveCaching}" value="true"/&gt;
  *     &lt;param name="{@link #setRecLengthCacheSize(int) recLengthCacheSize}" value="200"/&gt;
+ *     &lt;param name="{@link #setBlockSize(long) blockSize}" value="8388608"/&gt;
+ *     &lt;param name="{@link #setBlockReadAhead(int) blockReadAhead}" value="4"/&gt;
  * &lt;/DataStore&gt;
  * </pre>
  */
@@ -93,6 +97,12 @@ public abstract class CachingDataStore extends AbstractDataStore implements
 
     private static final String DS_STORE = ".DS_Store";
 
+    /**
+     * Separator between the file name of a record and the index of a block
+     * of the record in {@link LocalCache}.
+     */
+    private static final String BLOCK = ".block";
+
     /**
      * Name of the directory used for temporary files. Must be at least 3
      * characters.
@@ -248,6 +258,20 @@ public abstract class CachingDataStore extends AbstractDataStore implements
      */
     private int recLengthCacheSize = 200;
 
+    /**
+     * Records larger than this size are read from {@link Backend} in blocks
+     * of this size, and the blocks are cached in {@link LocalCache} instead
+     * of the whole record. Set to 0 to always download whole records. By
+     * default it is 8 MB.
+     */
+    private long blockSize = 8L * 1024 * 1024;
+
+    /**
+     * The number of blocks that are fetched in parallel ahead of the block
+     * that is currently read. By default it is 4.
+     */
+    private int blockReadAhead = 4;
+
     /**
      * Initialized the data store. If the path is not set, &lt;repository
      * home&gt;/repository/datastore is used. This directory is automatically
@@ -572,6 +596,7 @@ public abstract class CachingDataStore extends AbstractDataStore implements
                 asyncWriteCache.delete(fileName);
                 backend.deleteRecord(identifier);
                 cache.delete(fileName);
+                deleteBlocks(fileName);
             } catch (IOException ioe) {
                 throw new DataStoreException(ioe);
             }
@@ -586,7 +611,9 @@ public abstract class CachingDataStore extends AbstractDataStore implements
         // remove entries from local cache
         for (DataIdentifier identifier : diSet) {
             recLenCache.remove(identifier);
-            cache.delete(getFileName(identifier));
+            String fileName = getFileName(identifier);
+            cache.delete(fileName);
+            deleteBlocks(fileName);
         }
         try {
             for (String fileName : asyncWriteCache.deleteOlderThan(min)) {
@@ -605,7 +632,8 @@ public abstract class CachingDataStore extends AbstractDataStore implements
      * Get stream of record from {@link LocalCache}. If record is not available
      * in {@link LocalCache}, this method fetches record from {@link Backend}
      * and stores it to {@link LocalCache}. Stream is then returned from cached
-     * record.
+     * record. Records larger than {@link #blockSize} are not fetched as a
+     * whole, but returned as a {@link BlockInputStream}.
      */
     InputStream getStream(DataIdentifier identifier) throws DataStoreException {
         InputStream in = null;
@@ -615,6 +643,14 @@ public abstract class CachingDataStore extends AbstractDataStore implements
             if (cached != null) {
                 return cached;
             }
+            long bs = blockSize;
+            if (bs > 0) {
+                long length = getLength(identifier);
+                if (length > bs) {
+                    return new BlockInputStream(this, identifier, length, bs,
+                        blockReadAhead, downloadExecService);
+                }
+            }
             in = backend.read(identifier);
             return cache.store(fileName, in);
         } catch (IOException e) {
@@ -624,6 +660,46 @@ public abstract class CachingDataStore extends AbstractDataStore implements
         }
     }
 
+    /**
+     * Get stream of a block of a record from {@link LocalCache}. If the block
+     * is not available in {@link LocalCache}, this method fetches the range of
+     * the block from {@link Backend} and stores it to {@link LocalCache}.
+     * Backends that do not implement {@link RangedBackend} are read from the
+     * start of the record, skipping the bytes before the block.
+     * 
+     * @param identifier identifier of the record.
+     * @param index index of the block, starting with 0.
+     * @param size size of the blocks of the record.
+     */
+    InputStream getBlock(DataIdentifier identifier, long index, long size)
+            throws DataStoreException {
+        InputStream in = null;
+        try {
+            // the block size is part of the name, as it may be changed
+            // while the cache is kept
+            String fileName = getFileName(identifier) + BLOCK + size + "."
+                + index;
+            InputStream cached = cache.getIfStored(fileName);
+            if (cached != null) {
+                return cached;
+            }
+            if (backend instanceof RangedBackend) {
+                in = ((RangedBackend) backend).read(identifier, index * size,
+                    size);
+            } else {
+                in = backend.read(identifier);
+                IOUtils.skipFully(in, index * size);
+                in = new BoundedInputStream(in, size);
+            }
+            return cache.store(fileName, in);
+        } catch (IOException e) {
+            throw new DataStoreException("IO Exception: " + identifier
+                + ", block " + index, e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
     /**
      * Return lastModified of record from {@link Backend} assuming
      * {@link Backend} as a single source of truth.
@@ -680,6 +756,26 @@ public abstract class CachingDataStore extends AbstractDataStore implements
         }
     }
 
+    /**
+     * Delete the cached blocks of a record from {@link LocalCache}.
+     */
+    private void deleteBlocks(String fileName) {
+        File file = new File(directory, fileName);
+        final String prefix = file.getName() + BLOCK;
+        String[] blocks = file.getParentFile().list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix);
+            }
+        });
+        if (blocks != null) {
+            String parent = fileName.substring(0, fileName.lastIndexOf('/') + 1);
+            for (String block : blocks) {
+                cache.delete(parent + block);
+            }
+        }
+    }
+
     @Override
     protected byte[] getOrCreateReferenceKey() throws DataStoreException {
         return secret.getBytes(StandardCharsets.UTF_8);
@@ -698,6 +794,7 @@ public abstract class CachingDataStore extends AbstractDataStore implements
             String fileName = getFileName(identifier);
             asyncWriteCache.delete(fileName);
             cache.delete(fileName);
+            deleteBlocks(fileName);
         } catch (IOException ioe) {
             throw new DataStoreException(ioe);
         }
@@ -879,7 +976,8 @@ public abstract class CachingDataStore extends AbstractDataStore implements
     
     /**
      * Invoke {@link #getStream(DataIdentifier)} asynchronously to cache binary
-     * asynchronously.
+     * asynchronously. Records that are larger than {@link #blockSize} are not
+     * downloaded, their blocks are cached when they are read.
      */
     private void asyncDownload(final DataIdentifier identifier) {
         if (proactiveCaching
@@ -946,6 +1044,7 @@ public abstract class CachingDataStore extends AbstractDataStore implements
             String name = f.getName();
             LOG.debug("upload file [{}] ", name);
             if (!name.startsWith(TMP) && !name.endsWith(DS_STORE)
+                && !name.contains(BLOCK)
                 && f.length() > 0) {
                 uploadFileToBackEnd(f, false);
             }
@@ -1222,6 +1321,22 @@ public abstract class CachingDataStore extends AbstractDataStore implements
         this.recLengthCacheSize = recLengthCacheSize;
     }
 
+    public long getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(long blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public int getBlockReadAhead() {
+        return blockReadAhead;
+    }
+
+    public void setBlockReadAhead(int blockReadAhead) {
+        this.blockReadAhead = blockReadAhead;
+    }
+
     public Backend getBackend() {
         return backend;
     }
@@ -1369,6 +1484,7 @@ public abstract class CachingDataStore extends AbstractDataStore implements
                     String name = f.getName();
                     LOG.debug("upload file [{}] ",name);
                     if (!name.startsWith(TMP) && !name.endsWith(DS_STORE)
+                        && !name.contains(BLOCK)
                         && f.length() > 0) {
                         uploadFileToBackEnd(f, updateAsyncCache);
                     }
@@ -35,10 +35,11 @@ import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FSBackend extends AbstractBackend {
+public class FSBackend extends AbstractBackend implements RangedBackend {
 
     private Properties properties;
 
@@ -120,6 +121,22 @@ public class FSBackend extends AbstractBackend {
         }
     }
 
+    @Override
+    public InputStream read(DataIdentifier identifier, long offset,
+            long length) throws DataStoreException {
+        File file = getFile(identifier);
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            in.getChannel().position(offset);
+            return new BoundedInputStream(in, length);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(in);
+            throw new DataStoreException("Error opening input stream of "
+                + file.getAbsolutePath() + " at offset " + offset, e);
+        }
+    }
+
     @Override
     public long getLength(DataIdentifier identifier) throws DataStoreException {
         File file = getFile(identifier);
@@ -318,6 +318,46 @@ public class FileDataStore extends AbstractDataStore
         return count;
     }
 
+    /**
+     * Returns the names of the top level directories of this data store in
+     * ascending order. The records are spread over these directories by the
+     * first characters of their identifiers, so that unused records can be
+     * deleted one directory at a time using
+     * {@link #deleteAllOlderThan(long, String)}.
+     *
+     * @return the names of the top level directories
+     */
+    public List<String> getDirectoryNames() {
+        List<String> names = new ArrayList<String>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    names.add(file.getName());
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Deletes the records in the given top level directory that were not
+     * modified since the given time and are not in use.
+     *
+     * @param min the minimum modified date of the records to keep
+     * @param directoryName the name of a top level directory
+     * @return the number of deleted records
+     * @see #getDirectoryNames()
+     */
+    public int deleteAllOlderThan(long min, String directoryName) {
+        File file = new File(directory, directoryName);
+        if (!file.isDirectory()) {
+            return 0;
+        }
+        return deleteOlderRecursive(file, min);
+    }
+
     private int deleteOlderRecursive(File file, long min) {
         int count = 0;
         if (file.isFile() && file.exists() && file.canWrite()) {
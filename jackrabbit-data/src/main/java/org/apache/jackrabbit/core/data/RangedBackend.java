@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.core.data;
+
+import java.io.InputStream;
+
+/**
+ * A {@link Backend} that can read a range of a record without reading the
+ * bytes before it. {@link CachingDataStore} reads large records in blocks,
+ * and skips the bytes before a block for backends that do not implement
+ * this interface.
+ */
+public interface RangedBackend {
+
+    /**
+     * Return inputstream of a range of the record identified by identifier.
+     * The stream returns at most <code>length</code> bytes starting at
+     * <code>offset</code>, and less if the record ends before.
+     * 
+     * @param identifier
+     *            identifier of record.
+     * @param offset
+     *            position of the first byte in the record.
+     * @param length
+     *            maximum number of bytes to read.
+     * @return inputstream of the range.
+     * @throws DataStoreException
+     *             if record not found or any error.
+     */
+    InputStream read(DataIdentifier identifier, long offset, long length)
+            throws DataStoreException;
+
+}
@@ -24,6 +24,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.sql.DataSource;
@@ -353,6 +354,45 @@ public class ConnectionHelper {
         }
     }
 
+    /**
+     * Executes an update or delete statement once for each of the given
+     * parameter sets as a single JDBC batch and returns the update counts.
+     *
+     * @param sql an SQL statement string
+     * @param paramsList the parameters for each execution of the SQL statement
+     * @return the update counts, as returned by {@link Statement#executeBatch()}
+     * @throws SQLException on error
+     */
+    public final int[] updateBatch(final String sql, final List<Object[]> paramsList) throws SQLException {
+        return new RetryManager<int[]>(null) {
+
+            @Override
+            protected int[] call() throws SQLException {
+                return reallyUpdateBatch(sql, paramsList);
+            }
+
+        }.doTry();
+    }
+
+    int[] reallyUpdateBatch(String sql, List<Object[]> paramsList) throws SQLException {
+        Connection con = null;
+        PreparedStatement stmt = null;
+        boolean inBatchMode = inBatchMode();
+        long start = System.currentTimeMillis();
+        try {
+            con = getConnection(inBatchMode);
+            stmt = con.prepareStatement(sql);
+            for (Object[] params : paramsList) {
+                addBatch(stmt, params);
+            }
+            return stmt.executeBatch();
+        } finally {
+            closeResources(con, stmt, null, inBatchMode);
+            log.debug("SQL-Batch-Execution [{}] of [{}] statements took [{}] ms.",
+                    sql, paramsList.size(), (System.currentTimeMillis() - start));
+        }
+    }
+
     /**
      * Executes a SQL query and returns the {@link ResultSet}. The
      * returned {@link ResultSet} should be closed by clients.
@@ -378,17 +418,35 @@ public class ConnectionHelper {
      */
     public final ResultSet exec(final String sql, final Object[] params, final boolean returnGeneratedKeys,
             final int maxRows) throws SQLException {
+        return exec(sql, params, returnGeneratedKeys, maxRows, fetchSize);
+    }
+
+    /**
+     * Executes a general SQL statement and returns the {@link ResultSet} of the executed statement. The
+     * returned {@link ResultSet} should be closed by clients. The given fetch size is set on the statement
+     * instead of the default fetch size of this helper.
+     *
+     * @param sql an SQL statement string
+     * @param params the parameters for the SQL statement
+     * @param returnGeneratedKeys whether generated keys should be returned
+     * @param maxRows the maximum number of rows in a potential {@link ResultSet} (0 means no limit)
+     * @param fetchSize the fetch size hint for the statement (0 means the hint is ignored)
+     * @return a {@link ResultSet}
+     * @throws SQLException on error
+     */
+    public final ResultSet exec(final String sql, final Object[] params, final boolean returnGeneratedKeys,
+            final int maxRows, final int fetchSize) throws SQLException {
         return new RetryManager<ResultSet>(params) {
 
             @Override
             protected ResultSet call() throws SQLException {
-            	return reallyExec(sql, params, returnGeneratedKeys, maxRows);
+            	return reallyExec(sql, params, returnGeneratedKeys, maxRows, fetchSize);
             }
 
         }.doTry();
     }
 
-    ResultSet reallyExec(String sql, Object[] params, boolean returnGeneratedKeys, int maxRows)
+    ResultSet reallyExec(String sql, Object[] params, boolean returnGeneratedKeys, int maxRows, int fetchSize)
             throws SQLException {
         Connection con = null;
         PreparedStatement stmt = null;
@@ -403,7 +461,7 @@ public class ConnectionHelper {
                 stmt = con.prepareStatement(sql);
             }
             stmt.setMaxRows(maxRows);
-            int currentFetchSize = this.fetchSize;
+            int currentFetchSize = fetchSize;
             if (0 < maxRows && maxRows < currentFetchSize) {
             	currentFetchSize = maxRows; // JCR-3090
             }
@@ -525,6 +583,28 @@ public class ConnectionHelper {
         return stmt;
     }
 
+    /**
+     * This method is used by {@link #updateBatch(String, List)} to add a set of parameters to the
+     * batch of a statement. Like {@link #execute(PreparedStatement, Object[])}, this default
+     * implementation sets all parameters and unwraps {@link StreamWrapper} instances.
+     *
+     * @param stmt the {@link PreparedStatement} to add the parameters to
+     * @param params the parameters
+     * @throws SQLException on error
+     */
+    protected void addBatch(PreparedStatement stmt, Object[] params) throws SQLException {
+        for (int i = 0; params != null && i < params.length; i++) {
+            Object p = params[i];
+            if (p instanceof StreamWrapper) {
+                StreamWrapper wrapper = (StreamWrapper) p;
+                stmt.setBinaryStream(i + 1, wrapper.getStream(), (int) wrapper.getSize());
+            } else {
+                stmt.setObject(i + 1, p);
+            }
+        }
+        stmt.addBatch();
+    }
+
     /**
      * This class encapsulates the logic to retry a method invocation if it threw an SQLException.
      * The RetryManager must cleanup the Params it will get.
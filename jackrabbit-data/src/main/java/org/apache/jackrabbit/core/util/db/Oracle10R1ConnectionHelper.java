@@ -121,6 +121,17 @@ public final class Oracle10R1ConnectionHelper extends OracleConnectionHelper {
         }
     }
 
+    /**
+     * Executes the statement right away, because the temporary blobs of the parameters
+     * are freed after each execution.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected void addBatch(PreparedStatement stmt, Object[] params) throws SQLException {
+        execute(stmt, params);
+    }
+
     /**
      * Creates a temporary oracle.sql.BLOB instance via reflection and spools the contents of the specified
      * stream.
@@ -273,6 +273,25 @@ public abstract class TestCaseBase extends TestCase {
 
     }
 
+    /**
+     * Testcase to validate reading a record of {@link CachingDataStore} in
+     * blocks.
+     */
+    public void testBlockRead() {
+        try {
+            long start = System.currentTimeMillis();
+            LOG.info("Testcase: " + this.getClass().getName()
+                + "#testBlockRead, testDir=" + dataStoreDir);
+            doBlockReadTest();
+            LOG.info("Testcase: " + this.getClass().getName()
+                + "#testBlockRead finished, time taken = ["
+                + (System.currentTimeMillis() - start) + "]ms");
+        } catch (Exception e) {
+            LOG.error("error:", e);
+            fail(e.getMessage());
+        }
+    }
+
     protected abstract DataStore createDataStore() throws RepositoryException ;
 
     /**
@@ -495,6 +514,56 @@ public abstract class TestCaseBase extends TestCase {
         ds.close();
     }
 
+    /**
+     * Read a record that is not in the local cache in blocks, from the start
+     * and after skipping to a later block.
+     */
+    protected void doBlockReadTest() throws Exception {
+        ds = createDataStore();
+        if (!(ds instanceof CachingDataStore)) {
+            ds.close();
+            return;
+        }
+        CachingDataStore cds = (CachingDataStore) ds;
+        cds.setBlockSize(1000);
+        cds.setBlockReadAhead(3);
+        byte[] data = new byte[dataLength];
+        randomGen.nextBytes(data);
+        DataIdentifier identifier = ds.addRecord(
+            new ByteArrayInputStream(data)).getIdentifier();
+        // wait for an asynchronous upload before removing the cached record
+        for (int i = 0; i < 100 && !cds.getBackend().exists(identifier); i++) {
+            Thread.sleep(100);
+        }
+        cds.deleteFromCache(identifier);
+
+        DataRecord rec = ds.getRecord(identifier);
+        assertEquals(data.length, rec.getLength());
+        assertRecord(data, rec);
+
+        // blocks are cached now, and another block size reads them again
+        cds.setBlockSize(4096);
+        InputStream in = ds.getRecord(identifier).getStream();
+        try {
+            int offset = data.length / 2 + 17;
+            assertEquals(offset, in.skip(offset));
+            assertEquals(data[offset] & 0xff, in.read());
+            assertEquals(10, in.skip(10));
+            byte[] buffer = new byte[data.length - offset - 11];
+            org.apache.commons.io.IOUtils.readFully(in, buffer);
+            for (int i = 0; i < buffer.length; i++) {
+                assertEquals(data[offset + 11 + i], buffer[i]);
+            }
+            assertEquals(-1, in.read());
+            assertEquals(0, in.skip(10));
+        } finally {
+            in.close();
+        }
+
+        ((MultiDataStoreAware) ds).deleteRecord(identifier);
+        ds.close();
+    }
+
     /**
      * Method to assert record with byte array.
      */
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.stats;
+
+/**
+ * Extends {@link QueryStatCore} with the statistics of the cache of parsed
+ * queries.
+ */
+public interface QueryCacheStatCore extends QueryStatCore {
+
+    /**
+     * Logs a lookup in the cache of parsed queries.
+     *
+     * @param hit
+     *            whether the parsed query was found in the cache
+     */
+    void logQueryCacheAccess(boolean hit);
+
+    /**
+     * @return the number of queries that were found in the cache of parsed
+     *         queries
+     */
+    long getQueryCacheHitCount();
+
+    /**
+     * @return the number of queries that had to be parsed, because they were
+     *         not found in the cache of parsed queries
+     */
+    long getQueryCacheMissCount();
+
+    /**
+     * @return the fraction of the lookups in the cache of parsed queries that
+     *         were hits, or 0 if there were no lookups
+     */
+    double getQueryCacheHitRate();
+}
@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jackrabbit.api.stats.QueryStatDto;
 
@@ -28,7 +29,7 @@ import org.apache.jackrabbit.api.stats.QueryStatDto;
  * Default {@link QueryStatCore} implementation
  * 
  */
-public class QueryStatImpl implements QueryStatCore {
+public class QueryStatImpl implements QueryCacheStatCore {
 
     private final static Comparator<QueryStatDto> comparator = new QueryStatDtoComparator();
 
@@ -89,6 +90,10 @@ public class QueryStatImpl implements QueryStatCore {
         }
     }
 
+    private final AtomicLong queryCacheHits = new AtomicLong();
+
+    private final AtomicLong queryCacheMisses = new AtomicLong();
+
     private boolean enabled = false;
 
     public QueryStatImpl() {
@@ -133,6 +138,31 @@ public class QueryStatImpl implements QueryStatCore {
         }
     }
 
+    public void logQueryCacheAccess(boolean hit) {
+        if (!enabled) {
+            return;
+        }
+        if (hit) {
+            queryCacheHits.incrementAndGet();
+        } else {
+            queryCacheMisses.incrementAndGet();
+        }
+    }
+
+    public long getQueryCacheHitCount() {
+        return queryCacheHits.get();
+    }
+
+    public long getQueryCacheMissCount() {
+        return queryCacheMisses.get();
+    }
+
+    public double getQueryCacheHitRate() {
+        long hits = queryCacheHits.get();
+        long total = hits + queryCacheMisses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
     public void clearSlowQueriesQueue() {
         slowQueries.clear();
     }
@@ -182,5 +212,7 @@ public class QueryStatImpl implements QueryStatCore {
     public void reset() {
         clearSlowQueriesQueue();
         clearPopularQueriesQueue();
+        queryCacheHits.set(0);
+        queryCacheMisses.set(0);
     }
 }
@@ -25,15 +25,19 @@ import javax.management.openmbean.TabularData;
 import javax.management.openmbean.TabularDataSupport;
 import javax.management.openmbean.TabularType;
 
-import org.apache.jackrabbit.api.jmx.QueryStatManagerMBean;
 import org.apache.jackrabbit.api.stats.QueryStat;
 import org.apache.jackrabbit.api.stats.QueryStatDto;
+import org.apache.jackrabbit.stats.QueryCacheStatCore;
 
 /**
- * The QueryStatManagerMBean default implementation
+ * The QueryStatManagerMBean default implementation. The statistics of the
+ * cache of parsed queries are 0 unless the query statistics implement
+ * {@link QueryCacheStatCore}, and they are only published if the manager is
+ * registered with {@link QueryCacheStatManagerMBean} as its management
+ * interface, for example as a {@link javax.management.StandardMBean}.
  * 
  */
-public class QueryStatManager implements QueryStatManagerMBean {
+public class QueryStatManager implements QueryCacheStatManagerMBean {
 
     private final QueryStat queryStat;
 
@@ -81,6 +85,27 @@ public class QueryStatManager implements QueryStatManagerMBean {
         queryStat.clearPopularQueriesQueue();
     }
 
+    public long getQueryCacheHitCount() {
+        if (queryStat instanceof QueryCacheStatCore) {
+            return ((QueryCacheStatCore) queryStat).getQueryCacheHitCount();
+        }
+        return 0;
+    }
+
+    public long getQueryCacheMissCount() {
+        if (queryStat instanceof QueryCacheStatCore) {
+            return ((QueryCacheStatCore) queryStat).getQueryCacheMissCount();
+        }
+        return 0;
+    }
+
+    public double getQueryCacheHitRate() {
+        if (queryStat instanceof QueryCacheStatCore) {
+            return ((QueryCacheStatCore) queryStat).getQueryCacheHitRate();
+        }
+        return 0;
+    }
+
     public TabularData getSlowQueries() {
         return asTabularData(queryStat.getSlowQueries());
     }
@@ -108,6 +108,41 @@ import org.apache.jackrabbit.rmi.remote.security.RemotePrivilege;
  */
 public class ClientAdapterFactory implements LocalAdapterFactory {
 
+    /**
+     * Depth of the node snapshots read by the item caches of the sessions
+     * created by this factory, or 0 if the sessions do not cache items.
+     * Defaults to the <code>org.apache.jackrabbit.rmi.client.cacheDepth</code>
+     * system property.
+     */
+    private int cacheDepth =
+        Integer.getInteger("org.apache.jackrabbit.rmi.client.cacheDepth", 0).intValue();
+
+    /**
+     * Returns the depth of the node snapshots read by the item caches of
+     * the sessions created by this factory.
+     *
+     * @return snapshot depth, or 0 if item caching is disabled
+     * @since Jackrabbit JCR-RMI 2.19.5
+     */
+    public int getCacheDepth() {
+        return cacheDepth;
+    }
+
+    /**
+     * Sets the depth of the node snapshots read by the item caches of the
+     * sessions created by this factory. A session with an item cache reads
+     * a node together with its properties and the given number of levels
+     * of child nodes in a single call, and keeps the snapshot until an
+     * observed event or a change made through the session invalidates it.
+     * Use 0 to disable item caching.
+     *
+     * @param cacheDepth snapshot depth, or 0 to disable item caching
+     * @since Jackrabbit JCR-RMI 2.19.5
+     */
+    public void setCacheDepth(int cacheDepth) {
+        this.cacheDepth = cacheDepth;
+    }
+
     /**
      * Creates and returns a {@link ClientRepository ClientRepository}
      * instance.
@@ -126,12 +161,15 @@ public class ClientAdapterFactory implements LocalAdapterFactory {
      * {@inheritDoc}
      */
     public Session getSession(Repository repository, RemoteSession remote) {
+        ClientSession session;
         if (remote instanceof RemoteXASession) {
-            return new ClientXASession(
+            session = new ClientXASession(
                     repository, (RemoteXASession) remote, this);
         } else {
-            return new ClientSession(repository, remote, this);
+            session = new ClientSession(repository, remote, this);
         }
+        session.setCacheDepth(cacheDepth);
+        return session;
     }
 
     /**
@@ -191,6 +191,7 @@ public class ClientItem extends ClientObject implements Item {
 
     /** {@inheritDoc} */
     public void refresh(boolean keepChanges) throws RepositoryException {
+        clearItemCache();
         try {
             remote.refresh(keepChanges);
         } catch (RemoteException ex) {
@@ -200,6 +201,7 @@ public class ClientItem extends ClientObject implements Item {
 
     /** {@inheritDoc} */
     public void remove() throws RepositoryException {
+        clearItemCache();
         try {
             remote.remove();
         } catch (RemoteException ex) {
@@ -207,4 +209,26 @@ public class ClientItem extends ClientObject implements Item {
         }
     }
 
+    /**
+     * Returns the item cache of the current session.
+     *
+     * @return item cache, or <code>null</code> if the session does not
+     *         cache items
+     */
+    ClientItemCache getItemCache() {
+        if (session instanceof ClientSession) {
+            return ((ClientSession) session).getItemCache();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Drops all items from the item cache of the current session. Called
+     * before each change made through this item.
+     */
+    void clearItemCache() {
+        clearItemCache(session);
+    }
+
 }
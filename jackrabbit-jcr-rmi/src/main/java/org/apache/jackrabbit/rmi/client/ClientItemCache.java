@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.rmi.client;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.nodetype.NodeType;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.apache.jackrabbit.rmi.remote.NodeSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client side cache of the node snapshots read by a session. The cache
+ * is registered as an event listener of the session, and the snapshots
+ * of changed nodes are dropped when the events are polled from the server.
+ * Changes made through the session, transient or persisted, clear the
+ * whole cache, so the session always reads its own changes.
+ * <p>
+ * The client adapters check that the snapshot they use is still the one
+ * cached for its path, so a snapshot that was dropped is read again from
+ * the server with {@link org.apache.jackrabbit.rmi.remote.RemoteNode#getSnapshot(int)}.
+ */
+class ClientItemCache implements EventListener {
+
+    /**
+     * Logger instance.
+     */
+    private static final Logger log =
+        LoggerFactory.getLogger(ClientItemCache.class);
+
+    /**
+     * The event types that invalidate cached snapshots.
+     */
+    static final int EVENT_TYPES = Event.NODE_ADDED | Event.NODE_REMOVED
+        | Event.NODE_MOVED | Event.PROPERTY_ADDED | Event.PROPERTY_REMOVED
+        | Event.PROPERTY_CHANGED;
+
+    /**
+     * The maximum number of cached node snapshots.
+     */
+    private static final int MAX_SIZE = Integer.getInteger(
+        "org.apache.jackrabbit.rmi.client.cacheSize", 1000).intValue();
+
+    /** The depth of the snapshots read from the server. */
+    private final int depth;
+
+    /** Cached snapshots by node path, in access order. */
+    private final Map<String, NodeSnapshot> nodes =
+        new LinkedHashMap<String, NodeSnapshot>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, NodeSnapshot> eldest) {
+                return size() > MAX_SIZE;
+            }
+        };
+
+    /** Node types by name. */
+    private final Map<String, NodeType> nodeTypes =
+        new HashMap<String, NodeType>();
+
+    /**
+     * Incremented whenever snapshots are dropped, so that snapshots read
+     * while a change happened are not cached.
+     */
+    private long generation = 0;
+
+    /**
+     * Creates a cache for snapshots of the given depth.
+     *
+     * @param depth depth of the snapshots read from the server
+     */
+    ClientItemCache(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Returns the depth of the snapshots read from the server.
+     *
+     * @return snapshot depth
+     */
+    int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the current generation, to be passed to
+     * {@link #put(NodeSnapshot, long)} with a snapshot that is read from
+     * the server afterwards.
+     *
+     * @return current generation
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the snapshot cached for the given path.
+     *
+     * @param path node path
+     * @return node snapshot, or <code>null</code> if not cached
+     */
+    synchronized NodeSnapshot get(String path) {
+        return nodes.get(path);
+    }
+
+    /**
+     * Checks whether the given snapshot is still the one cached for its path.
+     *
+     * @param snapshot node snapshot
+     * @return <code>true</code> if the snapshot is cached
+     */
+    synchronized boolean contains(NodeSnapshot snapshot) {
+        return nodes.get(snapshot.getPath()) == snapshot;
+    }
+
+    /**
+     * Caches a snapshot and the snapshots of its child nodes, unless
+     * snapshots were dropped since the given generation.
+     *
+     * @param snapshot   node snapshot
+     * @param generation generation before the snapshot was read
+     */
+    synchronized void put(NodeSnapshot snapshot, long generation) {
+        if (generation == this.generation) {
+            put(snapshot);
+        }
+    }
+
+    private void put(NodeSnapshot snapshot) {
+        nodes.put(snapshot.getPath(), snapshot);
+        NodeSnapshot[] children = snapshot.getChildren();
+        if (children != null) {
+            for (NodeSnapshot child : children) {
+                put(child);
+            }
+        }
+    }
+
+    /**
+     * Returns a node type that was read before.
+     *
+     * @param name node type name
+     * @return node type, or <code>null</code> if not cached
+     */
+    synchronized NodeType getNodeType(String name) {
+        return nodeTypes.get(name);
+    }
+
+    /**
+     * Caches a node type.
+     *
+     * @param type node type
+     */
+    synchronized void putNodeType(NodeType type) {
+        nodeTypes.put(type.getName(), type);
+    }
+
+    /**
+     * Drops the snapshots of the item at the given path, of its descendants
+     * and of its parent node.
+     *
+     * @param path item path
+     */
+    synchronized void invalidate(String path) {
+        generation++;
+        nodes.remove(path);
+        int slash = path.lastIndexOf('/');
+        if (slash > 0) {
+            nodes.remove(path.substring(0, slash));
+        } else if (slash == 0 && path.length() > 1) {
+            nodes.remove("/");
+        }
+        String prefix = "/".equals(path) ? path : path + "/";
+        Iterator<String> it = nodes.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all cached snapshots. The node types are kept, as their adapters
+     * read the node type definitions from the server.
+     */
+    synchronized void clear() {
+        generation++;
+        nodes.clear();
+    }
+
+    //---------------------------------------------------------< EventListener >
+
+    /**
+     * Drops the snapshots of the changed items.
+     *
+     * {@inheritDoc}
+     */
+    public void onEvent(EventIterator events) {
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            try {
+                String path = event.getPath();
+                if (path != null) {
+                    invalidate(path);
+                }
+                if (event.getType() == Event.NODE_MOVED) {
+                    Object source = event.getInfo().get("srcAbsPath");
+                    if (source instanceof String) {
+                        invalidate((String) source);
+                    }
+                }
+            } catch (RepositoryException e) {
+                log.debug("Unable to read event, clearing item cache", e);
+                clear();
+            }
+        }
+    }
+
+}
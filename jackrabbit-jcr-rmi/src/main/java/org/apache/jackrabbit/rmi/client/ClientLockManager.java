@@ -91,6 +91,7 @@ public class ClientLockManager extends ClientObject implements LockManager {
     public Lock lock(
             String absPath, boolean isDeep, boolean isSessionScoped,
             long timeoutHint, String ownerInfo) throws RepositoryException {
+        clearItemCache(session);
         try {
             return getFactory().getLock(session, remote.lock(
                     absPath, isDeep, isSessionScoped, timeoutHint, ownerInfo));
@@ -100,6 +101,7 @@ public class ClientLockManager extends ClientObject implements LockManager {
     }
 
     public void unlock(String absPath) throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.unlock(absPath);
         } catch (RemoteException ex) {
@@ -19,6 +19,7 @@ package org.apache.jackrabbit.rmi.client;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.rmi.RemoteException;
+import java.util.Arrays;
 import java.util.Calendar;
 
 import javax.jcr.Binary;
@@ -37,6 +38,10 @@ import javax.jcr.nodetype.NodeType;
 import javax.jcr.version.Version;
 import javax.jcr.version.VersionHistory;
 
+import org.apache.jackrabbit.rmi.iterator.ArrayNodeIterator;
+import org.apache.jackrabbit.rmi.iterator.ArrayPropertyIterator;
+import org.apache.jackrabbit.rmi.remote.NodeSnapshot;
+import org.apache.jackrabbit.rmi.remote.PropertySnapshot;
 import org.apache.jackrabbit.rmi.remote.RemoteLock;
 import org.apache.jackrabbit.rmi.remote.RemoteNode;
 import org.apache.jackrabbit.rmi.remote.RemoteProperty;
@@ -56,6 +61,13 @@ public class ClientNode extends ClientItem implements Node {
     /** The adapted remote node. */
     private RemoteNode remote;
 
+    /**
+     * The snapshot of this node, or <code>null</code> if the snapshot has
+     * not been read yet. Only used while it is in the item cache of the
+     * session.
+     */
+    private NodeSnapshot snapshot;
+
     /**
      * Creates a local adapter for the given remote node.
      *
@@ -91,6 +103,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public Node addNode(String path) throws RepositoryException {
+        clearItemCache();
         try {
             return getNode(getSession(), remote.addNode(path));
         } catch (RemoteException ex) {
@@ -100,6 +113,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public Node addNode(String path, String type) throws RepositoryException {
+        clearItemCache();
         try {
             RemoteNode node = remote.addNode(path, type);
             return getNode(getSession(), node);
@@ -110,6 +124,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public void orderBefore(String src, String dst) throws RepositoryException {
+        clearItemCache();
         try {
             remote.orderBefore(src, dst);
         } catch (RemoteException ex) {
@@ -120,6 +135,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public Property setProperty(String name, Value value)
             throws RepositoryException {
+        clearItemCache();
         try {
             if (value == null) {
                 remote.setProperty(name, value);
@@ -137,6 +153,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public Property setProperty(String name, Value[] values)
             throws RepositoryException {
+        clearItemCache();
         try {
             if (values == null) {
                 remote.setProperty(name, values);
@@ -154,6 +171,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public Property setProperty(String name, String[] strings)
             throws RepositoryException {
+        clearItemCache();
         try {
             if (strings == null) {
                 remote.setProperty(name, (Value[]) null);
@@ -248,8 +266,44 @@ public class ClientNode extends ClientItem implements Node {
         }
     }
 
+    /**
+     * Returns the path from the cached snapshot of this node, if available.
+     *
+     * {@inheritDoc}
+     */
+    public String getPath() throws RepositoryException {
+        NodeSnapshot s = getCachedSnapshot();
+        if (s != null) {
+            return s.getPath();
+        }
+        return super.getPath();
+    }
+
+    /**
+     * Returns the name from the cached snapshot of this node, if available.
+     *
+     * {@inheritDoc}
+     */
+    public String getName() throws RepositoryException {
+        NodeSnapshot s = getCachedSnapshot();
+        if (s != null) {
+            return s.getName();
+        }
+        return super.getName();
+    }
+
     /** {@inheritDoc} */
     public Node getNode(String path) throws RepositoryException {
+        if (isSimpleName(path)) {
+            NodeSnapshot s = getSnapshot(true);
+            if (s != null && s.getChildren() != null) {
+                for (NodeSnapshot child : s.getChildren()) {
+                    if (child.getName().equals(path)) {
+                        return getNode(getSession(), child);
+                    }
+                }
+            }
+        }
         try {
             return getNode(getSession(), remote.getNode(path));
         } catch (RemoteException ex) {
@@ -259,6 +313,15 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public NodeIterator getNodes() throws RepositoryException {
+        NodeSnapshot s = getSnapshot(true);
+        if (s != null && s.getChildren() != null) {
+            NodeSnapshot[] children = s.getChildren();
+            Node[] nodes = new Node[children.length];
+            for (int i = 0; i < children.length; i++) {
+                nodes[i] = getNode(getSession(), children[i]);
+            }
+            return new ArrayNodeIterator(nodes);
+        }
         try {
             return getFactory().getNodeIterator(getSession(), remote.getNodes());
         } catch (RemoteException ex) {
@@ -286,6 +349,13 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public Property getProperty(String path) throws RepositoryException {
+        if (isSimpleName(path)) {
+            NodeSnapshot s = getSnapshot(false);
+            PropertySnapshot property = s != null ? s.getProperty(path) : null;
+            if (property != null) {
+                return getProperty(s, property);
+            }
+        }
         try {
             RemoteProperty property = remote.getProperty(path);
             return getFactory().getProperty(getSession(), property);
@@ -296,6 +366,15 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public PropertyIterator getProperties() throws RepositoryException {
+        NodeSnapshot s = getSnapshot(false);
+        if (s != null) {
+            PropertySnapshot[] snapshots = s.getProperties();
+            Property[] properties = new Property[snapshots.length];
+            for (int i = 0; i < snapshots.length; i++) {
+                properties[i] = getProperty(s, snapshots[i]);
+            }
+            return new ArrayPropertyIterator(properties);
+        }
         try {
             return getFactory().getPropertyIterator(getSession(), remote.getProperties());
         } catch (RemoteException ex) {
@@ -371,6 +450,12 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public boolean hasNode(String path) throws RepositoryException {
+        if (isSimpleName(path)) {
+            NodeSnapshot s = getSnapshot(false);
+            if (s != null && s.getChildNames() != null) {
+                return Arrays.asList(s.getChildNames()).contains(path);
+            }
+        }
         try {
             return remote.hasNode(path);
         } catch (RemoteException ex) {
@@ -380,6 +465,12 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public boolean hasProperty(String path) throws RepositoryException {
+        if (isSimpleName(path)) {
+            NodeSnapshot s = getSnapshot(false);
+            if (s != null) {
+                return s.getProperty(path) != null;
+            }
+        }
         try {
             return remote.hasProperty(path);
         } catch (RemoteException ex) {
@@ -389,6 +480,10 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public boolean hasNodes() throws RepositoryException {
+        NodeSnapshot s = getSnapshot(false);
+        if (s != null && s.getChildNames() != null) {
+            return s.getChildNames().length > 0;
+        }
         try {
             return remote.hasNodes();
         } catch (RemoteException ex) {
@@ -398,6 +493,10 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public boolean hasProperties() throws RepositoryException {
+        NodeSnapshot s = getSnapshot(false);
+        if (s != null) {
+            return s.getProperties().length > 0;
+        }
         try {
             return remote.hasProperties();
         } catch (RemoteException ex) {
@@ -407,8 +506,20 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public NodeType getPrimaryNodeType() throws RepositoryException {
+        ClientItemCache cache = getItemCache();
+        NodeSnapshot s = getSnapshot(false);
+        if (s != null) {
+            NodeType type = cache.getNodeType(s.getPrimaryType());
+            if (type != null) {
+                return type;
+            }
+        }
         try {
-            return getFactory().getNodeType(remote.getPrimaryNodeType());
+            NodeType type = getFactory().getNodeType(remote.getPrimaryNodeType());
+            if (cache != null) {
+                cache.putNodeType(type);
+            }
+            return type;
         } catch (RemoteException ex) {
             throw new RemoteRepositoryException(ex);
         }
@@ -434,6 +545,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public void addMixin(String name) throws RepositoryException {
+        clearItemCache();
         try {
             remote.addMixin(name);
         } catch (RemoteException ex) {
@@ -443,6 +555,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public void removeMixin(String name) throws RepositoryException {
+        clearItemCache();
         try {
             remote.removeMixin(name);
         } catch (RemoteException ex) {
@@ -470,6 +583,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public Version checkin() throws RepositoryException {
+        clearItemCache();
         try {
             return getFactory().getVersion(getSession(), remote.checkin());
         } catch (RemoteException ex) {
@@ -479,6 +593,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public void checkout() throws RepositoryException {
+        clearItemCache();
         try {
             remote.checkout();
         } catch (RemoteException ex) {
@@ -488,6 +603,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public void update(String workspace) throws RepositoryException {
+        clearItemCache();
         try {
             remote.update(workspace);
         } catch (RemoteException ex) {
@@ -498,6 +614,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public NodeIterator merge(String workspace, boolean bestEffort)
             throws RepositoryException {
+        clearItemCache();
         try {
             return getFactory().getNodeIterator(getSession(), remote.merge(workspace, bestEffort));
         } catch (RemoteException ex) {
@@ -507,6 +624,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public void cancelMerge(Version version) throws RepositoryException {
+        clearItemCache();
         try {
             remote.cancelMerge(version.getUUID());
         } catch (RemoteException ex) {
@@ -516,6 +634,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public void doneMerge(Version version) throws RepositoryException {
+        clearItemCache();
         try {
             remote.doneMerge(version.getUUID());
         } catch (RemoteException ex) {
@@ -545,6 +664,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public void restore(String version, boolean removeExisting)
             throws RepositoryException {
+        clearItemCache();
         try {
             remote.restore(version, removeExisting);
         } catch (RemoteException ex) {
@@ -555,6 +675,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public void restore(Version version, boolean removeExisting)
             throws RepositoryException {
+        clearItemCache();
         try {
             remote.restoreByUUID(version.getUUID(), removeExisting);
         } catch (RemoteException ex) {
@@ -565,6 +686,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public void restore(Version version, String path, boolean removeExisting)
             throws RepositoryException {
+        clearItemCache();
         try {
             remote.restore(version.getUUID(), path, removeExisting);
         } catch (RemoteException ex) {
@@ -575,6 +697,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public void restoreByLabel(String label, boolean removeExisting)
             throws RepositoryException {
+        clearItemCache();
         try {
             remote.restoreByLabel(label, removeExisting);
         } catch (RemoteException ex) {
@@ -585,6 +708,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public Property setProperty(String name, String[] strings, int type)
             throws RepositoryException {
+        clearItemCache();
         try {
             if (strings == null) {
                 remote.setProperty(name, (Value[]) null);
@@ -602,6 +726,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public Property setProperty(String name, Value[] values, int type)
             throws RepositoryException {
+        clearItemCache();
         try {
             if (values != null) {
                 values = SerialValueFactory.makeSerialValueArray(values);
@@ -620,6 +745,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public Property setProperty(String name, Value value, int type)
             throws RepositoryException {
+        clearItemCache();
         try {
             if (value != null) {
                 value = SerialValueFactory.makeSerialValue(value);
@@ -675,6 +801,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public Lock lock(boolean isDeep, boolean isSessionScoped)
             throws RepositoryException {
+        clearItemCache();
         try {
             RemoteLock lock = remote.lock(isDeep, isSessionScoped);
             return getFactory().getLock(getSession(), lock);
@@ -694,6 +821,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public void unlock() throws RepositoryException {
+        clearItemCache();
         try {
             remote.unlock();
         } catch (RemoteException ex) {
@@ -722,6 +850,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public void followLifecycleTransition(String transition)
             throws RepositoryException {
+        clearItemCache();
         try {
         	remote.followLifecycleTransition(transition);
         } catch (RemoteException ex) {
@@ -769,6 +898,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public void removeShare() throws RepositoryException {
+        clearItemCache();
         try {
             remote.removeShare();
         } catch (RemoteException ex) {
@@ -778,6 +908,7 @@ public class ClientNode extends ClientItem implements Node {
 
     /** {@inheritDoc} */
     public void removeSharedSet() throws RepositoryException {
+        clearItemCache();
         try {
             remote.removeSharedSet();
         } catch (RemoteException ex) {
@@ -788,6 +919,7 @@ public class ClientNode extends ClientItem implements Node {
     /** {@inheritDoc} */
     public void setPrimaryType(String nodeTypeName)
             throws RepositoryException {
+        clearItemCache();
         try {
             remote.setPrimaryType(nodeTypeName);
         } catch (RemoteException ex) {
@@ -795,4 +927,92 @@ public class ClientNode extends ClientItem implements Node {
         }
     }
 
+    //---------------------------------------------------------< item cache >
+
+    /**
+     * Sets the snapshot of this node. Called when the node adapter is
+     * created for a snapshot from the item cache of the session.
+     *
+     * @param snapshot node snapshot
+     */
+    void setSnapshot(NodeSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Returns the snapshot of this node if it is still in the item cache
+     * of the session.
+     *
+     * @return node snapshot, or <code>null</code>
+     */
+    private NodeSnapshot getCachedSnapshot() {
+        NodeSnapshot s = snapshot;
+        ClientItemCache cache = getItemCache();
+        if (s != null && cache != null && cache.contains(s)) {
+            return s;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the snapshot of this node from the item cache of the session.
+     * A new snapshot is read from the server if the cached one was dropped,
+     * or if the snapshots of the child nodes are needed but were not read.
+     *
+     * @param children whether the snapshots of the child nodes are needed
+     * @return node snapshot, or <code>null</code> if the session does not
+     *         cache items
+     * @throws RepositoryException on repository errors
+     */
+    private NodeSnapshot getSnapshot(boolean children)
+            throws RepositoryException {
+        ClientItemCache cache = getItemCache();
+        if (cache == null) {
+            return null;
+        }
+        NodeSnapshot s = snapshot;
+        if (s == null || !cache.contains(s) || (children
+                && s.getChildren() == null && s.getChildNames() != null)) {
+            long generation = cache.getGeneration();
+            try {
+                s = remote.getSnapshot(cache.getDepth());
+            } catch (RemoteException ex) {
+                throw new RemoteRepositoryException(ex);
+            }
+            cache.put(s, generation);
+            snapshot = s;
+        }
+        return s;
+    }
+
+    /**
+     * Creates a local adapter for a property of a node snapshot.
+     *
+     * @param node     node snapshot
+     * @param snapshot property snapshot
+     * @return local property adapter
+     */
+    private Property getProperty(NodeSnapshot node, PropertySnapshot snapshot) {
+        Property property =
+            getFactory().getProperty(getSession(), snapshot.getProperty());
+        if (property instanceof ClientProperty) {
+            ((ClientProperty) property).setSnapshot(node, snapshot);
+        }
+        return property;
+    }
+
+    /**
+     * Checks whether the given relative path is the plain name of a child
+     * item, which can be looked up in the snapshot of this node.
+     *
+     * @param path relative path
+     * @return <code>true</code> if the path is a plain name
+     */
+    private static boolean isSimpleName(String path) {
+        return path.length() > 0 && path.indexOf('/') == -1
+            && path.indexOf('[') == -1
+            && !".".equals(path) && !"..".equals(path);
+    }
+
 }
@@ -21,6 +21,7 @@ import javax.jcr.Node;
 import javax.jcr.Session;
 import javax.jcr.nodetype.NodeType;
 
+import org.apache.jackrabbit.rmi.remote.NodeSnapshot;
 import org.apache.jackrabbit.rmi.remote.RemoteItem;
 import org.apache.jackrabbit.rmi.remote.RemoteNode;
 import org.apache.jackrabbit.rmi.remote.RemoteNodeType;
@@ -104,6 +105,39 @@ public class ClientObject {
         }
     }
 
+    /**
+     * Utility method to create a local adapter for a node read from the
+     * item cache of a session. The adapter is created as described in
+     * {@link #getNode(Session, RemoteNode)}, and node adapters created by
+     * the default factory serve their properties and child nodes from the
+     * given snapshot while it is cached.
+     *
+     * @param session current session
+     * @param snapshot cached node snapshot
+     * @return local node, version, or version history adapter
+     * @since Jackrabbit JCR-RMI 2.19.5
+     */
+    protected Node getNode(Session session, NodeSnapshot snapshot) {
+        Node node = getNode(session, snapshot.getNode());
+        if (node instanceof ClientNode) {
+            ((ClientNode) node).setSnapshot(snapshot);
+        }
+        return node;
+    }
+
+    /**
+     * Drops all items from the item cache of the given session, if it
+     * caches items. Called by the client adapters before each change made
+     * through them, so that the session reads its own changes.
+     *
+     * @param session current session
+     */
+    void clearItemCache(Session session) {
+        if (session instanceof ClientSession) {
+            ((ClientSession) session).clearItemCache();
+        }
+    }
+
     /**
      * Utility method for creating an array of local node type adapters
      * for an array of remote node types. The node type adapters are created
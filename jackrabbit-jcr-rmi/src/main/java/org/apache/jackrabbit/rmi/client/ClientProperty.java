@@ -35,6 +35,8 @@ import javax.jcr.ValueFactory;
 import javax.jcr.ValueFormatException;
 import javax.jcr.nodetype.PropertyDefinition;
 
+import org.apache.jackrabbit.rmi.remote.NodeSnapshot;
+import org.apache.jackrabbit.rmi.remote.PropertySnapshot;
 import org.apache.jackrabbit.rmi.remote.RemoteProperty;
 import org.apache.jackrabbit.rmi.value.SerialValueFactory;
 
@@ -52,6 +54,12 @@ public class ClientProperty extends ClientItem implements Property {
     /** The adapted remote property. */
     private RemoteProperty remote;
 
+    /** Snapshot of the parent node, or <code>null</code>. */
+    private NodeSnapshot parent;
+
+    /** Snapshot of this property, or <code>null</code>. */
+    private PropertySnapshot snapshot;
+
     /**
      * Creates a local adapter for the given remote property.
      *
@@ -158,8 +166,26 @@ public class ClientProperty extends ClientItem implements Property {
         return getValue().getString();
     }
 
+    /**
+     * Returns the name from the cached snapshot of this property, if
+     * available.
+     *
+     * {@inheritDoc}
+     */
+    public String getName() throws RepositoryException {
+        PropertySnapshot s = getCachedSnapshot();
+        if (s != null) {
+            return s.getName();
+        }
+        return super.getName();
+    }
+
     /** {@inheritDoc} */
     public Value getValue() throws RepositoryException {
+        PropertySnapshot s = getCachedSnapshot();
+        if (s != null && !s.isMultiple() && s.getValues() != null) {
+            return copy(s.getValues()[0]);
+        }
         try {
             return remote.getValue();
         } catch (RemoteException ex) {
@@ -169,6 +195,14 @@ public class ClientProperty extends ClientItem implements Property {
 
     /** {@inheritDoc} */
     public Value[] getValues() throws RepositoryException {
+        PropertySnapshot s = getCachedSnapshot();
+        if (s != null && s.isMultiple() && s.getValues() != null) {
+            Value[] values = new Value[s.getValues().length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = copy(s.getValues()[i]);
+            }
+            return values;
+        }
         try {
             return remote.getValues();
         } catch (RemoteException ex) {
@@ -291,6 +325,7 @@ public class ClientProperty extends ClientItem implements Property {
      * {@inheritDoc}
      */
     public void setValue(String[] strings) throws RepositoryException {
+        clearItemCache();
         try {
             Value[] values = null;
             if (strings != null) {
@@ -304,6 +339,7 @@ public class ClientProperty extends ClientItem implements Property {
 
     /** {@inheritDoc} */
     public void setValue(Value value) throws RepositoryException {
+        clearItemCache();
         try {
             if (value != null) {
                 value = SerialValueFactory.makeSerialValue(value);
@@ -316,6 +352,7 @@ public class ClientProperty extends ClientItem implements Property {
 
     /** {@inheritDoc} */
     public void setValue(Value[] values) throws RepositoryException {
+        clearItemCache();
         try {
             if (values != null) {
                 values = SerialValueFactory.makeSerialValueArray(values);
@@ -429,6 +466,10 @@ public class ClientProperty extends ClientItem implements Property {
 
     /** {@inheritDoc} */
     public int getType() throws RepositoryException {
+        PropertySnapshot s = getCachedSnapshot();
+        if (s != null) {
+            return s.getType();
+        }
         try {
             return remote.getType();
         } catch (RemoteException ex) {
@@ -438,8 +479,55 @@ public class ClientProperty extends ClientItem implements Property {
 
     /** {@inheritDoc} */
     public boolean isMultiple() throws RepositoryException {
+        PropertySnapshot s = getCachedSnapshot();
+        if (s != null) {
+            return s.isMultiple();
+        }
         // TODO: Direct remote call for this?
         return getDefinition().isMultiple();
     }
 
+    //---------------------------------------------------------< item cache >
+
+    /**
+     * Sets the snapshot of this property. Called when the property adapter
+     * is created for a node snapshot from the item cache of the session.
+     *
+     * @param parent   snapshot of the parent node
+     * @param snapshot snapshot of this property
+     */
+    void setSnapshot(NodeSnapshot parent, PropertySnapshot snapshot) {
+        this.parent = parent;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Returns the snapshot of this property if the snapshot of the parent
+     * node is still in the item cache of the session.
+     *
+     * @return property snapshot, or <code>null</code>
+     */
+    private PropertySnapshot getCachedSnapshot() {
+        NodeSnapshot p = parent;
+        ClientItemCache cache = getItemCache();
+        if (p != null && cache != null && cache.contains(p)) {
+            return snapshot;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a copy of a cached value, so that the state of the cached
+     * value is not affected by the caller.
+     *
+     * @param value cached value
+     * @return value copy
+     * @throws RepositoryException if the value can not be copied
+     */
+    private static Value copy(Value value) throws RepositoryException {
+        return SerialValueFactory.getInstance().createValue(
+                value.getString(), value.getType());
+    }
+
 }
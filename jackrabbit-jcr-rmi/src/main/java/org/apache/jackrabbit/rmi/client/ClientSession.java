@@ -45,6 +45,7 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamSource;
 
+import org.apache.jackrabbit.rmi.remote.NodeSnapshot;
 import org.apache.jackrabbit.rmi.remote.RemoteSession;
 import org.apache.jackrabbit.rmi.value.SerialValueFactory;
 import org.slf4j.Logger;
@@ -92,6 +93,18 @@ public class ClientSession extends ClientObject implements Session {
      */
     private Workspace workspace;
 
+    /**
+     * The depth of the node snapshots read by the item cache of this session,
+     * or 0 if the item cache is disabled.
+     */
+    private int cacheDepth = 0;
+
+    /**
+     * The item cache of this session. Created and registered as an event
+     * listener on first access if {@link #cacheDepth} is set.
+     */
+    private ClientItemCache itemCache;
+
     /**
      * Creates a client adapter for the given remote session.
      *
@@ -169,6 +182,11 @@ public class ClientSession extends ClientObject implements Session {
 
     /** {@inheritDoc} */
     public Node getRootNode() throws RepositoryException {
+        ClientItemCache cache = getItemCache();
+        NodeSnapshot snapshot = cache != null ? cache.get("/") : null;
+        if (snapshot != null) {
+            return getNode(this, snapshot);
+        }
         try {
             return getNode(this, remote.getRootNode());
         } catch (RemoteException ex) {
@@ -205,6 +223,11 @@ public class ClientSession extends ClientObject implements Session {
 
     /** {@inheritDoc} */
     public Node getNode(String path) throws RepositoryException {
+        ClientItemCache cache = getItemCache();
+        NodeSnapshot snapshot = cache != null ? cache.get(path) : null;
+        if (snapshot != null) {
+            return getNode(this, snapshot);
+        }
         try {
             return getNode(this, remote.getNode(path));
         } catch (RemoteException ex) {
@@ -250,6 +273,7 @@ public class ClientSession extends ClientObject implements Session {
 
     /** {@inheritDoc} */
     public void removeItem(String path) throws RepositoryException {
+        clearItemCache();
         try {
             remote.removeItem(path);
         } catch (RemoteException ex) {
@@ -259,6 +283,7 @@ public class ClientSession extends ClientObject implements Session {
 
     /** {@inheritDoc} */
     public void move(String from, String to) throws RepositoryException {
+        clearItemCache();
         try {
             remote.move(from, to);
         } catch (RemoteException ex) {
@@ -277,6 +302,7 @@ public class ClientSession extends ClientObject implements Session {
 
     /** {@inheritDoc} */
     public void refresh(boolean keepChanges) throws RepositoryException {
+        clearItemCache();
         try {
             remote.refresh(keepChanges);
         } catch (RemoteException ex) {
@@ -324,6 +350,7 @@ public class ClientSession extends ClientObject implements Session {
     /** {@inheritDoc} */
     public void importXML(String path, InputStream xml, int mode)
             throws IOException, RepositoryException {
+        clearItemCache();
         try {
             ByteArrayOutputStream buffer = new ByteArrayOutputStream();
             byte[] bytes = new byte[4096];
@@ -350,6 +377,7 @@ public class ClientSession extends ClientObject implements Session {
             return new DefaultContentHandler(handler) {
                 public void endDocument() throws SAXException {
                     super.endDocument();
+                    clearItemCache();
                     try {
                         remote.importXML(path, buffer.toByteArray(), mode);
                     } catch (Exception e) {
@@ -415,6 +443,7 @@ public class ClientSession extends ClientObject implements Session {
         } finally {
             // mark "dead"
             live = false;
+            clearItemCache();
         }
     }
 
@@ -573,6 +602,50 @@ public class ClientSession extends ClientObject implements Session {
         }
     }
 
+    /**
+     * Enables the item cache of this session. Called by
+     * {@link ClientAdapterFactory#getSession(Repository, RemoteSession)}.
+     *
+     * @param depth depth of the node snapshots read by the cache,
+     *              0 to disable the cache
+     */
+    void setCacheDepth(int depth) {
+        this.cacheDepth = depth;
+    }
+
+    /**
+     * Returns the item cache of this session. The cache is registered as an
+     * event listener with the observation manager of the workspace on the
+     * first call.
+     *
+     * @return item cache, or <code>null</code> if the cache is disabled
+     */
+    synchronized ClientItemCache getItemCache() {
+        if (itemCache == null && cacheDepth > 0 && live) {
+            ClientItemCache cache = new ClientItemCache(cacheDepth);
+            try {
+                getWorkspace().getObservationManager().addEventListener(
+                        cache, ClientItemCache.EVENT_TYPES, "/", true,
+                        null, null, false);
+                itemCache = cache;
+            } catch (RepositoryException e) {
+                log.warn("Unable to observe changes, item cache disabled", e);
+                cacheDepth = 0;
+            }
+        }
+        return itemCache;
+    }
+
+    /**
+     * Drops all items from the item cache of this session, if the cache
+     * is enabled.
+     */
+    synchronized void clearItemCache() {
+        if (itemCache != null) {
+            itemCache.clear();
+        }
+    }
+
     public RetentionManager getRetentionManager()
             throws RepositoryException {
         throw new UnsupportedRepositoryOperationException("TODO: JCR-3206");
@@ -97,6 +97,7 @@ public class ClientVersionHistory extends ClientNode implements VersionHistory {
     /** {@inheritDoc} */
     public void addVersionLabel(String versionName, String label,
             boolean moveLabel) throws VersionException, RepositoryException {
+        clearItemCache();
         try {
             remote.addVersionLabel(versionName, label, moveLabel);
         } catch (RemoteException ex) {
@@ -107,6 +108,7 @@ public class ClientVersionHistory extends ClientNode implements VersionHistory {
     /** {@inheritDoc} */
     public void removeVersionLabel(String label)
             throws VersionException, RepositoryException {
+        clearItemCache();
         try {
             remote.removeVersionLabel(label);
         } catch (RemoteException ex) {
@@ -160,6 +162,7 @@ public class ClientVersionHistory extends ClientNode implements VersionHistory {
     public void removeVersion(String versionName)
             throws UnsupportedRepositoryOperationException, VersionException,
             RepositoryException {
+        clearItemCache();
         try {
             remote.removeVersion(versionName);
         } catch (RemoteException ex) {
@@ -49,6 +49,7 @@ public class ClientVersionManager extends ClientObject
     /** {@inheritDoc} */
     public void cancelMerge(String absPath, Version version)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.cancelMerge(absPath, version.getIdentifier());
         } catch (RemoteException e) {
@@ -58,6 +59,7 @@ public class ClientVersionManager extends ClientObject
 
     /** {@inheritDoc} */
     public Version checkin(String absPath) throws RepositoryException {
+        clearItemCache(session);
         try {
             return getFactory().getVersion(session, remote.checkin(absPath));
         } catch (RemoteException e) {
@@ -67,6 +69,7 @@ public class ClientVersionManager extends ClientObject
 
     /** {@inheritDoc} */
     public void checkout(String absPath) throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.checkout(absPath);
         } catch (RemoteException e) {
@@ -76,6 +79,7 @@ public class ClientVersionManager extends ClientObject
 
     /** {@inheritDoc} */
     public Version checkpoint(String absPath) throws RepositoryException {
+        clearItemCache(session);
         try {
             return getFactory().getVersion(session, remote.checkpoint(absPath));
         } catch (RemoteException e) {
@@ -86,6 +90,7 @@ public class ClientVersionManager extends ClientObject
     /** {@inheritDoc} */
     public Node createActivity(String title)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             return getFactory().getNode(session, remote.createActivity(title));
         } catch (RemoteException e) {
@@ -96,6 +101,7 @@ public class ClientVersionManager extends ClientObject
     /** {@inheritDoc} */
     public Node createConfiguration(String absPath)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             return getFactory().getNode(
                     session, remote.createConfiguration(absPath));
@@ -107,6 +113,7 @@ public class ClientVersionManager extends ClientObject
     /** {@inheritDoc} */
     public void doneMerge(String absPath, Version version)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.doneMerge(absPath, version.getIdentifier());
         } catch (RemoteException e) {
@@ -160,6 +167,7 @@ public class ClientVersionManager extends ClientObject
 
     /** {@inheritDoc} */
     public NodeIterator merge(Node activityNode) throws RepositoryException {
+        clearItemCache(session);
         try {
             RemoteIterator iterator = remote.merge(activityNode.getIdentifier());
             return getFactory().getNodeIterator(session, iterator);
@@ -172,6 +180,7 @@ public class ClientVersionManager extends ClientObject
     public NodeIterator merge(
             String absPath, String srcWorkspace, boolean bestEffort)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             return getFactory().getNodeIterator(
                     session, remote.merge(absPath, srcWorkspace, bestEffort));
@@ -184,6 +193,7 @@ public class ClientVersionManager extends ClientObject
     public NodeIterator merge(
             String absPath, String srcWorkspace, boolean bestEffort,
             boolean isShallow) throws RepositoryException {
+        clearItemCache(session);
         try {
             return getFactory().getNodeIterator(session, remote.merge(
                     absPath, srcWorkspace, bestEffort, isShallow));
@@ -194,6 +204,7 @@ public class ClientVersionManager extends ClientObject
 
     /** {@inheritDoc} */
     public void removeActivity(Node activityNode) throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.removeActivity(activityNode.getIdentifier());
         } catch (RemoteException e) {
@@ -204,6 +215,7 @@ public class ClientVersionManager extends ClientObject
     /** {@inheritDoc} */
     public void restore(Version[] versions, boolean removeExisting)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             String[] versionIdentifiers = new String[versions.length];
             for (int i = 0; i < versions.length; i++) {
@@ -218,6 +230,7 @@ public class ClientVersionManager extends ClientObject
     /** {@inheritDoc} */
     public void restore(Version version, boolean removeExisting)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.restore(version.getIdentifier(), removeExisting);
         } catch (RemoteException e) {
@@ -229,6 +242,7 @@ public class ClientVersionManager extends ClientObject
     public void restore(
             String absPath, String versionName, boolean removeExisting)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.restore(absPath, versionName, removeExisting);
         } catch (RemoteException e) {
@@ -239,6 +253,7 @@ public class ClientVersionManager extends ClientObject
     /** {@inheritDoc} */
     public void restore(String absPath, Version version, boolean removeExisting)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.restoreVI(absPath, version.getIdentifier(), removeExisting);
         } catch (RemoteException e) {
@@ -250,6 +265,7 @@ public class ClientVersionManager extends ClientObject
     public void restoreByLabel(
             String absPath, String versionLabel, boolean removeExisting)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.restoreByLabel(absPath, versionLabel, removeExisting);
         } catch (RemoteException e) {
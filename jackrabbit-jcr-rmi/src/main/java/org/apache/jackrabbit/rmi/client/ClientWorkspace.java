@@ -104,6 +104,7 @@ public class ClientWorkspace extends ClientObject implements Workspace {
 
     /** {@inheritDoc} */
     public void copy(String from, String to) throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.copy(from, to);
         } catch (RemoteException ex) {
@@ -114,6 +115,7 @@ public class ClientWorkspace extends ClientObject implements Workspace {
     /** {@inheritDoc} */
     public void copy(String workspace, String from, String to)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.copy(workspace, from, to);
         } catch (RemoteException ex) {
@@ -123,6 +125,7 @@ public class ClientWorkspace extends ClientObject implements Workspace {
 
     /** {@inheritDoc} */
     public void move(String from, String to) throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.move(from, to);
         } catch (RemoteException ex) {
@@ -180,6 +183,7 @@ public class ClientWorkspace extends ClientObject implements Workspace {
     public void clone(
             String workspace, String src, String dst, boolean removeExisting)
             throws RepositoryException {
+        clearItemCache(session);
         try {
             remote.clone(workspace, src, dst, removeExisting);
         } catch (RemoteException ex) {
@@ -206,6 +210,7 @@ public class ClientWorkspace extends ClientObject implements Workspace {
                     SerializingContentHandler.getSerializer(buffer)) {
                 public void endDocument() throws SAXException {
                     super.endDocument();
+                    clearItemCache(session);
                     try {
                         remote.importXML(path, buffer.toByteArray(), mode);
                     } catch (Exception e) {
@@ -221,6 +226,7 @@ public class ClientWorkspace extends ClientObject implements Workspace {
     /** {@inheritDoc} */
     public void importXML(String path, InputStream xml, int uuidBehaviour)
             throws IOException, RepositoryException {
+        clearItemCache(session);
         try {
             ByteArrayOutputStream buffer = new ByteArrayOutputStream();
             byte[] bytes = new byte[4096];
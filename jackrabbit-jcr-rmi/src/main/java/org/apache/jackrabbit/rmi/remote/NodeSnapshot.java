@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.rmi.remote;
+
+import java.io.Serializable;
+
+/**
+ * Serializable state of a node and of its subtree up to a given depth, as
+ * returned by {@link RemoteNode#getSnapshot(int)}. A snapshot lets a client
+ * read the properties and child nodes of a subtree with a single remote
+ * call.
+ *
+ * @since Jackrabbit JCR-RMI 2.19.5
+ */
+public class NodeSnapshot implements Serializable {
+
+    /** Static serial version UID. */
+    private static final long serialVersionUID = -2876931538357432081L;
+
+    private final RemoteNode node;
+
+    private final String path;
+
+    private final String name;
+
+    private final String primaryType;
+
+    private final PropertySnapshot[] properties;
+
+    private final String[] childNames;
+
+    private final NodeSnapshot[] children;
+
+    /**
+     * Creates a node snapshot.
+     *
+     * @param node        remote node
+     * @param path        node path
+     * @param name        node name
+     * @param primaryType name of the primary node type
+     * @param properties  properties of the node
+     * @param childNames  names of the child nodes, or <code>null</code> if
+     *                    the node has too many child nodes to be included
+     * @param children    snapshots of the child nodes, or <code>null</code>
+     *                    if they are not included
+     */
+    public NodeSnapshot(RemoteNode node, String path, String name,
+            String primaryType, PropertySnapshot[] properties,
+            String[] childNames, NodeSnapshot[] children) {
+        this.node = node;
+        this.path = path;
+        this.name = name;
+        this.primaryType = primaryType;
+        this.properties = properties;
+        this.childNames = childNames;
+        this.children = children;
+    }
+
+    public RemoteNode getNode() {
+        return node;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPrimaryType() {
+        return primaryType;
+    }
+
+    public PropertySnapshot[] getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns the property with the given name.
+     *
+     * @param name property name
+     * @return property snapshot, or <code>null</code> if the node has no
+     *         such property
+     */
+    public PropertySnapshot getProperty(String name) {
+        for (PropertySnapshot property : properties) {
+            if (property.getName().equals(name)) {
+                return property;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the names of the child nodes in document order.
+     *
+     * @return child node names, or <code>null</code> if not included
+     */
+    public String[] getChildNames() {
+        return childNames;
+    }
+
+    /**
+     * Returns the snapshots of the child nodes in document order.
+     *
+     * @return child node snapshots, or <code>null</code> if not included
+     */
+    public NodeSnapshot[] getChildren() {
+        return children;
+    }
+
+}
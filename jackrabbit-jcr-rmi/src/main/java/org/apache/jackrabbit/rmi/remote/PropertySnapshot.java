@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.rmi.remote;
+
+import java.io.Serializable;
+
+import javax.jcr.Value;
+
+/**
+ * Serializable state of a property, as returned within a
+ * {@link NodeSnapshot} by {@link RemoteNode#getSnapshot(int)}. The values of
+ * binary properties are not included, they are read through the remote
+ * property.
+ *
+ * @since Jackrabbit JCR-RMI 2.19.5
+ */
+public class PropertySnapshot implements Serializable {
+
+    /** Static serial version UID. */
+    private static final long serialVersionUID = 4216427213981379318L;
+
+    private final RemoteProperty property;
+
+    private final String name;
+
+    private final int type;
+
+    private final boolean multiple;
+
+    private final Value[] values;
+
+    /**
+     * Creates a property snapshot.
+     *
+     * @param property remote property
+     * @param name     property name
+     * @param type     property type
+     * @param multiple whether the property is multi-valued
+     * @param values   serializable property values, or <code>null</code>
+     *                 if the values are not included
+     */
+    public PropertySnapshot(RemoteProperty property, String name, int type,
+            boolean multiple, Value[] values) {
+        this.property = property;
+        this.name = name;
+        this.type = type;
+        this.multiple = multiple;
+        this.values = values;
+    }
+
+    public RemoteProperty getProperty() {
+        return property;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public boolean isMultiple() {
+        return multiple;
+    }
+
+    /**
+     * Returns the values of the property. A single-valued property has
+     * an array of one value.
+     *
+     * @return property values, or <code>null</code> if not included
+     */
+    public Value[] getValues() {
+        return values;
+    }
+
+}
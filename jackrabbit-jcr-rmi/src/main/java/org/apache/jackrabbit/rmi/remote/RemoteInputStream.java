@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.rmi.remote;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import javax.jcr.RepositoryException;
+
+/**
+ * Remote version of a binary stream. Used to transfer large binary values
+ * in chunks that the client pulls from the server when it reads the
+ * value, instead of copying the whole binary into the serialized value.
+ *
+ * @since Jackrabbit JCR-RMI 2.19.5
+ */
+public interface RemoteInputStream extends Remote {
+
+    /**
+     * Returns the size of the stream.
+     *
+     * @return size in bytes
+     * @throws RepositoryException on repository errors
+     * @throws RemoteException on RMI errors
+     * @see javax.jcr.Binary#getSize()
+     */
+    long getSize() throws RepositoryException, RemoteException;
+
+    /**
+     * Reads up to <code>length</code> bytes starting at the given position
+     * of the stream. Fewer bytes may be returned than requested, also
+     * before the end of the stream is reached.
+     *
+     * @param position position of the first byte to read
+     * @param length maximum number of bytes to read
+     * @return bytes read, or <code>null</code> if the position is at or
+     *         after the end of the stream
+     * @throws RepositoryException on repository errors
+     * @throws RemoteException on RMI errors
+     * @see javax.jcr.Binary#read(byte[], long)
+     */
+    byte[] read(long position, int length)
+            throws RepositoryException, RemoteException;
+
+    /**
+     * Releases the stream. Further reads fail.
+     *
+     * @throws RemoteException on RMI errors
+     * @see javax.jcr.Binary#dispose()
+     */
+    void close() throws RemoteException;
+
+}
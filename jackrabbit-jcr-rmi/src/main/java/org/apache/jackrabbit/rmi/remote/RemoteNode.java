@@ -740,4 +740,18 @@ public interface RemoteNode extends RemoteItem {
      */
 	void setPrimaryType(String nodeTypeName) throws RepositoryException, RemoteException;
 
+    /**
+     * Returns the properties and the child node names of this node, and the
+     * same for the child nodes up to the given depth. Clients use this
+     * method to read a subtree with a single remote call.
+     *
+     * @param depth depth of the included child nodes, 0 to include only
+     *              the names of the child nodes
+     * @return node snapshot
+     * @throws RepositoryException on repository errors
+     * @throws RemoteException on RMI errors
+     */
+    NodeSnapshot getSnapshot(int depth)
+            throws RepositoryException, RemoteException;
+
 }
@@ -30,6 +30,7 @@ import javax.jcr.Property;
 import javax.jcr.PropertyIterator;
 import javax.jcr.Repository;
 import javax.jcr.Session;
+import javax.jcr.Value;
 import javax.jcr.Workspace;
 import javax.jcr.lock.Lock;
 import javax.jcr.lock.LockManager;
@@ -62,6 +63,7 @@ import javax.transaction.xa.XAResource;
 import org.apache.jackrabbit.rmi.remote.ArrayIterator;
 import org.apache.jackrabbit.rmi.remote.BufferIterator;
 import org.apache.jackrabbit.rmi.remote.RemoteEventCollection;
+import org.apache.jackrabbit.rmi.remote.RemoteInputStream;
 import org.apache.jackrabbit.rmi.remote.RemoteItem;
 import org.apache.jackrabbit.rmi.remote.RemoteItemDefinition;
 import org.apache.jackrabbit.rmi.remote.RemoteIterator;
@@ -114,6 +116,8 @@ import org.apache.jackrabbit.rmi.server.security.ServerPrivilege;
  * <p>
  * The <code>bufferSize</code> property can be used to configure the size of the
  * buffer used by iterators to speed up iterator traversal over the network.
+ * The <code>streamThreshold</code> property sets the size above which binary
+ * values are streamed to the client instead of being copied into the values.
  */
 public class ServerAdapterFactory implements RemoteAdapterFactory {
 
@@ -132,6 +136,14 @@ public class ServerAdapterFactory implements RemoteAdapterFactory {
     private int portNumber = Integer.getInteger(
         "org.apache.jackrabbit.rmi.port", 0).intValue();
 
+    /**
+     * The size above which binary values are streamed. Initializes to the
+     * value of the <code>org.apache.jackrabbit.rmi.streamThreshold</code>
+     * system property, or to 64kB if the property is not set.
+     */
+    private int streamThreshold = Integer.getInteger(
+        "org.apache.jackrabbit.rmi.streamThreshold", 64 * 1024).intValue();
+
     /**
      * Returns the iterator buffer size.
      *
@@ -168,6 +180,40 @@ public class ServerAdapterFactory implements RemoteAdapterFactory {
         this.portNumber = portNumber;
     }
 
+    /**
+     * Returns the size above which binary values are streamed. Used by the
+     * {@link ServerObject ServerObject} base class when values are
+     * prepared for serialization.
+     *
+     * @return size threshold in bytes
+     */
+    public int getStreamThreshold() {
+        return streamThreshold;
+    }
+
+    /**
+     * Sets the size above which binary values are streamed. Smaller binary
+     * values are copied into the serialized values.
+     *
+     * @param streamThreshold size threshold in bytes
+     */
+    public void setStreamThreshold(int streamThreshold) {
+        this.streamThreshold = streamThreshold;
+    }
+
+    /**
+     * Returns a remote adapter for the binary of the given local value.
+     * Creates a {@link ServerInputStream ServerInputStream} instance.
+     *
+     * @param value local binary value
+     * @return remote stream adapter
+     * @throws RemoteException on RMI errors
+     */
+    public RemoteInputStream getRemoteInputStream(Value value)
+            throws RemoteException {
+        return new ServerInputStream(value, this);
+    }
+
     /**
      * Creates a {@link ServerRepository ServerRepository} instance.
      * {@inheritDoc}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.rmi.server;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.Unreferenced;
+import java.util.Arrays;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+
+import org.apache.jackrabbit.rmi.remote.RemoteInputStream;
+
+/**
+ * Remote adapter for the binary of a JCR {@link Value Value}. This class
+ * makes a local binary available as an RMI service using the
+ * {@link RemoteInputStream} interface.
+ * <p>
+ * The {@link Binary Binary} of the value is acquired when the client reads
+ * the stream, and disposed as soon as the client reads the last byte, so
+ * that a client that does not close the stream only holds on to the value
+ * until RMI garbage collection releases the stream. A client that reads
+ * the binary again after that gets a new binary of the value. The stream
+ * is released when the client closes it, or when it is no longer
+ * referenced by any client.
+ *
+ * @since Jackrabbit JCR-RMI 2.19.5
+ */
+public class ServerInputStream extends ServerObject
+        implements RemoteInputStream, Unreferenced {
+
+    /** The maximum number of bytes returned by a single read. */
+    private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+    /** The adapted local value, or <code>null</code> once closed. */
+    private Value value;
+
+    /** The binary of the value, or <code>null</code> if not acquired. */
+    private Binary binary;
+
+    /**
+     * Creates a remote adapter for the binary of the given local value.
+     *
+     * @param value local binary value
+     * @param factory remote adapter factory
+     * @throws RemoteException on RMI errors
+     */
+    public ServerInputStream(Value value, RemoteAdapterFactory factory)
+            throws RemoteException {
+        super(factory);
+        this.value = value;
+    }
+
+    /** {@inheritDoc} */
+    public synchronized long getSize()
+            throws RepositoryException, RemoteException {
+        try {
+            return getBinary().getSize();
+        } catch (RepositoryException ex) {
+            throw getRepositoryException(ex);
+        }
+    }
+
+    /**
+     * Reads a chunk of the binary. The binary is disposed when the chunk
+     * ends at the end of the binary.
+     *
+     * {@inheritDoc}
+     */
+    public synchronized byte[] read(long position, int length)
+            throws RepositoryException, RemoteException {
+        try {
+            Binary current = getBinary();
+            byte[] buffer = new byte[Math.max(0, Math.min(length, MAX_CHUNK_SIZE))];
+            int n = current.read(buffer, position);
+            if (n == -1 || position + n >= current.getSize()) {
+                release();
+            }
+            if (n == -1) {
+                return null;
+            } else if (n < buffer.length) {
+                return Arrays.copyOf(buffer, n);
+            } else {
+                return buffer;
+            }
+        } catch (RepositoryException ex) {
+            throw getRepositoryException(ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void close() throws RemoteException {
+        dispose();
+        try {
+            unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            // already unexported
+        }
+    }
+
+    /**
+     * Disposes the binary once no client references this stream.
+     */
+    public void unreferenced() {
+        dispose();
+    }
+
+    private Binary getBinary() throws RepositoryException {
+        if (value == null) {
+            throw new RepositoryException("This binary stream has been closed");
+        } else if (binary == null) {
+            binary = value.getBinary();
+        }
+        return binary;
+    }
+
+    /**
+     * Disposes the binary, which is acquired again by the next read.
+     */
+    private void release() {
+        if (binary != null) {
+            binary.dispose();
+            binary = null;
+        }
+    }
+
+    private synchronized void dispose() {
+        release();
+        value = null;
+    }
+
+}
@@ -17,16 +17,22 @@
 package org.apache.jackrabbit.rmi.server;
 
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
 import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
 import javax.jcr.lock.Lock;
 import javax.jcr.version.Version;
 
+import org.apache.jackrabbit.rmi.remote.NodeSnapshot;
+import org.apache.jackrabbit.rmi.remote.PropertySnapshot;
 import org.apache.jackrabbit.rmi.remote.RemoteItem;
 import org.apache.jackrabbit.rmi.remote.RemoteIterator;
 import org.apache.jackrabbit.rmi.remote.RemoteLock;
@@ -48,6 +54,17 @@ import org.apache.jackrabbit.rmi.remote.RemoteVersionHistory;
  */
 public class ServerNode extends ServerItem implements RemoteNode {
 
+    /**
+     * The maximum number of child nodes included in a node snapshot.
+     */
+    private static final int MAX_SNAPSHOT_CHILDREN = 1000;
+
+    /**
+     * The maximum total number of descendant nodes included in a node
+     * snapshot.
+     */
+    private static final int MAX_SNAPSHOT_NODES = 10000;
+
     /** The adapted local node. */
     private Node node;
 
@@ -653,8 +670,87 @@ public class ServerNode extends ServerItem implements RemoteNode {
     	}
 	}
 
+    /** {@inheritDoc} */
+    public NodeSnapshot getSnapshot(int depth)
+            throws RepositoryException, RemoteException {
+        try {
+            return getSnapshot(node, this, depth,
+                    new int[] { MAX_SNAPSHOT_NODES });
+        } catch (RepositoryException ex) {
+            throw getRepositoryException(ex);
+        }
+    }
+
     //---------- Implementation helper -----------------------------------------
 
+    /**
+     * Creates the snapshot of a node. The child nodes are left out if there
+     * are more than {@link #MAX_SNAPSHOT_CHILDREN} of them, the client then
+     * iterates them with {@link #getNodes()}. The snapshots of the child
+     * nodes are left out once the snapshot holds
+     * {@link #MAX_SNAPSHOT_NODES} descendants, the client then reads them
+     * with another call.
+     *
+     * @param node   local node
+     * @param remote remote adapter of the node
+     * @param depth  depth of the included child nodes
+     * @param budget number of descendant snapshots that may still be
+     *               included, updated by this method
+     * @return node snapshot
+     * @throws RepositoryException on repository errors
+     * @throws RemoteException on RMI errors
+     */
+    private NodeSnapshot getSnapshot(
+            Node node, RemoteNode remote, int depth, int[] budget)
+            throws RepositoryException, RemoteException {
+        List<PropertySnapshot> properties = new ArrayList<PropertySnapshot>();
+        PropertyIterator pi = node.getProperties();
+        while (pi.hasNext()) {
+            Property property = pi.nextProperty();
+            int type = property.getType();
+            boolean multiple = property.isMultiple();
+            Value[] values = null;
+            if (type != PropertyType.BINARY) {
+                if (multiple) {
+                    values = getSerialValues(property.getValues());
+                } else {
+                    values = new Value[] { getSerialValue(property.getValue()) };
+                }
+            }
+            properties.add(new PropertySnapshot(
+                    getFactory().getRemoteProperty(property),
+                    property.getName(), type, multiple, values));
+        }
+
+        List<Node> nodes = new ArrayList<Node>();
+        NodeIterator ni = node.getNodes();
+        while (ni.hasNext() && nodes.size() <= MAX_SNAPSHOT_CHILDREN) {
+            nodes.add(ni.nextNode());
+        }
+        String[] childNames = null;
+        NodeSnapshot[] children = null;
+        if (nodes.size() <= MAX_SNAPSHOT_CHILDREN) {
+            childNames = new String[nodes.size()];
+            if (depth > 0 && nodes.size() <= budget[0]) {
+                budget[0] -= nodes.size();
+                children = new NodeSnapshot[nodes.size()];
+            }
+            for (int i = 0; i < childNames.length; i++) {
+                Node child = nodes.get(i);
+                childNames[i] = child.getName();
+                if (children != null) {
+                    children[i] = getSnapshot(
+                            child, getRemoteNode(child), depth - 1, budget);
+                }
+            }
+        }
+
+        return new NodeSnapshot(remote, node.getPath(), node.getName(),
+                node.getPrimaryNodeType().getName(),
+                properties.toArray(new PropertySnapshot[properties.size()]),
+                childNames, children);
+    }
+
     /**
      * Returns the {@link Version} instance for the given UUID.
      *
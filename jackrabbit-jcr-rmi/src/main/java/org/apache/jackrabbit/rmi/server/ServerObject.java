@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.jcr.AccessDeniedException;
+import javax.jcr.Binary;
 import javax.jcr.InvalidItemStateException;
 import javax.jcr.InvalidSerializedDataException;
 import javax.jcr.Item;
@@ -35,6 +36,7 @@ import javax.jcr.NoSuchWorkspaceException;
 import javax.jcr.Node;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.Property;
+import javax.jcr.PropertyType;
 import javax.jcr.ReferentialIntegrityException;
 import javax.jcr.RepositoryException;
 import javax.jcr.UnsupportedRepositoryOperationException;
@@ -244,6 +246,11 @@ public class ServerObject extends UnicastRemoteObject {
      * Utility method for decorating a value. Note that the contents of the
      * original values will only be copied when the decorators are serialized.
      * Null referenced and already serializable values are passed as-is.
+     * If the remote adapter factory is a {@link ServerAdapterFactory},
+     * binary values larger than its
+     * {@link ServerAdapterFactory#getStreamThreshold() stream threshold}
+     * are not copied, but read by the client through a
+     * {@link org.apache.jackrabbit.rmi.remote.RemoteInputStream}.
      *
      * @param value the value to be decorated, or <code>null</code>
      * @return the decorated value, or <code>null</code>
@@ -253,9 +260,24 @@ public class ServerObject extends UnicastRemoteObject {
         // if the value is null or already serializable, just return it
         if (value == null || value instanceof Serializable) {
             return value;
-        } else {
-            return SerialValueFactory.makeSerialValue(value);
+        } else if (value.getType() == PropertyType.BINARY
+                && factory instanceof ServerAdapterFactory) {
+            // stream large binaries instead of copying them into the value
+            ServerAdapterFactory saf = (ServerAdapterFactory) factory;
+            Binary binary = value.getBinary();
+            long size = binary.getSize();
+            binary.dispose();
+            if (size > saf.getStreamThreshold()) {
+                try {
+                    SerialValueFactory vf = SerialValueFactory.getInstance();
+                    return vf.createValue(vf.createBinary(
+                            saf.getRemoteInputStream(value), size));
+                } catch (RemoteException e) {
+                    // fall back to copying the binary
+                }
+            }
         }
+        return SerialValueFactory.makeSerialValue(value);
     }
 
 }
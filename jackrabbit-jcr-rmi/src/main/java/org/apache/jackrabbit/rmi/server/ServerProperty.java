@@ -24,7 +24,6 @@ import javax.jcr.Value;
 
 import org.apache.jackrabbit.rmi.remote.RemoteProperty;
 import org.apache.jackrabbit.rmi.remote.RemotePropertyDefinition;
-import org.apache.jackrabbit.rmi.value.SerialValueFactory;
 
 /**
  * Remote adapter for the JCR {@link javax.jcr.Property Property}
@@ -57,7 +56,7 @@ public class ServerProperty extends ServerItem implements RemoteProperty {
     /** {@inheritDoc} */
     public Value getValue() throws RepositoryException, RemoteException {
         try {
-            return SerialValueFactory.makeSerialValue(property.getValue());
+            return getSerialValue(property.getValue());
         } catch (RepositoryException ex) {
             throw getRepositoryException(ex);
         }
@@ -32,6 +32,8 @@ import javax.jcr.Value;
 import javax.jcr.ValueFactory;
 import javax.jcr.ValueFormatException;
 
+import org.apache.jackrabbit.rmi.remote.RemoteInputStream;
+
 /**
  * The <code>SerialValueFactory</code> class is used in the RMI infrastructure
  * to create serializable <code>Value</code> instances on the client side.
@@ -240,6 +242,21 @@ public class SerialValueFactory implements ValueFactory {
         }
     }
 
+    /**
+     * Creates a binary that is read in chunks from the given remote stream
+     * when it is accessed. Only the remote reference is serialized with a
+     * value of this binary, which lets large binaries be transferred with
+     * bounded memory use and without temporary files.
+     *
+     * @param stream remote stream
+     * @param size size of the stream
+     * @return binary
+     * @since Jackrabbit JCR-RMI 2.19.5
+     */
+    public Binary createBinary(RemoteInputStream stream, long size) {
+        return new StreamBinary(stream, size);
+    }
+
     public Value createValue(Binary value) {
         return new BinaryValue(value);
     }
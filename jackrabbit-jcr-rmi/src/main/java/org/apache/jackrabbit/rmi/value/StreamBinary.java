@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.rmi.value;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.rmi.RemoteException;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.rmi.remote.RemoteInputStream;
+
+/**
+ * Binary that is read in chunks from a {@link RemoteInputStream}. Only the
+ * remote reference is serialized, so the contents of the binary are
+ * transferred when they are read, with no more than one chunk held in
+ * memory by each stream returned by {@link #getStream()}.
+ */
+class StreamBinary implements Binary, Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 2836740941542453716L;
+
+    /**
+     * The number of bytes pulled from the remote stream at once.
+     */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    private final RemoteInputStream remote;
+
+    private final long size;
+
+    /**
+     * Creates a binary that reads the given remote stream.
+     *
+     * @param remote remote stream
+     * @param size size of the stream
+     */
+    public StreamBinary(RemoteInputStream remote, long size) {
+        this.remote = remote;
+        this.size = size;
+    }
+
+    public int read(byte[] b, long position) throws RepositoryException {
+        if (position < 0 || position >= size) {
+            return -1;
+        }
+        try {
+            byte[] chunk = remote.read(position, b.length);
+            if (chunk == null) {
+                return -1;
+            }
+            System.arraycopy(chunk, 0, b, 0, chunk.length);
+            return chunk.length;
+        } catch (RemoteException e) {
+            throw new RepositoryException("Unable to read the binary", e);
+        }
+    }
+
+    public InputStream getStream() {
+        return new ChunkInputStream();
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void dispose() {
+        try {
+            remote.close();
+        } catch (RemoteException e) {
+            // the remote stream is released when it is no longer referenced
+        }
+    }
+
+    /**
+     * Stream that pulls the binary from the remote stream one chunk at a
+     * time. Skipped bytes are not transferred.
+     */
+    private class ChunkInputStream extends InputStream {
+
+        /** Position of the first byte after the current chunk. */
+        private long position = 0;
+
+        private byte[] chunk = null;
+
+        private int offset = 0;
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk[offset++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - offset);
+            System.arraycopy(chunk, offset, b, off, n);
+            offset += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            int buffered = chunk != null ? chunk.length - offset : 0;
+            if (n <= buffered) {
+                offset += n;
+                return n;
+            }
+            long skipped = buffered + Math.min(n - buffered, Math.max(0, size - position));
+            position += skipped - buffered;
+            chunk = null;
+            offset = 0;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return chunk != null ? chunk.length - offset : 0;
+        }
+
+        /**
+         * Pulls the next chunk from the remote stream once the current one
+         * has been read.
+         *
+         * @return <code>false</code> at the end of the stream
+         * @throws IOException if the chunk can not be read
+         */
+        private boolean fill() throws IOException {
+            if (chunk != null && offset < chunk.length) {
+                return true;
+            } else if (position >= size) {
+                return false;
+            }
+            try {
+                byte[] next = remote.read(position, CHUNK_SIZE);
+                if (next == null || next.length == 0) {
+                    return false;
+                }
+                chunk = next;
+                offset = 0;
+                position += next.length;
+                return true;
+            } catch (RepositoryException e) {
+                throw new IOException("Unable to read the binary", e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.rmi.client;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.test.AbstractJCRTest;
+
+/**
+ * Tests that the item cache of a client session does not return stale
+ * items: changes made through the session are visible at once, and
+ * changes saved by other sessions once the events are polled.
+ */
+public class ClientItemCacheTest extends AbstractJCRTest {
+
+    /**
+     * How long to wait for the events of another session.
+     */
+    private static final long EVENT_TIMEOUT = 10000;
+
+    private Session session;
+
+    private Node node;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        Node n = testRootNode.addNode(nodeName1, testNodeType);
+        n.setProperty(propertyName1, "a");
+        superuser.save();
+
+        session = getHelper().getSuperuserSession();
+        ((ClientSession) session).setCacheDepth(2);
+        assertNotNull(((ClientSession) session).getItemCache());
+        node = session.getNode(n.getPath());
+        // read the snapshot into the cache
+        assertEquals("a", node.getProperty(propertyName1).getString());
+    }
+
+    protected void tearDown() throws Exception {
+        if (session != null) {
+            session.logout();
+            session = null;
+        }
+        node = null;
+        super.tearDown();
+    }
+
+    public void testOwnTransientChange() throws Exception {
+        node.setProperty(propertyName1, "b");
+        assertEquals("b", node.getProperty(propertyName1).getString());
+        node.addNode(nodeName2, testNodeType);
+        assertTrue(session.getNode(node.getPath()).hasNode(nodeName2));
+    }
+
+    public void testOwnVersioning() throws Exception {
+        node.addMixin(mixVersionable);
+        session.save();
+        assertTrue(node.getProperty(jcrIsCheckedOut).getBoolean());
+
+        node.checkin();
+        assertFalse(node.getProperty(jcrIsCheckedOut).getBoolean());
+        assertFalse(session.getNode(node.getPath())
+                .getProperty(jcrIsCheckedOut).getBoolean());
+
+        session.getWorkspace().getVersionManager().checkout(node.getPath());
+        assertTrue(node.getProperty(jcrIsCheckedOut).getBoolean());
+    }
+
+    public void testOwnLock() throws Exception {
+        node.addMixin(mixLockable);
+        session.save();
+        assertFalse(node.hasProperty(jcrLockOwner));
+
+        node.lock(false, true);
+        assertTrue(node.hasProperty(jcrLockOwner));
+
+        session.getWorkspace().getLockManager().unlock(node.getPath());
+        assertFalse(node.hasProperty(jcrLockOwner));
+    }
+
+    public void testOwnWorkspaceChange() throws Exception {
+        Node parent = session.getNode(testRoot);
+        assertTrue(parent.hasNode(nodeName1));
+
+        session.getWorkspace().move(
+                node.getPath(), testRoot + "/" + nodeName2);
+        assertFalse(parent.hasNode(nodeName1));
+        assertTrue(parent.hasNode(nodeName2));
+
+        session.getWorkspace().copy(
+                testRoot + "/" + nodeName2, testRoot + "/" + nodeName3);
+        assertTrue(parent.hasNode(nodeName3));
+    }
+
+    public void testOtherSessionChange() throws Exception {
+        superuser.getNode(node.getPath()).setProperty(propertyName1, "b");
+        superuser.save();
+
+        long end = System.currentTimeMillis() + EVENT_TIMEOUT;
+        while (!"b".equals(node.getProperty(propertyName1).getString())) {
+            if (System.currentTimeMillis() > end) {
+                fail("Change of another session not visible after "
+                        + EVENT_TIMEOUT + " ms");
+            }
+            Thread.sleep(100);
+        }
+
+        // a refresh does not bring back the old value
+        session.refresh(false);
+        assertEquals("b", node.getProperty(propertyName1).getString());
+    }
+
+}
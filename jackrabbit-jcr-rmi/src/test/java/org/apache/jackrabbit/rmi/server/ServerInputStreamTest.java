@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.rmi.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.rmi.server.RemoteObject;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.value.BinaryImpl;
+import org.apache.jackrabbit.value.BinaryValue;
+
+/**
+ * Tests that large binary values are streamed to the client through a
+ * {@link ServerInputStream}, and read back in full, in ranges and with
+ * skipped bytes. The values are serialized like RMI does, so the client
+ * calls the stream through its remote stub.
+ */
+public class ServerInputStreamTest extends TestCase {
+
+    private static final int THRESHOLD = 1024;
+
+    private final byte[] data = new byte[600000];
+
+    private ServerAdapterFactory factory;
+
+    private ServerObject server;
+
+    private volatile int acquired;
+
+    private volatile int disposed;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new Random(1).nextBytes(data);
+        factory = new ServerAdapterFactory();
+        factory.setStreamThreshold(THRESHOLD);
+        server = new ServerObject(factory) {
+        };
+    }
+
+    protected void tearDown() throws Exception {
+        ServerObject.unexportObject(server, true);
+        super.tearDown();
+    }
+
+    public void testStream() throws Exception {
+        Binary binary = getClientBinary(data);
+        assertEquals(data.length, binary.getSize());
+        assertTrue(Arrays.equals(data, readFully(binary.getStream())));
+        // the server released the binary at the end of the stream
+        assertEquals(1, acquired);
+        assertEquals(1, disposed);
+
+        // and acquires it again for another stream
+        assertTrue(Arrays.equals(data, readFully(binary.getStream())));
+        assertEquals(2, acquired);
+        assertEquals(2, disposed);
+        binary.dispose();
+    }
+
+    public void testSkip() throws Exception {
+        Binary binary = getClientBinary(data);
+        InputStream stream = binary.getStream();
+        try {
+            assertEquals(10, stream.skip(10));
+            assertEquals(data[10] & 0xff, stream.read());
+
+            // skip within the current chunk
+            assertEquals(1000, stream.skip(1000));
+            assertEquals(data[1011] & 0xff, stream.read());
+
+            // skip beyond the current chunk
+            assertEquals(400000, stream.skip(400000));
+            byte[] b = new byte[100];
+            assertEquals(100, stream.read(b, 0, 100));
+            assertTrue(Arrays.equals(
+                    Arrays.copyOfRange(data, 401012, 401112), b));
+
+            // skip beyond the end
+            assertEquals(data.length - 401112, stream.skip(data.length));
+            assertEquals(-1, stream.read());
+            assertEquals(0, stream.skip(1));
+        } finally {
+            stream.close();
+        }
+        binary.dispose();
+    }
+
+    public void testRange() throws Exception {
+        Binary binary = getClientBinary(data);
+        byte[] b = new byte[1000];
+        assertEquals(1000, binary.read(b, 0));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 0, 1000), b));
+        assertEquals(1000, binary.read(b, 300000));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 300000, 301000), b));
+        assertEquals(0, disposed);
+
+        // a range at the end is shorter and releases the binary
+        assertEquals(500, binary.read(b, data.length - 500));
+        assertTrue(Arrays.equals(
+                Arrays.copyOfRange(data, data.length - 500, data.length),
+                Arrays.copyOf(b, 500)));
+        assertEquals(1, disposed);
+        assertEquals(-1, binary.read(b, data.length));
+
+        // a range is read again after the binary was released
+        assertEquals(1000, binary.read(b, 1000));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 1000, 2000), b));
+        assertEquals(2, acquired);
+        binary.dispose();
+    }
+
+    public void testDispose() throws Exception {
+        Binary binary = getClientBinary(data);
+        byte[] b = new byte[1000];
+        assertEquals(1000, binary.read(b, 0));
+        binary.dispose();
+        assertEquals(acquired, disposed);
+        try {
+            binary.read(b, 0);
+            fail("Disposed binary must not be readable");
+        } catch (RepositoryException expected) {
+        }
+    }
+
+    public void testSmallValue() throws Exception {
+        byte[] small = Arrays.copyOf(data, THRESHOLD);
+        Binary binary = getClientBinary(small);
+        assertFalse(binary.getClass().getName().endsWith("StreamBinary"));
+        assertTrue(Arrays.equals(small, readFully(binary.getStream())));
+        binary.dispose();
+    }
+
+    /**
+     * Returns the binary of a value as the client sees it after the value
+     * was prepared by the server and serialized.
+     */
+    private Binary getClientBinary(final byte[] bytes) throws Exception {
+        Value value = new BinaryValue(bytes) {
+            @Override
+            public Binary getBinary() {
+                acquired++;
+                return new BinaryImpl(bytes) {
+                    @Override
+                    public void dispose() {
+                        disposed++;
+                        super.dispose();
+                    }
+                };
+            }
+        };
+        Value serial = server.getSerialValue(value);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new StubOutputStream(buffer);
+        oos.writeObject(serial);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(
+                new ByteArrayInputStream(buffer.toByteArray()));
+        acquired = 0;
+        disposed = 0;
+        return ((Value) ois.readObject()).getBinary();
+    }
+
+    private static byte[] readFully(InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] b = new byte[8192];
+            for (int n = stream.read(b); n != -1; n = stream.read(b)) {
+                buffer.write(b, 0, n);
+            }
+            return buffer.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Replaces exported server objects by their stubs, like the RMI
+     * runtime does when it marshals a reply.
+     */
+    private static class StubOutputStream extends ObjectOutputStream {
+
+        StubOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof ServerObject) {
+                return RemoteObject.toStub((ServerObject) obj);
+            }
+            return obj;
+        }
+
+    }
+
+}
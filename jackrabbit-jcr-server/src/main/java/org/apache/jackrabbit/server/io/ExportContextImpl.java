@@ -19,6 +19,7 @@ package org.apache.jackrabbit.server.io;
 import org.apache.jackrabbit.webdav.DavConstants;
 import org.apache.jackrabbit.webdav.DavResource;
 import org.apache.jackrabbit.webdav.io.OutputContext;
+import org.apache.jackrabbit.webdav.io.RangeOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +40,11 @@ import java.util.Map;
  * file is created, which is deleted as soon as {@link #informCompleted(boolean)}
  * is called on this context. Note however, that the properties and the stream
  * are written to the  <code>OutputContext</code> but upon successful completion.
+ * <p>
+ * If the output context provides a {@link RangeOutputStream} the response
+ * headers have been set before the export and the content is written
+ * directly to that stream, which avoids copying the complete content to the
+ * temporary file only to send a few byte ranges of it.
  *
  * @see #informCompleted(boolean)
  */
@@ -52,18 +58,30 @@ public class ExportContextImpl extends AbstractExportContext {
     private File outFile;
     private OutputStream outStream;
 
+    /**
+     * The range output stream provided by the output context or
+     * <code>null</code> if the content is written to a temporary file.
+     */
+    private RangeOutputStream rangeStream;
+
     public ExportContextImpl(Item exportRoot, OutputContext outputCtx)
             throws IOException {
         super(exportRoot, outputCtx != null && outputCtx.hasStream(), null);
         this.outputCtx = outputCtx;
         if (hasStream()) {
-            // we need a tmp file, since the export could fail
-            outFile = File.createTempFile("__exportcontext", "tmp");
+            if (outputCtx.getOutputStream() instanceof RangeOutputStream) {
+                // partial content: stream directly
+                rangeStream = (RangeOutputStream) outputCtx.getOutputStream();
+            } else {
+                // we need a tmp file, since the export could fail
+                outFile = File.createTempFile("__exportcontext", "tmp");
+            }
         }
     }
 
     /**
-     * Returns a new <code>OutputStream</code> to the temporary file or
+     * Returns a new <code>OutputStream</code> to the temporary file, the
+     * <code>RangeOutputStream</code> of the output context or
      * <code>null</code> if this context provides no stream.
      *
      * @see ExportContext#getOutputStream()
@@ -71,6 +89,9 @@ public class ExportContextImpl extends AbstractExportContext {
      */
     public OutputStream getOutputStream() {
         checkCompleted();
+        if (rangeStream != null) {
+            return rangeStream;
+        }
         if (hasStream()) {
             try {
                 // clean up the stream retrieved by the preceding handler, that
@@ -18,6 +18,7 @@ package org.apache.jackrabbit.server.io;
 
 import org.apache.jackrabbit.util.Text;
 import org.apache.jackrabbit.webdav.DavConstants;
+import org.apache.jackrabbit.webdav.io.RangeOutputStream;
 import org.apache.jackrabbit.webdav.util.HttpDateFormat;
 
 import javax.jcr.Node;
@@ -79,6 +80,10 @@ public final class IOUtil {
     /**
      */
     public static void spool(InputStream in, OutputStream out) throws IOException {
+        if (out instanceof RangeOutputStream) {
+            spool(in, (RangeOutputStream) out);
+            return;
+        }
         try {
             byte[] buffer = new byte[8192];
             int read;
@@ -90,6 +95,46 @@ public final class IOUtil {
         }
     }
 
+    /**
+     * Writes the selected ranges of the given input stream to the specified
+     * range output stream. Content outside the selected ranges is skipped
+     * instead of being read and the input is closed as soon as the last
+     * range has been written.
+     *
+     * @param in
+     * @param out
+     * @throws IOException
+     */
+    private static void spool(InputStream in, RangeOutputStream out) throws IOException {
+        try {
+            byte[] buffer = new byte[8192];
+            while (!out.isComplete()) {
+                long skippable = out.getSkippableBytes();
+                if (skippable > 0) {
+                    long skipped = in.skip(skippable);
+                    if (skipped <= 0) {
+                        // skip is not required to make progress: fall back
+                        // to reading a single byte to detect the end of stream
+                        if (in.read() < 0) {
+                            break;
+                        }
+                        skipped = 1;
+                    }
+                    out.skip(skipped);
+                } else {
+                    int len = (int) Math.min(buffer.length, out.getRemainingInRange());
+                    int read = in.read(buffer, 0, len);
+                    if (read < 0) {
+                        break;
+                    }
+                    out.write(buffer, 0, read);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
     /**
      * Build a valid content type string from the given mimeType and encoding:
      * <pre>
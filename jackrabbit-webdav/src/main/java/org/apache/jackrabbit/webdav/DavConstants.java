@@ -45,6 +45,14 @@ public interface DavConstants {
     public static final String HEADER_ETAG = "ETag";
     public static final String HEADER_LAST_MODIFIED = "Last-Modified";
 
+    //-------------------------------------< Range and Conditional Headers >---
+    public static final String HEADER_RANGE = "Range";
+    public static final String HEADER_IF_RANGE = "If-Range";
+    public static final String HEADER_CONTENT_RANGE = "Content-Range";
+    public static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
     //--------------------------------------------------< Lock-Token Header >---
     public static final String HEADER_LOCK_TOKEN = "Lock-Token";
     public static final String OPAQUE_LOCK_TOKEN_PREFIX = "opaquelocktoken:";
@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav;
+
+import org.apache.jackrabbit.webdav.property.DavPropertyNameSet;
+import org.apache.jackrabbit.webdav.xml.DomUtil;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <code>MultiStatusWriter</code> streams a <code>DAV:multistatus</code>
+ * response body to an output stream. In contrast to {@link MultiStatus},
+ * which collects all responses and is serialized as a single DOM document,
+ * each {@link MultiStatusResponse} is written as soon as it is added, such
+ * that the memory consumption does not depend on the number of responses and
+ * the first bytes are sent before all resources have been visited.
+ * <p>
+ * Individual responses are still built as DOM elements (since properties
+ * serialize themselves through {@link org.apache.jackrabbit.webdav.xml.XmlSerializable})
+ * and are then written through a StAX <code>XMLStreamWriter</code>.
+ * Note that in contrast to <code>MultiStatus</code> responses with the same
+ * href are not merged.
+ * <p>
+ * The output is buffered and only flushed when {@link #close()} is called,
+ * which must be done in order to complete the document. If generating the
+ * responses fails, {@link #abort()} should be called instead, such that a
+ * client that already received a part of the document sees a broken
+ * document rather than a well-formed multistatus that lacks responses.
+ * The underlying output stream is not closed.
+ */
+public class MultiStatusWriter implements DavConstants, Closeable {
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final Writer out;
+
+    private final XMLStreamWriter writer;
+
+    /**
+     * Owner document of the elements created for the individual responses.
+     */
+    private final Document document;
+
+    /**
+     * Namespace bindings per open element, innermost last.
+     */
+    private final List<Map<String, String>> scopes = new ArrayList<Map<String, String>>();
+
+    private String responseDescription;
+
+    private int generatedPrefixes;
+
+    private boolean closed;
+
+    /**
+     * Creates a new writer and writes the start of the multistatus document.
+     *
+     * @param out The stream to write the UTF-8 encoded document to.
+     * @throws IOException If an error occurs.
+     */
+    public MultiStatusWriter(OutputStream out) throws IOException {
+        // JCR-2636: use an explicit OutputStreamWriter in order to avoid
+        // problems with surrogate pairs in the built-in UTF-8 serialization.
+        this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        try {
+            document = DomUtil.createDocument();
+            writer = OUTPUT_FACTORY.createXMLStreamWriter(this.out);
+            writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            writeStartElement(NAMESPACE.getPrefix(), XML_MULTISTATUS, NAMESPACE.getURI());
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e.getMessage(), e);
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the given multistatus to the given stream.
+     *
+     * @param multistatus
+     * @param out
+     * @throws IOException
+     */
+    public static void write(MultiStatus multistatus, OutputStream out) throws IOException {
+        MultiStatusWriter writer = new MultiStatusWriter(out);
+        for (MultiStatusResponse response : multistatus.getResponses()) {
+            writer.addResponse(response);
+        }
+        writer.setResponseDescription(multistatus.getResponseDescription());
+        writer.close();
+    }
+
+    /**
+     * Writes a response for the given resource and recursively for its
+     * members down to the given depth, the same way as
+     * {@link MultiStatus#addResourceProperties(DavResource, DavPropertyNameSet, int, int)}
+     * collects them. Members are written while the resource iterator is
+     * consumed.
+     *
+     * @param resource
+     * @param propNameSet
+     * @param propFindType
+     * @param depth
+     * @throws IOException
+     */
+    public void addResourceProperties(DavResource resource, DavPropertyNameSet propNameSet,
+                                      int propFindType, int depth) throws IOException {
+        addResponse(new MultiStatusResponse(resource, propNameSet, propFindType));
+        if (depth > 0 && resource.isCollection()) {
+            DavResourceIterator iter = resource.getMembers();
+            while (iter.hasNext()) {
+                addResourceProperties(iter.nextResource(), propNameSet, propFindType, depth-1);
+            }
+        }
+    }
+
+    /**
+     * Writes a response with the given status for the given resource and
+     * recursively for its members down to the given depth.
+     *
+     * @param resource
+     * @param status
+     * @param depth
+     * @throws IOException
+     * @see MultiStatus#addResourceStatus(DavResource, int, int)
+     */
+    public void addResourceStatus(DavResource resource, int status, int depth) throws IOException {
+        addResponse(new MultiStatusResponse(resource.getHref(), status));
+        if (depth > 0 && resource.isCollection()) {
+            DavResourceIterator iter = resource.getMembers();
+            while (iter.hasNext()) {
+                addResourceStatus(iter.nextResource(), status, depth-1);
+            }
+        }
+    }
+
+    /**
+     * Writes the given response.
+     *
+     * @param response
+     * @throws IOException
+     */
+    public void addResponse(MultiStatusResponse response) throws IOException {
+        checkClosed();
+        try {
+            writeElement(response.toXml(document));
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sets the response description that is written when this writer is
+     * closed.
+     *
+     * @param responseDescription
+     */
+    public void setResponseDescription(String responseDescription) {
+        this.responseDescription = responseDescription;
+    }
+
+    /**
+     * Completes the multistatus document and flushes the underlying stream.
+     * Elements left open by a failed {@link #addResponse(MultiStatusResponse)}
+     * are closed as well.
+     *
+     * @throws IOException
+     * @see #abort()
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (responseDescription != null && scopes.size() == 1) {
+                writeElement(DomUtil.createElement(document, XML_RESPONSEDESCRIPTION, NAMESPACE, responseDescription));
+            }
+            while (!scopes.isEmpty()) {
+                writeEndElement();
+            }
+            writer.writeEndDocument();
+            writer.flush();
+            out.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stops writing without completing the multistatus document. Output that
+     * is still buffered by this writer is discarded, and the closing elements
+     * are not written. Does nothing if the writer is already closed.
+     */
+    public void abort() {
+        closed = true;
+    }
+
+    //------------------------------------------------------------< private >---
+    private void checkClosed() {
+        if (closed) {
+            throw new IllegalStateException("MultiStatusWriter already closed.");
+        }
+    }
+
+    private void writeNode(Node node) throws XMLStreamException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                writeElement((Element) node);
+                break;
+            case Node.TEXT_NODE:
+                writer.writeCharacters(node.getNodeValue());
+                break;
+            case Node.CDATA_SECTION_NODE:
+                writer.writeCData(node.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                writer.writeComment(node.getNodeValue());
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                writer.writeProcessingInstruction(node.getNodeName(), node.getNodeValue());
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+            case Node.DOCUMENT_FRAGMENT_NODE:
+                writeChildren(node);
+                break;
+            default:
+                // ignore
+        }
+    }
+
+    private void writeChildren(Node node) throws XMLStreamException {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            writeNode(child);
+        }
+    }
+
+    private void writeElement(Element element) throws XMLStreamException {
+        String localName = (element.getLocalName() != null) ? element.getLocalName() : element.getTagName();
+        writeStartElement(element.getPrefix(), localName, element.getNamespaceURI());
+
+        NamedNodeMap attributes = element.getAttributes();
+        // explicit namespace declarations first
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = (Attr) attributes.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+                String prefix = XMLConstants.XMLNS_ATTRIBUTE.equals(attr.getLocalName()) ? "" : attr.getLocalName();
+                declareNamespace(prefix, attr.getValue());
+            }
+        }
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = (Attr) attributes.item(i);
+            String uri = attr.getNamespaceURI();
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(uri)) {
+                continue;
+            }
+            String name = (attr.getLocalName() != null) ? attr.getLocalName() : attr.getName();
+            if (uri == null || uri.length() == 0) {
+                writer.writeAttribute(name, attr.getValue());
+            } else if (XMLConstants.XML_NS_URI.equals(uri)) {
+                writer.writeAttribute(XMLConstants.XML_NS_PREFIX, uri, name, attr.getValue());
+            } else {
+                String prefix = attr.getPrefix();
+                if (prefix == null || prefix.length() == 0) {
+                    // unprefixed attributes are not in the default namespace
+                    prefix = findPrefix(uri);
+                    if (prefix == null) {
+                        prefix = "ns" + (++generatedPrefixes);
+                    }
+                }
+                declareNamespace(prefix, uri);
+                writer.writeAttribute(prefix, uri, name, attr.getValue());
+            }
+        }
+
+        writeChildren(element);
+        writeEndElement();
+    }
+
+    private void writeStartElement(String prefix, String localName, String uri) throws XMLStreamException {
+        if (prefix == null) {
+            prefix = "";
+        }
+        if (uri == null) {
+            uri = "";
+        }
+        writer.writeStartElement(prefix, localName, uri);
+        scopes.add(null);
+        declareNamespace(prefix, uri);
+    }
+
+    private void writeEndElement() throws XMLStreamException {
+        writer.writeEndElement();
+        scopes.remove(scopes.size() - 1);
+    }
+
+    /**
+     * Writes a namespace declaration on the current element unless the
+     * given binding is already in scope.
+     */
+    private void declareNamespace(String prefix, String uri) throws XMLStreamException {
+        String bound = getNamespaceURI(prefix);
+        if (uri.equals(bound) || (bound == null && prefix.length() == 0 && uri.length() == 0)) {
+            return;
+        }
+        if (prefix.length() == 0) {
+            writer.writeDefaultNamespace(uri);
+        } else {
+            writer.writeNamespace(prefix, uri);
+        }
+        int current = scopes.size() - 1;
+        Map<String, String> scope = scopes.get(current);
+        if (scope == null) {
+            scope = new HashMap<String, String>();
+            scopes.set(current, scope);
+        }
+        scope.put(prefix, uri);
+    }
+
+    private String getNamespaceURI(String prefix) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Map<String, String> scope = scopes.get(i);
+            if (scope != null && scope.containsKey(prefix)) {
+                return scope.get(prefix);
+            }
+        }
+        return null;
+    }
+
+    private String findPrefix(String uri) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Map<String, String> scope = scopes.get(i);
+            if (scope != null) {
+                for (Map.Entry<String, String> entry : scope.entrySet()) {
+                    if (entry.getKey().length() > 0 && uri.equals(entry.getValue())
+                            && uri.equals(getNamespaceURI(entry.getKey()))) {
+                        return entry.getKey();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -105,7 +105,25 @@ public class WebdavResponseImpl implements WebdavResponse {
      * @see DavServletResponse#sendMultiStatus(org.apache.jackrabbit.webdav.MultiStatus)
      */
     public void sendMultiStatus(MultiStatus multistatus) throws IOException {
-        sendXmlResponse(multistatus, SC_MULTI_STATUS);
+        httpResponse.setStatus(SC_MULTI_STATUS);
+        httpResponse.setContentType("text/xml; charset=UTF-8");
+        MultiStatusWriter.write(multistatus, httpResponse.getOutputStream());
+    }
+
+    /**
+     * Starts a multistatus response and returns the writer used to send the
+     * individual responses while they are being generated, which avoids
+     * keeping the complete multistatus in memory. The writer must be closed
+     * in order to complete the response.
+     *
+     * @return a new <code>MultiStatusWriter</code> writing to this response.
+     * @throws IOException
+     * @see #sendMultiStatus(MultiStatus)
+     */
+    public MultiStatusWriter startMultiStatus() throws IOException {
+        httpResponse.setStatus(SC_MULTI_STATUS);
+        httpResponse.setContentType("text/xml; charset=UTF-8");
+        return new MultiStatusWriter(httpResponse.getOutputStream());
     }
 
     /**
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.header;
+
+import org.apache.jackrabbit.webdav.DavConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <code>RangeHeader</code> represents the 'Range' request header as defined
+ * by RFC 7233. Only the 'bytes' range unit is supported. Header values that
+ * cannot be parsed or that use another unit are considered invalid, in which
+ * case the header is to be ignored and the complete representation returned.
+ */
+public class RangeHeader implements Header {
+
+    private static Logger log = LoggerFactory.getLogger(RangeHeader.class);
+
+    /**
+     * The only range unit supported by this implementation.
+     */
+    public static final String BYTES_UNIT = "bytes";
+
+    /**
+     * Upper limit for the number of range specifications accepted in a
+     * single header, which protects against requests consisting of a huge
+     * number of tiny or overlapping ranges.
+     */
+    public static final int MAX_RANGES = 100;
+
+    private final String headerValue;
+
+    /**
+     * The parsed range specifications. Each entry consists of the first and
+     * the last byte position, where a first position of <code>-1</code>
+     * denotes a suffix range and a last position of <code>-1</code> an open
+     * ended range. <code>null</code> if the header value is invalid.
+     */
+    private final List<long[]> specs;
+
+    public RangeHeader(String headerValue) {
+        this.headerValue = headerValue;
+        this.specs = parse(headerValue);
+    }
+
+    /**
+     * Create a new <code>RangeHeader</code> from the 'Range' header of the
+     * given request.
+     *
+     * @param request
+     */
+    public RangeHeader(HttpServletRequest request) {
+        this(request.getHeader(DavConstants.HEADER_RANGE));
+    }
+
+    public String getHeaderName() {
+        return DavConstants.HEADER_RANGE;
+    }
+
+    public String getHeaderValue() {
+        return headerValue;
+    }
+
+    /**
+     * @return <code>true</code> if a header value is present and consists of
+     * syntactically valid byte range specifications.
+     */
+    public boolean isValid() {
+        return specs != null;
+    }
+
+    /**
+     * Resolves the byte range specifications of this header against a
+     * representation of the given length. Unsatisfiable specifications are
+     * dropped, overlapping and adjacent ranges are coalesced and the result
+     * is sorted by position as permitted by RFC 7233, Section 4.1.
+     *
+     * @param length The length of the selected representation.
+     * @return The satisfiable ranges in ascending order, which is an empty
+     * list if none of the ranges is satisfiable or if this header is not
+     * valid.
+     */
+    public List<ByteRange> getRanges(long length) {
+        if (specs == null || length <= 0) {
+            return Collections.emptyList();
+        }
+        List<ByteRange> ranges = new ArrayList<ByteRange>(specs.size());
+        for (long[] spec : specs) {
+            long first = spec[0];
+            long last = spec[1];
+            if (first < 0) {
+                // suffix range: the final 'last' bytes
+                if (last == 0) {
+                    continue;
+                }
+                first = Math.max(0, length - last);
+                last = length - 1;
+            } else {
+                if (first >= length) {
+                    continue;
+                }
+                if (last < 0 || last >= length) {
+                    last = length - 1;
+                }
+            }
+            ranges.add(new ByteRange(first, last));
+        }
+        if (ranges.size() > 1) {
+            Collections.sort(ranges, new Comparator<ByteRange>() {
+                public int compare(ByteRange r1, ByteRange r2) {
+                    return Long.compare(r1.first, r2.first);
+                }
+            });
+            List<ByteRange> coalesced = new ArrayList<ByteRange>(ranges.size());
+            ByteRange current = ranges.get(0);
+            for (int i = 1; i < ranges.size(); i++) {
+                ByteRange next = ranges.get(i);
+                if (next.first <= current.last + 1) {
+                    current = new ByteRange(current.first, Math.max(current.last, next.last));
+                } else {
+                    coalesced.add(current);
+                    current = next;
+                }
+            }
+            coalesced.add(current);
+            ranges = coalesced;
+        }
+        return ranges;
+    }
+
+    private static List<long[]> parse(String headerValue) {
+        if (headerValue == null) {
+            return null;
+        }
+        int eq = headerValue.indexOf('=');
+        if (eq < 0 || !BYTES_UNIT.equalsIgnoreCase(headerValue.substring(0, eq).trim())) {
+            log.debug("Unsupported range unit: {}", headerValue);
+            return null;
+        }
+        String[] entries = headerValue.substring(eq + 1).split(",");
+        List<long[]> specs = new ArrayList<long[]>(entries.length);
+        for (String entry : entries) {
+            entry = entry.trim();
+            if (entry.length() == 0) {
+                // empty list elements are allowed
+                continue;
+            }
+            int dash = entry.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String firstStr = entry.substring(0, dash).trim();
+                String lastStr = entry.substring(dash + 1).trim();
+                long first;
+                long last;
+                if (firstStr.length() == 0) {
+                    // suffix-byte-range-spec
+                    first = -1;
+                    last = parsePosition(lastStr);
+                } else {
+                    first = parsePosition(firstStr);
+                    last = (lastStr.length() == 0) ? -1 : parsePosition(lastStr);
+                    if (last >= 0 && last < first) {
+                        return null;
+                    }
+                }
+                specs.add(new long[] {first, last});
+            } catch (NumberFormatException e) {
+                log.debug("Invalid byte range specification: {}", entry);
+                return null;
+            }
+        }
+        if (specs.isEmpty() || specs.size() > MAX_RANGES) {
+            return null;
+        }
+        return specs;
+    }
+
+    private static long parsePosition(String str) {
+        if (str.length() == 0 || str.charAt(0) == '+' || str.charAt(0) == '-') {
+            throw new NumberFormatException(str);
+        }
+        return Long.parseLong(str);
+    }
+
+    //--------------------------------------------------------< inner class >---
+    /**
+     * A satisfiable byte range with inclusive first and last position.
+     */
+    public static final class ByteRange {
+
+        private final long first;
+        private final long last;
+
+        public ByteRange(long first, long last) {
+            if (first < 0 || last < first) {
+                throw new IllegalArgumentException("Invalid byte range " + first + "-" + last);
+            }
+            this.first = first;
+            this.last = last;
+        }
+
+        public long getFirst() {
+            return first;
+        }
+
+        public long getLast() {
+            return last;
+        }
+
+        public long getLength() {
+            return last - first + 1;
+        }
+
+        /**
+         * @param completeLength The length of the complete representation.
+         * @return The value of the 'Content-Range' header for this range.
+         */
+        public String getContentRange(long completeLength) {
+            return BYTES_UNIT + " " + first + "-" + last + "/" + completeLength;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof ByteRange) {
+                ByteRange other = (ByteRange) obj;
+                return first == other.first && last == other.last;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (31 * first + last);
+        }
+
+        @Override
+        public String toString() {
+            return first + "-" + last;
+        }
+    }
+}
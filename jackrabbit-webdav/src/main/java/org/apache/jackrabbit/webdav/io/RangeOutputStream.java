@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.io;
+
+import org.apache.jackrabbit.webdav.DavConstants;
+import org.apache.jackrabbit.webdav.header.RangeHeader.ByteRange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <code>RangeOutputStream</code> writes the selected byte ranges of the
+ * complete representation that is written to it and discards everything
+ * else. If more than one range is selected the output is formatted as
+ * <code>multipart/byteranges</code> message body (RFC 7233, Appendix A).
+ * <p>
+ * Producers that are able to skip their input (such as a
+ * <code>Binary</code> stream backed by a file or a data store record)
+ * can consult {@link #getSkippableBytes()} and {@link #skip(long)} in order
+ * to avoid reading content that would be discarded anyway, and may stop
+ * writing as soon as {@link #isComplete()} returns <code>true</code>.
+ * <p>
+ * The ranges must be sorted in ascending order and must not overlap, which
+ * is guaranteed for the ranges returned by
+ * {@link org.apache.jackrabbit.webdav.header.RangeHeader#getRanges(long)}.
+ * Closing this stream does not close the underlying stream; instead
+ * {@link #finish()} must be called once the content has been written.
+ */
+public class RangeOutputStream extends OutputStream {
+
+    public static final String MULTIPART_BYTERANGES = "multipart/byteranges";
+
+    private static final Charset HEADER_CHARSET = Charset.forName("ISO-8859-1");
+
+    private static final String CRLF = "\r\n";
+
+    private final OutputStream out;
+
+    private final List<ByteRange> ranges;
+
+    private final String contentType;
+
+    /**
+     * The multipart boundary or <code>null</code> for a single range.
+     */
+    private final String boundary;
+
+    /**
+     * The part headers (including the leading delimiter) per range, only
+     * present for multiple ranges.
+     */
+    private final List<byte[]> partHeaders;
+
+    private final long contentLength;
+
+    /**
+     * The position within the complete representation.
+     */
+    private long position;
+
+    /**
+     * The index of the range that contains or follows the current position.
+     */
+    private int index;
+
+    private boolean finished;
+
+    /**
+     * @param out The stream to write the selected ranges to.
+     * @param ranges The ranges in ascending order.
+     * @param completeLength The length of the complete representation.
+     * @param contentType The content type of the complete representation,
+     * used for the individual parts of a multipart response. May be <code>null</code>.
+     */
+    public RangeOutputStream(OutputStream out, List<ByteRange> ranges, long completeLength, String contentType) {
+        if (out == null || ranges == null || ranges.isEmpty()) {
+            throw new IllegalArgumentException("Output stream and at least one range required.");
+        }
+        this.out = out;
+        this.ranges = ranges;
+        long length = 0;
+        if (ranges.size() == 1) {
+            this.contentType = contentType;
+            boundary = null;
+            partHeaders = null;
+            length = ranges.get(0).getLength();
+        } else {
+            boundary = "jackrabbit-" + UUID.randomUUID().toString();
+            this.contentType = MULTIPART_BYTERANGES + "; boundary=" + boundary;
+            partHeaders = new ArrayList<byte[]>(ranges.size());
+            for (ByteRange range : ranges) {
+                StringBuilder sb = new StringBuilder();
+                sb.append(CRLF).append("--").append(boundary).append(CRLF);
+                if (contentType != null) {
+                    sb.append(DavConstants.HEADER_CONTENT_TYPE).append(": ").append(contentType).append(CRLF);
+                }
+                sb.append(DavConstants.HEADER_CONTENT_RANGE).append(": ").append(range.getContentRange(completeLength)).append(CRLF);
+                sb.append(CRLF);
+                byte[] header = sb.toString().getBytes(HEADER_CHARSET);
+                partHeaders.add(header);
+                length += header.length + range.getLength();
+            }
+            length += getClosingDelimiter().length;
+        }
+        contentLength = length;
+    }
+
+    /**
+     * @return The content type of the response, which is a
+     * <code>multipart/byteranges</code> type if more than one range is
+     * selected and the type of the complete representation otherwise.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return The exact number of bytes written to the underlying stream
+     * once the content has been written and {@link #finish()} was called.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * @return <code>true</code> if more than one range is written.
+     */
+    public boolean isMultipart() {
+        return boundary != null;
+    }
+
+    /**
+     * @return <code>true</code> if all selected ranges have been written.
+     */
+    public boolean isComplete() {
+        return index >= ranges.size();
+    }
+
+    /**
+     * @return The number of bytes starting from the current position that
+     * would be discarded, i.e. the distance to the start of the next range.
+     * <code>0</code> if the current position is within a selected range and
+     * {@link Long#MAX_VALUE} if all ranges have been written.
+     */
+    public long getSkippableBytes() {
+        if (isComplete()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, ranges.get(index).getFirst() - position);
+    }
+
+    /**
+     * @return The number of bytes starting from the current position until
+     * the end of the current range, <code>0</code> if the current position
+     * is not within a selected range.
+     */
+    public long getRemainingInRange() {
+        if (isComplete() || position < ranges.get(index).getFirst()) {
+            return 0;
+        }
+        return ranges.get(index).getLast() - position + 1;
+    }
+
+    /**
+     * Advances the current position by the given number of bytes, which the
+     * caller skipped in its input instead of writing them.
+     *
+     * @param n The number of bytes skipped, at most {@link #getSkippableBytes()}.
+     */
+    public void skip(long n) {
+        if (n < 0 || n > getSkippableBytes()) {
+            throw new IllegalArgumentException("Cannot skip " + n + " bytes at position " + position);
+        }
+        position += n;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (isComplete()) {
+            position++;
+            return;
+        }
+        ByteRange range = ranges.get(index);
+        if (position >= range.getFirst()) {
+            if (position == range.getFirst()) {
+                writePartHeader();
+            }
+            out.write(b);
+            if (position == range.getLast()) {
+                index++;
+            }
+        }
+        position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (isComplete()) {
+                position += len;
+                return;
+            }
+            long skippable = getSkippableBytes();
+            if (skippable > 0) {
+                int n = (int) Math.min(skippable, len);
+                position += n;
+                off += n;
+                len -= n;
+            } else {
+                ByteRange range = ranges.get(index);
+                if (position == range.getFirst()) {
+                    writePartHeader();
+                }
+                int n = (int) Math.min(getRemainingInRange(), len);
+                out.write(b, off, n);
+                position += n;
+                off += n;
+                len -= n;
+                if (position > range.getLast()) {
+                    index++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes but does not close the underlying stream.
+     *
+     * @see #finish()
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Terminates the multipart body if more than one range has been selected
+     * and flushes the underlying stream.
+     *
+     * @throws IOException If the content written to this stream was too
+     * short to cover all selected ranges.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (!isComplete()) {
+            throw new IOException("Content ended at position " + position
+                    + " before range " + ranges.get(index) + " was written.");
+        }
+        if (isMultipart()) {
+            out.write(getClosingDelimiter());
+        }
+        out.flush();
+    }
+
+    private void writePartHeader() throws IOException {
+        if (isMultipart()) {
+            out.write(partHeaders.get(index));
+        }
+    }
+
+    private byte[] getClosingDelimiter() {
+        return (CRLF + "--" + boundary + "--" + CRLF).getBytes(HEADER_CHARSET);
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.jackrabbit.webdav.DavServletResponse;
 import org.apache.jackrabbit.webdav.DavSessionProvider;
 import org.apache.jackrabbit.webdav.MultiStatus;
 import org.apache.jackrabbit.webdav.MultiStatusResponse;
+import org.apache.jackrabbit.webdav.MultiStatusWriter;
 import org.apache.jackrabbit.webdav.WebdavRequest;
 import org.apache.jackrabbit.webdav.WebdavRequestImpl;
 import org.apache.jackrabbit.webdav.WebdavResponse;
@@ -37,10 +38,12 @@ import org.apache.jackrabbit.webdav.bind.UnbindInfo;
 import org.apache.jackrabbit.webdav.bind.BindableResource;
 import org.apache.jackrabbit.webdav.bind.BindInfo;
 import org.apache.jackrabbit.webdav.header.CodedUrlHeader;
+import org.apache.jackrabbit.webdav.header.RangeHeader;
 import org.apache.jackrabbit.webdav.io.InputContext;
 import org.apache.jackrabbit.webdav.io.InputContextImpl;
 import org.apache.jackrabbit.webdav.io.OutputContext;
 import org.apache.jackrabbit.webdav.io.OutputContextImpl;
+import org.apache.jackrabbit.webdav.io.RangeOutputStream;
 import org.apache.jackrabbit.webdav.lock.ActiveLock;
 import org.apache.jackrabbit.webdav.lock.LockDiscovery;
 import org.apache.jackrabbit.webdav.lock.LockInfo;
@@ -516,6 +519,13 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
     }
 
     /**
+     * Spools the given resource. Conditional requests are answered with
+     * <code>304 (Not Modified)</code> based on the 'If-None-Match' and
+     * 'If-Modified-Since' headers. For non-collection resources with a known
+     * content length a 'Range' header (optionally guarded by 'If-Range') is
+     * answered with <code>206 (Partial Content)</code>, which contains either
+     * the single selected range or a <code>multipart/byteranges</code> body.
+     *
      * @param request
      * @param response
      * @param resource
@@ -531,15 +541,36 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
             return;
         }
 
-        long modSince = request.getDateHeader("If-Modified-Since");
-        if (modSince > UNDEFINED_TIME) {
-            long modTime = resource.getModificationTime();
-            // test if resource has been modified. note that formatted modification
-            // time lost the milli-second precision
-            if (modTime != UNDEFINED_TIME && (modTime / 1000 * 1000) <= modSince) {
-                // resource has not been modified since the time indicated in the
-                // 'If-Modified-Since' header.
-                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        String etag = getPropertyValue(resource, DavPropertyName.GETETAG);
+        long modTime = resource.getModificationTime();
+        if (isNotModified(request, etag, modTime)) {
+            if (etag != null) {
+                response.setHeader(HEADER_ETAG, etag);
+            }
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long length = -1;
+        if (!resource.isCollection()) {
+            try {
+                String contentLength = getPropertyValue(resource, DavPropertyName.GETCONTENTLENGTH);
+                length = (contentLength == null) ? -1 : Long.parseLong(contentLength);
+            } catch (NumberFormatException e) {
+                log.debug("Invalid content length of resource {}", resource.getResourcePath());
+            }
+        }
+        if (length >= 0) {
+            response.setHeader(HEADER_ACCEPT_RANGES, RangeHeader.BYTES_UNIT);
+            RangeHeader rangeHeader = new RangeHeader(request);
+            if (sendContent && rangeHeader.isValid() && isIfRangeSatisfied(request, etag, modTime)) {
+                List<RangeHeader.ByteRange> ranges = rangeHeader.getRanges(length);
+                if (ranges.isEmpty()) {
+                    response.setHeader(HEADER_CONTENT_RANGE, RangeHeader.BYTES_UNIT + " */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                } else {
+                    spoolRanges(response, resource, ranges, length, etag, modTime);
+                }
                 return;
             }
         }
@@ -551,7 +582,133 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
     }
 
     /**
-     * The PROPFIND method
+     * Writes the given ranges of the resource content as partial content
+     * response. The content is streamed directly from the resource, which
+     * is expected to skip the content that is not selected where possible.
+     *
+     * @see RangeOutputStream
+     */
+    private void spoolRanges(WebdavResponse response, DavResource resource,
+                             List<RangeHeader.ByteRange> ranges, long length,
+                             String etag, long modTime) throws IOException {
+        String contentType = getPropertyValue(resource, DavPropertyName.GETCONTENTTYPE);
+        RangeOutputStream out = new RangeOutputStream(response.getOutputStream(), ranges, length, contentType);
+
+        // the headers must be complete before the content is spooled
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (!out.isMultipart()) {
+            response.setHeader(HEADER_CONTENT_RANGE, ranges.get(0).getContentRange(length));
+        }
+        if (out.getContentType() != null) {
+            response.setContentType(out.getContentType());
+        }
+        if (out.getContentLength() <= Integer.MAX_VALUE) {
+            response.setContentLength((int) out.getContentLength());
+        } else {
+            response.setHeader(HEADER_CONTENT_LENGTH, Long.toString(out.getContentLength()));
+        }
+        if (etag != null) {
+            response.setHeader(HEADER_ETAG, etag);
+        }
+        if (modTime != UNDEFINED_TIME) {
+            response.setDateHeader(HEADER_LAST_MODIFIED, modTime);
+        }
+
+        resource.spool(new RangeOutputContext(getOutputContext(response, out)));
+        out.finish();
+        response.flushBuffer();
+    }
+
+    /**
+     * Evaluates the 'If-None-Match' header (weak comparison) and, if that is
+     * not present, the 'If-Modified-Since' header (RFC 7232, Section 6).
+     *
+     * @return <code>true</code> if a <code>304 (Not Modified)</code> response
+     * should be sent.
+     */
+    private static boolean isNotModified(WebdavRequest request, String etag, long modTime) {
+        String noneMatch = request.getHeader(HEADER_IF_NONE_MATCH);
+        if (noneMatch != null) {
+            return etag != null && matchesETag(noneMatch, etag, false);
+        }
+        long modSince = getDateHeader(request, HEADER_IF_MODIFIED_SINCE);
+        // test if resource has been modified. note that formatted modification
+        // time lost the milli-second precision
+        return modSince > UNDEFINED_TIME && modTime != UNDEFINED_TIME
+                && (modTime / 1000 * 1000) <= modSince;
+    }
+
+    /**
+     * Evaluates the 'If-Range' header, which either contains an entity tag
+     * that must match strongly or a HTTP date that must match the
+     * modification time exactly (RFC 7233, Section 3.2).
+     *
+     * @return <code>true</code> if no 'If-Range' header is present or if its
+     * condition is met, in which case the 'Range' header is applied.
+     */
+    private static boolean isIfRangeSatisfied(WebdavRequest request, String etag, long modTime) {
+        String ifRange = request.getHeader(HEADER_IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return etag != null && matchesETag(ifRange, etag, true);
+        }
+        long date = getDateHeader(request, HEADER_IF_RANGE);
+        return date > UNDEFINED_TIME && modTime != UNDEFINED_TIME && (modTime / 1000 * 1000) == date;
+    }
+
+    /**
+     * @param headerValue A single entity tag, a comma separated list of entity
+     * tags or "*".
+     * @param etag The entity tag of the resource.
+     * @param strong Whether the strong comparison function must be used.
+     * @return <code>true</code> if the given entity tag matches.
+     */
+    private static boolean matchesETag(String headerValue, String etag, boolean strong) {
+        if (strong && etag.startsWith("W/")) {
+            return false;
+        }
+        String opaque = (etag.startsWith("W/")) ? etag.substring(2) : etag;
+        for (String tag : headerValue.split(",")) {
+            tag = tag.trim();
+            if ("*".equals(tag)) {
+                return !strong;
+            }
+            if (tag.startsWith("W/")) {
+                if (strong) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (opaque.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getDateHeader(WebdavRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            // not a valid HTTP date -> ignore the header
+            return UNDEFINED_TIME;
+        }
+    }
+
+    private static String getPropertyValue(DavResource resource, DavPropertyName name) {
+        DavProperty<?> property = resource.getProperty(name);
+        return (property == null || property.getValue() == null) ? null : property.getValue().toString();
+    }
+
+    /**
+     * The PROPFIND method. If the response is a {@link WebdavResponseImpl}
+     * the responses are streamed to the client while the resource hierarchy
+     * is traversed. If the traversal fails, the multistatus is not completed:
+     * an error is sent instead if nothing has been committed yet, otherwise
+     * the response is left incomplete.
      *
      * @param request
      * @param response
@@ -570,9 +727,27 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
         DavPropertyNameSet requestProperties = request.getPropFindProperties();
         int propfindType = request.getPropFindType();
 
-        MultiStatus mstatus = new MultiStatus();
-        mstatus.addResourceProperties(resource, requestProperties, propfindType, depth);
-        response.sendMultiStatus(mstatus);
+        if (response instanceof WebdavResponseImpl) {
+            MultiStatusWriter writer = ((WebdavResponseImpl) response).startMultiStatus();
+            boolean success = false;
+            try {
+                writer.addResourceProperties(resource, requestProperties, propfindType, depth);
+                writer.close();
+                success = true;
+            } finally {
+                if (!success) {
+                    writer.abort();
+                    if (!response.isCommitted()) {
+                        // discards the partial multistatus
+                        response.sendError(DavServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    }
+                }
+            }
+        } else {
+            MultiStatus mstatus = new MultiStatus();
+            mstatus.addResourceProperties(resource, requestProperties, propfindType, depth);
+            response.sendMultiStatus(mstatus);
+        }
     }
 
     /**
@@ -1427,4 +1602,56 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
 
         return result;
     }
+
+    //--------------------------------------------------------< inner class >---
+    /**
+     * <code>OutputContext</code> used for partial content responses: the
+     * headers describing the complete representation have already been
+     * set and must not be overwritten while spooling the resource.
+     */
+    private static class RangeOutputContext implements OutputContext {
+
+        private final OutputContext context;
+
+        private RangeOutputContext(OutputContext context) {
+            this.context = context;
+        }
+
+        public boolean hasStream() {
+            return context.hasStream();
+        }
+
+        public OutputStream getOutputStream() {
+            return context.getOutputStream();
+        }
+
+        public void setContentLanguage(String contentLanguage) {
+            context.setContentLanguage(contentLanguage);
+        }
+
+        public void setContentLength(long contentLength) {
+            // ignore: length of the selected ranges has been set
+        }
+
+        public void setContentType(String contentType) {
+            // ignore: content type of the partial content has been set
+        }
+
+        public void setModificationTime(long modificationTime) {
+            // ignore: has been set along with the range headers
+        }
+
+        public void setETag(String etag) {
+            // ignore: has been set along with the range headers
+        }
+
+        public void setProperty(String propertyName, String propertyValue) {
+            if (!HEADER_CONTENT_LENGTH.equalsIgnoreCase(propertyName)
+                    && !HEADER_CONTENT_TYPE.equalsIgnoreCase(propertyName)
+                    && !HEADER_ETAG.equalsIgnoreCase(propertyName)
+                    && !HEADER_LAST_MODIFIED.equalsIgnoreCase(propertyName)) {
+                context.setProperty(propertyName, propertyValue);
+            }
+        }
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.webdav.property.DavPropertyName;
+import org.apache.jackrabbit.webdav.property.DefaultDavProperty;
+import org.apache.jackrabbit.webdav.xml.DomUtil;
+import org.apache.jackrabbit.webdav.xml.Namespace;
+import org.w3c.dom.Document;
+
+/**
+ * <code>MultiStatusWriterTest</code>...
+ */
+public class MultiStatusWriterTest extends TestCase {
+
+    private static final Namespace NS_X = Namespace.getNamespace("x", "urn:x");
+
+    private static final Namespace NS_Y = Namespace.getNamespace("urn:y");
+
+    public void testWrite() throws Exception {
+        MultiStatus multistatus = new MultiStatus();
+        MultiStatusResponse response = new MultiStatusResponse("/a%20b", null);
+        response.add(new DefaultDavProperty<String>(DavPropertyName.GETCONTENTTYPE, "text/<plain>&"));
+        response.add(new DefaultDavProperty<String>(DavPropertyName.create("foo", NS_X), "v"));
+        response.add(new DefaultDavProperty<String>(DavPropertyName.create("bar", NS_Y), "v2"));
+        response.add(DavPropertyName.create("missing", NS_X), DavServletResponse.SC_NOT_FOUND);
+        multistatus.addResponse(response);
+        multistatus.addResponse(new MultiStatusResponse("/c", DavServletResponse.SC_FORBIDDEN));
+        multistatus.setResponseDescription("description \uD83D\uDE00");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MultiStatusWriter.write(multistatus, out);
+
+        Document doc = DomUtil.parseDocument(new ByteArrayInputStream(out.toByteArray()));
+        MultiStatus result = MultiStatus.createFromXml(doc.getDocumentElement());
+        assertEquals("description \uD83D\uDE00", result.getResponseDescription());
+
+        MultiStatusResponse[] responses = result.getResponses();
+        assertEquals(2, responses.length);
+        assertEquals("/a%20b", responses[0].getHref());
+        assertEquals("text/<plain>&", responses[0].getProperties(DavServletResponse.SC_OK)
+                .get(DavPropertyName.GETCONTENTTYPE).getValue());
+        assertEquals("v", responses[0].getProperties(DavServletResponse.SC_OK)
+                .get(DavPropertyName.create("foo", NS_X)).getValue());
+        assertEquals("v2", responses[0].getProperties(DavServletResponse.SC_OK)
+                .get(DavPropertyName.create("bar", NS_Y)).getValue());
+        assertTrue(responses[0].getPropertyNames(DavServletResponse.SC_NOT_FOUND)
+                .contains(DavPropertyName.create("missing", NS_X)));
+        assertEquals("/c", responses[1].getHref());
+        assertEquals(DavServletResponse.SC_FORBIDDEN, responses[1].getStatus()[0].getStatusCode());
+    }
+
+    public void testEmpty() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new MultiStatusWriter(out).close();
+
+        Document doc = DomUtil.parseDocument(new ByteArrayInputStream(out.toByteArray()));
+        assertTrue(DomUtil.matches(doc.getDocumentElement(), DavConstants.XML_MULTISTATUS, DavConstants.NAMESPACE));
+        assertFalse(doc.getDocumentElement().hasChildNodes());
+    }
+
+    public void testAddAfterClose() throws Exception {
+        MultiStatusWriter writer = new MultiStatusWriter(new ByteArrayOutputStream());
+        writer.close();
+        try {
+            writer.addResponse(new MultiStatusResponse("/c", DavServletResponse.SC_OK));
+            fail("Closed writer must not accept responses.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testCloseAfterFailure() throws Exception {
+        DavResource resource = createUnlistableCollection();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MultiStatusWriter writer = new MultiStatusWriter(out);
+        try {
+            writer.addResourceStatus(resource, DavServletResponse.SC_OK, DavConstants.DEPTH_INFINITY);
+            fail("Listing the members must fail.");
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            writer.close();
+        }
+
+        Document doc = DomUtil.parseDocument(new ByteArrayInputStream(out.toByteArray()));
+        MultiStatusResponse[] responses = MultiStatus.createFromXml(doc.getDocumentElement()).getResponses();
+        assertEquals(1, responses.length);
+        assertEquals("/a", responses[0].getHref());
+    }
+
+    public void testAbortAfterFailure() throws Exception {
+        DavResource resource = createUnlistableCollection();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MultiStatusWriter writer = new MultiStatusWriter(out);
+        try {
+            writer.addResourceStatus(resource, DavServletResponse.SC_OK, DavConstants.DEPTH_INFINITY);
+            fail("Listing the members must fail.");
+        } catch (IllegalStateException e) {
+            writer.abort();
+        }
+        // closing an aborted writer does not complete the document
+        writer.close();
+        assertFalse(new String(out.toByteArray(), "UTF-8").contains(DavConstants.XML_MULTISTATUS + ">"));
+        try {
+            writer.addResponse(new MultiStatusResponse("/c", DavServletResponse.SC_OK));
+            fail("Aborted writer must not accept responses.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Returns a collection whose members cannot be listed.
+     */
+    private DavResource createUnlistableCollection() {
+        return (DavResource) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {DavResource.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getHref".equals(method.getName())) {
+                            return "/a";
+                        } else if ("isCollection".equals(method.getName())) {
+                            return Boolean.TRUE;
+                        }
+                        throw new IllegalStateException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.header;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.webdav.header.RangeHeader.ByteRange;
+
+public class RangeHeaderTest extends TestCase {
+
+    public void testSingleRange() {
+        RangeHeader header = new RangeHeader("bytes=0-499");
+        assertTrue(header.isValid());
+        assertEquals(Collections.singletonList(new ByteRange(0, 499)), header.getRanges(10000));
+    }
+
+    public void testOpenEndedAndSuffixRanges() {
+        assertEquals(Collections.singletonList(new ByteRange(9500, 9999)),
+                new RangeHeader("bytes=9500-").getRanges(10000));
+        assertEquals(Collections.singletonList(new ByteRange(9500, 9999)),
+                new RangeHeader("bytes=-500").getRanges(10000));
+        // suffix longer than the representation
+        assertEquals(Collections.singletonList(new ByteRange(0, 99)),
+                new RangeHeader("bytes=-500").getRanges(100));
+        // last position beyond the representation
+        assertEquals(Collections.singletonList(new ByteRange(50, 99)),
+                new RangeHeader("bytes=50-1000").getRanges(100));
+    }
+
+    public void testMultipleRangesAreSortedAndCoalesced() {
+        List<ByteRange> ranges = new RangeHeader("bytes=500-600, 0-10,601-700, 5-20 ,900-").getRanges(1000);
+        assertEquals(Arrays.asList(new ByteRange(0, 20), new ByteRange(500, 700), new ByteRange(900, 999)), ranges);
+    }
+
+    public void testUnsatisfiable() {
+        RangeHeader header = new RangeHeader("bytes=1000-2000");
+        assertTrue(header.isValid());
+        assertTrue(header.getRanges(1000).isEmpty());
+        assertTrue(new RangeHeader("bytes=-0").getRanges(1000).isEmpty());
+        assertTrue(new RangeHeader("bytes=0-10").getRanges(0).isEmpty());
+    }
+
+    public void testInvalid() {
+        assertFalse(new RangeHeader((String) null).isValid());
+        assertFalse(new RangeHeader("items=0-10").isValid());
+        assertFalse(new RangeHeader("bytes=10-5").isValid());
+        assertFalse(new RangeHeader("bytes=abc").isValid());
+        assertFalse(new RangeHeader("bytes=1-2-3").isValid());
+        assertFalse(new RangeHeader("bytes=").isValid());
+        assertFalse(new RangeHeader("bytes=+1-2").isValid());
+
+        StringBuilder tooMany = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= RangeHeader.MAX_RANGES; i++) {
+            tooMany.append(',').append(i * 2).append('-').append(i * 2);
+        }
+        assertFalse(new RangeHeader(tooMany.toString()).isValid());
+    }
+
+    public void testContentRange() {
+        assertEquals("bytes 0-499/1234", new ByteRange(0, 499).getContentRange(1234));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.webdav.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.jackrabbit.webdav.header.RangeHeader.ByteRange;
+
+/**
+ * <code>RangeOutputStreamTest</code>...
+ */
+public class RangeOutputStreamTest extends TestCase {
+
+    private static final byte[] CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes();
+
+    public void testSingleRange() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        RangeOutputStream out = new RangeOutputStream(target,
+                Collections.singletonList(new ByteRange(10, 15)), CONTENT.length, "text/plain");
+        assertFalse(out.isMultipart());
+        assertEquals("text/plain", out.getContentType());
+
+        out.write(CONTENT);
+        out.finish();
+        assertEquals("abcdef", target.toString("ISO-8859-1"));
+        assertEquals(target.size(), out.getContentLength());
+    }
+
+    public void testSingleByteWrites() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        RangeOutputStream out = new RangeOutputStream(target,
+                Arrays.asList(new ByteRange(0, 1), new ByteRange(34, 35)), CONTENT.length, null);
+        for (byte b : CONTENT) {
+            out.write(b);
+        }
+        out.finish();
+        String body = target.toString("ISO-8859-1");
+        assertTrue(body.contains("\r\n\r\n01\r\n"));
+        assertTrue(body.contains("\r\n\r\nyz\r\n"));
+        assertEquals(target.size(), out.getContentLength());
+    }
+
+    public void testMultipleRanges() throws IOException {
+        List<ByteRange> ranges = Arrays.asList(new ByteRange(0, 2), new ByteRange(30, 35));
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        RangeOutputStream out = new RangeOutputStream(target, ranges, CONTENT.length, "text/plain");
+        assertTrue(out.isMultipart());
+        assertTrue(out.getContentType().startsWith(RangeOutputStream.MULTIPART_BYTERANGES + "; boundary="));
+        String boundary = out.getContentType().substring(out.getContentType().indexOf('=') + 1);
+
+        // write in chunks crossing the range boundaries
+        for (int i = 0; i < CONTENT.length; i += 7) {
+            out.write(CONTENT, i, Math.min(7, CONTENT.length - i));
+        }
+        out.finish();
+
+        String expected = "\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 0-2/36\r\n\r\n"
+                + "012"
+                + "\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 30-35/36\r\n\r\n"
+                + "uvwxyz"
+                + "\r\n--" + boundary + "--\r\n";
+        assertEquals(expected, target.toString("ISO-8859-1"));
+        assertEquals(expected.length(), out.getContentLength());
+    }
+
+    public void testSkip() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        RangeOutputStream out = new RangeOutputStream(target,
+                Collections.singletonList(new ByteRange(20, 24)), CONTENT.length, null);
+        assertEquals(20, out.getSkippableBytes());
+        out.skip(20);
+        assertEquals(0, out.getSkippableBytes());
+        assertEquals(5, out.getRemainingInRange());
+        try {
+            out.skip(1);
+            fail("Must not skip selected content.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        out.write(CONTENT, 20, 5);
+        assertTrue(out.isComplete());
+        assertEquals(Long.MAX_VALUE, out.getSkippableBytes());
+        out.finish();
+        assertEquals("klmno", target.toString("ISO-8859-1"));
+    }
+
+    public void testContentTooShort() throws IOException {
+        RangeOutputStream out = new RangeOutputStream(new ByteArrayOutputStream(),
+                Collections.singletonList(new ByteRange(20, 50)), 51, null);
+        out.write(CONTENT);
+        try {
+            out.finish();
+            fail("Missing content must be detected.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -26,6 +26,7 @@ public class TestAll extends TestCase {
         TestSuite suite = new TestSuite("WebDAV tests");
 
         suite.addTestSuite(OutputContextImplTest.class);
+        suite.addTestSuite(RangeOutputStreamTest.class);
 
         return suite;
     }